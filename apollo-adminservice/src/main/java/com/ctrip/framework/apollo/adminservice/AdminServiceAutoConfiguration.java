@@ -18,9 +18,14 @@ package com.ctrip.framework.apollo.adminservice;
 
 import com.ctrip.framework.apollo.adminservice.filter.AdminServiceAuthenticationFilter;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageCompactor;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageCompactionRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Configuration
 public class AdminServiceAutoConfiguration {
@@ -49,4 +54,16 @@ public class AdminServiceAutoConfiguration {
 
     return filterRegistrationBean;
   }
+
+  /**
+   * The release messages are written by the admin services, which compact them as well.
+   */
+  @Bean
+  public ReleaseMessageCompactor releaseMessageCompactor(
+      final ReleaseMessageRepository releaseMessageRepository,
+      final ReleaseMessageCompactionRepository releaseMessageCompactionRepository,
+      final TransactionTemplate transactionTemplate, final MeterRegistry meterRegistry) {
+    return new ReleaseMessageCompactor(bizConfig, releaseMessageRepository,
+        releaseMessageCompactionRepository, transactionTemplate, meterRegistry);
+  }
 }
@@ -18,6 +18,8 @@ package com.ctrip.framework.apollo.assembly;
 
 import com.ctrip.framework.apollo.adminservice.AdminServiceApplication;
 import com.ctrip.framework.apollo.audit.configuration.ApolloAuditAutoConfiguration;
+import com.ctrip.framework.apollo.biz.message.InProcessReleaseMessageTransport;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageTransport;
 import com.ctrip.framework.apollo.configservice.ConfigServiceApplication;
 import com.ctrip.framework.apollo.portal.PortalApplication;
 
@@ -25,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.hibernate.autoconfigure.HibernateJpaAutoConfiguration;
 import org.springframework.boot.jdbc.autoconfigure.DataSourceAutoConfiguration;
@@ -32,6 +35,7 @@ import org.springframework.boot.jdbc.autoconfigure.DataSourceTransactionManagerA
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.cloud.context.scope.refresh.RefreshScope;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication(
     exclude = {DataSourceAutoConfiguration.class,
@@ -87,4 +91,14 @@ public class ApolloApplication {
     MDC.clear();
   }
 
+  /**
+   * Shared by the config service and admin service contexts, so the release messages are pushed
+   * from one to the other
+   */
+  @Bean
+  @ConditionalOnProperty(value = "apollo.release-message.transport", havingValue = "in-process")
+  public ReleaseMessageTransport releaseMessageTransport() {
+    return new InProcessReleaseMessageTransport();
+  }
+
 }
@@ -53,16 +53,36 @@ public class BizConfig extends RefreshableConfig {
   private static final int DEFAULT_ACCESS_KEY_CACHE_SCAN_INTERVAL = 1; // 1s
   private static final int DEFAULT_ACCESS_KEY_CACHE_REBUILD_INTERVAL = 60; // 60s
   private static final int DEFAULT_ACCESS_KEY_AUTH_TIME_DIFF_TOLERANCE = 60; // 60s
-  private static final int DEFAULT_RELEASE_MESSAGE_CACHE_SCAN_INTERVAL = 1; // 1s
   private static final int DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS = 1000; // 1000ms
+  private static final int DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_WITH_TRANSPORT_IN_MS = 10000; // 10s
+  private static final int DEFAULT_RELEASE_MESSAGE_SCAN_MAX_INTERVAL_IN_MS = 0; // not backing off
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH = 100;
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI = 100;// 100ms
+  private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_WORKERS = 4;
+  private static final int DEFAULT_RELEASE_MESSAGE_LISTENER_QUEUE_SIZE = 10000;
+  private static final int DEFAULT_RELEASE_MESSAGE_COMPACTION_INTERVAL = 60; // 60s
+  private static final int DEFAULT_RELEASE_MESSAGE_COMPACTION_MIN_AGE = 600; // 600s
+  private static final int DEFAULT_RELEASE_MESSAGE_COMPACTION_BATCH_SIZE = 500;
+  private static final int DEFAULT_RELEASE_MESSAGE_COMPACTION_MAX_ROWS_PER_SECOND = 1000;
   private static final int DEFAULT_LONG_POLLING_TIMEOUT = 60; // 60s
+  private static final int DEFAULT_LONG_POLLING_TIMEOUT_JITTER = 5; // 5s
+  private static final int DEFAULT_NOTIFICATION_STREAM_HEARTBEAT_INTERVAL = 30; // 30s
+  private static final int DEFAULT_NOTIFICATION_STREAM_TIMEOUT = 30; // 30 minutes
   public static final int DEFAULT_RELEASE_HISTORY_RETENTION_SIZE = -1;
 
   private static final int DEFAULT_INSTANCE_CONFIG_AUDIT_MAX_SIZE = 10000;
   private static final int DEFAULT_INSTANCE_CACHE_MAX_SIZE = 50000;
   private static final int DEFAULT_INSTANCE_CONFIG_CACHE_MAX_SIZE = 50000;
+  private static final int DEFAULT_RELEASE_CONFIGURATION_CACHE_MAX_SIZE_IN_MB = 64;
+  private static final int DEFAULT_MERGED_CONFIGURATION_CACHE_MAX_SIZE_IN_MB = 32;
+  private static final int DEFAULT_INCREMENTAL_CHANGE_CACHE_MAX_SIZE_IN_MB = 16;
+  private static final int DEFAULT_CONFIG_SERVICE_CACHE_MAX_SIZE_IN_MB = 128;
+  private static final int DEFAULT_INCREMENTAL_CHANGE_PRECOMPUTE_RELEASES = 3;
+  private static final String DEFAULT_CONFIG_SERVICE_SNAPSHOT_PATH =
+      "/opt/data/apollo-configservice/snapshot";
+  private static final int DEFAULT_CONFIG_SERVICE_SNAPSHOT_INTERVAL = 60; // 60s
+  private static final int DEFAULT_CONFIG_SERVICE_WARM_UP_NAMESPACES = 1000;
+  private static final int DEFAULT_CONFIG_SERVICE_WARM_UP_TIMEOUT = 60; // 60s
   private static final int DEFAULT_INSTANCE_CONFIG_AUDIT_TIME_THRESHOLD_IN_MINUTE = 10;// 10 minutes
 
   private static final Gson GSON = new Gson();
@@ -110,6 +130,33 @@ public class BizConfig extends RefreshableConfig {
     return TimeUnit.SECONDS.toMillis(timeout);
   }
 
+  /**
+   * The long polling timeout of each request is randomly shortened by up to this value, so that
+   * clients connected at the same time do not reconnect at the same time.
+   */
+  public long longPollingTimeoutJitterInMilli() {
+    int jitter = getIntProperty("long.polling.timeout.jitter", DEFAULT_LONG_POLLING_TIMEOUT_JITTER);
+    jitter = checkInt(jitter, 0, 30, DEFAULT_LONG_POLLING_TIMEOUT_JITTER);
+    return Math.min(TimeUnit.SECONDS.toMillis(jitter), longPollingTimeoutInMilli() / 2);
+  }
+
+  public long notificationStreamHeartbeatIntervalInMilli() {
+    int interval = getIntProperty("notification.stream.heartbeat.interval",
+        DEFAULT_NOTIFICATION_STREAM_HEARTBEAT_INTERVAL);
+    interval = checkInt(interval, 1, 300, DEFAULT_NOTIFICATION_STREAM_HEARTBEAT_INTERVAL);
+    return TimeUnit.SECONDS.toMillis(interval);
+  }
+
+  /**
+   * Streams are closed after this time, so that clients reconnect and spread over the instances.
+   */
+  public long notificationStreamTimeoutInMilli() {
+    int timeout = getIntProperty("notification.stream.timeout",
+        DEFAULT_NOTIFICATION_STREAM_TIMEOUT);
+    timeout = checkInt(timeout, 1, 24 * 60, DEFAULT_NOTIFICATION_STREAM_TIMEOUT);
+    return TimeUnit.MINUTES.toMillis(timeout);
+  }
+
   public int itemKeyLengthLimit() {
     int limit = getIntProperty("item.key.length.limit", DEFAULT_ITEM_KEY_LENGTH);
     return checkInt(limit, 5, Integer.MAX_VALUE, DEFAULT_ITEM_KEY_LENGTH);
@@ -222,22 +269,34 @@ public class BizConfig extends RefreshableConfig {
         value -> value > 0);
   }
 
-  public int releaseMessageCacheScanInterval() {
-    int interval = getIntProperty("apollo.release-message-cache-scan.interval",
-        DEFAULT_RELEASE_MESSAGE_CACHE_SCAN_INTERVAL);
-    return checkInt(interval, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_CACHE_SCAN_INTERVAL);
-  }
-
-  public TimeUnit releaseMessageCacheScanIntervalTimeUnit() {
-    return INTERVAL_TIME_UNIT;
-  }
-
   public int releaseMessageScanIntervalInMilli() {
     int interval =
         getIntProperty("apollo.message-scan.interval", DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS);
     return checkInt(interval, 100, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS);
   }
 
+  /**
+   * The interval to scan the release messages not pushed, when a release message transport is
+   * configured.
+   */
+  public int releaseMessageScanIntervalWithTransportInMilli() {
+    int interval = getIntProperty("apollo.message-scan.interval-with-transport",
+        DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_WITH_TRANSPORT_IN_MS);
+    return checkInt(interval, 100, Integer.MAX_VALUE,
+        DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_WITH_TRANSPORT_IN_MS);
+  }
+
+  /**
+   * The interval the release message scanning backs off to when there is no new message, which
+   * is no larger than the scan interval by default, i.e. not backing off.
+   */
+  public int releaseMessageScanMaxIntervalInMilli() {
+    int interval = getIntProperty("apollo.message-scan.max-interval",
+        DEFAULT_RELEASE_MESSAGE_SCAN_MAX_INTERVAL_IN_MS);
+    return checkInt(interval, 0, Integer.MAX_VALUE,
+        DEFAULT_RELEASE_MESSAGE_SCAN_MAX_INTERVAL_IN_MS);
+  }
+
   public int releaseMessageNotificationBatch() {
     int batch = getIntProperty("apollo.release-message.notification.batch",
         DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH);
@@ -251,6 +310,54 @@ public class BizConfig extends RefreshableConfig {
         DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI);
   }
 
+  public int releaseMessageNotificationWorkers() {
+    int workers = getIntProperty("apollo.release-message.notification.workers",
+        DEFAULT_RELEASE_MESSAGE_NOTIFICATION_WORKERS);
+    return checkInt(workers, 1, 64, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_WORKERS);
+  }
+
+  /**
+   * The release messages each asynchronous release message listener could fall behind, before
+   * the scanning waits for it.
+   */
+  public int releaseMessageListenerQueueSize() {
+    int size = getIntProperty("apollo.release-message.listener.queue-size",
+        DEFAULT_RELEASE_MESSAGE_LISTENER_QUEUE_SIZE);
+    return checkInt(size, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_LISTENER_QUEUE_SIZE);
+  }
+
+  /**
+   * The interval of compacting the release messages, 0 for not compacting them.
+   */
+  public int releaseMessageCompactionIntervalInSecond() {
+    int interval = getIntProperty("apollo.release-message.compaction.interval",
+        DEFAULT_RELEASE_MESSAGE_COMPACTION_INTERVAL);
+    return checkInt(interval, 0, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_COMPACTION_INTERVAL);
+  }
+
+  /**
+   * A release message is only compacted once the newer one of its key is at least this old, by
+   * when all the config services have scanned past both of them.
+   */
+  public int releaseMessageCompactionMinAgeInSecond() {
+    int minAge = getIntProperty("apollo.release-message.compaction.min-age",
+        DEFAULT_RELEASE_MESSAGE_COMPACTION_MIN_AGE);
+    return checkInt(minAge, 60, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_COMPACTION_MIN_AGE);
+  }
+
+  public int releaseMessageCompactionBatchSize() {
+    int batchSize = getIntProperty("apollo.release-message.compaction.batch-size",
+        DEFAULT_RELEASE_MESSAGE_COMPACTION_BATCH_SIZE);
+    return checkInt(batchSize, 1, 10000, DEFAULT_RELEASE_MESSAGE_COMPACTION_BATCH_SIZE);
+  }
+
+  public int releaseMessageCompactionMaxRowsPerSecond() {
+    int maxRows = getIntProperty("apollo.release-message.compaction.max-rows-per-second",
+        DEFAULT_RELEASE_MESSAGE_COMPACTION_MAX_ROWS_PER_SECOND);
+    return checkInt(maxRows, 1, Integer.MAX_VALUE,
+        DEFAULT_RELEASE_MESSAGE_COMPACTION_MAX_ROWS_PER_SECOND);
+  }
+
   public boolean isConfigServiceCacheEnabled() {
     return getBooleanProperty("config-service.cache.enabled", false);
   }
@@ -259,10 +366,110 @@ public class BizConfig extends RefreshableConfig {
     return getBooleanProperty("config-service.cache.stats.enabled", false);
   }
 
+  /**
+   * The estimated memory the releases held by each of the config service caches could take before
+   * being evicted, 0 for no limit.
+   */
+  public long getConfigServiceCacheMaxSizeInBytes() {
+    int maxSize = getIntProperty("config-service.cache.max-size-mb",
+        DEFAULT_CONFIG_SERVICE_CACHE_MAX_SIZE_IN_MB);
+    maxSize = checkInt(maxSize, 0, 64 * 1024, DEFAULT_CONFIG_SERVICE_CACHE_MAX_SIZE_IN_MB);
+    return maxSize * 1024L * 1024L;
+  }
+
+  /**
+   * Whether the configurations of the releases held by the config service caches are stored off
+   * heap in direct buffers, which trades some cpu on each read for a smaller heap.
+   */
+  public boolean isConfigServiceCacheOffHeapEnabled() {
+    return getBooleanProperty("config-service.cache.off-heap.enabled", false);
+  }
+
+  /**
+   * Whether the config service keeps a snapshot of its caches on local disk, which is restored on
+   * startup so only the changes after it are loaded from the database.
+   */
+  public boolean isConfigServiceSnapshotEnabled() {
+    return getBooleanProperty("config-service.snapshot.enabled", false);
+  }
+
+  public String getConfigServiceSnapshotPath() {
+    return getValue("config-service.snapshot.path", DEFAULT_CONFIG_SERVICE_SNAPSHOT_PATH);
+  }
+
+  public int configServiceSnapshotIntervalInSecond() {
+    int interval = getIntProperty("config-service.snapshot.interval",
+        DEFAULT_CONFIG_SERVICE_SNAPSHOT_INTERVAL);
+    return checkInt(interval, 5, Integer.MAX_VALUE, DEFAULT_CONFIG_SERVICE_SNAPSHOT_INTERVAL);
+  }
+
+  /**
+   * Whether the releases in the local snapshot are served when they could not be loaded from the
+   * database, and the startup goes on when the database is unreachable.
+   */
+  public boolean isConfigServiceSnapshotServeOnDatabaseFailure() {
+    return getBooleanProperty("config-service.snapshot.serve-on-database-failure", false);
+  }
+
+  /**
+   * Whether the config service preloads the most recently released namespaces into its caches on
+   * startup, before reporting healthy.
+   */
+  public boolean isConfigServiceWarmUpEnabled() {
+    return getBooleanProperty("config-service.warm-up.enabled", false);
+  }
+
+  public int configServiceWarmUpNamespaces() {
+    int namespaces = getIntProperty("config-service.warm-up.namespaces",
+        DEFAULT_CONFIG_SERVICE_WARM_UP_NAMESPACES);
+    return checkInt(namespaces, 1, Integer.MAX_VALUE, DEFAULT_CONFIG_SERVICE_WARM_UP_NAMESPACES);
+  }
+
+  public int configServiceWarmUpTimeoutInSecond() {
+    int timeout = getIntProperty("config-service.warm-up.timeout",
+        DEFAULT_CONFIG_SERVICE_WARM_UP_TIMEOUT);
+    return checkInt(timeout, 1, Integer.MAX_VALUE, DEFAULT_CONFIG_SERVICE_WARM_UP_TIMEOUT);
+  }
+
+  /**
+   * The seconds after the warm up, during which the config service admits a linearly growing share
+   * of the client requests, 0 for admitting all of them at once.
+   */
+  public int configServiceSlowStartWindowInSecond() {
+    int window = getIntProperty("config-service.slow-start.window", 0);
+    return checkInt(window, 0, Integer.MAX_VALUE, 0);
+  }
+
   public boolean isConfigServiceCacheKeyIgnoreCase() {
     return getBooleanProperty("config-service.cache.key.ignore-case", false);
   }
 
+  /**
+   * Whether to keep serialized config responses, and to render them in advance when a release
+   * message is received.
+   */
+  public boolean isConfigServiceResponseCacheEnabled() {
+    return getBooleanProperty("config-service.response-cache.enabled", true);
+  }
+
+  /**
+   * Whether to serve large config responses gzip compressed to the clients accepting it, the
+   * compressed bodies are kept along with the cached ones.
+   */
+  public boolean isConfigServiceResponseCompressionEnabled() {
+    return getBooleanProperty("config-service.response-compression.enabled", true);
+  }
+
+  /**
+   * The Cache-Control header of the config responses, which carry the merged release key as ETag.
+   * The default lets caches, including the shared ones, keep the responses but revalidate them on
+   * each request, e.g. "public, max-age=0, s-maxage=5" allows an edge cache to absorb bursts for
+   * a few seconds. Empty to not send the header at all.
+   */
+  public String configServiceResponseCacheControl() {
+    return getValue("config-service.response-cache-control", "no-cache");
+  }
+
   public int getInstanceConfigAuditMaxSize() {
     int auditMaxSize =
         getIntProperty("instance.config.audit.max.size", DEFAULT_INSTANCE_CONFIG_AUDIT_MAX_SIZE);
@@ -280,6 +487,27 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(cacheMaxSize, 10, Integer.MAX_VALUE, DEFAULT_INSTANCE_CONFIG_CACHE_MAX_SIZE);
   }
 
+  /**
+   * The estimated memory the parsed release configurations could take before being evicted.
+   */
+  public long getReleaseConfigurationCacheMaxSizeInBytes() {
+    int maxSize = getIntProperty("config-service.release-configuration-cache.max-size-mb",
+        DEFAULT_RELEASE_CONFIGURATION_CACHE_MAX_SIZE_IN_MB);
+    maxSize = checkInt(maxSize, 0, 64 * 1024, DEFAULT_RELEASE_CONFIGURATION_CACHE_MAX_SIZE_IN_MB);
+    return maxSize * 1024L * 1024L;
+  }
+
+  /**
+   * The estimated memory the configurations merged from multiple releases, e.g. the app's own
+   * release and the public one, could take before being evicted.
+   */
+  public long getMergedConfigurationCacheMaxSizeInBytes() {
+    int maxSize = getIntProperty("config-service.merged-configuration-cache.max-size-mb",
+        DEFAULT_MERGED_CONFIGURATION_CACHE_MAX_SIZE_IN_MB);
+    maxSize = checkInt(maxSize, 0, 64 * 1024, DEFAULT_MERGED_CONFIGURATION_CACHE_MAX_SIZE_IN_MB);
+    return maxSize * 1024L * 1024L;
+  }
+
   public long getInstanceConfigAuditTimeThresholdInMilli() {
     int timeThreshold = getIntProperty("instance.config.audit.time.threshold.minutes",
         DEFAULT_INSTANCE_CONFIG_AUDIT_TIME_THRESHOLD_IN_MINUTE);
@@ -292,6 +520,27 @@ public class BizConfig extends RefreshableConfig {
     return getBooleanProperty("config-service.incremental.change.enabled", false);
   }
 
+  /**
+   * The estimated memory the configuration changes between releases for incremental sync could
+   * take before being evicted.
+   */
+  public long getIncrementalChangeCacheMaxSizeInBytes() {
+    int maxSize = getIntProperty("config-service.incremental-change-cache.max-size-mb",
+        DEFAULT_INCREMENTAL_CHANGE_CACHE_MAX_SIZE_IN_MB);
+    maxSize = checkInt(maxSize, 0, 64 * 1024, DEFAULT_INCREMENTAL_CHANGE_CACHE_MAX_SIZE_IN_MB);
+    return maxSize * 1024L * 1024L;
+  }
+
+  /**
+   * The number of previous active releases of a namespace the changes to a new release are
+   * computed from in advance, 0 to compute the changes only when clients ask for them.
+   */
+  public int getIncrementalChangePrecomputeReleases() {
+    int releases = getIntProperty("config-service.incremental-change.precompute-releases",
+        DEFAULT_INCREMENTAL_CHANGE_PRECOMPUTE_RELEASES);
+    return checkInt(releases, 0, 100, DEFAULT_INCREMENTAL_CHANGE_PRECOMPUTE_RELEASES);
+  }
+
   public boolean isAdminServiceAccessControlEnabled() {
     return getBooleanProperty("admin-service.access.control.enabled", false);
   }
@@ -74,6 +74,14 @@ public class ReleaseMessage {
     this.message = message;
   }
 
+  public Date getDataChangeLastModifiedTime() {
+    return dataChangeLastModifiedTime;
+  }
+
+  public void setDataChangeLastModifiedTime(Date dataChangeLastModifiedTime) {
+    this.dataChangeLastModifiedTime = dataChangeLastModifiedTime;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).omitNullValues().add("id", id).add("message", message)
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.entity;
+
+import com.google.common.base.MoreObjects;
+import java.util.Date;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+/**
+ * The progress of compacting the release messages, which is a lease as well, so only one admin
+ * service compacts them at a time.
+ */
+@Entity
+@Table(name = "`ReleaseMessageCompaction`")
+public class ReleaseMessageCompaction {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @Column(name = "`Id`")
+  private long id;
+
+  @Column(name = "`Name`", nullable = false)
+  private String name;
+
+  /**
+   * the admin service holding the lease
+   */
+  @Column(name = "`Owner`", nullable = false)
+  private String owner;
+
+  @Column(name = "`LeaseExpireTime`", nullable = false)
+  private Date leaseExpireTime;
+
+  /**
+   * the release messages till this id are compacted
+   */
+  @Column(name = "`LastCompactedId`", nullable = false)
+  private long lastCompactedId;
+
+  @Column(name = "`DataChange_CreatedTime`", nullable = false)
+  private Date dataChangeCreatedTime;
+
+  @Column(name = "`DataChange_LastTime`")
+  private Date dataChangeLastModifiedTime;
+
+  @PrePersist
+  protected void prePersist() {
+    if (this.dataChangeCreatedTime == null) {
+      dataChangeCreatedTime = new Date();
+    }
+    if (this.dataChangeLastModifiedTime == null) {
+      dataChangeLastModifiedTime = dataChangeCreatedTime;
+    }
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public void setId(long id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public void setOwner(String owner) {
+    this.owner = owner;
+  }
+
+  public Date getLeaseExpireTime() {
+    return leaseExpireTime;
+  }
+
+  public void setLeaseExpireTime(Date leaseExpireTime) {
+    this.leaseExpireTime = leaseExpireTime;
+  }
+
+  public long getLastCompactedId() {
+    return lastCompactedId;
+  }
+
+  public void setLastCompactedId(long lastCompactedId) {
+    this.lastCompactedId = lastCompactedId;
+  }
+
+  public Date getDataChangeCreatedTime() {
+    return dataChangeCreatedTime;
+  }
+
+  public void setDataChangeCreatedTime(Date dataChangeCreatedTime) {
+    this.dataChangeCreatedTime = dataChangeCreatedTime;
+  }
+
+  public Date getDataChangeLastModifiedTime() {
+    return dataChangeLastModifiedTime;
+  }
+
+  public void setDataChangeLastModifiedTime(Date dataChangeLastModifiedTime) {
+    this.dataChangeLastModifiedTime = dataChangeLastModifiedTime;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).omitNullValues().add("id", id).add("name", name)
+        .add("owner", owner).add("leaseExpireTime", leaseExpireTime)
+        .add("lastCompactedId", lastCompactedId).toString();
+  }
+}
@@ -19,9 +19,11 @@ package com.ctrip.framework.apollo.biz.grayReleaseRule;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
@@ -34,6 +36,7 @@ import com.ctrip.framework.apollo.biz.repository.GrayReleaseRuleRepository;
 import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
 import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
 import com.ctrip.framework.apollo.common.utils.GrayReleaseRuleItemTransformer;
+import com.ctrip.framework.apollo.common.utils.IpPrefixTrie;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
@@ -45,7 +48,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -53,6 +58,13 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Holds the gray release rules, which are refreshed by release messages and periodic scans.
+ * <p>
+ * Updates are merged into a working copy of the rules by one writer at a time, after which an
+ * immutable, hash based {@link RulesSnapshot} is built and published, so lookups never block and
+ * always see a consistent set of rules.
+ * </p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class GrayReleaseRulesHolder implements ReleaseMessageListener, InitializingBean {
@@ -64,12 +76,12 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
 
   private int databaseScanInterval;
   private ScheduledExecutorService executorService;
-  // store configAppId+configCluster+configNamespace -> GrayReleaseRuleCache map
-  private Multimap<String, GrayReleaseRuleCache> grayReleaseRuleCache;
-  // store clientAppId+clientNamespace+ip -> ruleId map
-  private Multimap<String, Long> reversedGrayReleaseRuleCache;
-  // store clientAppId+clientNamespace+label -> ruleId map
-  private Multimap<String, Long> reversedGrayReleaseRuleLabelCache;
+  // store configAppId+configCluster+configNamespace -> GrayReleaseRuleCache map, guarded by
+  // writeLock and only read when building snapshots
+  private final Multimap<String, GrayReleaseRuleCache> grayReleaseRuleCache;
+  private final Object writeLock = new Object();
+  private volatile RulesSnapshot rulesSnapshot = RulesSnapshot.EMPTY;
+  private volatile long lastRebuildDurationInNanos;
   // an auto increment version to indicate the age of rules
   private AtomicLong loadVersion;
 
@@ -78,12 +90,7 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     this.grayReleaseRuleRepository = grayReleaseRuleRepository;
     this.bizConfig = bizConfig;
     loadVersion = new AtomicLong();
-    grayReleaseRuleCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
-    reversedGrayReleaseRuleCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
-    reversedGrayReleaseRuleLabelCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+    grayReleaseRuleCache = TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural());
     executorService = Executors.newScheduledThreadPool(1,
         ApolloThreadFactory.create("GrayReleaseRulesHolder", true));
   }
@@ -116,7 +123,10 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     List<GrayReleaseRule> rules = grayReleaseRuleRepository
         .findByAppIdAndClusterNameAndNamespaceName(appId, cluster, namespace);
 
-    mergeGrayReleaseRules(rules);
+    synchronized (writeLock) {
+      mergeGrayReleaseRules(rules);
+      publishSnapshot();
+    }
   }
 
   private void periodicScanRules() {
@@ -125,6 +135,9 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     try {
       loadVersion.incrementAndGet();
       scanGrayReleaseRules();
+      synchronized (writeLock) {
+        publishSnapshot();
+      }
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
       transaction.setStatus(ex);
@@ -137,11 +150,10 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
   public Long findReleaseIdFromGrayReleaseRule(String clientAppId, String clientIp,
       String clientLabel, String configAppId, String configCluster, String configNamespaceName) {
     String key = assembleGrayReleaseRuleKey(configAppId, configCluster, configNamespaceName);
-    if (!grayReleaseRuleCache.containsKey(key)) {
+    List<GrayReleaseRuleCache> rules = rulesSnapshot.rules.get(key.toLowerCase());
+    if (rules == null) {
       return null;
     }
-    // create a new list to avoid ConcurrentModificationException
-    List<GrayReleaseRuleCache> rules = Lists.newArrayList(grayReleaseRuleCache.get(key));
     for (GrayReleaseRuleCache rule : rules) {
       // check branch status
       if (rule.getBranchStatus() != NamespaceBranchStatus.ACTIVE) {
@@ -161,23 +173,45 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
    */
   public boolean hasGrayReleaseRule(String clientAppId, String clientIp, String clientLabel,
       String namespaceName) {
+    RulesSnapshot snapshot = rulesSnapshot;
     // check ip gray rule
-    if (reversedGrayReleaseRuleCache
-        .containsKey(assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName, clientIp))
-        || reversedGrayReleaseRuleCache.containsKey(assembleReversedGrayReleaseRuleKey(clientAppId,
-            namespaceName, GrayReleaseRuleItemDTO.ALL_IP))) {
+    if (snapshot.reversedIpKeys.contains(
+        assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName, clientIp).toLowerCase())
+        || snapshot.reversedIpKeys.contains(assembleReversedGrayReleaseRuleKey(clientAppId,
+            namespaceName, GrayReleaseRuleItemDTO.ALL_IP).toLowerCase())) {
+      return true;
+    }
+    // check ip range gray rule
+    IpPrefixTrie ipRanges = snapshot.reversedIpRanges
+        .get(assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName).toLowerCase());
+    if (ipRanges != null && ipRanges.contains(clientIp)) {
       return true;
     }
     // check label gray rule
-    if (!Strings.isNullOrEmpty(clientLabel) && (reversedGrayReleaseRuleLabelCache
-        .containsKey(assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName, clientLabel))
-        || reversedGrayReleaseRuleLabelCache.containsKey(assembleReversedGrayReleaseRuleKey(
-            clientAppId, namespaceName, GrayReleaseRuleItemDTO.ALL_Label)))) {
+    if (!Strings.isNullOrEmpty(clientLabel) && (snapshot.reversedLabelKeys.contains(
+        assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName, clientLabel).toLowerCase())
+        || snapshot.reversedLabelKeys.contains(assembleReversedGrayReleaseRuleKey(clientAppId,
+            namespaceName, GrayReleaseRuleItemDTO.ALL_Label).toLowerCase()))) {
       return true;
     }
     return false;
   }
 
+  /**
+   * @return the number of rules in the published snapshot, including inactive branches which are
+   *         kept until they are outdated
+   */
+  public int getRuleCount() {
+    return rulesSnapshot.ruleCount;
+  }
+
+  /**
+   * @return the time taken to build the published snapshot
+   */
+  public long getLastRebuildDurationInNanos() {
+    return lastRebuildDurationInNanos;
+  }
+
   private void scanGrayReleaseRules() {
     long maxIdScanned = 0;
     boolean hasMore = true;
@@ -188,7 +222,9 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
       if (CollectionUtils.isEmpty(grayReleaseRules)) {
         break;
       }
-      mergeGrayReleaseRules(grayReleaseRules);
+      synchronized (writeLock) {
+        mergeGrayReleaseRules(grayReleaseRules);
+      }
       int rulesScanned = grayReleaseRules.size();
       maxIdScanned = grayReleaseRules.get(rulesScanned - 1).getId();
       // batch is 500
@@ -207,10 +243,8 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
       }
       String key = assembleGrayReleaseRuleKey(grayReleaseRule.getAppId(),
           grayReleaseRule.getClusterName(), grayReleaseRule.getNamespaceName());
-      // create a new list to avoid ConcurrentModificationException
-      List<GrayReleaseRuleCache> rules = Lists.newArrayList(grayReleaseRuleCache.get(key));
       GrayReleaseRuleCache oldRule = null;
-      for (GrayReleaseRuleCache ruleCache : rules) {
+      for (GrayReleaseRuleCache ruleCache : grayReleaseRuleCache.get(key)) {
         if (ruleCache.getBranchName().equals(grayReleaseRule.getBranchName())) {
           oldRule = ruleCache;
           break;
@@ -241,37 +275,52 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
   }
 
   private void addCache(String key, GrayReleaseRuleCache ruleCache) {
-    if (ruleCache.getBranchStatus() == NamespaceBranchStatus.ACTIVE) {
-      for (GrayReleaseRuleItemDTO ruleItemDTO : ruleCache.getRuleItems()) {
-        for (String clientIp : ruleItemDTO.getClientIpList()) {
-          reversedGrayReleaseRuleCache
-              .put(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
-                  ruleCache.getNamespaceName(), clientIp), ruleCache.getRuleId());
-        }
-        for (String label : ruleItemDTO.getClientLabelList()) {
-          reversedGrayReleaseRuleLabelCache
-              .put(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
-                  ruleCache.getNamespaceName(), label), ruleCache.getRuleId());
-        }
-      }
-    }
     grayReleaseRuleCache.put(key, ruleCache);
   }
 
   private void removeCache(String key, GrayReleaseRuleCache ruleCache) {
     grayReleaseRuleCache.remove(key, ruleCache);
-    for (GrayReleaseRuleItemDTO ruleItemDTO : ruleCache.getRuleItems()) {
-      for (String clientIp : ruleItemDTO.getClientIpList()) {
-        reversedGrayReleaseRuleCache
-            .remove(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
-                ruleCache.getNamespaceName(), clientIp), ruleCache.getRuleId());
-      }
-      for (String label : ruleItemDTO.getClientLabelList()) {
-        reversedGrayReleaseRuleLabelCache
-            .remove(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
-                ruleCache.getNamespaceName(), label), ruleCache.getRuleId());
+  }
+
+  /**
+   * Build a snapshot of the working copy and publish it, must be called with writeLock held.
+   */
+  private void publishSnapshot() {
+    long start = System.nanoTime();
+    ImmutableMap.Builder<String, List<GrayReleaseRuleCache>> rules = ImmutableMap.builder();
+    Set<String> reversedIpKeys = Sets.newHashSet();
+    Set<String> reversedLabelKeys = Sets.newHashSet();
+    Map<String, IpPrefixTrie> reversedIpRanges = Maps.newHashMap();
+    int ruleCount = 0;
+    for (Map.Entry<String, Collection<GrayReleaseRuleCache>> entry : grayReleaseRuleCache.asMap()
+        .entrySet()) {
+      // the rules are kept in the order of rule id, which decides the rule matched first
+      rules.put(entry.getKey().toLowerCase(), ImmutableList.copyOf(entry.getValue()));
+      ruleCount += entry.getValue().size();
+      for (GrayReleaseRuleCache ruleCache : entry.getValue()) {
+        if (ruleCache.getBranchStatus() != NamespaceBranchStatus.ACTIVE) {
+          continue;
+        }
+        for (GrayReleaseRuleItemDTO ruleItemDTO : ruleCache.getRuleItems()) {
+          for (String clientIp : ruleItemDTO.getClientIpList()) {
+            reversedIpKeys.add(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
+                ruleCache.getNamespaceName(), clientIp).toLowerCase());
+            if (IpPrefixTrie.isIpRange(clientIp)) {
+              reversedIpRanges.computeIfAbsent(assembleReversedGrayReleaseRuleKey(
+                  ruleItemDTO.getClientAppId(), ruleCache.getNamespaceName()).toLowerCase(),
+                  key -> new IpPrefixTrie()).add(clientIp);
+            }
+          }
+          for (String label : ruleItemDTO.getClientLabelList()) {
+            reversedLabelKeys.add(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
+                ruleCache.getNamespaceName(), label).toLowerCase());
+          }
+        }
       }
     }
+    rulesSnapshot = new RulesSnapshot(rules.build(), ImmutableSet.copyOf(reversedIpKeys),
+        ImmutableSet.copyOf(reversedLabelKeys), ImmutableMap.copyOf(reversedIpRanges), ruleCount);
+    lastRebuildDurationInNanos = System.nanoTime() - start;
   }
 
   private GrayReleaseRuleCache transformRuleToRuleCache(GrayReleaseRule grayReleaseRule) {
@@ -310,4 +359,34 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     return STRING_JOINER.join(clientAppId, clientNamespaceName, clientIpOrLabel);
   }
 
+  private String assembleReversedGrayReleaseRuleKey(String clientAppId,
+      String clientNamespaceName) {
+    return STRING_JOINER.join(clientAppId, clientNamespaceName);
+  }
+
+  private static class RulesSnapshot {
+    private static final RulesSnapshot EMPTY = new RulesSnapshot(ImmutableMap.of(),
+        ImmutableSet.of(), ImmutableSet.of(), ImmutableMap.of(), 0);
+
+    // lower cased configAppId+configCluster+configNamespace -> rules ordered by rule id
+    private final Map<String, List<GrayReleaseRuleCache>> rules;
+    // lower cased clientAppId+clientNamespace+ip of active rules
+    private final Set<String> reversedIpKeys;
+    // lower cased clientAppId+clientNamespace+label of active rules
+    private final Set<String> reversedLabelKeys;
+    // lower cased clientAppId+clientNamespace -> CIDR blocks and ip ranges of active rules
+    private final Map<String, IpPrefixTrie> reversedIpRanges;
+    private final int ruleCount;
+
+    RulesSnapshot(Map<String, List<GrayReleaseRuleCache>> rules, Set<String> reversedIpKeys,
+        Set<String> reversedLabelKeys, Map<String, IpPrefixTrie> reversedIpRanges,
+        int ruleCount) {
+      this.rules = rules;
+      this.reversedIpKeys = reversedIpKeys;
+      this.reversedLabelKeys = reversedLabelKeys;
+      this.reversedIpRanges = reversedIpRanges;
+      this.ruleCount = ruleCount;
+    }
+  }
+
 }
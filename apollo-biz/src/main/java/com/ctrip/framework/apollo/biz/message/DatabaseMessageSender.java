@@ -18,24 +18,18 @@ package com.ctrip.framework.apollo.biz.message;
 
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
-import com.google.common.collect.Queues;
-import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import jakarta.annotation.PostConstruct;
-import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -43,18 +37,20 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Component
 public class DatabaseMessageSender implements MessageSender {
   private static final Logger logger = LoggerFactory.getLogger(DatabaseMessageSender.class);
-  private static final int CLEAN_QUEUE_MAX_SIZE = 100;
-  private final BlockingQueue<Long> toClean = Queues.newLinkedBlockingQueue(CLEAN_QUEUE_MAX_SIZE);
-  private final ExecutorService cleanExecutorService;
-  private final AtomicBoolean cleanStopped;
 
   private final ReleaseMessageRepository releaseMessageRepository;
+  private final ReleaseMessageTransport releaseMessageTransport;
 
-  public DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository) {
-    cleanExecutorService = Executors
-        .newSingleThreadExecutor(ApolloThreadFactory.create("DatabaseMessageSender", true));
-    cleanStopped = new AtomicBoolean(false);
+  @Autowired
+  public DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository,
+      final ObjectProvider<ReleaseMessageTransport> releaseMessageTransport) {
+    this(releaseMessageRepository, releaseMessageTransport.getIfAvailable());
+  }
+
+  DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository,
+      final ReleaseMessageTransport releaseMessageTransport) {
     this.releaseMessageRepository = releaseMessageRepository;
+    this.releaseMessageTransport = releaseMessageTransport;
   }
 
   @Override
@@ -69,10 +65,9 @@ public class DatabaseMessageSender implements MessageSender {
     Tracer.logEvent("Apollo.AdminService.ReleaseMessage", message);
     Transaction transaction = Tracer.newTransaction("Apollo.AdminService", "sendMessage");
     try {
+      // the older messages of the same key are removed by ReleaseMessageCompactor
       ReleaseMessage newMessage = releaseMessageRepository.save(new ReleaseMessage(message));
-      if (!toClean.offer(newMessage.getId())) {
-        logger.warn("Queue is full, Failed to add message {} to clean queue", newMessage.getId());
-      }
+      publish(newMessage, channel);
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
       logger.error("Sending message to database failed", ex);
@@ -83,47 +78,30 @@ public class DatabaseMessageSender implements MessageSender {
     }
   }
 
-  @PostConstruct
-  private void initialize() {
-    cleanExecutorService.submit(() -> {
-      while (!cleanStopped.get() && !Thread.currentThread().isInterrupted()) {
-        try {
-          Long rm = toClean.poll(1, TimeUnit.SECONDS);
-          if (rm != null) {
-            cleanMessage(rm);
-          } else {
-            TimeUnit.SECONDS.sleep(5);
-          }
-        } catch (Throwable ex) {
-          Tracer.logError(ex);
-        }
-      }
-    });
-  }
-
-  private void cleanMessage(Long id) {
-    // double check in case the release message is rolled back
-    ReleaseMessage releaseMessage = releaseMessageRepository.findById(id).orElse(null);
-    if (releaseMessage == null) {
+  private void publish(ReleaseMessage message, String channel) {
+    if (releaseMessageTransport == null) {
       return;
     }
-    boolean hasMore = true;
-    while (hasMore && !Thread.currentThread().isInterrupted()) {
-      List<ReleaseMessage> messages =
-          releaseMessageRepository.findFirst100ByMessageAndIdLessThanOrderByIdAsc(
-              releaseMessage.getMessage(), releaseMessage.getId());
-
-      releaseMessageRepository.deleteAll(messages);
-      hasMore = messages.size() == 100;
-
-      messages.forEach(toRemove -> Tracer.logEvent(
-          String.format("ReleaseMessage.Clean.%s", toRemove.getMessage()),
-          String.valueOf(toRemove.getId())));
+    // the config services may look up the release once notified, so wait for the commit
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          doPublish(message, channel);
+        }
+      });
+    } else {
+      doPublish(message, channel);
     }
   }
 
-  @PreDestroy
-  void stopClean() {
-    cleanStopped.set(true);
+  private void doPublish(ReleaseMessage message, String channel) {
+    try {
+      releaseMessageTransport.publish(message, channel);
+    } catch (Throwable ex) {
+      // the message is still scanned from the database
+      Tracer.logError(ex);
+      logger.warn("Publishing message {} failed", message.getId(), ex);
+    }
   }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessageCompaction;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageCompactionRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.common.utils.UniqueKeyGenerator;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compacts the release messages periodically, keeping only the latest one of each message, see
+ * {@link BizConfig#releaseMessageCompactionIntervalInSecond()}.
+ * <p>
+ * Only the admin service holding the lease in {@link ReleaseMessageCompaction} compacts them. Each
+ * run starts from the last compacted id saved there, and only deletes the older release messages
+ * of the messages published since then.
+ * </p>
+ * <p>
+ * A release message is only deleted once the newer one of its message is older than
+ * {@link BizConfig#releaseMessageCompactionMinAgeInSecond()}, so the release message scanners
+ * have already scanned past both of them, and a message they are still waiting for in a gap is
+ * never deleted before the newer one is delivered.
+ * </p>
+ */
+public class ReleaseMessageCompactor implements InitializingBean, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageCompactor.class);
+  private static final String COMPACTION_NAME = "default";
+  // the lease is renewed on every run, so it is only taken over when the owner stops running
+  private static final int LEASE_IN_INTERVALS = 3;
+
+  private final BizConfig bizConfig;
+  private final ReleaseMessageRepository releaseMessageRepository;
+  private final ReleaseMessageCompactionRepository releaseMessageCompactionRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final String owner;
+  private final Counter removedCounter;
+  private final Timer compactionTimer;
+
+  private ScheduledExecutorService executorService;
+
+  public ReleaseMessageCompactor(final BizConfig bizConfig,
+      final ReleaseMessageRepository releaseMessageRepository,
+      final ReleaseMessageCompactionRepository releaseMessageCompactionRepository,
+      final TransactionTemplate transactionTemplate, final MeterRegistry meterRegistry) {
+    this.bizConfig = bizConfig;
+    this.releaseMessageRepository = releaseMessageRepository;
+    this.releaseMessageCompactionRepository = releaseMessageCompactionRepository;
+    this.transactionTemplate = transactionTemplate;
+    owner = UniqueKeyGenerator.generateId();
+    removedCounter = Counter.builder("apollo.release-message.compaction.removed")
+        .description("Release messages removed by the compaction").register(meterRegistry);
+    compactionTimer = Timer.builder("apollo.release-message.compaction.duration")
+        .description("Time taken to compact the release messages").register(meterRegistry);
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    int interval = bizConfig.releaseMessageCompactionIntervalInSecond();
+    if (interval <= 0) {
+      return;
+    }
+    executorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("ReleaseMessageCompactor", true));
+    executorService.scheduleWithFixedDelay(this::compact, interval, interval, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void destroy() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the release messages removed
+   */
+  int compact() {
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageCompaction", "compact");
+    long startTime = System.nanoTime();
+    int removed = 0;
+    try {
+      if (acquireLease()) {
+        removed = compactNewMessages();
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Compact release messages failed", ex);
+    } finally {
+      transaction.complete();
+      compactionTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+    if (removed > 0) {
+      logger.info("Compacted {} release messages", removed);
+    }
+    return removed;
+  }
+
+  private boolean acquireLease() {
+    Date now = new Date();
+    Integer acquired = transactionTemplate.execute(status -> releaseMessageCompactionRepository
+        .acquireLease(COMPACTION_NAME, owner, now, leaseExpireTime(now)));
+    if (acquired != null && acquired > 0) {
+      return true;
+    }
+    if (releaseMessageCompactionRepository.findByName(COMPACTION_NAME) != null) {
+      // held by another admin service
+      return false;
+    }
+    ReleaseMessageCompaction compaction = new ReleaseMessageCompaction();
+    compaction.setName(COMPACTION_NAME);
+    compaction.setOwner(owner);
+    compaction.setLeaseExpireTime(leaseExpireTime(now));
+    try {
+      releaseMessageCompactionRepository.save(compaction);
+      return true;
+    } catch (DataIntegrityViolationException ex) {
+      // created by another admin service at the same time
+      return false;
+    }
+  }
+
+  private int compactNewMessages() {
+    Date horizon = new Date(System.currentTimeMillis()
+        - TimeUnit.SECONDS.toMillis(bizConfig.releaseMessageCompactionMinAgeInSecond()));
+    Long maxId = releaseMessageRepository.findMaxIdByDataChangeLastModifiedTimeBefore(horizon);
+    ReleaseMessageCompaction compaction =
+        releaseMessageCompactionRepository.findByName(COMPACTION_NAME);
+    if (maxId == null || compaction == null || maxId <= compaction.getLastCompactedId()) {
+      return 0;
+    }
+
+    int batchSize = bizConfig.releaseMessageCompactionBatchSize();
+    RateLimiter rateLimiter =
+        RateLimiter.create(bizConfig.releaseMessageCompactionMaxRowsPerSecond());
+    PageRequest page = PageRequest.of(0, batchSize);
+    long fromId = compaction.getLastCompactedId();
+    int removed = 0;
+    while (fromId < maxId && !Thread.currentThread().isInterrupted()) {
+      List<Object[]> rows = releaseMessageRepository.findIdAndMessageByIdBetween(fromId, maxId,
+          page);
+      // the rows are in id order, so the latest id of each message is the last one put
+      Map<String, Long> latestIds = Maps.newHashMapWithExpectedSize(rows.size());
+      for (Object[] row : rows) {
+        latestIds.put((String) row[1], ((Number) row[0]).longValue());
+      }
+      long toId = rows.size() < batchSize ? maxId : ((Number) rows.get(rows.size() - 1)[0])
+          .longValue();
+      Integer deleted = transactionTemplate
+          .execute(status -> compactTill(toId, latestIds, status));
+      if (deleted == null) {
+        logger.warn("Lease of compacting release messages is taken over, stop compacting");
+        break;
+      }
+      if (deleted > 0) {
+        removed += deleted;
+        removedCounter.increment(deleted);
+        rateLimiter.acquire(deleted);
+      }
+      fromId = toId;
+    }
+    return removed;
+  }
+
+  /**
+   * Deletes the release messages of the messages seen till the id, which are older than the
+   * latest one of their message, and saves the progress along with them.
+   *
+   * @return the release messages removed, or null if the lease is no longer held
+   */
+  private Integer compactTill(long toId, Map<String, Long> latestIds, TransactionStatus status) {
+    int deleted = latestIds.isEmpty() ? 0 : releaseMessageRepository
+        .deleteSuperseded(latestIds.keySet(), toId, latestIds.values());
+    if (releaseMessageCompactionRepository.updateLastCompactedId(COMPACTION_NAME, owner, toId,
+        leaseExpireTime(new Date())) == 0) {
+      status.setRollbackOnly();
+      return null;
+    }
+    return deleted;
+  }
+
+  private Date leaseExpireTime(Date now) {
+    long interval = bizConfig.releaseMessageCompactionIntervalInSecond();
+    return new Date(now.getTime() + TimeUnit.SECONDS.toMillis(interval * LEASE_IN_INTERVALS));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the release messages to one listener in order, either on the caller thread or on a
+ * thread of the listener's own.
+ * <p>
+ * The messages for an asynchronous listener wait in a bounded queue. When the queue is full, the
+ * caller blocks if the listener needs every message, so a listener falling behind slows the
+ * scanning down instead of piling up messages without limit, or the message is dropped if the
+ * listener is best-effort, so the scanning is never held up by it.
+ * </p>
+ */
+class ReleaseMessageDispatcher {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageDispatcher.class);
+
+  private final String name;
+  private final ReleaseMessageListener listener;
+  private final BlockingQueue<Runnable> queue;
+  private final ExecutorService executorService;
+  private final Timer handleTimer;
+  private final Timer queueTimer;
+  private final Counter droppedCounter;
+
+  /**
+   * @param queueSize the capacity of the queue for an asynchronous listener, 0 for handling the
+   *     messages on the caller thread
+   * @param bestEffort whether the messages are dropped instead of waiting for the queue when it is
+   *     full
+   */
+  ReleaseMessageDispatcher(String name, ReleaseMessageListener listener, int queueSize,
+      boolean bestEffort, MeterRegistry meterRegistry) {
+    this.name = name;
+    this.listener = listener;
+    handleTimer = Timer.builder("apollo.release-message.listener.duration").tag("listener", name)
+        .description("Time taken by the listener to handle a release message")
+        .register(meterRegistry);
+
+    if (queueSize <= 0) {
+      queue = null;
+      executorService = null;
+      queueTimer = null;
+      droppedCounter = null;
+      return;
+    }
+    queue = new LinkedBlockingQueue<>(queueSize);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue,
+        ApolloThreadFactory.create("ReleaseMessageListener-" + name, true));
+    // the messages are put into the queue directly, which is taken by the only worker
+    executor.prestartCoreThread();
+    executorService = executor;
+    queueTimer = Timer.builder("apollo.release-message.listener.queued").tag("listener", name)
+        .description("Time a release message waits for the listener").register(meterRegistry);
+    Gauge.builder("apollo.release-message.listener.pending", queue, BlockingQueue::size)
+        .tag("listener", name).description("Release messages waiting for the listener")
+        .register(meterRegistry);
+    droppedCounter = bestEffort ? Counter.builder("apollo.release-message.listener.dropped")
+        .tag("listener", name).description("Release messages dropped as the listener fell behind")
+        .register(meterRegistry) : null;
+  }
+
+  ReleaseMessageListener getListener() {
+    return listener;
+  }
+
+  void dispatch(ReleaseMessage message, String channel) {
+    if (queue == null) {
+      handle(message, channel);
+      return;
+    }
+    long queuedTime = System.nanoTime();
+    Runnable task = () -> {
+      queueTimer.record(System.nanoTime() - queuedTime, TimeUnit.NANOSECONDS);
+      handle(message, channel);
+    };
+    if (droppedCounter != null) {
+      if (!queue.offer(task)) {
+        droppedCounter.increment();
+        logger.debug("Dropped message {} as listener {} falls behind", message, name);
+      }
+      return;
+    }
+    try {
+      queue.put(task);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      logger.warn("Interrupted while dispatching message {} to listener {}", message, name);
+    }
+  }
+
+  void shutdown() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  private void handle(ReleaseMessage message, String channel) {
+    long startTime = System.nanoTime();
+    try {
+      listener.handleMessage(message, channel);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.error("Failed to invoke message listener {}", listener.getClass(), ex);
+    } finally {
+      handleTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -17,6 +17,13 @@
 package com.ctrip.framework.apollo.biz.message;
 
 import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +35,9 @@ import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
@@ -42,81 +51,224 @@ import com.google.common.collect.Lists;
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
-public class ReleaseMessageScanner implements InitializingBean {
+public class ReleaseMessageScanner implements InitializingBean, DisposableBean {
   private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageScanner.class);
   private static final int missingReleaseMessageMaxAge = 10; // hardcoded to 10, could be configured
                                                              // via BizConfig if necessary
   private final BizConfig bizConfig;
   private final ReleaseMessageRepository releaseMessageRepository;
+  private final ReleaseMessageTransport releaseMessageTransport;
   private int databaseScanInterval;
-  private final List<ReleaseMessageListener> listeners;
+  private int maxDatabaseScanInterval;
+  private volatile int currentDatabaseScanInterval;
+  private final MeterRegistry meterRegistry;
+  private final List<ReleaseMessageDispatcher> dispatchers;
   private final ScheduledExecutorService executorService;
   private final Map<Long, Integer> missingReleaseMessages; // missing release message id => age
                                                            // counter
+  private long startId = -1; // the largest id in the database by default
   private long maxIdScanned;
+  private volatile long maxIdDelivered;
+  private final Timer scanTimer;
+  private final DistributionSummary scanMessagesSummary;
+  private final Timer dispatchLagTimer;
 
   public ReleaseMessageScanner(final BizConfig bizConfig,
       final ReleaseMessageRepository releaseMessageRepository) {
+    this(bizConfig, releaseMessageRepository, null);
+  }
+
+  public ReleaseMessageScanner(final BizConfig bizConfig,
+      final ReleaseMessageRepository releaseMessageRepository,
+      final ReleaseMessageTransport releaseMessageTransport) {
+    this(bizConfig, releaseMessageRepository, releaseMessageTransport, new SimpleMeterRegistry());
+  }
+
+  /**
+   * @param releaseMessageTransport the transport to receive the messages pushed, the database is
+   *     then only scanned to recover the messages not pushed, null for scanning only
+   * @param meterRegistry the registry to publish the scanning and dispatching metrics to
+   */
+  public ReleaseMessageScanner(final BizConfig bizConfig,
+      final ReleaseMessageRepository releaseMessageRepository,
+      final ReleaseMessageTransport releaseMessageTransport, final MeterRegistry meterRegistry) {
     this.bizConfig = bizConfig;
     this.releaseMessageRepository = releaseMessageRepository;
-    listeners = Lists.newCopyOnWriteArrayList();
+    this.releaseMessageTransport = releaseMessageTransport;
+    this.meterRegistry = meterRegistry;
+    dispatchers = Lists.newCopyOnWriteArrayList();
     executorService = Executors.newScheduledThreadPool(1,
         ApolloThreadFactory.create("ReleaseMessageScanner", true));
     missingReleaseMessages = Maps.newHashMap();
+
+    scanTimer = Timer.builder("apollo.release-message.scan.duration")
+        .description("Time taken to scan the new and missing release messages")
+        .register(meterRegistry);
+    scanMessagesSummary = DistributionSummary.builder("apollo.release-message.scan.messages")
+        .description("Release messages loaded by each scan").baseUnit("messages")
+        .register(meterRegistry);
+    dispatchLagTimer = Timer.builder("apollo.release-message.dispatch.lag")
+        .description("Time from a release message being saved to it being dispatched")
+        .register(meterRegistry);
+    // only an approximation as it is read outside the scanning thread
+    Gauge.builder("apollo.release-message.scan.missing", missingReleaseMessages, Map::size)
+        .description("Missing release message ids being watched").register(meterRegistry);
+    TimeGauge.builder("apollo.release-message.scan.interval", this, TimeUnit.MILLISECONDS,
+        scanner -> scanner.currentDatabaseScanInterval)
+        .description("Current interval of the release message scanning")
+        .register(meterRegistry);
   }
 
   @Override
   public void afterPropertiesSet() throws Exception {
-    databaseScanInterval = bizConfig.releaseMessageScanIntervalInMilli();
-    maxIdScanned = loadLargestMessageId();
-    executorService.scheduleWithFixedDelay(() -> {
-      Transaction transaction =
-          Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanMessage");
-      try {
-        scanMissingMessages();
-        scanMessages();
-        transaction.setStatus(Transaction.SUCCESS);
-      } catch (Throwable ex) {
-        transaction.setStatus(ex);
-        logger.error("Scan and send message failed", ex);
-      } finally {
-        transaction.complete();
-      }
-    }, databaseScanInterval, databaseScanInterval, TimeUnit.MILLISECONDS);
+    databaseScanInterval = releaseMessageTransport == null
+        ? bizConfig.releaseMessageScanIntervalInMilli()
+        : bizConfig.releaseMessageScanIntervalWithTransportInMilli();
+    maxDatabaseScanInterval =
+        Math.max(databaseScanInterval, bizConfig.releaseMessageScanMaxIntervalInMilli());
+    currentDatabaseScanInterval = databaseScanInterval;
+    maxIdScanned = startId >= 0 ? startId : loadLargestMessageId();
+    maxIdDelivered = maxIdScanned;
+    if (releaseMessageTransport != null) {
+      // handled in the scanning thread, which owns the scanning state
+      releaseMessageTransport.subscribe((message, channel) -> {
+        if (Topics.APOLLO_RELEASE_TOPIC.equals(channel)) {
+          executorService.execute(() -> handlePushedMessage(message));
+        }
+      });
+    }
+    executorService.schedule(this::scanAndReschedule, currentDatabaseScanInterval,
+        TimeUnit.MILLISECONDS);
+  }
 
+  @Override
+  public void destroy() {
+    executorService.shutdownNow();
+    dispatchers.forEach(ReleaseMessageDispatcher::shutdown);
   }
 
   /**
-   * add message listeners for release message
+   * Scan from the id instead of the largest one in the database, e.g. the id a cache of the
+   * messages is loaded till, so the messages after it are delivered to the listeners as well.
+   * Should be called before the scanner starts.
+   */
+  public void setStartId(long startId) {
+    this.startId = startId;
+  }
+
+  /**
+   * @return the max id, till which all the release messages have been delivered to the
+   *     listeners, except those missing for too long
+   */
+  public long getMaxIdDelivered() {
+    return maxIdDelivered;
+  }
+
+  /**
+   * add message listeners for release message, which are invoked on the scanning thread one by
+   * one in the order added
    * @param listener
    */
   public void addMessageListener(ReleaseMessageListener listener) {
-    if (!listeners.contains(listener)) {
-      listeners.add(listener);
+    addMessageListener(listener, 0, false);
+  }
+
+  /**
+   * add message listeners for release message, which are invoked on a thread of the listener's
+   * own, so a slow listener, e.g. warming up caches from the database, does not hold up the
+   * others. The messages are still delivered to the listener in order, while there is no order
+   * between the listener and the others.
+   * @param listener
+   */
+  public void addAsyncMessageListener(ReleaseMessageListener listener) {
+    addMessageListener(listener, bizConfig.releaseMessageListenerQueueSize(), false);
+  }
+
+  /**
+   * add message listeners for release message, which are invoked on a thread of the listener's
+   * own like {@link #addAsyncMessageListener(ReleaseMessageListener)}, except that the messages
+   * are dropped when the listener falls behind too far, instead of holding up the scanning. Only
+   * for the listeners which could miss messages, e.g. warming up caches which are correct anyway.
+   * @param listener
+   */
+  public void addBestEffortMessageListener(ReleaseMessageListener listener) {
+    addMessageListener(listener, bizConfig.releaseMessageListenerQueueSize(), true);
+  }
+
+  private synchronized void addMessageListener(ReleaseMessageListener listener, int queueSize,
+      boolean bestEffort) {
+    for (ReleaseMessageDispatcher dispatcher : dispatchers) {
+      if (dispatcher.getListener().equals(listener)) {
+        return;
+      }
+    }
+    dispatchers.add(new ReleaseMessageDispatcher(
+        ClassUtils.getUserClass(listener).getSimpleName(), listener, queueSize, bestEffort,
+        meterRegistry));
+  }
+
+  private void scanAndReschedule() {
+    Transaction transaction =
+        Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanMessage");
+    long startTime = System.nanoTime();
+    int messagesScanned = 0;
+    try {
+      messagesScanned += scanMissingMessages();
+      messagesScanned += scanMessages();
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Scan and send message failed", ex);
+    } finally {
+      updateMaxIdDelivered();
+      transaction.complete();
+      scanTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+      scanMessagesSummary.record(messagesScanned);
+      currentDatabaseScanInterval = nextDatabaseScanInterval(messagesScanned > 0);
+      if (!executorService.isShutdown()) {
+        executorService.schedule(this::scanAndReschedule, currentDatabaseScanInterval,
+            TimeUnit.MILLISECONDS);
+      }
     }
   }
 
+  /**
+   * Scan at the configured interval right after new messages, and back off exponentially up to
+   * the max interval while there is none.
+   */
+  int nextDatabaseScanInterval(boolean hasNewMessages) {
+    if (hasNewMessages) {
+      return databaseScanInterval;
+    }
+    return (int) Math.min(maxDatabaseScanInterval, currentDatabaseScanInterval * 2L);
+  }
+
   /**
    * Scan messages, continue scanning until there is no more messages
+   *
+   * @return the number of messages scanned
    */
-  private void scanMessages() {
-    boolean hasMoreMessages = true;
-    while (hasMoreMessages && !Thread.currentThread().isInterrupted()) {
-      hasMoreMessages = scanAndSendMessages();
+  private int scanMessages() {
+    int messagesScanned = 0;
+    int batchScanned = 500;
+    while (batchScanned == 500 && !Thread.currentThread().isInterrupted()) {
+      batchScanned = scanAndSendMessages();
+      messagesScanned += batchScanned;
     }
+    return messagesScanned;
   }
 
   /**
    * scan messages and send
    *
-   * @return whether there are more messages
+   * @return the number of messages scanned, there may be more if it is 500
    */
-  private boolean scanAndSendMessages() {
+  private int scanAndSendMessages() {
     // current batch is 500
     List<ReleaseMessage> releaseMessages =
         releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned);
     if (CollectionUtils.isEmpty(releaseMessages)) {
-      return false;
+      return 0;
     }
     fireMessageScanned(releaseMessages);
     int messageScanned = releaseMessages.size();
@@ -126,18 +278,45 @@ public class ReleaseMessageScanner implements InitializingBean {
       recordMissingReleaseMessageIds(releaseMessages, maxIdScanned);
     }
     maxIdScanned = newMaxIdScanned;
-    return messageScanned == 500;
+    return messageScanned;
   }
 
-  private void scanMissingMessages() {
+  private void handlePushedMessage(ReleaseMessage message) {
+    Transaction transaction =
+        Tracer.newTransaction("Apollo.ReleaseMessageScanner", "handlePushedMessage");
+    try {
+      if (message.getId() == maxIdScanned + 1) {
+        fireMessageScanned(Lists.newArrayList(message));
+        maxIdScanned = message.getId();
+      } else if (message.getId() > maxIdScanned + 1) {
+        // gap found, the messages before it are recovered from the database along with it
+        scanMessages();
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Handle pushed message failed", ex);
+    } finally {
+      updateMaxIdDelivered();
+      transaction.complete();
+    }
+  }
+
+  /**
+   * @return the number of missing messages found
+   */
+  private int scanMissingMessages() {
     Set<Long> missingReleaseMessageIds = missingReleaseMessages.keySet();
     Iterable<ReleaseMessage> releaseMessages =
         releaseMessageRepository.findAllById(missingReleaseMessageIds);
     fireMessageScanned(releaseMessages);
-    releaseMessages.forEach(releaseMessage -> {
+    int messagesFound = 0;
+    for (ReleaseMessage releaseMessage : releaseMessages) {
       missingReleaseMessageIds.remove(releaseMessage.getId());
-    });
+      messagesFound++;
+    }
     growAndCleanMissingMessages();
+    return messagesFound;
   }
 
   private void growAndCleanMissingMessages() {
@@ -152,6 +331,14 @@ public class ReleaseMessageScanner implements InitializingBean {
     }
   }
 
+  private void updateMaxIdDelivered() {
+    long maxId = maxIdScanned;
+    for (long missingReleaseMessageId : missingReleaseMessages.keySet()) {
+      maxId = Math.min(maxId, missingReleaseMessageId - 1);
+    }
+    maxIdDelivered = maxId;
+  }
+
   private void recordMissingReleaseMessageIds(List<ReleaseMessage> messages, long startId) {
     for (ReleaseMessage message : messages) {
       long currentId = message.getId();
@@ -179,14 +366,19 @@ public class ReleaseMessageScanner implements InitializingBean {
    */
   private void fireMessageScanned(Iterable<ReleaseMessage> messages) {
     for (ReleaseMessage message : messages) {
-      for (ReleaseMessageListener listener : listeners) {
-        try {
-          listener.handleMessage(message, Topics.APOLLO_RELEASE_TOPIC);
-        } catch (Throwable ex) {
-          Tracer.logError(ex);
-          logger.error("Failed to invoke message listener {}", listener.getClass(), ex);
-        }
+      recordDispatchLag(message);
+      for (ReleaseMessageDispatcher dispatcher : dispatchers) {
+        dispatcher.dispatch(message, Topics.APOLLO_RELEASE_TOPIC);
       }
     }
   }
+
+  private void recordDispatchLag(ReleaseMessage message) {
+    Date savedTime = message.getDataChangeLastModifiedTime();
+    if (savedTime != null) {
+      // the clocks of the database and the config service may drift apart slightly
+      dispatchLagTimer.record(Math.max(0, System.currentTimeMillis() - savedTime.getTime()),
+          TimeUnit.MILLISECONDS);
+    }
+  }
 }
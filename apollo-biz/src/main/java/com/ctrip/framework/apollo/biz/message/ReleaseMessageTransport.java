@@ -0,0 +1,41 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+
+/**
+ * Pushes the release messages saved by {@link DatabaseMessageSender} to the config services, so
+ * they are received in milliseconds instead of on the next database scan.
+ * <p>
+ * The release message table stays the source of truth, the messages not pushed or lost are still
+ * picked up by {@link ReleaseMessageScanner}. A broker could be plugged in by providing a bean of
+ * this type.
+ * </p>
+ */
+public interface ReleaseMessageTransport {
+
+  /**
+   * Publish the release message, which is already committed to the database
+   */
+  void publish(ReleaseMessage message, String channel);
+
+  /**
+   * Subscribe to the release messages published
+   */
+  void subscribe(ReleaseMessageListener listener);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.repository;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessageCompaction;
+import java.util.Date;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ReleaseMessageCompactionRepository
+    extends JpaRepository<ReleaseMessageCompaction, Long> {
+
+  ReleaseMessageCompaction findByName(String name);
+
+  /**
+   * Takes the lease if it is held by the owner already or expired
+   *
+   * @return 1 if the lease is taken, 0 otherwise
+   */
+  @Modifying
+  @Query(value = "UPDATE `ReleaseMessageCompaction` SET `Owner` = :owner, "
+      + "`LeaseExpireTime` = :leaseExpireTime WHERE `Name` = :name "
+      + "AND (`Owner` = :owner OR `LeaseExpireTime` < :now)", nativeQuery = true)
+  int acquireLease(@Param("name") String name, @Param("owner") String owner,
+      @Param("now") Date now, @Param("leaseExpireTime") Date leaseExpireTime);
+
+  /**
+   * Saves the progress and renews the lease, if the lease is still held by the owner
+   *
+   * @return 1 if saved, 0 if the lease is taken by another owner
+   */
+  @Modifying
+  @Query(value = "UPDATE `ReleaseMessageCompaction` SET `LastCompactedId` = :lastCompactedId, "
+      + "`LeaseExpireTime` = :leaseExpireTime WHERE `Name` = :name AND `Owner` = :owner",
+      nativeQuery = true)
+  int updateLastCompactedId(@Param("name") String name, @Param("owner") String owner,
+      @Param("lastCompactedId") long lastCompactedId,
+      @Param("leaseExpireTime") Date leaseExpireTime);
+}
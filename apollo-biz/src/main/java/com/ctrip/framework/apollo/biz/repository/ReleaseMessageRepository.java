@@ -18,11 +18,14 @@ package com.ctrip.framework.apollo.biz.repository;
 
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -31,11 +34,36 @@ import java.util.List;
 public interface ReleaseMessageRepository extends JpaRepository<ReleaseMessage, Long> {
   List<ReleaseMessage> findFirst500ByIdGreaterThanOrderByIdAsc(Long id);
 
+  /**
+   * Only the id and message are selected, for bulk loading without building the entities
+   */
+  @Query("select id, message from ReleaseMessage where id > :id order by id asc")
+  List<Object[]> findIdAndMessageByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
   ReleaseMessage findTopByOrderByIdDesc();
 
   ReleaseMessage findTopByMessageInOrderByIdDesc(Collection<String> messages);
 
-  List<ReleaseMessage> findFirst100ByMessageAndIdLessThanOrderByIdAsc(String message, Long id);
+  @Query("select max(id) from ReleaseMessage where dataChangeLastModifiedTime < :time")
+  Long findMaxIdByDataChangeLastModifiedTimeBefore(@Param("time") Date time);
+
+  /**
+   * Only the id and message are selected, for the release messages in (fromId, toId]
+   */
+  @Query("select id, message from ReleaseMessage where id > :fromId and id <= :toId "
+      + "order by id asc")
+  List<Object[]> findIdAndMessageByIdBetween(@Param("fromId") long fromId,
+      @Param("toId") long toId, Pageable pageable);
+
+  /**
+   * Deletes the release messages of the messages till the max id, except the latest ones of them,
+   * i.e. the ones older than the latest id of their message
+   */
+  @Modifying
+  @Query(value = "DELETE FROM `ReleaseMessage` WHERE `Message` IN (:messages) AND `Id` <= :maxId "
+      + "AND `Id` NOT IN (:latestIds)", nativeQuery = true)
+  int deleteSuperseded(@Param("messages") Collection<String> messages,
+      @Param("maxId") long maxId, @Param("latestIds") Collection<Long> latestIds);
 
   @Query("select message, max(id) as id from ReleaseMessage where message in :messages group by message")
   List<Object[]> findLatestReleaseMessagesGroupByMessages(
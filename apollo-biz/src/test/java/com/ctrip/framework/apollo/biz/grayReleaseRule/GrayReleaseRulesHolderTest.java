@@ -174,6 +174,85 @@ public class GrayReleaseRulesHolderTest {
         anotherClientLabel, anotherNamespaceName));
   }
 
+  @Test
+  public void testSnapshotPublishedOnBranchDeletion() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someNamespaceName = "someNamespaceName";
+    String someClientAppId = "clientAppId1";
+    String someClientIp = "1.1.1.1";
+    Long someReleaseId = 1L;
+
+    GrayReleaseRule someRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId,
+            Sets.newHashSet(someClientIp), Sets.newHashSet())),
+        someReleaseId, NamespaceBranchStatus.ACTIVE);
+
+    when(bizConfig.grayReleaseRuleScanInterval()).thenReturn(30);
+    when(grayReleaseRuleRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Lists.newArrayList(someRule));
+
+    assertEquals(0, grayReleaseRulesHolder.getRuleCount());
+
+    grayReleaseRulesHolder.afterPropertiesSet();
+
+    assertEquals(1, grayReleaseRulesHolder.getRuleCount());
+    assertTrue(grayReleaseRulesHolder.getLastRebuildDurationInNanos() >= 0);
+    assertTrue(grayReleaseRulesHolder.hasGrayReleaseRule(someClientAppId, someClientIp, null,
+        someNamespaceName));
+
+    GrayReleaseRule deletedRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId,
+            Sets.newHashSet(someClientIp), Sets.newHashSet())),
+        someReleaseId, NamespaceBranchStatus.DELETED);
+
+    when(grayReleaseRuleRepository.findByAppIdAndClusterNameAndNamespaceName(someAppId,
+        someClusterName, someNamespaceName)).thenReturn(Lists.newArrayList(deletedRule));
+
+    grayReleaseRulesHolder.handleMessage(
+        assembleReleaseMessage(someAppId, someClusterName, someNamespaceName),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    // the inactive rule is kept until outdated, but no longer matches
+    assertEquals(1, grayReleaseRulesHolder.getRuleCount());
+    assertNull(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(someClientAppId,
+        someClientIp, null, someAppId, someClusterName, someNamespaceName));
+    assertFalse(grayReleaseRulesHolder.hasGrayReleaseRule(someClientAppId, someClientIp, null,
+        someNamespaceName));
+  }
+
+  @Test
+  public void testIpRangeGrayReleaseRules() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someNamespaceName = "someNamespaceName";
+    String someClientAppId = "clientAppId1";
+    Long someReleaseId = 1L;
+
+    GrayReleaseRule someRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId,
+            Sets.newHashSet("10.1.0.0/16", "192.168.0.10-192.168.0.20"), Sets.newHashSet())),
+        someReleaseId, NamespaceBranchStatus.ACTIVE);
+
+    when(bizConfig.grayReleaseRuleScanInterval()).thenReturn(30);
+    when(grayReleaseRuleRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Lists.newArrayList(someRule));
+
+    grayReleaseRulesHolder.afterPropertiesSet();
+
+    assertEquals(someReleaseId, grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(
+        someClientAppId, "10.1.2.3", null, someAppId, someClusterName, someNamespaceName));
+    assertEquals(someReleaseId, grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(
+        someClientAppId, "192.168.0.15", null, someAppId, someClusterName, someNamespaceName));
+    assertNull(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(someClientAppId,
+        "192.168.0.21", null, someAppId, someClusterName, someNamespaceName));
+
+    assertTrue(grayReleaseRulesHolder.hasGrayReleaseRule(someClientAppId.toUpperCase(),
+        "10.1.2.3", null, someNamespaceName.toUpperCase()));
+    assertFalse(grayReleaseRulesHolder.hasGrayReleaseRule(someClientAppId, "10.2.0.1", null,
+        someNamespaceName));
+  }
+
   private GrayReleaseRule assembleGrayReleaseRule(String appId, String clusterName,
       String namespaceName, List<GrayReleaseRuleItemDTO> ruleItems, long releaseId,
       int branchStatus) {
@@ -34,10 +34,12 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest {
   private DatabaseMessageSender messageSender;
   @Mock
   private ReleaseMessageRepository releaseMessageRepository;
+  @Mock
+  private ReleaseMessageTransport releaseMessageTransport;
 
   @Before
   public void setUp() throws Exception {
-    messageSender = new DatabaseMessageSender(releaseMessageRepository);
+    messageSender = new DatabaseMessageSender(releaseMessageRepository, releaseMessageTransport);
   }
 
   @Test
@@ -54,6 +56,22 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest {
 
     verify(releaseMessageRepository, times(1)).save(captor.capture());
     assertEquals(someMessage, captor.getValue().getMessage());
+    verify(releaseMessageTransport, times(1))
+        .publish(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+  }
+
+  @Test
+  public void testSendMessageWithPublishFailed() throws Exception {
+    String someMessage = "some-message";
+    ReleaseMessage someReleaseMessage = mock(ReleaseMessage.class);
+    when(releaseMessageRepository.save(any(ReleaseMessage.class))).thenReturn(someReleaseMessage);
+    doThrow(new RuntimeException()).when(releaseMessageTransport)
+        .publish(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    // the message is saved and would be scanned from the database
+    messageSender.sendMessage(someMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    verify(releaseMessageRepository, times(1)).save(any(ReleaseMessage.class));
   }
 
   @Test
@@ -64,6 +82,7 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest {
     messageSender.sendMessage(someMessage, someUnsupportedTopic);
 
     verify(releaseMessageRepository, never()).save(any(ReleaseMessage.class));
+    verify(releaseMessageTransport, never()).publish(any(ReleaseMessage.class), anyString());
   }
 
   @Test(expected = RuntimeException.class)
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessageCompaction;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageCompactionRepository;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class ReleaseMessageCompactorTest extends AbstractUnitTest {
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ReleaseMessageRepository releaseMessageRepository;
+  @Mock
+  private ReleaseMessageCompactionRepository releaseMessageCompactionRepository;
+  @Mock
+  private TransactionTemplate transactionTemplate;
+  @Mock
+  private TransactionStatus transactionStatus;
+  private MeterRegistry meterRegistry;
+  private ReleaseMessageCompactor releaseMessageCompactor;
+
+  @Before
+  public void setUp() throws Exception {
+    meterRegistry = new SimpleMeterRegistry();
+    releaseMessageCompactor = new ReleaseMessageCompactor(bizConfig, releaseMessageRepository,
+        releaseMessageCompactionRepository, transactionTemplate, meterRegistry);
+    when(bizConfig.releaseMessageCompactionIntervalInSecond()).thenReturn(60);
+    when(transactionTemplate.execute(any()))
+        .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0))
+            .doInTransaction(transactionStatus));
+  }
+
+  @Test
+  public void testCompactFromLastCompactedIdInBatches() throws Exception {
+    long someLastCompactedId = 10;
+    long someMaxId = 100;
+    when(releaseMessageCompactionRepository.acquireLease(anyString(), anyString(),
+        any(Date.class), any(Date.class))).thenReturn(1);
+    when(releaseMessageCompactionRepository.findByName(anyString()))
+        .thenReturn(compaction(someLastCompactedId));
+    mockCompactionConfig(2);
+    when(releaseMessageRepository.findMaxIdByDataChangeLastModifiedTimeBefore(any(Date.class)))
+        .thenReturn(someMaxId);
+    when(releaseMessageRepository.findIdAndMessageByIdBetween(eq(someLastCompactedId),
+        eq(someMaxId), any(Pageable.class)))
+        .thenReturn(rows(row(11, "someMessage"), row(12, "someMessage")));
+    when(releaseMessageRepository.findIdAndMessageByIdBetween(eq(12L), eq(someMaxId),
+        any(Pageable.class))).thenReturn(rows(row(13, "anotherMessage")));
+    when(releaseMessageRepository.deleteSuperseded(eq(Sets.newHashSet("someMessage")), eq(12L),
+        idsOf(12L))).thenReturn(1);
+    when(releaseMessageRepository.deleteSuperseded(eq(Sets.newHashSet("anotherMessage")),
+        eq(someMaxId), idsOf(13L))).thenReturn(2);
+    when(releaseMessageCompactionRepository.updateLastCompactedId(anyString(), anyString(),
+        anyLong(), any(Date.class))).thenReturn(1);
+
+    assertEquals(3, releaseMessageCompactor.compact());
+
+    // the last batch is not full, so the progress is saved till the max id
+    verify(releaseMessageCompactionRepository).updateLastCompactedId(anyString(), anyString(),
+        eq(12L), any(Date.class));
+    verify(releaseMessageCompactionRepository).updateLastCompactedId(anyString(), anyString(),
+        eq(someMaxId), any(Date.class));
+    verify(releaseMessageRepository, never())
+        .findIdAndMessageByIdBetween(eq(someMaxId), anyLong(), any(Pageable.class));
+    assertEquals(3, meterRegistry.get("apollo.release-message.compaction.removed").counter()
+        .count(), 0);
+    assertEquals(1, meterRegistry.get("apollo.release-message.compaction.duration").timer()
+        .count());
+  }
+
+  @Test
+  public void testCompactWithLeaseHeldByAnother() throws Exception {
+    when(releaseMessageCompactionRepository.acquireLease(anyString(), anyString(),
+        any(Date.class), any(Date.class))).thenReturn(0);
+    when(releaseMessageCompactionRepository.findByName(anyString())).thenReturn(compaction(10));
+
+    assertEquals(0, releaseMessageCompactor.compact());
+
+    verify(releaseMessageCompactionRepository, never()).save(any(ReleaseMessageCompaction.class));
+    verify(releaseMessageRepository, never())
+        .findMaxIdByDataChangeLastModifiedTimeBefore(any(Date.class));
+  }
+
+  @Test
+  public void testCreateLeaseOnFirstCompaction() throws Exception {
+    when(releaseMessageCompactionRepository.acquireLease(anyString(), anyString(),
+        any(Date.class), any(Date.class))).thenReturn(0);
+    when(releaseMessageCompactionRepository.findByName(anyString())).thenReturn(null,
+        compaction(0));
+    when(bizConfig.releaseMessageCompactionMinAgeInSecond()).thenReturn(600);
+    when(releaseMessageRepository.findMaxIdByDataChangeLastModifiedTimeBefore(any(Date.class)))
+        .thenReturn(null);
+
+    assertEquals(0, releaseMessageCompactor.compact());
+
+    verify(releaseMessageCompactionRepository).save(any(ReleaseMessageCompaction.class));
+  }
+
+  @Test
+  public void testStopWhenLeaseTakenOver() throws Exception {
+    long someMaxId = 100;
+    when(releaseMessageCompactionRepository.acquireLease(anyString(), anyString(),
+        any(Date.class), any(Date.class))).thenReturn(1);
+    when(releaseMessageCompactionRepository.findByName(anyString())).thenReturn(compaction(0));
+    mockCompactionConfig(1);
+    when(releaseMessageRepository.findMaxIdByDataChangeLastModifiedTimeBefore(any(Date.class)))
+        .thenReturn(someMaxId);
+    when(releaseMessageRepository.findIdAndMessageByIdBetween(eq(0L), eq(someMaxId),
+        any(Pageable.class))).thenReturn(rows(row(1, "someMessage")));
+    when(releaseMessageRepository.deleteSuperseded(anyCollection(), anyLong(), anyCollection()))
+        .thenReturn(0);
+    when(releaseMessageCompactionRepository.updateLastCompactedId(anyString(), anyString(),
+        anyLong(), any(Date.class))).thenReturn(0);
+
+    assertEquals(0, releaseMessageCompactor.compact());
+
+    verify(transactionStatus).setRollbackOnly();
+    verify(releaseMessageRepository, never())
+        .findIdAndMessageByIdBetween(eq(1L), anyLong(), any(Pageable.class));
+  }
+
+  @Test
+  public void testCompactWithoutNewMessagesOldEnough() throws Exception {
+    when(releaseMessageCompactionRepository.acquireLease(anyString(), anyString(),
+        any(Date.class), any(Date.class))).thenReturn(1);
+    when(releaseMessageCompactionRepository.findByName(anyString())).thenReturn(compaction(100));
+    when(bizConfig.releaseMessageCompactionMinAgeInSecond()).thenReturn(600);
+    when(releaseMessageRepository.findMaxIdByDataChangeLastModifiedTimeBefore(any(Date.class)))
+        .thenReturn(100L);
+
+    assertEquals(0, releaseMessageCompactor.compact());
+
+    verify(releaseMessageRepository, never())
+        .findIdAndMessageByIdBetween(anyLong(), anyLong(), any(Pageable.class));
+  }
+
+  private void mockCompactionConfig(int batchSize) {
+    when(bizConfig.releaseMessageCompactionMinAgeInSecond()).thenReturn(600);
+    when(bizConfig.releaseMessageCompactionBatchSize()).thenReturn(batchSize);
+    when(bizConfig.releaseMessageCompactionMaxRowsPerSecond()).thenReturn(1000);
+  }
+
+  private Collection<Long> idsOf(Long... ids) {
+    return argThat(actual -> actual != null && Sets.newHashSet(actual)
+        .equals(Sets.newHashSet(ids)));
+  }
+
+  private ReleaseMessageCompaction compaction(long lastCompactedId) {
+    ReleaseMessageCompaction compaction = new ReleaseMessageCompaction();
+    compaction.setLastCompactedId(lastCompactedId);
+    return compaction;
+  }
+
+  private List<Object[]> rows(Object[]... rows) {
+    return Lists.newArrayList(rows);
+  }
+
+  private Object[] row(long id, String message) {
+    return new Object[]{id, message};
+  }
+}
@@ -25,7 +25,13 @@ import com.ctrip.framework.apollo.biz.AbstractUnitTest;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import org.awaitility.Awaitility;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +42,7 @@ import java.util.concurrent.TimeUnit;
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 /**
@@ -180,6 +187,206 @@ public class ReleaseMessageScannerTest extends AbstractUnitTest {
     });
   }
 
+  @Test
+  public void testPushedMessageAndNotifyMessageListener() throws Exception {
+    InProcessReleaseMessageTransport releaseMessageTransport =
+        new InProcessReleaseMessageTransport();
+    // only scans on gaps
+    when(bizConfig.releaseMessageScanIntervalWithTransportInMilli()).thenReturn(60000);
+    ReleaseMessageScanner pushedReleaseMessageScanner =
+        new ReleaseMessageScanner(bizConfig, releaseMessageRepository, releaseMessageTransport);
+    pushedReleaseMessageScanner.afterPropertiesSet();
+
+    List<ReleaseMessage> receivedMessage = Lists.newCopyOnWriteArrayList();
+    pushedReleaseMessageScanner
+        .addMessageListener((message, channel) -> receivedMessage.add(message));
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(1, "someMessage");
+    releaseMessageTransport.publish(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    await().untilAsserted(() -> {
+      assertEquals(1, receivedMessage.size());
+      assertSame(someReleaseMessage, receivedMessage.get(0));
+    });
+
+    ReleaseMessage someMissingReleaseMessage = assembleReleaseMessage(2, "someMissingMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(3, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(1L))
+        .thenReturn(Lists.newArrayList(someMissingReleaseMessage, anotherReleaseMessage));
+
+    // the duplicated one is ignored, and the missing one is recovered from the database
+    releaseMessageTransport.publish(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    releaseMessageTransport.publish(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    await().untilAsserted(() -> {
+      assertEquals(3, receivedMessage.size());
+      assertSame(someReleaseMessage, receivedMessage.get(0));
+      assertSame(someMissingReleaseMessage, receivedMessage.get(1));
+      assertSame(anotherReleaseMessage, receivedMessage.get(2));
+    });
+  }
+
+  @Test
+  public void testScanIntervalBackOffAndMetrics() throws Exception {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    when(bizConfig.releaseMessageScanMaxIntervalInMilli()).thenReturn(databaseScanInterval * 3);
+    ReleaseMessageScanner adaptiveReleaseMessageScanner =
+        new ReleaseMessageScanner(bizConfig, releaseMessageRepository, null, meterRegistry);
+    adaptiveReleaseMessageScanner.afterPropertiesSet();
+
+    // backs off while idle, no further than the max interval
+    await().atMost(databaseScanInterval * 10, TimeUnit.MILLISECONDS).untilAsserted(() -> assertEquals(databaseScanInterval * 3,
+        meterRegistry.get("apollo.release-message.scan.interval").timeGauge()
+            .value(TimeUnit.MILLISECONDS), 0));
+    assertEquals(databaseScanInterval * 3,
+        adaptiveReleaseMessageScanner.nextDatabaseScanInterval(false));
+
+    List<ReleaseMessage> receivedMessage = Lists.newCopyOnWriteArrayList();
+    adaptiveReleaseMessageScanner
+        .addMessageListener((message, channel) -> receivedMessage.add(message));
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(1, "someMessage");
+    someReleaseMessage.setDataChangeLastModifiedTime(new Date(System.currentTimeMillis() - 1000));
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(3, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Lists.newArrayList(someReleaseMessage, anotherReleaseMessage));
+
+    await().atMost(databaseScanInterval * 10, TimeUnit.MILLISECONDS)
+        .untilAsserted(() -> assertEquals(2, receivedMessage.size()));
+
+    // scans at the configured interval right after new messages
+    assertEquals(databaseScanInterval,
+        adaptiveReleaseMessageScanner.nextDatabaseScanInterval(true));
+    assertTrue(meterRegistry.get("apollo.release-message.scan.duration").timer().count() > 0);
+    assertEquals(2, meterRegistry.get("apollo.release-message.scan.messages").summary()
+        .max(), 0);
+    assertEquals(1, meterRegistry.get("apollo.release-message.scan.missing").gauge().value(), 0);
+    assertEquals(1, meterRegistry.get("apollo.release-message.dispatch.lag").timer().count());
+    assertTrue(meterRegistry.get("apollo.release-message.dispatch.lag").timer()
+        .max(TimeUnit.MILLISECONDS) >= 1000);
+  }
+
+  @Test
+  public void testAsyncMessageListener() throws Exception {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    when(bizConfig.releaseMessageListenerQueueSize()).thenReturn(10);
+    ReleaseMessageScanner anotherReleaseMessageScanner =
+        new ReleaseMessageScanner(bizConfig, releaseMessageRepository, null, meterRegistry);
+
+    CountDownLatch slowListenerBlocked = new CountDownLatch(1);
+    List<ReleaseMessage> slowListenerMessages = Lists.newCopyOnWriteArrayList();
+    List<ReleaseMessage> someListenerMessages = Lists.newCopyOnWriteArrayList();
+    anotherReleaseMessageScanner.addAsyncMessageListener((message, channel) -> {
+      try {
+        slowListenerBlocked.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      slowListenerMessages.add(message);
+    });
+    anotherReleaseMessageScanner
+        .addMessageListener((message, channel) -> someListenerMessages.add(message));
+    anotherReleaseMessageScanner.afterPropertiesSet();
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(1, "someMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(2, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Lists.newArrayList(someReleaseMessage, anotherReleaseMessage));
+
+    // not held up by the slow listener
+    await().untilAsserted(() -> assertEquals(2, someListenerMessages.size()));
+    assertTrue(slowListenerMessages.isEmpty());
+    // the first one is being handled
+    await().untilAsserted(() -> assertEquals(1,
+        meterRegistry.get("apollo.release-message.listener.pending").gauge().value(), 0));
+
+    slowListenerBlocked.countDown();
+
+    await().untilAsserted(() -> {
+      assertEquals(2, slowListenerMessages.size());
+      assertSame(someReleaseMessage, slowListenerMessages.get(0));
+      assertSame(anotherReleaseMessage, slowListenerMessages.get(1));
+    });
+    assertEquals(2, meterRegistry.get("apollo.release-message.listener.queued").timer().count());
+    await().untilAsserted(() -> assertEquals(4,
+        meterRegistry.get("apollo.release-message.listener.duration").timers().stream()
+            .mapToLong(Timer::count).sum()));
+
+    anotherReleaseMessageScanner.destroy();
+  }
+
+  @Test
+  public void testBestEffortMessageListenerDropsWhenFallingBehind() throws Exception {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    when(bizConfig.releaseMessageListenerQueueSize()).thenReturn(1);
+    ReleaseMessageScanner anotherReleaseMessageScanner =
+        new ReleaseMessageScanner(bizConfig, releaseMessageRepository, null, meterRegistry);
+
+    CountDownLatch slowListenerBlocked = new CountDownLatch(1);
+    List<ReleaseMessage> slowListenerMessages = Lists.newCopyOnWriteArrayList();
+    List<ReleaseMessage> someListenerMessages = Lists.newCopyOnWriteArrayList();
+    anotherReleaseMessageScanner.addBestEffortMessageListener((message, channel) -> {
+      try {
+        slowListenerBlocked.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      slowListenerMessages.add(message);
+    });
+    anotherReleaseMessageScanner
+        .addMessageListener((message, channel) -> someListenerMessages.add(message));
+    anotherReleaseMessageScanner.afterPropertiesSet();
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(1, "someMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Lists.newArrayList(someReleaseMessage,
+            assembleReleaseMessage(2, "anotherMessage"), assembleReleaseMessage(3, "yetAnother")));
+
+    // at most one message handled and one queued, the scanning is not held up by the rest
+    await().untilAsserted(() -> assertEquals(3, someListenerMessages.size()));
+    assertTrue(meterRegistry.get("apollo.release-message.listener.dropped").counter()
+        .count() >= 1);
+
+    slowListenerBlocked.countDown();
+
+    await().untilAsserted(() -> assertEquals(3 - (long) meterRegistry
+        .get("apollo.release-message.listener.dropped").counter().count(),
+        slowListenerMessages.size()));
+    assertSame(someReleaseMessage, slowListenerMessages.get(0));
+
+    anotherReleaseMessageScanner.destroy();
+  }
+
+  @Test
+  public void testScanFromStartIdAndMaxIdDelivered() throws Exception {
+    ReleaseMessageScanner anotherReleaseMessageScanner =
+        new ReleaseMessageScanner(bizConfig, releaseMessageRepository);
+    anotherReleaseMessageScanner.setStartId(5);
+    anotherReleaseMessageScanner.afterPropertiesSet();
+
+    assertEquals(5, anotherReleaseMessageScanner.getMaxIdDelivered());
+
+    List<ReleaseMessage> receivedMessage = Lists.newCopyOnWriteArrayList();
+    anotherReleaseMessageScanner
+        .addMessageListener((message, channel) -> receivedMessage.add(message));
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(6, "someMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(8, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(5L))
+        .thenReturn(Lists.newArrayList(someReleaseMessage, anotherReleaseMessage));
+
+    await().untilAsserted(() -> assertEquals(2, receivedMessage.size()));
+    // message 7 is not committed yet
+    assertEquals(6, anotherReleaseMessageScanner.getMaxIdDelivered());
+
+    ReleaseMessage someMissingReleaseMessage = assembleReleaseMessage(7, "someMissingMessage");
+    when(releaseMessageRepository.findAllById(Sets.newHashSet(7L)))
+        .thenReturn(Lists.newArrayList(someMissingReleaseMessage));
+
+    await().untilAsserted(() -> assertEquals(8, anotherReleaseMessageScanner.getMaxIdDelivered()));
+    assertSame(someMissingReleaseMessage, receivedMessage.get(2));
+
+    anotherReleaseMessageScanner.destroy();
+  }
+
   private ReleaseMessage assembleReleaseMessage(long id, String message) {
     ReleaseMessage releaseMessage = new ReleaseMessage();
     releaseMessage.setId(id);
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessageCompaction;
+import java.util.Date;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.Sql.ExecutionPhase;
+
+public class ReleaseMessageCompactionRepositoryTest extends AbstractIntegrationTest {
+  private static final String SOME_NAME = "default";
+  private static final String SOME_OWNER = "someOwner";
+  private static final String ANOTHER_OWNER = "anotherOwner";
+
+  @Autowired
+  private ReleaseMessageCompactionRepository releaseMessageCompactionRepository;
+
+  @Test
+  @Sql(scripts = "/sql/clean.sql", executionPhase = ExecutionPhase.AFTER_TEST_METHOD)
+  public void testLease() {
+    Date now = new Date();
+    Date leaseExpireTime = new Date(now.getTime() + 180000);
+    ReleaseMessageCompaction compaction = new ReleaseMessageCompaction();
+    compaction.setName(SOME_NAME);
+    compaction.setOwner(SOME_OWNER);
+    compaction.setLeaseExpireTime(leaseExpireTime);
+    releaseMessageCompactionRepository.save(compaction);
+
+    assertEquals(1, releaseMessageCompactionRepository.acquireLease(SOME_NAME, SOME_OWNER, now,
+        leaseExpireTime));
+    assertEquals(0, releaseMessageCompactionRepository.acquireLease(SOME_NAME, ANOTHER_OWNER, now,
+        leaseExpireTime));
+    assertEquals(0, releaseMessageCompactionRepository.updateLastCompactedId(SOME_NAME,
+        ANOTHER_OWNER, 100, leaseExpireTime));
+    assertEquals(1, releaseMessageCompactionRepository.updateLastCompactedId(SOME_NAME,
+        SOME_OWNER, 100, leaseExpireTime));
+
+    // taken over once expired
+    Date someTimeLater = new Date(leaseExpireTime.getTime() + 1000);
+    assertEquals(1, releaseMessageCompactionRepository.acquireLease(SOME_NAME, ANOTHER_OWNER,
+        someTimeLater, new Date(someTimeLater.getTime() + 180000)));
+    assertEquals(0, releaseMessageCompactionRepository.updateLastCompactedId(SOME_NAME,
+        SOME_OWNER, 200, leaseExpireTime));
+  }
+}
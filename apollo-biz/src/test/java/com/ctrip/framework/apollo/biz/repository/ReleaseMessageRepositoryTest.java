@@ -0,0 +1,75 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.biz.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.context.jdbc.Sql.ExecutionPhase;
+
+public class ReleaseMessageRepositoryTest extends AbstractIntegrationTest {
+
+  @Autowired
+  private ReleaseMessageRepository releaseMessageRepository;
+
+  @Test
+  @Sql(scripts = "/sql/clean.sql", executionPhase = ExecutionPhase.AFTER_TEST_METHOD)
+  public void testCompactSupersededReleaseMessages() {
+    Date someOldTime = new Date(System.currentTimeMillis() - 3600 * 1000);
+    long someId = save("someMessage", someOldTime);
+    long anotherId = save("anotherMessage", someOldTime);
+    long someNewerId = save("someMessage", someOldTime);
+    long anotherNewerId = save("anotherMessage", new Date());
+
+    Long maxId = releaseMessageRepository
+        .findMaxIdByDataChangeLastModifiedTimeBefore(new Date(System.currentTimeMillis() - 60000));
+    assertEquals(someNewerId, (long) maxId);
+
+    // the newer one of anotherMessage is not old enough
+    List<Object[]> rows = releaseMessageRepository.findIdAndMessageByIdBetween(someId, maxId,
+        PageRequest.of(0, 100));
+    assertEquals(2, rows.size());
+    assertEquals(anotherId, ((Number) rows.get(0)[0]).longValue());
+    assertEquals("someMessage", rows.get(1)[1]);
+
+    Map<String, Long> latestIds = Maps.newHashMap();
+    latestIds.put("someMessage", someNewerId);
+    latestIds.put("anotherMessage", anotherId);
+    assertEquals(1, releaseMessageRepository.deleteSuperseded(latestIds.keySet(), maxId,
+        Lists.newArrayList(latestIds.values())));
+    List<Long> remainingIds = releaseMessageRepository.findAll().stream()
+        .map(ReleaseMessage::getId).sorted().collect(Collectors.toList());
+    assertEquals(Lists.newArrayList(anotherId, someNewerId, anotherNewerId), remainingIds);
+  }
+
+  private long save(String message, Date dataChangeLastModifiedTime) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setDataChangeLastModifiedTime(dataChangeLastModifiedTime);
+    return releaseMessageRepository.save(releaseMessage).getId();
+  }
+}
@@ -22,6 +22,7 @@ DELETE FROM "GrayReleaseRule" ;
 DELETE FROM "Release";
 DELETE FROM "Item";
 DELETE FROM "ReleaseMessage";
+DELETE FROM "ReleaseMessageCompaction";
 DELETE FROM "ReleaseHistory";
 DELETE FROM "NamespaceLock";
 DELETE FROM "Commit";
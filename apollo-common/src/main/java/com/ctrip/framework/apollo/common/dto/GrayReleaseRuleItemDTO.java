@@ -16,6 +16,7 @@
  */
 package com.ctrip.framework.apollo.common.dto;
 
+import com.ctrip.framework.apollo.common.utils.IpPrefixTrie;
 import com.google.common.collect.Sets;
 
 import java.util.Set;
@@ -32,6 +33,8 @@ public class GrayReleaseRuleItemDTO {
   private String clientAppId;
   private Set<String> clientIpList;
   private Set<String> clientLabelList;
+  // CIDR blocks and ip ranges in clientIpList, not serialized
+  private transient IpPrefixTrie clientIpRanges;
 
   // this default constructor is for json deserialize use, to make sure all fields are initialized
   public GrayReleaseRuleItemDTO() {
@@ -47,6 +50,7 @@ public class GrayReleaseRuleItemDTO {
     this.clientAppId = clientAppId;
     this.clientIpList = clientIpList;
     this.clientLabelList = clientLabelList;
+    compileClientIpRanges();
   }
 
   public String getClientAppId() {
@@ -61,6 +65,14 @@ public class GrayReleaseRuleItemDTO {
     return clientLabelList;
   }
 
+  /**
+   * Compile the CIDR blocks and ip ranges in the client ip list, which should be called again if
+   * the client ip list is changed after construction, e.g. by json deserialization.
+   */
+  public void compileClientIpRanges() {
+    this.clientIpRanges = IpPrefixTrie.compile(clientIpList);
+  }
+
   public boolean matches(String clientAppId, String clientIp, String clientLabel) {
     return (appIdMatches(clientAppId) && ipMatches(clientIp))
         || (appIdMatches(clientAppId) && labelMatches(clientLabel));
@@ -71,7 +83,8 @@ public class GrayReleaseRuleItemDTO {
   }
 
   private boolean ipMatches(String clientIp) {
-    return this.clientIpList.contains(ALL_IP) || clientIpList.contains(clientIp);
+    return this.clientIpList.contains(ALL_IP) || clientIpList.contains(clientIp)
+        || (clientIpRanges != null && clientIpRanges.contains(clientIp));
   }
 
   private boolean labelMatches(String clientLabel) {
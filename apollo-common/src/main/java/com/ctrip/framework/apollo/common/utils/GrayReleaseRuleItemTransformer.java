@@ -33,7 +33,12 @@ public class GrayReleaseRuleItemTransformer {
       new TypeToken<Set<GrayReleaseRuleItemDTO>>() {}.getType();
 
   public static Set<GrayReleaseRuleItemDTO> batchTransformFromJSON(String content) {
-    return gson.fromJson(content, grayReleaseRuleItemsType);
+    Set<GrayReleaseRuleItemDTO> ruleItems = gson.fromJson(content, grayReleaseRuleItemsType);
+    if (ruleItems != null) {
+      // the client ip lists are filled after construction
+      ruleItems.forEach(GrayReleaseRuleItemDTO::compileClientIpRanges);
+    }
+    return ruleItems;
   }
 
   public static String batchTransformToJSON(Set<GrayReleaseRuleItemDTO> ruleItems) {
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.common.utils;
+
+import com.google.common.base.Strings;
+import com.google.common.net.InetAddresses;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.util.Collection;
+
+/**
+ * A binary prefix trie of ip blocks, for matching client ips against CIDR blocks, e.g.
+ * {@code 10.1.0.0/16}, and ip ranges, e.g. {@code 10.1.0.1-10.1.0.100}, in time proportional to
+ * the address length no matter how many blocks are added.
+ * <p>
+ * Both IPv4 and IPv6 are supported, ranges are split into the CIDR blocks covering them. The trie
+ * is not thread safe while being built, and should be safely published once built.
+ * </p>
+ */
+public class IpPrefixTrie {
+  private static final char CIDR_SEPARATOR = '/';
+  private static final char RANGE_SEPARATOR = '-';
+
+  private final Node ipv4Root = new Node();
+  private final Node ipv6Root = new Node();
+  private boolean empty = true;
+
+  /**
+   * @return the trie of the CIDR blocks and ip ranges among the entries, or null if there is none
+   */
+  public static IpPrefixTrie compile(Collection<String> entries) {
+    if (entries == null) {
+      return null;
+    }
+    IpPrefixTrie trie = new IpPrefixTrie();
+    for (String entry : entries) {
+      trie.add(entry);
+    }
+    return trie.isEmpty() ? null : trie;
+  }
+
+  /**
+   * @return whether the entry is a valid CIDR block or ip range
+   */
+  public static boolean isIpRange(String entry) {
+    return new IpPrefixTrie().add(entry);
+  }
+
+  /**
+   * Add a CIDR block or an ip range.
+   *
+   * @return false if the entry is neither a valid CIDR block nor a valid ip range, e.g. a plain ip
+   */
+  public boolean add(String entry) {
+    if (Strings.isNullOrEmpty(entry)) {
+      return false;
+    }
+    entry = entry.trim();
+    int cidrSeparator = entry.indexOf(CIDR_SEPARATOR);
+    if (cidrSeparator > 0) {
+      return addCidr(entry.substring(0, cidrSeparator), entry.substring(cidrSeparator + 1));
+    }
+    int rangeSeparator = entry.indexOf(RANGE_SEPARATOR);
+    if (rangeSeparator > 0) {
+      return addRange(entry.substring(0, rangeSeparator).trim(),
+          entry.substring(rangeSeparator + 1).trim());
+    }
+    return false;
+  }
+
+  public boolean contains(String ip) {
+    if (empty || Strings.isNullOrEmpty(ip) || !InetAddresses.isInetAddress(ip)) {
+      return false;
+    }
+    byte[] address = InetAddresses.forString(ip).getAddress();
+    Node node = address.length == 4 ? ipv4Root : ipv6Root;
+    int bits = address.length * 8;
+    for (int i = 0; i < bits; i++) {
+      if (node.covered) {
+        return true;
+      }
+      node = node.children[(address[i >> 3] >> (7 - (i & 7))) & 1];
+      if (node == null) {
+        return false;
+      }
+    }
+    return node.covered;
+  }
+
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  private boolean addCidr(String ip, String prefixLength) {
+    if (!InetAddresses.isInetAddress(ip)) {
+      return false;
+    }
+    InetAddress address = InetAddresses.forString(ip);
+    int bits = address.getAddress().length * 8;
+    int length;
+    try {
+      length = Integer.parseInt(prefixLength.trim());
+    } catch (NumberFormatException ex) {
+      return false;
+    }
+    if (length < 0 || length > bits) {
+      return false;
+    }
+    insert(address.getAddress().length, new BigInteger(1, address.getAddress()), length);
+    return true;
+  }
+
+  private boolean addRange(String startIp, String endIp) {
+    if (!InetAddresses.isInetAddress(startIp) || !InetAddresses.isInetAddress(endIp)) {
+      return false;
+    }
+    byte[] startAddress = InetAddresses.forString(startIp).getAddress();
+    byte[] endAddress = InetAddresses.forString(endIp).getAddress();
+    if (startAddress.length != endAddress.length) {
+      return false;
+    }
+    BigInteger start = new BigInteger(1, startAddress);
+    BigInteger end = new BigInteger(1, endAddress);
+    if (start.compareTo(end) > 0) {
+      return false;
+    }
+    int bits = startAddress.length * 8;
+    // split the range into the largest aligned blocks
+    while (start.compareTo(end) <= 0) {
+      int hostBits = start.signum() == 0 ? bits : start.getLowestSetBit();
+      while (hostBits > 0
+          && start.add(BigInteger.ONE.shiftLeft(hostBits)).subtract(BigInteger.ONE)
+          .compareTo(end) > 0) {
+        hostBits--;
+      }
+      insert(startAddress.length, start, bits - hostBits);
+      start = start.add(BigInteger.ONE.shiftLeft(hostBits));
+    }
+    return true;
+  }
+
+  private void insert(int addressLength, BigInteger address, int prefixLength) {
+    Node node = addressLength == 4 ? ipv4Root : ipv6Root;
+    int bits = addressLength * 8;
+    for (int i = 0; i < prefixLength; i++) {
+      if (node.covered) {
+        // already covered by a wider block
+        empty = false;
+        return;
+      }
+      int bit = address.testBit(bits - 1 - i) ? 1 : 0;
+      if (node.children[bit] == null) {
+        node.children[bit] = new Node();
+      }
+      node = node.children[bit];
+    }
+    node.covered = true;
+    // narrower blocks are covered by this block now
+    node.children[0] = null;
+    node.children[1] = null;
+    empty = false;
+  }
+
+  private static class Node {
+    private final Node[] children = new Node[2];
+    private boolean covered;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.Set;
+import org.junit.Test;
+
+public class IpPrefixTrieTest {
+
+  @Test
+  public void testCidr() throws Exception {
+    IpPrefixTrie trie = new IpPrefixTrie();
+
+    assertTrue(trie.add("10.1.0.0/16"));
+    assertTrue(trie.add("192.168.1.7/32"));
+
+    assertTrue(trie.contains("10.1.0.0"));
+    assertTrue(trie.contains("10.1.255.255"));
+    assertTrue(trie.contains("192.168.1.7"));
+    assertFalse(trie.contains("10.2.0.0"));
+    assertFalse(trie.contains("10.0.255.255"));
+    assertFalse(trie.contains("192.168.1.8"));
+    assertFalse(trie.contains("some-host"));
+    assertFalse(trie.contains(null));
+  }
+
+  @Test
+  public void testRange() throws Exception {
+    IpPrefixTrie trie = new IpPrefixTrie();
+
+    assertTrue(trie.add("10.0.0.3-10.0.1.17"));
+
+    assertFalse(trie.contains("10.0.0.2"));
+    assertTrue(trie.contains("10.0.0.3"));
+    assertTrue(trie.contains("10.0.0.255"));
+    assertTrue(trie.contains("10.0.1.17"));
+    assertFalse(trie.contains("10.0.1.18"));
+  }
+
+  @Test
+  public void testIpv6() throws Exception {
+    IpPrefixTrie trie = new IpPrefixTrie();
+
+    assertTrue(trie.add("2001:db8::/32"));
+
+    assertTrue(trie.contains("2001:db8::1"));
+    assertFalse(trie.contains("2001:db9::1"));
+    assertFalse(trie.contains("32.1.13.184"));
+  }
+
+  @Test
+  public void testInvalidEntries() throws Exception {
+    IpPrefixTrie trie = new IpPrefixTrie();
+
+    assertFalse(trie.add("10.0.0.1"));
+    assertFalse(trie.add("some-host"));
+    assertFalse(trie.add("10.0.0.0/33"));
+    assertFalse(trie.add("10.0.0.0/abc"));
+    assertFalse(trie.add("10.0.0.2-10.0.0.1"));
+    assertFalse(trie.add("10.0.0.1-2001:db8::1"));
+    assertFalse(trie.add(""));
+    assertTrue(trie.isEmpty());
+
+    assertNull(IpPrefixTrie.compile(Sets.newHashSet("10.0.0.1", GrayReleaseRuleItemDTO.ALL_IP)));
+  }
+
+  @Test
+  public void testRuleItemMatchesIpRanges() throws Exception {
+    Set<GrayReleaseRuleItemDTO> ruleItems = GrayReleaseRuleItemTransformer.batchTransformFromJSON(
+        GrayReleaseRuleItemTransformer.batchTransformToJSON(Sets.newHashSet(
+            new GrayReleaseRuleItemDTO("someAppId", Sets.newHashSet("1.1.1.1", "10.0.0.0/8"),
+                Sets.newHashSet()))));
+
+    assertEquals(1, ruleItems.size());
+    GrayReleaseRuleItemDTO ruleItem = Lists.newArrayList(ruleItems).get(0);
+    assertTrue(ruleItem.matches("someAppId", "1.1.1.1", null));
+    assertTrue(ruleItem.matches("someAppId", "10.20.30.40", null));
+    assertFalse(ruleItem.matches("someAppId", "11.0.0.1", null));
+    assertFalse(ruleItem.matches("anotherAppId", "10.20.30.40", null));
+  }
+}
@@ -19,25 +19,38 @@ package com.ctrip.framework.apollo.configservice;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageTransport;
 import com.ctrip.framework.apollo.biz.repository.GrayReleaseRuleRepository;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
+import com.ctrip.framework.apollo.configservice.controller.ConfigController;
 import com.ctrip.framework.apollo.configservice.controller.ConfigFileController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV3;
 import com.ctrip.framework.apollo.configservice.filter.ClientAuthenticationFilter;
+import com.ctrip.framework.apollo.configservice.filter.SlowStartAdmissionFilter;
+import com.ctrip.framework.apollo.configservice.service.ConfigServiceWarmUpManager;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.DefaultConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.DefaultIncrementalSyncService;
 import com.ctrip.framework.apollo.configservice.service.config.IncrementalSyncService;
+import com.ctrip.framework.apollo.configservice.service.config.MergedConfigurationCache;
+import com.ctrip.framework.apollo.configservice.service.config.ReleaseConfigurationCache;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
 import com.ctrip.framework.apollo.configservice.util.AccessKeyUtil;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 
 /**
@@ -65,22 +78,34 @@ public class ConfigServiceAutoConfiguration {
 
   @Bean
   public GrayReleaseRulesHolder grayReleaseRulesHolder() {
-    return new GrayReleaseRulesHolder(grayReleaseRuleRepository, bizConfig);
+    GrayReleaseRulesHolder grayReleaseRulesHolder =
+        new GrayReleaseRulesHolder(grayReleaseRuleRepository, bizConfig);
+    Gauge.builder("apollo.gray-release-rules.count", grayReleaseRulesHolder,
+        GrayReleaseRulesHolder::getRuleCount)
+        .description("Gray release rules in the published snapshot")
+        .register(meterRegistry);
+    TimeGauge.builder("apollo.gray-release-rules.rebuild.duration", grayReleaseRulesHolder,
+        TimeUnit.NANOSECONDS, GrayReleaseRulesHolder::getLastRebuildDurationInNanos)
+        .description("Time taken to build the latest gray release rules snapshot")
+        .register(meterRegistry);
+    return grayReleaseRulesHolder;
   }
 
   @Bean
-  public ConfigService configService() {
+  public ConfigService configService(final ConfigServiceSnapshotStore configServiceSnapshotStore) {
     // enable local cache
     if (bizConfig.isConfigServiceCacheEnabled()) {
       return new ConfigServiceWithCache(releaseService, releaseMessageService,
-          grayReleaseRulesHolder(), bizConfig, meterRegistry);
+          grayReleaseRulesHolder(), bizConfig, meterRegistry, configServiceSnapshotStore);
     }
     return new DefaultConfigService(releaseService, grayReleaseRulesHolder());
   }
 
   @Bean
-  public IncrementalSyncService incrementalSyncService() {
-    return new DefaultIncrementalSyncService();
+  public IncrementalSyncService incrementalSyncService(
+      final ReleaseConfigurationCache releaseConfigurationCache) {
+    return new DefaultIncrementalSyncService(bizConfig, releaseService, releaseConfigurationCache,
+        meterRegistry);
   }
 
   @Bean
@@ -101,6 +126,28 @@ public class ConfigServiceAutoConfiguration {
     filterRegistrationBean.addUrlPatterns("/notifications/*");
     filterRegistrationBean.addUrlPatterns("/notifications/v2");
     filterRegistrationBean.addUrlPatterns("/notifications/v2/*");
+    filterRegistrationBean.addUrlPatterns("/notifications/v3/*");
+
+    return filterRegistrationBean;
+  }
+
+  @Bean
+  public FilterRegistrationBean<SlowStartAdmissionFilter> slowStartAdmissionFilter(
+      ConfigServiceWarmUpManager configServiceWarmUpManager) {
+    FilterRegistrationBean<SlowStartAdmissionFilter> filterRegistrationBean =
+        new FilterRegistrationBean<>();
+
+    filterRegistrationBean
+        .setFilter(new SlowStartAdmissionFilter(bizConfig, configServiceWarmUpManager));
+    filterRegistrationBean.addUrlPatterns("/configs/*");
+    filterRegistrationBean.addUrlPatterns("/configfiles/*");
+    filterRegistrationBean.addUrlPatterns("/notifications");
+    filterRegistrationBean.addUrlPatterns("/notifications/*");
+    filterRegistrationBean.addUrlPatterns("/notifications/v2");
+    filterRegistrationBean.addUrlPatterns("/notifications/v2/*");
+    filterRegistrationBean.addUrlPatterns("/notifications/v3/*");
+    // reject before any work is done for the request
+    filterRegistrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
 
     return filterRegistrationBean;
   }
@@ -108,23 +155,39 @@ public class ConfigServiceAutoConfiguration {
   @Bean
   public ReleaseMessageScanner releaseMessageScanner(
       final NotificationController notificationController,
-      final ConfigFileController configFileController,
+      final ConfigController configController, final ConfigFileController configFileController,
       final NotificationControllerV2 notificationControllerV2,
+      final NotificationControllerV3 notificationControllerV3,
       final GrayReleaseRulesHolder grayReleaseRulesHolder,
       final ReleaseMessageServiceWithCache releaseMessageServiceWithCache,
-      final ConfigService configService, final ReleaseMessageRepository releaseMessageRepository) {
-    ReleaseMessageScanner releaseMessageScanner =
-        new ReleaseMessageScanner(bizConfig, releaseMessageRepository);
+      final ConfigService configService, final MergedConfigurationCache mergedConfigurationCache,
+      final IncrementalSyncService incrementalSyncService,
+      final ReleaseMessageRepository releaseMessageRepository,
+      final ObjectProvider<ReleaseMessageTransport> releaseMessageTransport) {
+    ReleaseMessageScanner releaseMessageScanner = new ReleaseMessageScanner(bizConfig,
+        releaseMessageRepository, releaseMessageTransport.getIfAvailable(), meterRegistry);
+    // continue from where the release message cache is loaded, so the messages are read once
+    releaseMessageScanner.setStartId(releaseMessageServiceWithCache.getMaxIdScanned());
     // 0. handle release message cache
     releaseMessageScanner.addMessageListener(releaseMessageServiceWithCache);
     // 1. handle gray release rule
     releaseMessageScanner.addMessageListener(grayReleaseRulesHolder);
-    // 2. handle server cache
+    // 2. handle server cache, the config cache is only marked outdated here
     releaseMessageScanner.addMessageListener(configService);
     releaseMessageScanner.addMessageListener(configFileController);
+    releaseMessageScanner.addMessageListener(mergedConfigurationCache);
     // 3. notify clients
     releaseMessageScanner.addMessageListener(notificationControllerV2);
+    releaseMessageScanner.addMessageListener(notificationControllerV3);
     releaseMessageScanner.addMessageListener(notificationController);
+    // 4. warm up caches, render responses and changes off the notification path, which are
+    // skipped when falling behind, as the caches are loaded on demand anyway
+    if (configService instanceof ConfigServiceWithCache) {
+      releaseMessageScanner.addBestEffortMessageListener(
+          ((ConfigServiceWithCache) configService).getConfigCacheRefresher());
+    }
+    releaseMessageScanner.addBestEffortMessageListener(configController);
+    releaseMessageScanner.addBestEffortMessageListener(incrementalSyncService);
     return releaseMessageScanner;
   }
 }
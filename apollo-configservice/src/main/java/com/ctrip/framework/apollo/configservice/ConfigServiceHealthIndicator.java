@@ -17,6 +17,7 @@
 package com.ctrip.framework.apollo.configservice;
 
 import com.ctrip.framework.apollo.biz.service.AppService;
+import com.ctrip.framework.apollo.configservice.service.ConfigServiceWarmUpManager;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.HealthIndicator;
 import org.springframework.data.domain.PageRequest;
@@ -26,13 +27,20 @@ import org.springframework.stereotype.Component;
 public class ConfigServiceHealthIndicator implements HealthIndicator {
 
   private final AppService appService;
+  private final ConfigServiceWarmUpManager configServiceWarmUpManager;
 
-  public ConfigServiceHealthIndicator(final AppService appService) {
+  public ConfigServiceHealthIndicator(final AppService appService,
+      final ConfigServiceWarmUpManager configServiceWarmUpManager) {
     this.appService = appService;
+    this.configServiceWarmUpManager = configServiceWarmUpManager;
   }
 
   @Override
   public Health health() {
+    // not to be picked by the clients before the caches are warmed up
+    if (!configServiceWarmUpManager.isWarmedUp()) {
+      return Health.outOfService().withDetail("warmUp", "in progress").build();
+    }
     check();
     return Health.up().build();
   }
@@ -18,29 +18,46 @@ package com.ctrip.framework.apollo.configservice.controller;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.common.utils.WebUtils;
+import com.ctrip.framework.apollo.configservice.dto.ApolloConfigQuery;
+import com.ctrip.framework.apollo.configservice.dto.ApolloConfigQueryResult;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.IncrementalSyncService;
+import com.ctrip.framework.apollo.configservice.service.config.MergedConfigurationCache;
+import com.ctrip.framework.apollo.configservice.util.ConditionalRequestUtil;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.RenderedApolloConfig;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -48,7 +65,6 @@ import org.springframework.web.bind.annotation.RestController;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
@@ -62,7 +78,12 @@ import java.util.stream.Collectors;
  */
 @RestController
 @RequestMapping("/configs")
-public class ConfigController {
+public class ConfigController implements ReleaseMessageListener {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigController.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final long MAX_RENDERED_CONFIG_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+  private static final long RENDERED_CONFIG_EXPIRE_AFTER_ACCESS = 30; // 30 minutes
+  private static final int MAX_BATCH_QUERY_SIZE = 100;
 
   private final ConfigService configService;
 
@@ -72,16 +93,15 @@ public class ConfigController {
   private final InstanceConfigAuditUtil instanceConfigAuditUtil;
   private final Gson gson;
   private final BizConfig bizConfig;
-
-
-  private static final Type configurationTypeReference =
-      new TypeToken<Map<String, String>>() {}.getType();
+  private final MergedConfigurationCache mergedConfigurationCache;
+  // rendered full sync responses keyed by appId, cluster, namespace and merged release key
+  private final Cache<String, RenderedApolloConfig> renderedConfigCache;
 
   public ConfigController(final ConfigService configService,
       final IncrementalSyncService incrementalSyncService,
       final AppNamespaceServiceWithCache appNamespaceService, final NamespaceUtil namespaceUtil,
       final InstanceConfigAuditUtil instanceConfigAuditUtil, final Gson gson,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig, final MergedConfigurationCache mergedConfigurationCache) {
     this.configService = configService;
     this.incrementalSyncService = incrementalSyncService;
     this.appNamespaceService = appNamespaceService;
@@ -89,6 +109,11 @@ public class ConfigController {
     this.instanceConfigAuditUtil = instanceConfigAuditUtil;
     this.gson = gson;
     this.bizConfig = bizConfig;
+    this.mergedConfigurationCache = mergedConfigurationCache;
+    this.renderedConfigCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(RENDERED_CONFIG_EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .weigher((Weigher<String, RenderedApolloConfig>) (key, value) -> value.getBody().length)
+        .maximumWeight(MAX_RENDERED_CONFIG_CACHE_SIZE).build();
   }
 
   @GetMapping(value = "/{appId}/{clusterName}/{namespace:.+}")
@@ -101,10 +126,6 @@ public class ConfigController {
       @RequestParam(value = "messages", required = false) String messagesAsString,
       HttpServletRequest request, HttpServletResponse response) throws IOException {
     String originalNamespace = namespace;
-    // strip out .properties suffix
-    namespace = namespaceUtil.filterNamespaceName(namespace);
-    // fix the character case issue, such as FX.apollo <-> fx.apollo
-    namespace = namespaceUtil.normalizeNamespace(appId, namespace);
 
     if (Strings.isNullOrEmpty(clientIp)) {
       clientIp = WebUtils.tryToGetClientIp(request);
@@ -112,6 +133,113 @@ public class ConfigController {
 
     ApolloNotificationMessages clientMessages = transformMessages(messagesAsString);
 
+    LoadedReleases loadedReleases = loadReleases(appId, clusterName, originalNamespace,
+        dataCenter, clientIp, clientLabel, clientMessages);
+
+    if (loadedReleases == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+          String.format(
+              "Could not load configurations with appId: %s, clusterName: %s, namespace: %s", appId,
+              clusterName, originalNamespace));
+      Tracer.logEvent("Apollo.Config.NotFound",
+          assembleKey(appId, clusterName, originalNamespace, dataCenter));
+      return null;
+    }
+
+    String latestMergedReleaseKey = loadedReleases.mergedReleaseKey;
+
+    if (latestMergedReleaseKey.equals(clientSideReleaseKey)
+        || ConditionalRequestUtil.isNotModified(request, latestMergedReleaseKey)) {
+      // Client side configuration is the same with server side, return 304
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      ConditionalRequestUtil.writeCacheHeaders(response, latestMergedReleaseKey,
+          bizConfig.configServiceResponseCacheControl());
+      Tracer.logEvent("Apollo.Config.NotModified",
+          assembleKey(appId, loadedReleases.clusterName, originalNamespace, dataCenter));
+      return null;
+    }
+    ConditionalRequestUtil.writeCacheHeaders(response, latestMergedReleaseKey,
+        bizConfig.configServiceResponseCacheControl());
+
+    return assembleConfig(appId, originalNamespace, dataCenter, clientSideReleaseKey,
+        loadedReleases);
+  }
+
+  /**
+   * Query the configs of multiple namespaces of the app in one request.
+   * <p>
+   * Each namespace is resolved the same way as {@link #queryConfig}, but the namespaces not found
+   * or not modified since the release key of the client are reported by the status of their own
+   * result, instead of the status of the whole response. The queries are read from the request
+   * body, as a batch of them would not fit in the url.
+   * </p>
+   *
+   * @param queries the namespaces to query, along with the release keys of the client
+   */
+  @PostMapping(value = "/{appId}/{clusterName}")
+  public List<ApolloConfigQueryResult> queryConfigs(@PathVariable String appId,
+      @PathVariable String clusterName,
+      @RequestBody List<ApolloConfigQuery> queries,
+      @RequestParam(value = "dataCenter", required = false) String dataCenter,
+      @RequestParam(value = "ip", required = false) String clientIp,
+      @RequestParam(value = "label", required = false) String clientLabel,
+      @RequestParam(value = "messages", required = false) String messagesAsString,
+      HttpServletRequest request) {
+    if (CollectionUtils.isEmpty(queries) || queries.stream()
+        .anyMatch(query -> query == null || Strings.isNullOrEmpty(query.getNamespaceName()))) {
+      throw BadRequestException.invalidNamespaceFormat(String.valueOf(queries));
+    }
+
+    if (queries.size() > MAX_BATCH_QUERY_SIZE) {
+      throw new BadRequestException("Too many namespaces: %s, at most %s are allowed per request",
+          queries.size(), MAX_BATCH_QUERY_SIZE);
+    }
+
+    if (Strings.isNullOrEmpty(clientIp)) {
+      clientIp = WebUtils.tryToGetClientIp(request);
+    }
+
+    ApolloNotificationMessages clientMessages = transformMessages(messagesAsString);
+
+    List<ApolloConfigQueryResult> results = new ArrayList<>(queries.size());
+    for (ApolloConfigQuery query : queries) {
+      String originalNamespace = query.getNamespaceName();
+      String clientSideReleaseKey =
+          Strings.isNullOrEmpty(query.getReleaseKey()) ? "-1" : query.getReleaseKey();
+
+      LoadedReleases loadedReleases = loadReleases(appId, clusterName, originalNamespace,
+          dataCenter, clientIp, clientLabel, clientMessages);
+
+      if (loadedReleases == null) {
+        Tracer.logEvent("Apollo.Config.NotFound",
+            assembleKey(appId, clusterName, originalNamespace, dataCenter));
+        results.add(ApolloConfigQueryResult.notFound(originalNamespace));
+      } else if (loadedReleases.mergedReleaseKey.equals(clientSideReleaseKey)) {
+        Tracer.logEvent("Apollo.Config.NotModified",
+            assembleKey(appId, loadedReleases.clusterName, originalNamespace, dataCenter));
+        results.add(ApolloConfigQueryResult.notModified(originalNamespace));
+      } else {
+        results.add(ApolloConfigQueryResult.ok(originalNamespace, assembleConfig(appId,
+            originalNamespace, dataCenter, clientSideReleaseKey, loadedReleases)));
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Load the releases of the namespace, the release of the app itself goes before the public one.
+   *
+   * @return the loaded releases, or null if there is none
+   */
+  private LoadedReleases loadReleases(String appId, String clusterName, String originalNamespace,
+      String dataCenter, String clientIp, String clientLabel,
+      ApolloNotificationMessages clientMessages) {
+    // strip out .properties suffix
+    String namespace = namespaceUtil.filterNamespaceName(originalNamespace);
+    // fix the character case issue, such as FX.apollo <-> fx.apollo
+    namespace = namespaceUtil.normalizeNamespace(appId, namespace);
+
     List<Release> releases = Lists.newLinkedList();
 
     String appClusterNameLoaded = clusterName;
@@ -136,35 +264,38 @@ public class ConfigController {
     }
 
     if (releases.isEmpty()) {
-      response.sendError(HttpServletResponse.SC_NOT_FOUND,
-          String.format(
-              "Could not load configurations with appId: %s, clusterName: %s, namespace: %s", appId,
-              clusterName, originalNamespace));
-      Tracer.logEvent("Apollo.Config.NotFound",
-          assembleKey(appId, clusterName, originalNamespace, dataCenter));
       return null;
     }
 
     auditReleases(appId, clusterName, dataCenter, clientIp, releases);
 
-    String latestMergedReleaseKey = releases.stream().map(Release::getReleaseKey)
-        .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
+    return new LoadedReleases(releases, appClusterNameLoaded, mergeReleaseKeys(releases));
+  }
 
-    if (latestMergedReleaseKey.equals(clientSideReleaseKey)) {
-      // Client side configuration is the same with server side, return 304
-      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-      Tracer.logEvent("Apollo.Config.NotModified",
-          assembleKey(appId, appClusterNameLoaded, originalNamespace, dataCenter));
-      return null;
-    }
+  private ApolloConfig assembleConfig(String appId, String originalNamespace, String dataCenter,
+      String clientSideReleaseKey, LoadedReleases loadedReleases) {
+    List<Release> releases = loadedReleases.releases;
+    String appClusterNameLoaded = loadedReleases.clusterName;
+    String latestMergedReleaseKey = loadedReleases.mergedReleaseKey;
 
     ApolloConfig apolloConfig =
         new ApolloConfig(appId, appClusterNameLoaded, originalNamespace, latestMergedReleaseKey);
 
-    Map<String, String> latestConfigurations = mergeReleaseConfigurations(releases);
+    Map<String, String> latestConfigurations = null;
 
     try {
       if (bizConfig.isConfigServiceIncrementalChangeEnabled()) {
+        List<ConfigurationChange> precomputedChanges = incrementalSyncService
+            .findConfigurationChanges(latestMergedReleaseKey, clientSideReleaseKey);
+        if (precomputedChanges != null) {
+          apolloConfig.setConfigurationChanges(precomputedChanges);
+          apolloConfig.setConfigSyncType(ConfigSyncType.INCREMENTAL_SYNC.getValue());
+          Tracer.logEvent("Apollo.Config.Found",
+              assembleKey(appId, appClusterNameLoaded, originalNamespace, dataCenter));
+          return apolloConfig;
+        }
+
+        latestConfigurations = mergeReleaseConfigurations(releases);
         LinkedHashSet<String> clientSideReleaseKeys = Sets.newLinkedHashSet(Arrays
             .stream(
                 clientSideReleaseKey.split(Pattern.quote(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)))
@@ -207,13 +338,74 @@ public class ConfigController {
       Tracer.logError("Failed to do incremental sync, fallback to full sync", e);
     }
 
-    apolloConfig.setConfigurations(latestConfigurations);
+    if (bizConfig.isConfigServiceResponseCacheEnabled()) {
+      apolloConfig = findOrRenderConfig(appId, appClusterNameLoaded, originalNamespace,
+          latestMergedReleaseKey, releases, latestConfigurations);
+    } else {
+      apolloConfig.setConfigurations(latestConfigurations != null ? latestConfigurations
+          : mergeReleaseConfigurations(releases));
+    }
 
     Tracer.logEvent("Apollo.Config.Found",
         assembleKey(appId, appClusterNameLoaded, originalNamespace, dataCenter));
     return apolloConfig;
   }
 
+  /**
+   * Render the latest release of the changed namespace in advance, so that the clients notified
+   * of the change are served from the rendered config.
+   * <p>
+   * Only the main release of the namespace owner is rendered, gray releases and the public
+   * namespaces merged into other apps are rendered on demand.
+   * </p>
+   */
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String content = message.getMessage();
+    if (!bizConfig.isConfigServiceResponseCacheEnabled()
+        || !Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+    List<String> keys = ReleaseMessageKeyGenerator.messageToList(content);
+    if (CollectionUtils.isEmpty(keys) || keys.size() != 3) {
+      return;
+    }
+    String appId = keys.get(0);
+    String namespace = keys.get(2);
+
+    try {
+      if (!namespaceBelongsToAppId(appId, namespace)) {
+        return;
+      }
+      Release release = configService.loadConfig(appId, null, null, appId, keys.get(1), namespace,
+          null, null);
+      if (release == null) {
+        return;
+      }
+      findOrRenderConfig(appId, release.getClusterName(), namespace, release.getReleaseKey(),
+          Lists.newArrayList(release), null);
+      Tracer.logEvent("Apollo.Config.Rendered", content);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.warn("Failed to render config for release message {}", content, ex);
+    }
+  }
+
+  private RenderedApolloConfig findOrRenderConfig(String appId, String cluster, String namespace,
+      String mergedReleaseKey, List<Release> releases, Map<String, String> configurations) {
+    // the release key is unique for each release, so the rendered config never goes stale, while
+    // the cluster is part of the body and differs among the clusters sharing a public release
+    String cacheKey = STRING_JOINER.join(appId, cluster, namespace, mergedReleaseKey);
+    RenderedApolloConfig renderedConfig = renderedConfigCache.getIfPresent(cacheKey);
+    if (renderedConfig != null) {
+      return renderedConfig;
+    }
+    renderedConfig = RenderedApolloConfig.render(appId, cluster, namespace, mergedReleaseKey,
+        configurations != null ? configurations : mergeReleaseConfigurations(releases), gson);
+    renderedConfigCache.put(cacheKey, renderedConfig);
+    return renderedConfig;
+  }
+
   private boolean namespaceBelongsToAppId(String appId, String namespaceName) {
     // Every app has an 'application' namespace
     if (Objects.equals(ConfigConsts.NAMESPACE_APPLICATION, namespaceName)) {
@@ -254,13 +446,19 @@ public class ConfigController {
   /**
    * Merge configurations of releases.
    * Release in lower index override those in higher index
+   * <p>
+   * The merged configurations are shared, so the result must not be modified.
+   * </p>
    */
   Map<String, String> mergeReleaseConfigurations(List<Release> releases) {
-    Map<String, String> result = Maps.newLinkedHashMap();
-    for (Release release : Lists.reverse(releases)) {
-      result.putAll(gson.fromJson(release.getConfigurations(), configurationTypeReference));
+    return mergedConfigurationCache.getConfigurations(releases);
+  }
+
+  private String mergeReleaseKeys(List<Release> releases) {
+    if (releases.size() == 1) {
+      return releases.get(0).getReleaseKey();
     }
-    return result;
+    return STRING_JOINER.join(Lists.transform(releases, Release::getReleaseKey));
   }
 
   private String assembleKey(String appId, String cluster, String namespace, String dataCenter) {
@@ -295,4 +493,17 @@ public class ConfigController {
 
     return notificationMessages;
   }
+
+  private static class LoadedReleases {
+    private final List<Release> releases;
+    // we have cluster search process, so the cluster might differ from the requested one
+    private final String clusterName;
+    private final String mergedReleaseKey;
+
+    LoadedReleases(List<Release> releases, String clusterName, String mergedReleaseKey) {
+      this.releases = releases;
+      this.clusterName = clusterName;
+      this.mergedReleaseKey = mergedReleaseKey;
+    }
+  }
 }
@@ -16,13 +16,17 @@
  */
 package com.ctrip.framework.apollo.configservice.controller;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.common.utils.WebUtils;
+import com.ctrip.framework.apollo.configservice.util.ConditionalRequestUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.ResponseCompressionUtil;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchedKeysIndex;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
@@ -32,11 +36,10 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
 import com.google.common.cache.Weigher;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import com.google.gson.Gson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,7 +55,7 @@ import org.springframework.web.bind.annotation.RestController;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -72,36 +75,37 @@ public class ConfigFileController implements ReleaseMessageListener {
   private final HttpHeaders jsonResponseHeaders;
   private final HttpHeaders yamlResponseHeaders;
   private final HttpHeaders xmlResponseHeaders;
-  private final ResponseEntity<String> NOT_FOUND_RESPONSE;
-  private Cache<String, String> localCache;
-  private final Multimap<String, String> watchedKeys2CacheKey =
-      Multimaps.synchronizedSetMultimap(HashMultimap.create());
-  private final Multimap<String, String> cacheKey2WatchedKeys =
-      Multimaps.synchronizedSetMultimap(HashMultimap.create());
+  private final ResponseEntity<byte[]> NOT_FOUND_RESPONSE;
+  private final ResponseEntity<byte[]> NOT_MODIFIED_RESPONSE;
+  private Cache<String, ConfigFileBody> localCache;
+  private final WatchedKeysIndex watchedKeysIndex = new WatchedKeysIndex();
   private static final Gson GSON = new Gson();
 
   private final ConfigController configController;
   private final NamespaceUtil namespaceUtil;
   private final WatchKeysUtil watchKeysUtil;
   private final GrayReleaseRulesHolder grayReleaseRulesHolder;
+  private final BizConfig bizConfig;
 
   public ConfigFileController(final ConfigController configController,
       final NamespaceUtil namespaceUtil, final WatchKeysUtil watchKeysUtil,
-      final GrayReleaseRulesHolder grayReleaseRulesHolder) {
+      final GrayReleaseRulesHolder grayReleaseRulesHolder, final BizConfig bizConfig) {
     localCache = CacheBuilder.newBuilder().expireAfterWrite(EXPIRE_AFTER_WRITE, TimeUnit.MINUTES)
-        .weigher((Weigher<String, String>) (key, value) -> value == null ? 0 : value.length())
-        .maximumWeight(MAX_CACHE_SIZE).removalListener(notification -> {
-          String cacheKey = notification.getKey();
-          logger.debug("removing cache key: {}", cacheKey);
-          if (!cacheKey2WatchedKeys.containsKey(cacheKey)) {
+        .weigher((Weigher<String, ConfigFileBody>) (key, value) -> value == null ? 0
+            : value.getWeight())
+        .maximumWeight(MAX_CACHE_SIZE)
+        .removalListener((RemovalListener<String, ConfigFileBody>) notification -> {
+          // a replaced entry is still cached with the same watched keys
+          if (notification.getCause() == RemovalCause.REPLACED) {
             return;
           }
-          // create a new list to avoid ConcurrentModificationException
-          List<String> watchedKeys = new ArrayList<>(cacheKey2WatchedKeys.get(cacheKey));
-          for (String watchedKey : watchedKeys) {
-            watchedKeys2CacheKey.remove(watchedKey, cacheKey);
+          String cacheKey = notification.getKey();
+          logger.debug("removing cache key: {}", cacheKey);
+          Set<String> watchedKeys = watchedKeysIndex.remove(cacheKey);
+          // the notification may be delivered after the key is cached and indexed again
+          if (watchedKeys != null && localCache.asMap().containsKey(cacheKey)) {
+            watchedKeysIndex.put(cacheKey, watchedKeys);
           }
-          cacheKey2WatchedKeys.removeAll(cacheKey);
           logger.debug("removed cache key: {}", cacheKey);
         }).build();
     plainTextResponseHeaders = new HttpHeaders();
@@ -113,61 +117,63 @@ public class ConfigFileController implements ReleaseMessageListener {
     xmlResponseHeaders = new HttpHeaders();
     xmlResponseHeaders.add("Content-Type", "application/xml;charset=UTF-8");
     NOT_FOUND_RESPONSE = new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    NOT_MODIFIED_RESPONSE = new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
     this.configController = configController;
     this.namespaceUtil = namespaceUtil;
     this.watchKeysUtil = watchKeysUtil;
     this.grayReleaseRulesHolder = grayReleaseRulesHolder;
+    this.bizConfig = bizConfig;
   }
 
   @GetMapping(value = "/{appId}/{clusterName}/{namespace:.+}")
-  public ResponseEntity<String> queryConfigAsProperties(@PathVariable String appId,
+  public ResponseEntity<byte[]> queryConfigAsProperties(@PathVariable String appId,
       @PathVariable String clusterName, @PathVariable String namespace,
       @RequestParam(value = "dataCenter", required = false) String dataCenter,
       @RequestParam(value = "ip", required = false) String clientIp,
       @RequestParam(value = "label", required = false) String clientLabel,
       HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-    String result = queryConfig(ConfigFileOutputFormat.PROPERTIES, appId, clusterName, namespace,
-        dataCenter, clientIp, clientLabel, request, response);
+    ConfigFileBody result = queryConfig(ConfigFileOutputFormat.PROPERTIES, appId, clusterName,
+        namespace, dataCenter, clientIp, clientLabel, request, response);
 
     if (result == null) {
-      return NOT_FOUND_RESPONSE;
+      return notFoundOrNotModified(response);
     }
 
-    return new ResponseEntity<>(result, plainTextResponseHeaders, HttpStatus.OK);
+    return assembleResponse(result, plainTextResponseHeaders, request, response);
   }
 
   @GetMapping(value = "/json/{appId}/{clusterName}/{namespace:.+}")
-  public ResponseEntity<String> queryConfigAsJson(@PathVariable String appId,
+  public ResponseEntity<byte[]> queryConfigAsJson(@PathVariable String appId,
       @PathVariable String clusterName, @PathVariable String namespace,
       @RequestParam(value = "dataCenter", required = false) String dataCenter,
       @RequestParam(value = "ip", required = false) String clientIp,
       @RequestParam(value = "label", required = false) String clientLabel,
       HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-    String result = queryConfig(ConfigFileOutputFormat.JSON, appId, clusterName, namespace,
-        dataCenter, clientIp, clientLabel, request, response);
+    ConfigFileBody result = queryConfig(ConfigFileOutputFormat.JSON, appId, clusterName,
+        namespace, dataCenter, clientIp, clientLabel, request, response);
 
     if (result == null) {
-      return NOT_FOUND_RESPONSE;
+      return notFoundOrNotModified(response);
     }
 
-    return new ResponseEntity<>(result, jsonResponseHeaders, HttpStatus.OK);
+    return assembleResponse(result, jsonResponseHeaders, request, response);
   }
 
   @GetMapping(value = "/raw/{appId}/{clusterName}/{namespace:.+}")
-  public ResponseEntity<String> queryConfigAsRaw(@PathVariable String appId,
+  public ResponseEntity<byte[]> queryConfigAsRaw(@PathVariable String appId,
       @PathVariable String clusterName, @PathVariable String namespace,
       @RequestParam(value = "dataCenter", required = false) String dataCenter,
       @RequestParam(value = "ip", required = false) String clientIp,
       @RequestParam(value = "label", required = false) String clientLabel,
       HttpServletRequest request, HttpServletResponse response) throws IOException {
 
-    String result = queryConfig(ConfigFileOutputFormat.RAW, appId, clusterName, namespace,
-        dataCenter, clientIp, clientLabel, request, response);
+    ConfigFileBody result = queryConfig(ConfigFileOutputFormat.RAW, appId, clusterName,
+        namespace, dataCenter, clientIp, clientLabel, request, response);
 
     if (result == null) {
-      return NOT_FOUND_RESPONSE;
+      return notFoundOrNotModified(response);
     }
 
     ConfigFileFormat format = determineNamespaceFormat(namespace);
@@ -187,10 +193,44 @@ public class ConfigFileController implements ReleaseMessageListener {
         responseHeaders = plainTextResponseHeaders;
         break;
     }
-    return new ResponseEntity<>(result, responseHeaders, HttpStatus.OK);
+    return assembleResponse(result, responseHeaders, request, response);
   }
 
-  String queryConfig(ConfigFileOutputFormat outputFormat, String appId, String clusterName,
+  /**
+   * The config file shares the entity tag with the config it is rendered from, so a not modified
+   * config is a not modified config file as well.
+   */
+  private ResponseEntity<byte[]> notFoundOrNotModified(HttpServletResponse response) {
+    return response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED ? NOT_MODIFIED_RESPONSE
+        : NOT_FOUND_RESPONSE;
+  }
+
+  /**
+   * Large bodies are served gzip compressed to the clients accepting it, they are compressed once
+   * when the body is loaded.
+   */
+  private ResponseEntity<byte[]> assembleResponse(ConfigFileBody body, HttpHeaders responseHeaders,
+      HttpServletRequest request, HttpServletResponse response) {
+    if (body.getReleaseKey() != null) {
+      ConditionalRequestUtil.writeCacheHeaders(response, body.getReleaseKey(),
+          bizConfig.configServiceResponseCacheControl());
+      if (ConditionalRequestUtil.isNotModified(request, body.getReleaseKey())) {
+        return NOT_MODIFIED_RESPONSE;
+      }
+    }
+    if (!bizConfig.isConfigServiceResponseCompressionEnabled() || body.getGzippedBody() == null) {
+      return new ResponseEntity<>(body.getBody(), responseHeaders, HttpStatus.OK);
+    }
+    ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok().headers(responseHeaders)
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (!ResponseCompressionUtil.acceptsGzip(request)) {
+      return responseBuilder.body(body.getBody());
+    }
+    return responseBuilder.header(HttpHeaders.CONTENT_ENCODING, ResponseCompressionUtil.GZIP)
+        .body(body.getGzippedBody());
+  }
+
+  ConfigFileBody queryConfig(ConfigFileOutputFormat outputFormat, String appId, String clusterName,
       String namespace, String dataCenter, String clientIp, String clientLabel,
       HttpServletRequest request, HttpServletResponse response) throws IOException {
     // strip out .properties suffix
@@ -216,10 +256,10 @@ public class ConfigFileController implements ReleaseMessageListener {
     }
 
     // 3. if not gray release, check weather cache exists, if exists, return
-    String result = localCache.getIfPresent(cacheKey);
+    ConfigFileBody result = localCache.getIfPresent(cacheKey);
 
     // 4. if not exists, load from ConfigController
-    if (Strings.isNullOrEmpty(result)) {
+    if (result == null || result.isEmpty()) {
       Tracer.logEvent("ConfigFile.Cache.Miss", cacheKey);
       result = loadConfig(outputFormat, appId, clusterName, namespace, dataCenter, clientIp,
           clientLabel, request, response);
@@ -241,11 +281,7 @@ public class ConfigFileController implements ReleaseMessageListener {
       Set<String> watchedKeys =
           watchKeysUtil.assembleAllWatchKeys(appId, clusterName, namespace, dataCenter);
 
-      for (String watchedKey : watchedKeys) {
-        watchedKeys2CacheKey.put(watchedKey, cacheKey);
-      }
-
-      cacheKey2WatchedKeys.putAll(cacheKey, watchedKeys);
+      watchedKeysIndex.put(cacheKey, watchedKeys);
       logger.debug("added cache for key: {}", cacheKey);
     } else {
       Tracer.logEvent("ConfigFile.Cache.Hit", cacheKey);
@@ -254,9 +290,10 @@ public class ConfigFileController implements ReleaseMessageListener {
     return result;
   }
 
-  private String loadConfig(ConfigFileOutputFormat outputFormat, String appId, String clusterName,
-      String namespace, String dataCenter, String clientIp, String clientLabel,
-      HttpServletRequest request, HttpServletResponse response) throws IOException {
+  private ConfigFileBody loadConfig(ConfigFileOutputFormat outputFormat, String appId,
+      String clusterName, String namespace, String dataCenter, String clientIp,
+      String clientLabel, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
     ApolloConfig apolloConfig = configController.queryConfig(appId, clusterName, namespace,
         dataCenter, "-1", clientIp, clientLabel, null, request, response);
 
@@ -280,7 +317,8 @@ public class ConfigFileController implements ReleaseMessageListener {
         break;
     }
 
-    return result;
+    return result == null ? null : new ConfigFileBody(result, apolloConfig.getReleaseKey(),
+        bizConfig.isConfigServiceResponseCompressionEnabled());
   }
 
   private String getRawConfigContent(ApolloConfig apolloConfig) throws IOException {
@@ -323,16 +361,61 @@ public class ConfigFileController implements ReleaseMessageListener {
       return;
     }
 
-    if (!watchedKeys2CacheKey.containsKey(content)) {
-      return;
+    // the index is safe to iterate while the invalidated keys are removed from it
+    for (String cacheKey : watchedKeysIndex.getCacheKeys(content)) {
+      logger.debug("invalidate cache key: {}", cacheKey);
+      localCache.invalidate(cacheKey);
     }
+  }
 
-    // create a new list to avoid ConcurrentModificationException
-    List<String> cacheKeys = new ArrayList<>(watchedKeys2CacheKey.get(content));
+  /**
+   * The config file content in UTF-8 together with its release key and its gzip compressed form,
+   * which is compressed once when the body is loaded and then shared with the requests served from
+   * the same cache entry.
+   */
+  static class ConfigFileBody {
+    private final byte[] body;
+    private final byte[] gzippedBody;
+    private final String releaseKey;
+
+    ConfigFileBody(String content, String releaseKey) {
+      this(content, releaseKey, false);
+    }
 
-    for (String cacheKey : cacheKeys) {
-      logger.debug("invalidate cache key: {}", cacheKey);
-      localCache.invalidate(cacheKey);
+    ConfigFileBody(String content, String releaseKey, boolean compress) {
+      this.body = content.getBytes(StandardCharsets.UTF_8);
+      this.gzippedBody = compress ? ResponseCompressionUtil.gzipIfWorthwhile(body) : null;
+      this.releaseKey = releaseKey;
+    }
+
+    boolean isEmpty() {
+      return body.length == 0;
+    }
+
+    /**
+     * @return the content in UTF-8, the returned array must not be modified
+     */
+    byte[] getBody() {
+      return body;
+    }
+
+    /**
+     * @return the gzip compressed content, or null if it is not compressed, the returned array must
+     *         not be modified
+     */
+    byte[] getGzippedBody() {
+      return gzippedBody;
+    }
+
+    /**
+     * @return the merged release key the content is rendered from
+     */
+    String getReleaseKey() {
+      return releaseKey;
+    }
+
+    int getWeight() {
+      return body.length + (gzippedBody == null ? 0 : gzippedBody.length);
     }
   }
 
@@ -21,16 +21,16 @@ import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
-import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.HashedWheelTimer;
+import com.ctrip.framework.apollo.configservice.util.LongPollingTimeoutScheduler;
+import com.ctrip.framework.apollo.configservice.util.NotificationFanoutScheduler;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
-import com.ctrip.framework.apollo.configservice.wrapper.CaseInsensitiveMultimapWrapper;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
-import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.configservice.wrapper.WatcherRegistry;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -52,15 +52,10 @@ import org.springframework.web.context.request.async.DeferredResult;
 
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -69,33 +64,33 @@ import java.util.function.Function;
 @RequestMapping("/notifications/v2")
 public class NotificationControllerV2 implements ReleaseMessageListener {
   private static final Logger logger = LoggerFactory.getLogger(NotificationControllerV2.class);
-  private final CaseInsensitiveMultimapWrapper<DeferredResultWrapper> deferredResults =
-      new CaseInsensitiveMultimapWrapper<>(Maps.newConcurrentMap(), Sets::newConcurrentHashSet);
+  private final WatcherRegistry<DeferredResultWrapper> deferredResults = new WatcherRegistry<>();
 
   private static final Type notificationsTypeReference =
       new TypeToken<List<ApolloConfigNotification>>() {}.getType();
 
-  private final ExecutorService largeNotificationBatchExecutorService;
-
   private final WatchKeysUtil watchKeysUtil;
   private final ReleaseMessageServiceWithCache releaseMessageService;
   private final EntityManagerUtil entityManagerUtil;
   private final NamespaceUtil namespaceUtil;
   private final Gson gson;
   private final BizConfig bizConfig;
+  private final NotificationFanoutScheduler notificationFanoutScheduler;
+  private final LongPollingTimeoutScheduler longPollingTimeoutScheduler;
 
   public NotificationControllerV2(final WatchKeysUtil watchKeysUtil,
       final ReleaseMessageServiceWithCache releaseMessageService,
       final EntityManagerUtil entityManagerUtil, final NamespaceUtil namespaceUtil, final Gson gson,
-      final BizConfig bizConfig) {
-    largeNotificationBatchExecutorService = Executors
-        .newSingleThreadExecutor(ApolloThreadFactory.create("NotificationControllerV2", true));
+      final BizConfig bizConfig, final NotificationFanoutScheduler notificationFanoutScheduler,
+      final LongPollingTimeoutScheduler longPollingTimeoutScheduler) {
     this.watchKeysUtil = watchKeysUtil;
     this.releaseMessageService = releaseMessageService;
     this.entityManagerUtil = entityManagerUtil;
     this.namespaceUtil = namespaceUtil;
     this.gson = gson;
     this.bizConfig = bizConfig;
+    this.notificationFanoutScheduler = notificationFanoutScheduler;
+    this.longPollingTimeoutScheduler = longPollingTimeoutScheduler;
   }
 
   @GetMapping
@@ -117,14 +112,14 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     }
 
     Map<String, ApolloConfigNotification> filteredNotifications =
-        filterNotifications(appId, notifications);
+        NotificationResolver.filterNotifications(namespaceUtil, appId, notifications);
 
     if (CollectionUtils.isEmpty(filteredNotifications)) {
       throw BadRequestException.invalidNotificationsFormat(notificationsAsString);
     }
 
     DeferredResultWrapper deferredResultWrapper =
-        new DeferredResultWrapper(bizConfig.longPollingTimeoutInMilli());
+        new DeferredResultWrapper(longPollingTimeoutScheduler.containerTimeoutInMilli());
     Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
     Map<String, Long> clientSideNotifications =
         Maps.newHashMapWithExpectedSize(filteredNotifications.size());
@@ -154,17 +149,22 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     deferredResultWrapper
         .onTimeout(() -> logWatchedKeys(watchedKeys, "Apollo.LongPoll.TimeOutKeys"));
 
+    HashedWheelTimer.Timeout timeout = longPollingTimeoutScheduler.schedule(deferredResultWrapper);
+
     deferredResultWrapper.onCompletion(() -> {
+      longPollingTimeoutScheduler.cancel(timeout, deferredResultWrapper);
       // unregister all keys
-      for (String key : watchedKeys) {
-        deferredResults.remove(key, deferredResultWrapper);
+      for (WatcherRegistry.Registration<DeferredResultWrapper> registration : deferredResultWrapper
+          .getRegistrations()) {
+        deferredResults.unregister(registration);
       }
       logWatchedKeys(watchedKeys, "Apollo.LongPoll.CompletedKeys");
     });
 
     // register all keys
     for (String key : watchedKeys) {
-      this.deferredResults.put(key, deferredResultWrapper);
+      deferredResultWrapper
+          .addRegistration(this.deferredResults.register(key, deferredResultWrapper));
     }
 
     logWatchedKeys(watchedKeys, "Apollo.LongPoll.RegisteredKeys");
@@ -185,8 +185,9 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
      */
     entityManagerUtil.closeEntityManager();
 
-    List<ApolloConfigNotification> newNotifications = getApolloConfigNotifications(namespaces,
-        clientSideNotifications, watchedKeysMap, latestReleaseMessages);
+    List<ApolloConfigNotification> newNotifications =
+        NotificationResolver.getApolloConfigNotifications(namespaces, clientSideNotifications,
+            watchedKeysMap, latestReleaseMessages);
 
     if (!CollectionUtils.isEmpty(newNotifications)) {
       deferredResultWrapper.setResult(newNotifications);
@@ -195,67 +196,6 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     return deferredResultWrapper.getResult();
   }
 
-  private Map<String, ApolloConfigNotification> filterNotifications(String appId,
-      List<ApolloConfigNotification> notifications) {
-    Map<String, ApolloConfigNotification> filteredNotifications = Maps.newHashMap();
-    for (ApolloConfigNotification notification : notifications) {
-      if (Strings.isNullOrEmpty(notification.getNamespaceName())) {
-        continue;
-      }
-      // strip out .properties suffix
-      String originalNamespace = namespaceUtil.filterNamespaceName(notification.getNamespaceName());
-      notification.setNamespaceName(originalNamespace);
-      // fix the character case issue, such as FX.apollo <-> fx.apollo
-      String normalizedNamespace = namespaceUtil.normalizeNamespace(appId, originalNamespace);
-
-      // in case client side namespace name has character case issue and has difference notification
-      // ids
-      // such as FX.apollo = 1 but fx.apollo = 2, we should let FX.apollo have the chance to update
-      // its notification id
-      // which means we should record FX.apollo = 1 here and ignore fx.apollo = 2
-      if (filteredNotifications.containsKey(normalizedNamespace) && filteredNotifications
-          .get(normalizedNamespace).getNotificationId() < notification.getNotificationId()) {
-        continue;
-      }
-
-      filteredNotifications.put(normalizedNamespace, notification);
-    }
-    return filteredNotifications;
-  }
-
-  private List<ApolloConfigNotification> getApolloConfigNotifications(Set<String> namespaces,
-      Map<String, Long> clientSideNotifications, Multimap<String, String> watchedKeysMap,
-      List<ReleaseMessage> latestReleaseMessages) {
-    List<ApolloConfigNotification> newNotifications = Lists.newArrayList();
-    if (!CollectionUtils.isEmpty(latestReleaseMessages)) {
-      Map<String, Long> latestNotifications = Maps.newHashMap();
-      for (ReleaseMessage releaseMessage : latestReleaseMessages) {
-        latestNotifications.put(releaseMessage.getMessage(), releaseMessage.getId());
-      }
-
-      for (String namespace : namespaces) {
-        long clientSideId = clientSideNotifications.get(namespace);
-        long latestId = ConfigConsts.NOTIFICATION_ID_PLACEHOLDER;
-        Collection<String> namespaceWatchedKeys = watchedKeysMap.get(namespace);
-        for (String namespaceWatchedKey : namespaceWatchedKeys) {
-          long namespaceNotificationId = latestNotifications.getOrDefault(namespaceWatchedKey,
-              ConfigConsts.NOTIFICATION_ID_PLACEHOLDER);
-          if (namespaceNotificationId > latestId) {
-            latestId = namespaceNotificationId;
-          }
-        }
-        if (latestId > clientSideId) {
-          ApolloConfigNotification notification = new ApolloConfigNotification(namespace, latestId);
-          namespaceWatchedKeys.stream().filter(latestNotifications::containsKey)
-              .forEach(namespaceWatchedKey -> notification.addMessage(namespaceWatchedKey,
-                  latestNotifications.get(namespaceWatchedKey)));
-          newNotifications.add(notification);
-        }
-      }
-    }
-    return newNotifications;
-  }
-
   @Override
   public void handleMessage(ReleaseMessage message, String channel) {
     logger.info("message received - channel: {}, message: {}", channel, message);
@@ -266,20 +206,19 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       return;
     }
 
-    String changedNamespace = retrieveNamespaceFromReleaseMessage.apply(content);
+    String changedNamespace = NotificationResolver.retrieveNamespaceFromReleaseMessage(content);
 
     if (Strings.isNullOrEmpty(changedNamespace)) {
       logger.error("message format invalid - {}", content);
       return;
     }
 
-    if (!deferredResults.containsKey(content)) {
+    // the snapshot is safe to iterate while clients keep registering and unregistering
+    WatcherRegistry.Snapshot<DeferredResultWrapper> results = deferredResults.snapshot(content);
+    if (results.isEmpty()) {
       return;
     }
 
-    // create a new list to avoid ConcurrentModificationException
-    List<DeferredResultWrapper> results = Lists.newArrayList(deferredResults.get(content));
-
     ApolloConfigNotification configNotification =
         new ApolloConfigNotification(changedNamespace, message.getId());
     configNotification.addMessage(content, message.getId());
@@ -289,23 +228,9 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
 
     // do async notification if too many clients
     if (results.size() > bizConfig.releaseMessageNotificationBatch()) {
-      largeNotificationBatchExecutorService.submit(() -> {
-        logger.debug("Async notify {} clients for key {} with batch {}", results.size(), content,
-            bizConfig.releaseMessageNotificationBatch());
-        for (int i = 0; i < results.size(); i++) {
-          if (i > 0 && i % bizConfig.releaseMessageNotificationBatch() == 0) {
-            try {
-              TimeUnit.MILLISECONDS
-                  .sleep(bizConfig.releaseMessageNotificationBatchIntervalInMilli());
-            } catch (InterruptedException e) {
-              // ignore
-            }
-          }
-          logger.debug("Async notify {}", results.get(i));
-          results.get(i).setResult(changedNamespace, configNotification,
-              serializedNotificationResponse);
-        }
-      });
+      notificationFanoutScheduler.submit(content, results, results.size(),
+          result -> result.setResult(changedNamespace, configNotification,
+              serializedNotificationResponse));
       return;
     }
 
@@ -317,18 +242,6 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     logger.debug("Notification completed");
   }
 
-  private static final Function<String, String> retrieveNamespaceFromReleaseMessage =
-      releaseMessage -> {
-        if (Strings.isNullOrEmpty(releaseMessage)) {
-          return null;
-        }
-        List<String> keys = ReleaseMessageKeyGenerator.messageToList(releaseMessage);
-        if (CollectionUtils.isEmpty(keys)) {
-          return null;
-        }
-        return keys.get(2);
-      };
-
   private void logWatchedKeys(Set<String> watchedKeys, String eventName) {
     for (String watchedKey : watchedKeys) {
       Tracer.logEvent(eventName, watchedKey);
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.NotificationFanoutScheduler;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationStreamWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.WatcherRegistry;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams notifications with server-sent events, so that a client keeps one connection and one
+ * registration instead of polling again after every change or timeout.
+ * <p>
+ * The request parameters are the same as {@link NotificationControllerV2}. Each event is named
+ * {@value NotificationStreamWrapper#NOTIFICATION_EVENT_NAME} and carries the same JSON array as a
+ * long polling response. Clients resume by reconnecting with the latest notification id of each
+ * namespace, and receive the changes they missed right away. Heartbeat comments are sent
+ * periodically to keep idle connections alive and to detect closed ones.
+ * </p>
+ */
+@RestController
+@RequestMapping("/notifications/v3")
+public class NotificationControllerV3 implements ReleaseMessageListener, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationControllerV3.class);
+  private static final Type notificationsTypeReference =
+      new TypeToken<List<ApolloConfigNotification>>() {}.getType();
+  // the fan-outs are paced by key, separately from those of the long polling clients
+  private static final String FANOUT_KEY_PREFIX = "v3:";
+
+  private final WatcherRegistry<NotificationStreamWrapper> streams = new WatcherRegistry<>();
+  private final Set<NotificationStreamWrapper> openStreams = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService heartbeatExecutorService;
+  // writes the events of each stream in order, so a slow client only holds up its own stream
+  private final ExecutorService sendExecutorService;
+
+  private final WatchKeysUtil watchKeysUtil;
+  private final ReleaseMessageServiceWithCache releaseMessageService;
+  private final EntityManagerUtil entityManagerUtil;
+  private final NamespaceUtil namespaceUtil;
+  private final Gson gson;
+  private final BizConfig bizConfig;
+  private final NotificationFanoutScheduler notificationFanoutScheduler;
+
+  public NotificationControllerV3(final WatchKeysUtil watchKeysUtil,
+      final ReleaseMessageServiceWithCache releaseMessageService,
+      final EntityManagerUtil entityManagerUtil, final NamespaceUtil namespaceUtil, final Gson gson,
+      final BizConfig bizConfig, final NotificationFanoutScheduler notificationFanoutScheduler,
+      final MeterRegistry meterRegistry) {
+    this.watchKeysUtil = watchKeysUtil;
+    this.releaseMessageService = releaseMessageService;
+    this.entityManagerUtil = entityManagerUtil;
+    this.namespaceUtil = namespaceUtil;
+    this.gson = gson;
+    this.bizConfig = bizConfig;
+    this.notificationFanoutScheduler = notificationFanoutScheduler;
+    heartbeatExecutorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("NotificationControllerV3", true));
+    sendExecutorService = Executors.newFixedThreadPool(
+        bizConfig.releaseMessageNotificationWorkers(),
+        ApolloThreadFactory.create("NotificationControllerV3-Sender", true));
+    scheduleHeartbeat();
+
+    Gauge.builder("apollo.notification.stream.connections", openStreams, Set::size)
+        .description("Open notification streams").register(meterRegistry);
+  }
+
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamNotifications(
+      @RequestParam(value = "appId") String appId, @RequestParam(value = "cluster") String cluster,
+      @RequestParam(value = "notifications") String notificationsAsString,
+      @RequestParam(value = "dataCenter", required = false) String dataCenter,
+      @RequestParam(value = "ip", required = false) String clientIp) {
+    List<ApolloConfigNotification> notifications = null;
+
+    try {
+      notifications = gson.fromJson(notificationsAsString, notificationsTypeReference);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+
+    if (CollectionUtils.isEmpty(notifications)) {
+      throw BadRequestException.invalidNotificationsFormat(notificationsAsString);
+    }
+
+    Map<String, ApolloConfigNotification> filteredNotifications =
+        NotificationResolver.filterNotifications(namespaceUtil, appId, notifications);
+
+    if (CollectionUtils.isEmpty(filteredNotifications)) {
+      throw BadRequestException.invalidNotificationsFormat(notificationsAsString);
+    }
+
+    Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
+    Map<String, Long> clientSideNotifications =
+        Maps.newHashMapWithExpectedSize(filteredNotifications.size());
+    for (Map.Entry<String, ApolloConfigNotification> notificationEntry : filteredNotifications
+        .entrySet()) {
+      namespaces.add(notificationEntry.getKey());
+      clientSideNotifications.put(notificationEntry.getKey(),
+          notificationEntry.getValue().getNotificationId());
+    }
+
+    NotificationStreamWrapper stream = new NotificationStreamWrapper(
+        bizConfig.notificationStreamTimeoutInMilli(), gson, clientSideNotifications,
+        sendExecutorService);
+    for (Map.Entry<String, ApolloConfigNotification> notificationEntry : filteredNotifications
+        .entrySet()) {
+      String originalNamespace = notificationEntry.getValue().getNamespaceName();
+      if (!Objects.equals(originalNamespace, notificationEntry.getKey())) {
+        stream.recordNamespaceNameNormalizedResult(originalNamespace, notificationEntry.getKey());
+      }
+    }
+
+    Multimap<String, String> watchedKeysMap =
+        watchKeysUtil.assembleAllWatchKeys(appId, cluster, namespaces, dataCenter);
+
+    Set<String> watchedKeys = Sets.newHashSet(watchedKeysMap.values());
+
+    // register before the check, so that no release message is missed in between
+    stream.onClose(() -> {
+      openStreams.remove(stream);
+      for (WatcherRegistry.Registration<NotificationStreamWrapper> registration : stream
+          .getRegistrations()) {
+        streams.unregister(registration);
+      }
+      logWatchedKeys(watchedKeys, "Apollo.Stream.ClosedKeys");
+    });
+
+    for (String key : watchedKeys) {
+      stream.addRegistration(streams.register(key, stream));
+    }
+    openStreams.add(stream);
+
+    logWatchedKeys(watchedKeys, "Apollo.Stream.RegisteredKeys");
+    logger.debug("Streaming {} from appId: {}, cluster: {}, namespace: {}, datacenter: {}",
+        watchedKeys, appId, cluster, namespaces, dataCenter);
+
+    List<ReleaseMessage> latestReleaseMessages =
+        releaseMessageService.findLatestReleaseMessagesGroupByMessages(watchedKeys);
+
+    // the stream holds the request for a long time, so don't keep the db connection
+    entityManagerUtil.closeEntityManager();
+
+    List<ApolloConfigNotification> newNotifications =
+        NotificationResolver.getApolloConfigNotifications(namespaces, clientSideNotifications,
+            watchedKeysMap, latestReleaseMessages);
+
+    if (!CollectionUtils.isEmpty(newNotifications)) {
+      stream.send(newNotifications);
+    }
+
+    return stream.getEmitter();
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String content = message.getMessage();
+    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+
+    String changedNamespace = NotificationResolver.retrieveNamespaceFromReleaseMessage(content);
+
+    if (Strings.isNullOrEmpty(changedNamespace)) {
+      logger.error("message format invalid - {}", content);
+      return;
+    }
+
+    WatcherRegistry.Snapshot<NotificationStreamWrapper> results = streams.snapshot(content);
+    if (results.isEmpty()) {
+      return;
+    }
+
+    ApolloConfigNotification configNotification =
+        new ApolloConfigNotification(changedNamespace, message.getId());
+    configNotification.addMessage(content, message.getId());
+    String serializedNotification = gson.toJson(Lists.newArrayList(configNotification));
+
+    // pace a large audience like the long polling clients, with a pacer of its own
+    if (results.size() > bizConfig.releaseMessageNotificationBatch()) {
+      notificationFanoutScheduler.submit(FANOUT_KEY_PREFIX + content, results, results.size(),
+          stream -> stream.send(changedNamespace, configNotification, serializedNotification));
+      return;
+    }
+
+    // sending only queues the event, which is written on the sender threads
+    for (NotificationStreamWrapper stream : results) {
+      stream.send(changedNamespace, configNotification, serializedNotification);
+    }
+  }
+
+  int getOpenStreams() {
+    return openStreams.size();
+  }
+
+  @Override
+  public void destroy() {
+    heartbeatExecutorService.shutdownNow();
+    sendExecutorService.shutdownNow();
+  }
+
+  private void scheduleHeartbeat() {
+    heartbeatExecutorService.schedule(() -> {
+      try {
+        for (NotificationStreamWrapper stream : openStreams) {
+          stream.heartbeat();
+        }
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.error("Failed to send heartbeats", ex);
+      } finally {
+        if (!heartbeatExecutorService.isShutdown()) {
+          scheduleHeartbeat();
+        }
+      }
+    }, bizConfig.notificationStreamHeartbeatIntervalInMilli(), TimeUnit.MILLISECONDS);
+  }
+
+  private void logWatchedKeys(Set<String> watchedKeys, String eventName) {
+    for (String watchedKey : watchedKeys) {
+      Tracer.logEvent(eventName, watchedKey);
+    }
+  }
+}
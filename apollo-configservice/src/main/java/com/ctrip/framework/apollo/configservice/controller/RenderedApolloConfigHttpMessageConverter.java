@@ -0,0 +1,72 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.configservice.util.ResponseCompressionUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.RenderedApolloConfig;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Writes the pre-rendered body of {@link RenderedApolloConfig} as is, it only applies to responses
+ * so it never reads.
+ * <p>
+ * The gzip compressed body is written instead if the response is marked so by
+ * {@link RenderedApolloConfigResponseBodyAdvice}.
+ * </p>
+ */
+public class RenderedApolloConfigHttpMessageConverter
+    extends AbstractHttpMessageConverter<RenderedApolloConfig> {
+
+  public RenderedApolloConfigHttpMessageConverter() {
+    super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return RenderedApolloConfig.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  protected boolean canRead(MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  protected RenderedApolloConfig readInternal(Class<? extends RenderedApolloConfig> clazz,
+      HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Rendered config is write only", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(RenderedApolloConfig renderedApolloConfig,
+      HttpOutputMessage outputMessage) throws IOException {
+    byte[] body = renderedApolloConfig.getBody();
+    if (ResponseCompressionUtil.GZIP
+        .equals(outputMessage.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+      body = renderedApolloConfig.getGzippedBody();
+    }
+    outputMessage.getHeaders().setContentLength(body.length);
+    outputMessage.getBody().write(body);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.util.ResponseCompressionUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.RenderedApolloConfig;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Negotiates the content encoding of the rendered config responses, the converter has no access
+ * to the request, so the choice is passed on via the Content-Encoding header.
+ */
+@ControllerAdvice(assignableTypes = ConfigController.class)
+public class RenderedApolloConfigResponseBodyAdvice implements ResponseBodyAdvice<Object> {
+
+  private final BizConfig bizConfig;
+
+  public RenderedApolloConfigResponseBodyAdvice(final BizConfig bizConfig) {
+    this.bizConfig = bizConfig;
+  }
+
+  @Override
+  public boolean supports(MethodParameter returnType,
+      Class<? extends HttpMessageConverter<?>> converterType) {
+    return RenderedApolloConfigHttpMessageConverter.class.isAssignableFrom(converterType);
+  }
+
+  @Override
+  public Object beforeBodyWrite(Object body, MethodParameter returnType,
+      MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType,
+      ServerHttpRequest request, ServerHttpResponse response) {
+    if (!(body instanceof RenderedApolloConfig)
+        || !bizConfig.isConfigServiceResponseCompressionEnabled()) {
+      return body;
+    }
+    RenderedApolloConfig renderedConfig = (RenderedApolloConfig) body;
+    if (renderedConfig.getBody().length < ResponseCompressionUtil.MIN_COMPRESSION_SIZE) {
+      return body;
+    }
+    response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (ResponseCompressionUtil.acceptsGzip(request.getHeaders().get(HttpHeaders.ACCEPT_ENCODING))
+        && renderedConfig.getGzippedBody() != null) {
+      response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, ResponseCompressionUtil.GZIP);
+    }
+    return body;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.dto;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+
+/**
+ * The result of one namespace in a batch config request.
+ * <p>
+ * The status code follows the single namespace request: 200 with the config, 304 if the client
+ * already holds the latest release and 404 if the namespace has no release.
+ * </p>
+ */
+public class ApolloConfigQueryResult {
+  public static final int STATUS_OK = 200;
+  public static final int STATUS_NOT_MODIFIED = 304;
+  public static final int STATUS_NOT_FOUND = 404;
+
+  private String namespaceName;
+  private int statusCode;
+  private ApolloConfig config;
+
+  // for json converter
+  public ApolloConfigQueryResult() {
+  }
+
+  public ApolloConfigQueryResult(String namespaceName, int statusCode, ApolloConfig config) {
+    this.namespaceName = namespaceName;
+    this.statusCode = statusCode;
+    this.config = config;
+  }
+
+  public static ApolloConfigQueryResult ok(String namespaceName, ApolloConfig config) {
+    return new ApolloConfigQueryResult(namespaceName, STATUS_OK, config);
+  }
+
+  public static ApolloConfigQueryResult notModified(String namespaceName) {
+    return new ApolloConfigQueryResult(namespaceName, STATUS_NOT_MODIFIED, null);
+  }
+
+  public static ApolloConfigQueryResult notFound(String namespaceName) {
+    return new ApolloConfigQueryResult(namespaceName, STATUS_NOT_FOUND, null);
+  }
+
+  public String getNamespaceName() {
+    return namespaceName;
+  }
+
+  public void setNamespaceName(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public void setStatusCode(int statusCode) {
+    this.statusCode = statusCode;
+  }
+
+  public ApolloConfig getConfig() {
+    return config;
+  }
+
+  public void setConfig(ApolloConfig config) {
+    this.config = config;
+  }
+
+  @Override
+  public String toString() {
+    return "ApolloConfigQueryResult{" +
+        "namespaceName='" + namespaceName + '\'' +
+        ", statusCode=" + statusCode +
+        ", config=" + config +
+        '}';
+  }
+}
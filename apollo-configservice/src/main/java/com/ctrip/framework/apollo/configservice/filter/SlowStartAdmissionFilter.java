@@ -0,0 +1,97 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.filter;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.service.ConfigServiceWarmUpManager;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admits a linearly growing share of the client requests during the slow start window after the
+ * warm up, see {@link BizConfig#configServiceSlowStartWindowInSecond()}.
+ * <p>
+ * The rejected clients retry on the other config services, so a restarted instance takes over its
+ * share of the load gradually instead of all at once.
+ * </p>
+ */
+public class SlowStartAdmissionFilter implements Filter {
+
+  // never starves the clients when there is no other config service to take them over
+  private static final double MIN_ADMISSION_RATIO = 0.1;
+
+  private final BizConfig bizConfig;
+  private final ConfigServiceWarmUpManager configServiceWarmUpManager;
+
+  private volatile boolean slowStartFinished;
+
+  public SlowStartAdmissionFilter(BizConfig bizConfig,
+      ConfigServiceWarmUpManager configServiceWarmUpManager) {
+    this.bizConfig = bizConfig;
+    this.configServiceWarmUpManager = configServiceWarmUpManager;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) {
+    // nothing
+  }
+
+  @Override
+  public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+      throws IOException, ServletException {
+    if (!slowStartFinished && !admit()) {
+      HttpServletRequest request = (HttpServletRequest) req;
+      Tracer.logEvent("Apollo.SlowStart.Rejected", request.getRequestURI());
+      ((HttpServletResponse) resp).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "ConfigServiceWarmingUp");
+      return;
+    }
+
+    chain.doFilter(req, resp);
+  }
+
+  @Override
+  public void destroy() {
+    // nothing
+  }
+
+  private boolean admit() {
+    long window = bizConfig.configServiceSlowStartWindowInSecond() * 1000L;
+    if (window <= 0) {
+      return true;
+    }
+    long millisSinceWarmedUp = configServiceWarmUpManager.getMillisSinceWarmedUp();
+    if (millisSinceWarmedUp < 0) {
+      return false;
+    }
+    if (millisSinceWarmedUp >= window) {
+      slowStartFinished = true;
+      return true;
+    }
+    double admissionRatio = Math.max(MIN_ADMISSION_RATIO, (double) millisSinceWarmedUp / window);
+    return ThreadLocalRandom.current().nextDouble() < admissionRatio;
+  }
+}
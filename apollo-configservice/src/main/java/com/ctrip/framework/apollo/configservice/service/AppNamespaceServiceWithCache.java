@@ -19,6 +19,8 @@ package com.ctrip.framework.apollo.configservice.service;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.repository.AppNamespaceRepository;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshot;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
 import com.ctrip.framework.apollo.configservice.wrapper.CaseInsensitiveMapWrapper;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
@@ -54,6 +56,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean, Disposabl
       Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).skipNulls();
   private final AppNamespaceRepository appNamespaceRepository;
   private final BizConfig bizConfig;
+  private final ConfigServiceSnapshotStore snapshotStore;
 
   private int scanInterval;
   private TimeUnit scanIntervalTimeUnit;
@@ -72,9 +75,10 @@ public class AppNamespaceServiceWithCache implements InitializingBean, Disposabl
   private Map<Long, AppNamespace> appNamespaceIdCache;
 
   public AppNamespaceServiceWithCache(final AppNamespaceRepository appNamespaceRepository,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig, final ConfigServiceSnapshotStore snapshotStore) {
     this.appNamespaceRepository = appNamespaceRepository;
     this.bizConfig = bizConfig;
+    this.snapshotStore = snapshotStore;
     initialize();
   }
 
@@ -129,10 +133,18 @@ public class AppNamespaceServiceWithCache implements InitializingBean, Disposabl
     return result;
   }
 
+  public List<AppNamespace> findAll() {
+    return Lists.newArrayList(appNamespaceIdCache.values());
+  }
+
   @Override
   public void afterPropertiesSet() throws Exception {
     populateDataBaseInterval();
+    // only the app namespaces after the local snapshot need to be loaded
+    boolean restored = restoreFromSnapshot();
     scanNewAppNamespaces(); // block the startup process until load finished
+    // the app namespaces restored may have been updated or deleted since the snapshot was taken
+    int initialRebuildDelay = restored ? 0 : rebuildInterval;
     scheduledExecutorService.scheduleAtFixedRate(() -> {
       Transaction transaction =
           Tracer.newTransaction("Apollo.AppNamespaceServiceWithCache", "rebuildCache");
@@ -145,7 +157,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean, Disposabl
       } finally {
         transaction.complete();
       }
-    }, rebuildInterval, rebuildInterval, rebuildIntervalTimeUnit);
+    }, initialRebuildDelay, rebuildInterval, rebuildIntervalTimeUnit);
     scheduledExecutorService.scheduleWithFixedDelay(this::scanNewAppNamespaces, scanInterval,
         scanInterval, scanIntervalTimeUnit);
   }
@@ -171,6 +183,21 @@ public class AppNamespaceServiceWithCache implements InitializingBean, Disposabl
     }
   }
 
+  private boolean restoreFromSnapshot() {
+    ConfigServiceSnapshot snapshot = snapshotStore.getSnapshot();
+    if (snapshot == null) {
+      return false;
+    }
+    List<AppNamespace> appNamespaces = snapshot.getAppNamespaces();
+    mergeAppNamespaces(appNamespaces);
+    for (AppNamespace appNamespace : appNamespaces) {
+      maxIdScanned = Math.max(maxIdScanned, appNamespace.getId());
+    }
+    logger.info("Restored {} app namespaces from snapshot with max id {}", appNamespaces.size(),
+        maxIdScanned);
+    return true;
+  }
+
   // for those new app namespaces
   private void loadNewAppNamespaces() {
     boolean hasMore = true;
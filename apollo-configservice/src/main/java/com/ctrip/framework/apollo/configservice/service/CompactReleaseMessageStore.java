@@ -0,0 +1,270 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * The latest release message id of each message, kept compact for the millions of messages a
+ * large installation may have.
+ * <p>
+ * A message of appId+cluster+namespace is tokenized, each component is stored once in a
+ * dictionary of its position and the three token ids are packed into a primitive long, which is
+ * mapped to the primitive message id in an open addressing table. The messages which could not be
+ * tokenized, e.g. of other formats, are kept as they are.
+ * </p>
+ * <p>
+ * Writes are expected from a single thread at a time, while reads never block unless they race
+ * with a write.
+ * </p>
+ */
+public class CompactReleaseMessageStore {
+  static final long NOT_FOUND = 0;
+
+  private static final String SEPARATOR = ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR;
+  private static final int TOKEN_BITS = 21;
+  private static final int MAX_TOKEN_ID = (1 << TOKEN_BITS) - 1;
+  private static final long EMPTY_KEY = 0; // token ids start from 1
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final TokenDictionary appIds = new TokenDictionary();
+  private final TokenDictionary clusters = new TokenDictionary();
+  private final TokenDictionary namespaces = new TokenDictionary();
+  private final ConcurrentMap<String, Long> untokenizedMessages = Maps.newConcurrentMap();
+
+  private final StampedLock lock = new StampedLock();
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * @return the latest id of the message, or {@link #NOT_FOUND}
+   */
+  public long get(String message) {
+    long key = findKey(message);
+    if (key == EMPTY_KEY) {
+      Long id = untokenizedMessages.get(message);
+      return id == null ? NOT_FOUND : id;
+    }
+
+    long stamp = lock.tryOptimisticRead();
+    long[] currentKeys = keys;
+    long[] currentIds = ids;
+    // the tables are swapped one by one on resize
+    if (currentKeys.length == currentIds.length) {
+      long id = find(currentKeys, currentIds, key);
+      if (lock.validate(stamp)) {
+        return id;
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      return find(keys, ids, key);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Put the id of the message unless a newer one is stored.
+   *
+   * @return whether the id is put
+   */
+  public synchronized boolean putIfNewer(String message, long id) {
+    long key = tokenize(message);
+    if (key == EMPTY_KEY) {
+      Long previous = untokenizedMessages.get(message);
+      if (previous != null && previous >= id) {
+        return false;
+      }
+      untokenizedMessages.put(message, id);
+      return true;
+    }
+
+    long stamp = lock.writeLock();
+    try {
+      if ((size + 1) * 4L > keys.length * 3L) {
+        resize();
+      }
+      int slot = slot(keys, key);
+      if (keys[slot] == key) {
+        if (ids[slot] >= id) {
+          return false;
+        }
+      } else {
+        keys[slot] = key;
+        size++;
+      }
+      ids[slot] = id;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size + untokenizedMessages.size();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Visit each message with its latest id, the messages are assembled from the tokens on the fly.
+   */
+  public void forEach(ObjLongConsumer<String> consumer) {
+    long[] keysCopy;
+    long[] idsCopy;
+    long stamp = lock.readLock();
+    try {
+      keysCopy = Arrays.copyOf(keys, keys.length);
+      idsCopy = Arrays.copyOf(ids, ids.length);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    for (int i = 0; i < keysCopy.length; i++) {
+      if (keysCopy[i] != EMPTY_KEY) {
+        consumer.accept(detokenize(keysCopy[i]), idsCopy[i]);
+      }
+    }
+    for (Map.Entry<String, Long> entry : untokenizedMessages.entrySet()) {
+      consumer.accept(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private long findKey(String message) {
+    int first = message.indexOf(SEPARATOR);
+    int second = first < 0 ? -1 : message.indexOf(SEPARATOR, first + 1);
+    if (second < 0 || message.indexOf(SEPARATOR, second + 1) >= 0) {
+      return EMPTY_KEY;
+    }
+    int appId = appIds.find(message.substring(0, first));
+    int cluster = appId == 0 ? 0 : clusters.find(message.substring(first + 1, second));
+    int namespace = cluster == 0 ? 0 : namespaces.find(message.substring(second + 1));
+    // not tokenized if any component is unknown
+    return namespace == 0 ? EMPTY_KEY : pack(appId, cluster, namespace);
+  }
+
+  private long tokenize(String message) {
+    long key = findKey(message);
+    if (key != EMPTY_KEY || untokenizedMessages.containsKey(message)) {
+      return key;
+    }
+    String[] components = message.split("\\" + SEPARATOR, -1);
+    if (components.length != 3 || !appIds.hasRoom() || !clusters.hasRoom()
+        || !namespaces.hasRoom()) {
+      return EMPTY_KEY;
+    }
+    return pack(appIds.findOrAdd(components[0]), clusters.findOrAdd(components[1]),
+        namespaces.findOrAdd(components[2]));
+  }
+
+  private String detokenize(long key) {
+    int namespace = (int) (key & MAX_TOKEN_ID);
+    int cluster = (int) ((key >>> TOKEN_BITS) & MAX_TOKEN_ID);
+    int appId = (int) (key >>> (2 * TOKEN_BITS));
+    return appIds.get(appId) + SEPARATOR + clusters.get(cluster) + SEPARATOR
+        + namespaces.get(namespace);
+  }
+
+  private static long pack(int appId, int cluster, int namespace) {
+    return ((long) appId << (2 * TOKEN_BITS)) | ((long) cluster << TOKEN_BITS) | namespace;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    long[] oldIds = ids;
+    long[] newKeys = new long[oldKeys.length * 2];
+    long[] newIds = new long[oldIds.length * 2];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY_KEY) {
+        int slot = slot(newKeys, oldKeys[i]);
+        newKeys[slot] = oldKeys[i];
+        newIds[slot] = oldIds[i];
+      }
+    }
+    keys = newKeys;
+    ids = newIds;
+  }
+
+  private static long find(long[] keys, long[] ids, long key) {
+    int slot = slot(keys, key);
+    return keys[slot] == key ? ids[slot] : NOT_FOUND;
+  }
+
+  /**
+   * @return the slot of the key, or the empty slot it should be put in
+   */
+  private static int slot(long[] keys, long key) {
+    int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+    while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private static class TokenDictionary {
+    private final ConcurrentMap<String, Integer> tokenIds = Maps.newConcurrentMap();
+    private volatile String[] tokens = new String[64];
+    private int size;
+
+    int find(String token) {
+      Integer id = tokenIds.get(token);
+      return id == null ? 0 : id;
+    }
+
+    boolean hasRoom() {
+      return size < MAX_TOKEN_ID;
+    }
+
+    int findOrAdd(String token) {
+      int id = find(token);
+      if (id != 0) {
+        return id;
+      }
+      id = ++size;
+      String[] current = tokens;
+      if (id >= current.length) {
+        current = Arrays.copyOf(current, current.length * 2);
+      }
+      current[id] = token;
+      // published before the id, so the token of a found id is always there
+      tokens = current;
+      tokenIds.put(token, id);
+      return id;
+    }
+
+    String get(int id) {
+      return tokens[id];
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Preloads the most recently released namespaces into the config caches on startup, see
+ * {@link BizConfig#isConfigServiceWarmUpEnabled()}.
+ * <p>
+ * The warm up runs in the background, during which the config service reports unhealthy, so it is
+ * not picked by the clients until the namespaces they are most likely to ask for are cached.
+ * </p>
+ */
+@Component
+public class ConfigServiceWarmUpManager implements InitializingBean, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigServiceWarmUpManager.class);
+  private static final long NOT_WARMED_UP = -1;
+
+  private final BizConfig bizConfig;
+  private final ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+  private final ConfigService configService;
+
+  private ExecutorService executorService;
+  private volatile long warmedUpTimeInMillis = NOT_WARMED_UP;
+
+  public ConfigServiceWarmUpManager(final BizConfig bizConfig,
+      final ReleaseMessageServiceWithCache releaseMessageServiceWithCache,
+      final ConfigService configService) {
+    this.bizConfig = bizConfig;
+    this.releaseMessageServiceWithCache = releaseMessageServiceWithCache;
+    this.configService = configService;
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    // there is no cache to warm up otherwise
+    if (!bizConfig.isConfigServiceWarmUpEnabled() || !bizConfig.isConfigServiceCacheEnabled()) {
+      warmedUpTimeInMillis = System.currentTimeMillis();
+      return;
+    }
+    executorService = Executors.newSingleThreadExecutor(
+        ApolloThreadFactory.create("ConfigServiceWarmUpManager", true));
+    executorService.submit(this::warmUp);
+  }
+
+  @Override
+  public void destroy() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  public boolean isWarmedUp() {
+    return warmedUpTimeInMillis != NOT_WARMED_UP;
+  }
+
+  /**
+   * @return the milliseconds since the warm up finished, or -1 if it is still in progress
+   */
+  public long getMillisSinceWarmedUp() {
+    long warmedUpTime = warmedUpTimeInMillis;
+    return warmedUpTime == NOT_WARMED_UP ? NOT_WARMED_UP
+        : Math.max(0, System.currentTimeMillis() - warmedUpTime);
+  }
+
+  void warmUp() {
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigServiceWarmUp", "warmUp");
+    long deadline = System.nanoTime()
+        + TimeUnit.SECONDS.toNanos(bizConfig.configServiceWarmUpTimeoutInSecond());
+    int warmedUp = 0;
+    try {
+      List<ReleaseMessage> releaseMessages =
+          releaseMessageServiceWithCache.findAllLatestReleaseMessages();
+      // the namespaces released recently are the ones most likely to be asked for
+      releaseMessages.sort(Comparator.comparingLong(ReleaseMessage::getId).reversed());
+      int limit = Math.min(releaseMessages.size(), bizConfig.configServiceWarmUpNamespaces());
+
+      for (int i = 0; i < limit; i++) {
+        if (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()) {
+          logger.warn("Config service warm up stopped after {} of {} namespaces", warmedUp,
+              limit);
+          break;
+        }
+        if (warmUp(releaseMessages.get(i).getMessage())) {
+          warmedUp++;
+        }
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Config service warm up failed", ex);
+    } finally {
+      transaction.complete();
+      // never keeps the config service unhealthy because of the warm up
+      warmedUpTimeInMillis = System.currentTimeMillis();
+    }
+    logger.info("Config service warmed up with {} namespaces", warmedUp);
+  }
+
+  private boolean warmUp(String message) {
+    List<String> namespaceInfo = ReleaseMessageKeyGenerator.messageToList(message);
+    if (namespaceInfo == null || namespaceInfo.size() != 3) {
+      return false;
+    }
+    String appId = namespaceInfo.get(0);
+    try {
+      // the default cluster is searched as well if the namespace is not released in the cluster
+      configService.loadConfig(appId, null, null, appId, namespaceInfo.get(1),
+          namespaceInfo.get(2), null, null);
+      return true;
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.warn("Warm up namespace {} failed", message, ex);
+      return false;
+    }
+  }
+}
@@ -21,61 +21,54 @@ import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshot;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
 import com.ctrip.framework.apollo.tracer.Tracer;
-import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * The latest release message of each message, loaded from the database on startup and then kept
+ * up to date by the release message scanner, which continues from where the load ends, see
+ * {@link #getMaxIdScanned()}, so the release messages are only read by the scanner on each node.
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
-public class ReleaseMessageServiceWithCache
-    implements ReleaseMessageListener, InitializingBean, DisposableBean {
+public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, InitializingBean {
   private static final Logger logger =
       LoggerFactory.getLogger(ReleaseMessageServiceWithCache.class);
+  // the whole table is loaded on startup, in fewer round trips
+  private static final int BULK_LOAD_BATCH_SIZE = 5000;
   private final ReleaseMessageRepository releaseMessageRepository;
   private final BizConfig bizConfig;
-
-  private int scanInterval;
-  private TimeUnit scanIntervalTimeUnit;
+  private final ConfigServiceSnapshotStore snapshotStore;
 
   private volatile long maxIdScanned;
 
-  private ConcurrentMap<String, ReleaseMessage> releaseMessageCache;
-
-  private AtomicBoolean doScan;
-  private ExecutorService executorService;
+  private CompactReleaseMessageStore releaseMessageCache;
 
   public ReleaseMessageServiceWithCache(final ReleaseMessageRepository releaseMessageRepository,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig, final ConfigServiceSnapshotStore snapshotStore) {
     this.releaseMessageRepository = releaseMessageRepository;
     this.bizConfig = bizConfig;
+    this.snapshotStore = snapshotStore;
     initialize();
   }
 
   private void initialize() {
-    releaseMessageCache = Maps.newConcurrentMap();
-    doScan = new AtomicBoolean(true);
-    executorService = Executors.newSingleThreadExecutor(
-        ApolloThreadFactory.create("ReleaseMessageServiceWithCache", true));
+    maxIdScanned = 0;
+    releaseMessageCache = new CompactReleaseMessageStore();
   }
 
   public ReleaseMessage findLatestReleaseMessageForMessages(Set<String> messages) {
@@ -83,17 +76,17 @@ public class ReleaseMessageServiceWithCache
       return null;
     }
 
-    long maxReleaseMessageId = 0;
-    ReleaseMessage result = null;
+    long maxReleaseMessageId = CompactReleaseMessageStore.NOT_FOUND;
+    String result = null;
     for (String message : messages) {
-      ReleaseMessage releaseMessage = releaseMessageCache.get(message);
-      if (releaseMessage != null && releaseMessage.getId() > maxReleaseMessageId) {
-        maxReleaseMessageId = releaseMessage.getId();
-        result = releaseMessage;
+      long releaseMessageId = releaseMessageCache.get(message);
+      if (releaseMessageId > maxReleaseMessageId) {
+        maxReleaseMessageId = releaseMessageId;
+        result = message;
       }
     }
 
-    return result;
+    return result == null ? null : assembleReleaseMessage(result, maxReleaseMessageId);
   }
 
   public List<ReleaseMessage> findLatestReleaseMessagesGroupByMessages(Set<String> messages) {
@@ -103,19 +96,36 @@ public class ReleaseMessageServiceWithCache
     List<ReleaseMessage> releaseMessages = Lists.newArrayList();
 
     for (String message : messages) {
-      ReleaseMessage releaseMessage = releaseMessageCache.get(message);
-      if (releaseMessage != null) {
-        releaseMessages.add(releaseMessage);
+      long releaseMessageId = releaseMessageCache.get(message);
+      if (releaseMessageId != CompactReleaseMessageStore.NOT_FOUND) {
+        releaseMessages.add(assembleReleaseMessage(message, releaseMessageId));
       }
     }
 
     return releaseMessages;
   }
 
+  /**
+   * @return the latest release message of each message
+   */
+  public List<ReleaseMessage> findAllLatestReleaseMessages() {
+    List<ReleaseMessage> releaseMessages =
+        Lists.newArrayListWithCapacity(releaseMessageCache.size());
+    releaseMessageCache.forEach((message, releaseMessageId) -> releaseMessages
+        .add(assembleReleaseMessage(message, releaseMessageId)));
+    return releaseMessages;
+  }
+
+  /**
+   * @return the max release message id cached, all the messages till which are cached except
+   *     those committed late with smaller ids, which are delivered by the scanner afterwards
+   */
+  public long getMaxIdScanned() {
+    return maxIdScanned;
+  }
+
   @Override
   public void handleMessage(ReleaseMessage message, String channel) {
-    // Could stop once the ReleaseMessageScanner starts to work
-    doScan.set(false);
     logger.info("message received - channel: {}, message: {}", channel, message);
 
     String content = message.getMessage();
@@ -124,85 +134,79 @@ public class ReleaseMessageServiceWithCache
       return;
     }
 
-    long gap = message.getId() - maxIdScanned;
-    if (gap == 1) {
-      mergeReleaseMessage(message);
-    } else if (gap > 1) {
-      // gap found!
-      loadReleaseMessages(maxIdScanned);
-    }
+    // the scanner delivers all the messages after the ones loaded, including those committed late
+    mergeReleaseMessage(content, message.getId());
   }
 
   @Override
   public void afterPropertiesSet() throws Exception {
-    populateDataBaseInterval();
+    // only the messages after the local snapshot need to be loaded
+    boolean restored = restoreFromSnapshot();
     // block the startup process until load finished
-    // this should happen before ReleaseMessageScanner due to autowire
-    loadReleaseMessages(0);
-
-    executorService.submit(() -> {
-      while (doScan.get() && !Thread.currentThread().isInterrupted()) {
-        Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageServiceWithCache",
-            "scanNewReleaseMessages");
-        try {
-          loadReleaseMessages(maxIdScanned);
-          transaction.setStatus(Transaction.SUCCESS);
-        } catch (Throwable ex) {
-          transaction.setStatus(ex);
-          logger.error("Scan new release messages failed", ex);
-        } finally {
-          transaction.complete();
-        }
-        try {
-          scanIntervalTimeUnit.sleep(scanInterval);
-        } catch (InterruptedException e) {
-          // ignore
-        }
+    // this should happen before ReleaseMessageScanner due to autowire, which continues from here
+    try {
+      bulkLoadReleaseMessages(maxIdScanned);
+    } catch (RuntimeException ex) {
+      if (!restored || !bizConfig.isConfigServiceSnapshotServeOnDatabaseFailure()) {
+        throw ex;
       }
-    });
+      Tracer.logError(ex);
+      logger.error("Load release messages failed, serving those in the snapshot", ex);
+    }
   }
 
-  @Override
-  public void destroy() {
-    doScan.set(false);
-    if (executorService != null) {
-      executorService.shutdownNow();
+  private void mergeReleaseMessage(ReleaseMessage releaseMessage) {
+    mergeReleaseMessage(releaseMessage.getMessage(), releaseMessage.getId());
+  }
+
+  private synchronized void mergeReleaseMessage(String message, long releaseMessageId) {
+    releaseMessageCache.putIfNewer(message, releaseMessageId);
+    if (releaseMessageId > maxIdScanned) {
+      maxIdScanned = releaseMessageId;
     }
   }
 
-  private synchronized void mergeReleaseMessage(ReleaseMessage releaseMessage) {
-    ReleaseMessage old = releaseMessageCache.get(releaseMessage.getMessage());
-    if (old == null || releaseMessage.getId() > old.getId()) {
-      releaseMessageCache.put(releaseMessage.getMessage(), releaseMessage);
-      maxIdScanned = releaseMessage.getId();
+  private ReleaseMessage assembleReleaseMessage(String message, long releaseMessageId) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(releaseMessageId);
+    return releaseMessage;
+  }
+
+  private boolean restoreFromSnapshot() {
+    ConfigServiceSnapshot snapshot = snapshotStore.getSnapshot();
+    if (snapshot == null) {
+      return false;
     }
+    snapshot.getReleaseMessages().forEach(this::mergeReleaseMessage);
+    // the snapshot may also have some messages after its max id, which are loaded again
+    maxIdScanned = snapshot.getMaxReleaseMessageId();
+    logger.info("Restored {} release messages from snapshot with max id {}",
+        releaseMessageCache.size(), maxIdScanned);
+    return true;
   }
 
-  private void loadReleaseMessages(long startId) {
+  private void bulkLoadReleaseMessages(long startId) {
+    PageRequest page = PageRequest.of(0, BULK_LOAD_BATCH_SIZE);
+    long loaded = 0;
     boolean hasMore = true;
     while (hasMore && !Thread.currentThread().isInterrupted()) {
-      // current batch is 500
-      List<ReleaseMessage> releaseMessages =
-          releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(startId);
-      if (CollectionUtils.isEmpty(releaseMessages)) {
+      List<Object[]> rows = releaseMessageRepository.findIdAndMessageByIdGreaterThan(startId, page);
+      if (CollectionUtils.isEmpty(rows)) {
         break;
       }
-      releaseMessages.forEach(this::mergeReleaseMessage);
-      int scanned = releaseMessages.size();
-      startId = releaseMessages.get(scanned - 1).getId();
-      hasMore = scanned == 500;
-      logger.info("Loaded {} release messages with startId {}", scanned, startId);
+      for (Object[] row : rows) {
+        startId = (Long) row[0];
+        mergeReleaseMessage((String) row[1], startId);
+      }
+      loaded += rows.size();
+      hasMore = rows.size() == BULK_LOAD_BATCH_SIZE;
     }
-  }
-
-  private void populateDataBaseInterval() {
-    scanInterval = bizConfig.releaseMessageCacheScanInterval();
-    scanIntervalTimeUnit = bizConfig.releaseMessageCacheScanIntervalTimeUnit();
+    logger.info("Loaded {} release messages till id {}, {} messages cached", loaded, startId,
+        releaseMessageCache.size());
   }
 
   // only for test use
   private void reset() throws Exception {
-    executorService.shutdownNow();
     initialize();
     afterPropertiesSet();
   }
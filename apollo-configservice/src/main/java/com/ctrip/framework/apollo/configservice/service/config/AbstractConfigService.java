@@ -18,11 +18,16 @@ package com.ctrip.framework.apollo.configservice.service.config;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -30,6 +35,10 @@ import java.util.Objects;
  */
 public abstract class AbstractConfigService implements ConfigService {
 
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  // cluster names are never empty
+  private static final String NO_RELEASE_CLUSTER = "";
+
   private final GrayReleaseRulesHolder grayReleaseRulesHolder;
 
   protected AbstractConfigService(final GrayReleaseRulesHolder grayReleaseRulesHolder) {
@@ -40,28 +49,99 @@ public abstract class AbstractConfigService implements ConfigService {
   public Release loadConfig(String clientAppId, String clientIp, String clientLabel,
       String configAppId, String configClusterName, String configNamespace, String dataCenter,
       ApolloNotificationMessages clientMessages) {
-    // load from specified cluster first
-    if (!Objects.equals(ConfigConsts.CLUSTER_NAME_DEFAULT, configClusterName)) {
-      Release clusterRelease = findRelease(clientAppId, clientIp, clientLabel, configAppId,
-          configClusterName, configNamespace, clientMessages);
+    List<String> clusters = assembleClustersToSearch(configClusterName, dataCenter);
+    Map<String, String> resolvedClusters = findResolvedClusters(configAppId, configNamespace);
+    String resolvedClusterKey = null;
+
+    if (resolvedClusters != null) {
+      resolvedClusterKey = STRING_JOINER.join(configAppId, configClusterName, configNamespace,
+          Strings.nullToEmpty(dataCenter));
+      String resolvedCluster = resolvedClusters.get(resolvedClusterKey);
+      if (resolvedCluster != null && canSkipClustersBefore(resolvedCluster, clusters, clientAppId,
+          clientIp, clientLabel, configAppId, configNamespace, clientMessages)) {
+        if (NO_RELEASE_CLUSTER.equals(resolvedCluster)) {
+          return null;
+        }
+        Release release = findRelease(clientAppId, clientIp, clientLabel, configAppId,
+            resolvedCluster, configNamespace, clientMessages);
+        if (Objects.nonNull(release)) {
+          return release;
+        }
+      }
+    }
 
-      if (Objects.nonNull(clusterRelease)) {
-        return clusterRelease;
+    for (String cluster : clusters) {
+      Release release = findRelease(clientAppId, clientIp, clientLabel, configAppId, cluster,
+          configNamespace, clientMessages);
+      if (Objects.nonNull(release)) {
+        if (resolvedClusters != null) {
+          resolvedClusters.put(resolvedClusterKey, cluster);
+        }
+        return release;
       }
     }
 
+    if (resolvedClusters != null) {
+      resolvedClusters.put(resolvedClusterKey, NO_RELEASE_CLUSTER);
+    }
+    return null;
+  }
+
+  /**
+   * The clusters to search in order: the specified cluster, the data center and the default one.
+   */
+  private List<String> assembleClustersToSearch(String configClusterName, String dataCenter) {
+    List<String> clusters = Lists.newArrayListWithCapacity(3);
+    // load from specified cluster first
+    if (!Objects.equals(ConfigConsts.CLUSTER_NAME_DEFAULT, configClusterName)) {
+      clusters.add(configClusterName);
+    }
     // try to load via data center
     if (!Strings.isNullOrEmpty(dataCenter) && !Objects.equals(dataCenter, configClusterName)) {
-      Release dataCenterRelease = findRelease(clientAppId, clientIp, clientLabel, configAppId,
-          dataCenter, configNamespace, clientMessages);
-      if (Objects.nonNull(dataCenterRelease)) {
-        return dataCenterRelease;
+      clusters.add(dataCenter);
+    }
+    // fallback to default release
+    clusters.add(ConfigConsts.CLUSTER_NAME_DEFAULT);
+    return clusters;
+  }
+
+  /**
+   * The clusters before the resolved one have no release, but they are still searched if the
+   * client has gray release rules there or is notified of releases there which this instance may
+   * not have received yet.
+   */
+  private boolean canSkipClustersBefore(String resolvedCluster, List<String> clusters,
+      String clientAppId, String clientIp, String clientLabel, String configAppId,
+      String configNamespace, ApolloNotificationMessages clientMessages) {
+    for (String cluster : clusters) {
+      if (cluster.equals(resolvedCluster)) {
+        return true;
+      }
+      if (grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(clientAppId, clientIp,
+          clientLabel, configAppId, cluster, configNamespace) != null) {
+        return false;
+      }
+      if (clientMessages != null && clientMessages.has(
+          ReleaseMessageKeyGenerator.generate(configAppId, cluster, configNamespace))) {
+        return false;
       }
     }
+    // either no cluster has release or the resolved cluster is not searched any more
+    return NO_RELEASE_CLUSTER.equals(resolvedCluster);
+  }
 
-    // fallback to default release
-    return findRelease(clientAppId, clientIp, clientLabel, configAppId,
-        ConfigConsts.CLUSTER_NAME_DEFAULT, configNamespace, clientMessages);
+  /**
+   * Find the clusters the searches of the namespace were resolved to, keyed by the requested app
+   * id, cluster, namespace and data center.
+   * <p>
+   * The returned map is dropped as a whole once any cluster of the namespace is released, so the
+   * searches which started before that could only update a map no longer in use.
+   * </p>
+   *
+   * @return the resolved clusters to read and update, or null if they are not cached
+   */
+  protected Map<String, String> findResolvedClusters(String configAppId, String configNamespace) {
+    return null;
   }
 
   /**
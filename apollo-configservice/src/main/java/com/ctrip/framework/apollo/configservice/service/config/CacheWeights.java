@@ -0,0 +1,56 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import java.util.Map;
+
+/**
+ * Rough estimates of the heap taken by the cached values, used by the weighers of the config
+ * caches which are bounded by size in bytes.
+ */
+final class CacheWeights {
+  // rough overhead of a map entry or a small object holding strings, with the string headers
+  static final int ENTRY_OVERHEAD_IN_BYTES = 96;
+
+  private CacheWeights() {
+  }
+
+  /**
+   * @return the estimated bytes taken by the characters of the string, which are stored in UTF-16
+   */
+  static long ofString(String value) {
+    return value == null ? 0 : 2L * value.length();
+  }
+
+  /**
+   * @return the estimated bytes taken by the entries of the configurations
+   */
+  static long ofConfigurations(Map<String, String> configurations) {
+    long weight = (long) configurations.size() * ENTRY_OVERHEAD_IN_BYTES;
+    for (Map.Entry<String, String> entry : configurations.entrySet()) {
+      weight += ofString(entry.getKey()) + ofString(entry.getValue());
+    }
+    return weight;
+  }
+
+  /**
+   * @return the estimated bytes capped to fit a guava weight
+   */
+  static int toWeight(long estimatedBytes) {
+    return (int) Math.min(Integer.MAX_VALUE, estimatedBytes);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A release held by {@link ConfigServiceWithCache}, either as is or with its configurations moved
+ * off heap into a direct buffer, in which case a copy of the release is assembled on each read.
+ */
+class CachedRelease {
+  // rough size of the release entity apart from its configurations
+  private static final int RELEASE_OVERHEAD_IN_BYTES = 512;
+
+  private final Release release;
+  private final ByteBuffer configurations;
+  private final int weight;
+
+  private CachedRelease(Release release, ByteBuffer configurations, int weight) {
+    this.release = release;
+    this.configurations = configurations;
+    this.weight = weight;
+  }
+
+  static CachedRelease onHeap(Release release) {
+    return new CachedRelease(release, null, CacheWeights.toWeight(
+        RELEASE_OVERHEAD_IN_BYTES + CacheWeights.ofString(release.getConfigurations())));
+  }
+
+  static CachedRelease offHeap(Release release) {
+    if (release.getConfigurations() == null) {
+      return onHeap(release);
+    }
+    byte[] bytes = release.getConfigurations().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer configurations = ByteBuffer.allocateDirect(bytes.length);
+    configurations.put(bytes).flip();
+    Release template = copy(release);
+    template.setConfigurations(null);
+    return new CachedRelease(template, configurations,
+        CacheWeights.toWeight((long) RELEASE_OVERHEAD_IN_BYTES + bytes.length));
+  }
+
+  Release getRelease() {
+    if (configurations == null) {
+      return release;
+    }
+    byte[] bytes = new byte[configurations.capacity()];
+    // read through a duplicate so concurrent reads do not share the position
+    configurations.duplicate().get(bytes);
+    Release copy = copy(release);
+    copy.setConfigurations(new String(bytes, StandardCharsets.UTF_8));
+    return copy;
+  }
+
+  /**
+   * @return the estimated memory taken, on or off heap
+   */
+  int getWeight() {
+    return weight;
+  }
+
+  int getOffHeapBytes() {
+    return configurations == null ? 0 : configurations.capacity();
+  }
+
+  private static Release copy(Release release) {
+    Release copy = new Release();
+    copy.setId(release.getId());
+    copy.setReleaseKey(release.getReleaseKey());
+    copy.setName(release.getName());
+    copy.setAppId(release.getAppId());
+    copy.setClusterName(release.getClusterName());
+    copy.setNamespaceName(release.getNamespaceName());
+    copy.setConfigurations(release.getConfigurations());
+    copy.setComment(release.getComment());
+    copy.setAbandoned(release.isAbandoned());
+    copy.setDeleted(release.isDeleted());
+    copy.setDataChangeCreatedBy(release.getDataChangeCreatedBy());
+    copy.setDataChangeCreatedTime(release.getDataChangeCreatedTime());
+    copy.setDataChangeLastModifiedBy(release.getDataChangeLastModifiedBy());
+    copy.setDataChangeLastModifiedTime(release.getDataChangeLastModifiedTime());
+    return copy;
+  }
+}
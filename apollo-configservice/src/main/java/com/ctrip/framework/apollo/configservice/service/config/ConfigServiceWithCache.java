@@ -18,27 +18,41 @@ package com.ctrip.framework.apollo.configservice.service.config;
 
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshot;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ReleaseSnapshot;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -48,49 +62,102 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
 
 import jakarta.annotation.PostConstruct;
 import org.springframework.util.CollectionUtils;
 
 /**
  * config service with guava cache
+ * <p>
+ * The caches holding releases are bounded by the estimated memory of the releases, see
+ * {@link BizConfig#getConfigServiceCacheMaxSizeInBytes()}, and may keep the configurations of the
+ * releases off heap, see {@link BizConfig#isConfigServiceCacheOffHeapEnabled()}.
+ * </p>
+ * <p>
+ * Entries of the latest releases are refreshed in place when released, with at most one reload
+ * per key at a time, so the previous entry keeps being served until the new one is swapped in.
+ * The entries released are only marked outdated when the release messages are handled, and then
+ * refreshed by {@link #getConfigCacheRefresher()} off the notification path, while the requests
+ * for an outdated entry before that reload it themselves or wait for the reload in flight.
+ * </p>
  *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class ConfigServiceWithCache extends AbstractConfigService {
   private static final Logger logger = LoggerFactory.getLogger(ConfigServiceWithCache.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
   private static final long DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES = 60;// 1 hour
-  private static final String TRACER_EVENT_CACHE_INVALIDATE = "ConfigCache.Invalidate";
+  private static final String TRACER_EVENT_CACHE_REFRESH = "ConfigCache.Refresh";
   private static final String TRACER_EVENT_CACHE_LOAD = "ConfigCache.LoadFromDB";
   private static final String TRACER_EVENT_CACHE_LOAD_ID = "ConfigCache.LoadFromDBById";
+  private static final String TRACER_EVENT_CACHE_LOAD_SNAPSHOT = "ConfigCache.LoadFromSnapshot";
   private static final String TRACER_EVENT_CACHE_GET = "ConfigCache.Get";
   private static final String TRACER_EVENT_CACHE_GET_ID = "ConfigCache.GetById";
   private static final String TRACER_EVENT_CACHE_LOAD_RELEASE_KEY =
       "ConfigCache.LoadFromDBByReleaseKey";
+  // rough size of a release key entry apart from the key
+  private static final int RELEASE_KEY_ENTRY_OVERHEAD_IN_BYTES = 64;
+  // the clusters and data centers of the clients are arbitrary, so the searches resolved for a
+  // namespace are capped, and weighed as if full of entries of this rough size
+  static final int MAX_RESOLVED_CLUSTERS_PER_NAMESPACE = 16;
+  private static final int RESOLVED_CLUSTER_ENTRY_IN_BYTES = 256;
+  private static final RemovalCause[] EVICTION_CAUSES =
+      {RemovalCause.COLLECTED, RemovalCause.EXPIRED, RemovalCause.SIZE};
 
   private final ReleaseService releaseService;
   private final ReleaseMessageService releaseMessageService;
   private final BizConfig bizConfig;
   private final MeterRegistry meterRegistry;
+  private final ConfigServiceSnapshotStore snapshotStore;
 
   private LoadingCache<String, ConfigCacheEntry> configCache;
 
-  private LoadingCache<Long, Optional<Release>> configIdCache;
+  private LoadingCache<Long, Optional<CachedRelease>> configIdCache;
 
   private LoadingCache<String, Optional<Long>> releaseKeyCache;
 
+  // the clusters the searches of a namespace resolved to, keyed by the app id and namespace, at
+  // most MAX_RESOLVED_CLUSTERS_PER_NAMESPACE searches each
+  private Cache<String, ConcurrentMap<String, String>> resolvedClustersCache;
+
+  // the in flight reloads of the config cache
+  private final ConcurrentMap<String, CompletableFuture<ConfigCacheEntry>> configCacheReloads =
+      new ConcurrentHashMap<>();
+
+  // the notification ids of the entries released but not refreshed yet, dropped along with the
+  // entries so it is bounded by the config cache
+  private final ConcurrentMap<String, Long> outdatedEntries = new ConcurrentHashMap<>();
+
+  private final ReleaseMessageListener configCacheRefresher = new ConfigCacheRefresher();
+
+  // the configurations of the releases cached off heap, counted as the entries are weighed in and
+  // removed
+  private final AtomicLong offHeapBytes = new AtomicLong();
+
   private ConfigCacheEntry nullConfigCacheEntry;
 
+  private Timer configCacheLoadTimer;
+
+  private Timer configCacheReloadTimer;
+
   public ConfigServiceWithCache(final ReleaseService releaseService,
       final ReleaseMessageService releaseMessageService,
       final GrayReleaseRulesHolder grayReleaseRulesHolder, final BizConfig bizConfig,
-      final MeterRegistry meterRegistry) {
+      final MeterRegistry meterRegistry, final ConfigServiceSnapshotStore snapshotStore) {
     super(grayReleaseRulesHolder);
     this.releaseService = releaseService;
     this.releaseMessageService = releaseMessageService;
     this.bizConfig = bizConfig;
     this.meterRegistry = meterRegistry;
+    this.snapshotStore = snapshotStore;
     nullConfigCacheEntry = new ConfigCacheEntry(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER, null);
   }
 
@@ -99,12 +166,13 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     buildConfigCache();
     buildConfigIdCache();
     buildReleaseKeyCache();
+    buildResolvedClustersCache();
   }
 
   @Override
   protected Release findActiveOne(long id, ApolloNotificationMessages clientMessages) {
     Tracer.logEvent(TRACER_EVENT_CACHE_GET_ID, String.valueOf(id));
-    return configIdCache.getUnchecked(id).orElse(null);
+    return configIdCache.getUnchecked(id).map(CachedRelease::getRelease).orElse(null);
   }
 
   @Override
@@ -121,20 +189,103 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
     ConfigCacheEntry cacheEntry = configCache.getUnchecked(cacheKey);
 
+    Long outdatedNotificationId = outdatedEntries.get(cacheKey);
+
     // cache is out-dated
     if (clientMessages != null && clientMessages.has(messageKey)
         && clientMessages.get(messageKey) > cacheEntry.getNotificationId()) {
-      // invalidate the cache and try to load from db again
-      invalidate(cacheKey);
-      cacheEntry = configCache.getUnchecked(cacheKey);
+      // load from db again, or wait for the reload in flight
+      cacheEntry = refresh(cacheKey, clientMessages.get(messageKey));
+    } else if (outdatedNotificationId != null
+        && outdatedNotificationId > cacheEntry.getNotificationId()) {
+      // the clients may have been notified of the release before it is refreshed
+      try {
+        cacheEntry = refresh(cacheKey, outdatedNotificationId);
+      } catch (Throwable ex) {
+        // keep serving the previous entry
+        Tracer.logError(ex);
+      }
     }
 
     return cacheEntry.getRelease();
   }
 
-  private void invalidate(String key) {
-    configCache.invalidate(key);
-    Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, key);
+  @Override
+  protected Map<String, String> findResolvedClusters(String configAppId,
+      String configNamespace) {
+    try {
+      return resolvedClustersCache.get(assembleResolvedClustersKey(configAppId, configNamespace),
+          () -> CacheBuilder.newBuilder().concurrencyLevel(1)
+              .maximumSize(MAX_RESOLVED_CLUSTERS_PER_NAMESPACE).<String, String>build().asMap());
+    } catch (ExecutionException ex) {
+      // never happens as the loader does not throw
+      return null;
+    }
+  }
+
+  /**
+   * Reload the entry of the key and swap it in, while the previous entry is still served to the
+   * requests not asking for newer releases. Callers refreshing the same key at the same time share
+   * one reload.
+   * <p>
+   * A reload in flight may have read the database before the release of the notification id was
+   * committed, so if the entry it loaded is older than that, the caller reloads again, or waits
+   * for a reload started after the one joined is done.
+   * </p>
+   */
+  private ConfigCacheEntry refresh(String key, long notificationId) {
+    CompletableFuture<ConfigCacheEntry> inFlight = configCacheReloads.get(key);
+    if (inFlight != null) {
+      ConfigCacheEntry entry = join(key, inFlight);
+      if (entry.getNotificationId() >= notificationId) {
+        return entry;
+      }
+    }
+    return reloadOrJoin(key);
+  }
+
+  private ConfigCacheEntry reloadOrJoin(String key) {
+    CompletableFuture<ConfigCacheEntry> reload = new CompletableFuture<>();
+    CompletableFuture<ConfigCacheEntry> inFlight = configCacheReloads.putIfAbsent(key, reload);
+    if (inFlight != null) {
+      return join(key, inFlight);
+    }
+
+    Tracer.logEvent(TRACER_EVENT_CACHE_REFRESH, key);
+    // the releases marked afterwards may not be loaded
+    Long outdatedNotificationId = outdatedEntries.get(key);
+    try {
+      ConfigCacheEntry loaded = configCacheReloadTimer.record(() -> loadConfigCacheEntry(key));
+      // never replace a newer entry, e.g. loaded by a concurrent cache miss
+      ConfigCacheEntry entry = configCache.asMap().merge(key, loaded,
+          (current, candidate) -> candidate.getNotificationId() >= current.getNotificationId()
+              ? candidate : current);
+      if (outdatedNotificationId != null) {
+        outdatedEntries.remove(key, outdatedNotificationId);
+      }
+      // removed before completed, so the callers finding the reload stale never join it again
+      configCacheReloads.remove(key, reload);
+      reload.complete(entry);
+      return entry;
+    } catch (Throwable ex) {
+      // an entry not cached is loaded from the database on next access anyway, and nothing else
+      // would drop its mark
+      if (outdatedNotificationId != null && !configCache.asMap().containsKey(key)) {
+        outdatedEntries.remove(key, outdatedNotificationId);
+      }
+      configCacheReloads.remove(key, reload);
+      reload.completeExceptionally(ex);
+      throw ex;
+    }
+  }
+
+  private ConfigCacheEntry join(String key, CompletableFuture<ConfigCacheEntry> reload) {
+    try {
+      return reload.join();
+    } catch (CompletionException ex) {
+      throw new IllegalStateException(String.format("Refresh config cache %s failed", key),
+          ex.getCause());
+    }
   }
 
   @Override
@@ -145,20 +296,78 @@ public class ConfigServiceWithCache extends AbstractConfigService {
       return;
     }
 
-    try {
-      String messageKey = message.getMessage();
-      if (bizConfig.isConfigServiceCacheKeyIgnoreCase()) {
-        messageKey = messageKey.toLowerCase();
+    // cheap enough for the notification path, the entry is refreshed by the config cache
+    // refresher, or the requests for it before that
+    outdatedEntries.merge(toCacheKey(message.getMessage()), message.getId(), Math::max);
+
+    // dropped after the config cache is marked outdated, so the searches resolved afterwards see
+    // the latest releases
+    List<String> namespaceInfo = ReleaseMessageKeyGenerator.messageToList(message.getMessage());
+    if (!CollectionUtils.isEmpty(namespaceInfo) && namespaceInfo.size() == 3) {
+      resolvedClustersCache.invalidate(
+          assembleResolvedClustersKey(namespaceInfo.get(0), namespaceInfo.get(2)));
+    }
+  }
+
+  /**
+   * @return the listener refreshing the config cache entries released, which loads from the
+   *     database, so it is expected to run off the notification path
+   */
+  public ReleaseMessageListener getConfigCacheRefresher() {
+    return configCacheRefresher;
+  }
+
+  private String toCacheKey(String messageKey) {
+    return bizConfig.isConfigServiceCacheKeyIgnoreCase() ? messageKey.toLowerCase() : messageKey;
+  }
+
+  /**
+   * @return the latest releases cached, to be saved in the local snapshot
+   */
+  public List<ReleaseSnapshot> findLatestReleases() {
+    List<ReleaseSnapshot> releases = Lists.newArrayList();
+    for (Map.Entry<String, ConfigCacheEntry> entry : configCache.asMap().entrySet()) {
+      Release release = entry.getValue().getRelease();
+      if (release == null) {
+        continue;
       }
-      invalidate(messageKey);
+      // keep the case of the release message if the cache key is lower cased
+      String messageKey = entry.getKey();
+      if (release.getAppId() != null && release.getClusterName() != null
+          && release.getNamespaceName() != null) {
+        String releaseKey = ReleaseMessageKeyGenerator.generate(release.getAppId(),
+            release.getClusterName(), release.getNamespaceName());
+        if (releaseKey.equalsIgnoreCase(messageKey)) {
+          messageKey = releaseKey;
+        }
+      }
+      releases.add(new ReleaseSnapshot(messageKey, entry.getValue().getNotificationId(), release));
+    }
+    return releases;
+  }
 
-      // warm up the cache
-      configCache.getUnchecked(messageKey);
-    } catch (Throwable ex) {
-      // ignore
+  /**
+   * Put the latest releases restored from the local snapshot into the cache, unless newer ones are
+   * cached already.
+   */
+  public void restoreLatestReleases(Collection<ReleaseSnapshot> releases) {
+    for (ReleaseSnapshot release : releases) {
+      String cacheKey = release.getMessageKey();
+      if (bizConfig.isConfigServiceCacheKeyIgnoreCase()) {
+        cacheKey = cacheKey.toLowerCase();
+      }
+      configCache.asMap().merge(cacheKey,
+          new ConfigCacheEntry(release.getNotificationId(), cacheRelease(release.getRelease())),
+          (current, candidate) -> candidate.getNotificationId() > current.getNotificationId()
+              ? candidate : current);
     }
   }
 
+  private String assembleResolvedClustersKey(String appId, String namespaceName) {
+    // release messages may differ in case from the requests
+    return STRING_JOINER.join(appId, namespaceName).toLowerCase();
+  }
+
   @Override
   public Map<String, Release> findReleasesByReleaseKeys(Set<String> releaseKeys) {
     try {
@@ -175,7 +384,7 @@ public class ConfigServiceWithCache extends AbstractConfigService {
         return Collections.emptyMap();
       }
 
-      Map<Long, Optional<Release>> releasesMap =
+      Map<Long, Optional<CachedRelease>> releasesMap =
           configIdCache.getAll(validReleaseKeyIdMap.values());
       if (CollectionUtils.isEmpty(releasesMap)) {
         return Collections.emptyMap();
@@ -183,8 +392,8 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
       Map<String, Release> releases = new HashMap<>();
       for (Map.Entry<String, Long> entry : validReleaseKeyIdMap.entrySet()) {
-        Optional<Release> releaseOpt = releasesMap.get(entry.getValue());
-        releaseOpt.ifPresent(release -> releases.put(entry.getKey(), release));
+        Optional<CachedRelease> releaseOpt = releasesMap.get(entry.getValue());
+        releaseOpt.ifPresent(release -> releases.put(entry.getKey(), release.getRelease()));
       }
 
       return releases.isEmpty() ? Collections.emptyMap() : ImmutableMap.copyOf(releases);
@@ -196,61 +405,92 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   }
 
   private void buildConfigCache() {
-    CacheBuilder configCacheBuilder = CacheBuilder.newBuilder()
-        .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES);
-    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
-      configCacheBuilder.recordStats();
-    }
+    CacheBuilder<String, ConfigCacheEntry> configCacheBuilder = newWeightedCacheBuilder(
+        "config_cache", (key, entry) -> entry.getWeight(), ConfigCacheEntry::getOffHeapBytes,
+        notification -> {
+          // the entry removed is loaded from the database again on next access
+          if (notification.getCause() != RemovalCause.REPLACED) {
+            outdatedEntries.remove(notification.getKey());
+          }
+        });
+
+    configCacheLoadTimer = Timer.builder("apollo.config-cache.load").tag("mode", "load")
+        .description("Time taken to load the latest releases into the config cache")
+        .register(meterRegistry);
+    configCacheReloadTimer = Timer.builder("apollo.config-cache.load").tag("mode", "refresh")
+        .description("Time taken to load the latest releases into the config cache")
+        .register(meterRegistry);
 
     configCache = configCacheBuilder.build(new CacheLoader<String, ConfigCacheEntry>() {
       @Override
       public ConfigCacheEntry load(String key) throws Exception {
-        List<String> namespaceInfo = ReleaseMessageKeyGenerator.messageToList(key);
-        if (CollectionUtils.isEmpty(namespaceInfo)) {
-          Tracer.logError(
-              new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
-          return nullConfigCacheEntry;
-        }
+        return configCacheLoadTimer.record(() -> loadConfigCacheEntry(key));
+      }
+    });
 
-        Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
-        try {
-          ReleaseMessage latestReleaseMessage =
-              releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(key));
-          Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0),
-              namespaceInfo.get(1), namespaceInfo.get(2));
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      GuavaCacheMetrics.monitor(meterRegistry, configCache, "config_cache");
+    }
 
-          transaction.setStatus(Transaction.SUCCESS);
+  }
 
-          long notificationId =
-              latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER
-                  : latestReleaseMessage.getId();
+  private ConfigCacheEntry loadConfigCacheEntry(String key) {
+    List<String> namespaceInfo = ReleaseMessageKeyGenerator.messageToList(key);
+    if (CollectionUtils.isEmpty(namespaceInfo)) {
+      Tracer.logError(
+          new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
+      return nullConfigCacheEntry;
+    }
 
-          if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
-            return nullConfigCacheEntry;
-          }
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
+    try {
+      ReleaseMessage latestReleaseMessage =
+          releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(key));
+      Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0),
+          namespaceInfo.get(1), namespaceInfo.get(2));
 
-          return new ConfigCacheEntry(notificationId, latestRelease);
-        } catch (Throwable ex) {
-          transaction.setStatus(ex);
-          throw ex;
-        } finally {
-          transaction.complete();
-        }
+      transaction.setStatus(Transaction.SUCCESS);
+
+      long notificationId =
+          latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER
+              : latestReleaseMessage.getId();
+
+      if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
+        return nullConfigCacheEntry;
       }
-    });
 
-    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
-      GuavaCacheMetrics.monitor(meterRegistry, configCache, "config_cache");
+      return new ConfigCacheEntry(notificationId,
+          latestRelease == null ? null : cacheRelease(latestRelease));
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      ConfigCacheEntry snapshotEntry = loadConfigCacheEntryFromSnapshot(key);
+      if (snapshotEntry != null) {
+        return snapshotEntry;
+      }
+      throw ex;
+    } finally {
+      transaction.complete();
     }
+  }
 
+  private ConfigCacheEntry loadConfigCacheEntryFromSnapshot(String key) {
+    if (!bizConfig.isConfigServiceSnapshotServeOnDatabaseFailure()) {
+      return null;
+    }
+    ConfigServiceSnapshot snapshot = snapshotStore.getSnapshot();
+    ReleaseSnapshot release = snapshot == null ? null : snapshot.findRelease(key);
+    if (release == null) {
+      return null;
+    }
+    Tracer.logEvent(TRACER_EVENT_CACHE_LOAD_SNAPSHOT, key);
+    return new ConfigCacheEntry(release.getNotificationId(), cacheRelease(release.getRelease()));
   }
 
   private void buildReleaseKeyCache() {
-    CacheBuilder releaseKeyCacheBuilder = CacheBuilder.newBuilder()
-        .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES);
-    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
-      releaseKeyCacheBuilder.recordStats();
-    }
+    CacheBuilder<String, Optional<Long>> releaseKeyCacheBuilder = newWeightedCacheBuilder(
+        "releaseKey_cache", (key, id) -> CacheWeights.toWeight(
+            CacheWeights.ofString(key) + RELEASE_KEY_ENTRY_OVERHEAD_IN_BYTES), id -> 0,
+        notification -> {});
     releaseKeyCache = releaseKeyCacheBuilder.build(new CacheLoader<String, Optional<Long>>() {
       @Override
       public Optional<Long> load(String key) throws Exception {
@@ -279,14 +519,13 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   }
 
   private void buildConfigIdCache() {
-    CacheBuilder configIdCacheBuilder = CacheBuilder.newBuilder()
-        .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES);
-    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
-      configIdCacheBuilder.recordStats();
-    }
-    configIdCache = configIdCacheBuilder.build(new CacheLoader<Long, Optional<Release>>() {
+    CacheBuilder<Long, Optional<CachedRelease>> configIdCacheBuilder = newWeightedCacheBuilder(
+        "config_id_cache",
+        (key, release) -> release.map(CachedRelease::getWeight).orElse(Long.BYTES),
+        release -> release.map(CachedRelease::getOffHeapBytes).orElse(0), notification -> {});
+    configIdCache = configIdCacheBuilder.build(new CacheLoader<Long, Optional<CachedRelease>>() {
       @Override
-      public Optional<Release> load(Long key) throws Exception {
+      public Optional<CachedRelease> load(Long key) throws Exception {
         Transaction transaction =
             Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD_ID, String.valueOf(key));
         try {
@@ -294,7 +533,7 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
           transaction.setStatus(Transaction.SUCCESS);
 
-          return Optional.ofNullable(release);
+          return Optional.ofNullable(release).map(ConfigServiceWithCache.this::cacheRelease);
         } catch (Throwable ex) {
           transaction.setStatus(ex);
           throw ex;
@@ -307,13 +546,116 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     if (bizConfig.isConfigServiceCacheStatsEnabled()) {
       GuavaCacheMetrics.monitor(meterRegistry, configIdCache, "config_id_cache");
     }
+
+    if (bizConfig.isConfigServiceCacheOffHeapEnabled()) {
+      Gauge.builder("apollo.config-cache.off-heap.bytes", offHeapBytes, AtomicLong::get)
+          .description("Configurations of cached releases stored off heap")
+          .register(meterRegistry);
+    }
+  }
+
+  /**
+   * Create a cache builder bounded by the estimated memory of the entries, which counts the
+   * entries evicted by size or expiry, and the configurations of the entries held off heap.
+   * <p>
+   * The weigher is called once for each value stored, so the off heap bytes are added there, and
+   * subtracted once the value is removed for whatever cause, including being replaced.
+   * </p>
+   */
+  private <K, V> CacheBuilder<K, V> newWeightedCacheBuilder(String cacheName,
+      Weigher<K, V> weigher, ToIntFunction<V> offHeapBytesOf,
+      RemovalListener<K, V> removalListener) {
+    Map<RemovalCause, Counter> evictionCounters = new EnumMap<>(RemovalCause.class);
+    for (RemovalCause cause : EVICTION_CAUSES) {
+      evictionCounters.put(cause, Counter.builder("apollo.config-cache.evictions")
+          .tag("cache", cacheName).tag("cause", cause.name())
+          .description("Entries evicted from the config service caches")
+          .register(meterRegistry));
+    }
+    boolean offHeapEnabled = bizConfig.isConfigServiceCacheOffHeapEnabled();
+    CacheBuilder<K, V> cacheBuilder = CacheBuilder.newBuilder()
+        .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .removalListener((RemovalListener<K, V>) notification -> {
+          Counter evictionCounter = evictionCounters.get(notification.getCause());
+          if (evictionCounter != null) {
+            evictionCounter.increment();
+          }
+          if (offHeapEnabled && notification.getValue() != null) {
+            offHeapBytes.addAndGet(-offHeapBytesOf.applyAsInt(notification.getValue()));
+          }
+          removalListener.onRemoval(notification);
+        });
+    long maxSizeInBytes = bizConfig.getConfigServiceCacheMaxSizeInBytes();
+    if (offHeapEnabled) {
+      cacheBuilder.weigher((Weigher<K, V>) (key, value) -> {
+        offHeapBytes.addAndGet(offHeapBytesOf.applyAsInt(value));
+        return weigher.weigh(key, value);
+      }).maximumWeight(maxSizeInBytes > 0 ? maxSizeInBytes : Long.MAX_VALUE);
+    } else if (maxSizeInBytes > 0) {
+      cacheBuilder.weigher(weigher).maximumWeight(maxSizeInBytes);
+    }
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      cacheBuilder.recordStats();
+    }
+    return cacheBuilder;
+  }
+
+  private CachedRelease cacheRelease(Release release) {
+    return bizConfig.isConfigServiceCacheOffHeapEnabled() ? CachedRelease.offHeap(release)
+        : CachedRelease.onHeap(release);
+  }
+
+  long offHeapBytes() {
+    return offHeapBytes.get();
+  }
+
+  private void buildResolvedClustersCache() {
+    // weighed when stored, so the resolved clusters added afterwards are weighed in advance
+    CacheBuilder<String, ConcurrentMap<String, String>> resolvedClustersCacheBuilder =
+        newWeightedCacheBuilder("resolved_clusters_cache",
+            (Weigher<String, ConcurrentMap<String, String>>) (key, value) ->
+                CacheWeights.toWeight(CacheWeights.ENTRY_OVERHEAD_IN_BYTES
+                    + CacheWeights.ofString(key)
+                    + (long) MAX_RESOLVED_CLUSTERS_PER_NAMESPACE * RESOLVED_CLUSTER_ENTRY_IN_BYTES),
+            value -> 0, notification -> {});
+    resolvedClustersCache = resolvedClustersCacheBuilder.build();
+
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      GuavaCacheMetrics.monitor(meterRegistry, resolvedClustersCache, "resolved_clusters_cache");
+    }
+  }
+
+  private class ConfigCacheRefresher implements ReleaseMessageListener {
+
+    @Override
+    public void handleMessage(ReleaseMessage message, String channel) {
+      if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel)
+          || Strings.isNullOrEmpty(message.getMessage())) {
+        return;
+      }
+      String cacheKey = toCacheKey(message.getMessage());
+      ConfigCacheEntry cacheEntry = configCache.getIfPresent(cacheKey);
+      if (cacheEntry != null && cacheEntry.getNotificationId() >= message.getId()) {
+        // refreshed by the requests already
+        outdatedEntries.computeIfPresent(cacheKey, (key, outdatedNotificationId) ->
+            outdatedNotificationId > cacheEntry.getNotificationId() ? outdatedNotificationId
+                : null);
+        return;
+      }
+      try {
+        // warm up the cache, the previous entry is kept if the reload fails
+        refresh(cacheKey, message.getId());
+      } catch (Throwable ex) {
+        // ignore
+      }
+    }
   }
 
   private static class ConfigCacheEntry {
     private final long notificationId;
-    private final Release release;
+    private final CachedRelease release;
 
-    public ConfigCacheEntry(long notificationId, Release release) {
+    public ConfigCacheEntry(long notificationId, CachedRelease release) {
       this.notificationId = notificationId;
       this.release = release;
     }
@@ -323,7 +665,15 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     }
 
     public Release getRelease() {
-      return release;
+      return release == null ? null : release.getRelease();
+    }
+
+    public int getWeight() {
+      return release == null ? Long.BYTES : release.getWeight();
+    }
+
+    public int getOffHeapBytes() {
+      return release == null ? 0 : release.getOffHeapBytes();
     }
   }
 }
@@ -16,25 +16,74 @@
  */
 package com.ctrip.framework.apollo.configservice.service.config;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.service.ReleaseService;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Configuration changes between releases for incremental sync, weighted by the estimated memory
+ * they take, see {@link BizConfig#getIncrementalChangeCacheMaxSizeInBytes()}.
+ * <p>
+ * When a namespace is released, the changes from its previous active releases are computed in
+ * advance, see {@link BizConfig#getIncrementalChangePrecomputeReleases()}, so that the clients
+ * coming back for the new release are served by a lookup. The changes of the releases merged from
+ * multiple namespaces are still computed on demand.
+ * </p>
+ */
 public class DefaultIncrementalSyncService implements IncrementalSyncService {
-
+  private static final Logger logger = LoggerFactory.getLogger(DefaultIncrementalSyncService.class);
+  private static final long CONFIGURATION_CHANGE_EXPIRE_AFTER_ACCESS = 10; // 10 minutes
+  // rough overhead of the list holding the changes
+  private static final int LIST_OVERHEAD_IN_BYTES = 64;
+
+  private final BizConfig bizConfig;
+  private final ReleaseService releaseService;
+  private final ReleaseConfigurationCache releaseConfigurationCache;
   private final Cache<ReleaseKeyPair, List<ConfigurationChange>> configurationChangeCache;
 
-  public DefaultIncrementalSyncService() {
-    configurationChangeCache =
-        CacheBuilder.newBuilder().maximumSize(1000).expireAfterWrite(10, TimeUnit.MINUTES).build();
+  public DefaultIncrementalSyncService(final BizConfig bizConfig,
+      final ReleaseService releaseService,
+      final ReleaseConfigurationCache releaseConfigurationCache,
+      final MeterRegistry meterRegistry) {
+    this.bizConfig = bizConfig;
+    this.releaseService = releaseService;
+    this.releaseConfigurationCache = releaseConfigurationCache;
+    CacheBuilder<ReleaseKeyPair, List<ConfigurationChange>> cacheBuilder = CacheBuilder
+        .newBuilder()
+        .expireAfterAccess(CONFIGURATION_CHANGE_EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .weigher((Weigher<ReleaseKeyPair, List<ConfigurationChange>>) (key, value) -> weigh(value))
+        .maximumWeight(bizConfig.getIncrementalChangeCacheMaxSizeInBytes());
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      cacheBuilder.recordStats();
+    }
+    configurationChangeCache = cacheBuilder.build();
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      GuavaCacheMetrics.monitor(meterRegistry, configurationChangeCache,
+          "incremental_sync_configuration_change_cache");
+    }
   }
 
   @Override
@@ -56,6 +105,63 @@ public class DefaultIncrementalSyncService implements IncrementalSyncService {
     return computed;
   }
 
+  @Override
+  public List<ConfigurationChange> findConfigurationChanges(String latestMergedReleaseKey,
+      String clientSideReleaseKey) {
+    return configurationChangeCache
+        .getIfPresent(new ReleaseKeyPair(clientSideReleaseKey, latestMergedReleaseKey));
+  }
+
+  /**
+   * Compute the changes from the previous active releases of the released namespace.
+   */
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String content = message.getMessage();
+    int precomputeReleases = bizConfig.getIncrementalChangePrecomputeReleases();
+    if (!bizConfig.isConfigServiceIncrementalChangeEnabled() || precomputeReleases <= 0
+        || !Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+    List<String> keys = ReleaseMessageKeyGenerator.messageToList(content);
+    if (CollectionUtils.isEmpty(keys) || keys.size() != 3) {
+      return;
+    }
+
+    try {
+      List<Release> releases = releaseService.findActiveReleases(keys.get(0), keys.get(1),
+          keys.get(2), PageRequest.of(0, precomputeReleases + 1));
+      if (releases.size() < 2) {
+        return;
+      }
+      Release latestRelease = releases.get(0);
+      Map<String, String> latestConfigurations =
+          releaseConfigurationCache.getConfigurations(latestRelease);
+      for (Release previousRelease : releases.subList(1, releases.size())) {
+        ReleaseKeyPair key =
+            new ReleaseKeyPair(previousRelease.getReleaseKey(), latestRelease.getReleaseKey());
+        if (configurationChangeCache.getIfPresent(key) != null) {
+          continue;
+        }
+        configurationChangeCache.put(key, calcConfigurationChanges(latestConfigurations,
+            releaseConfigurationCache.getConfigurations(previousRelease)));
+      }
+      Tracer.logEvent("Apollo.IncrementalSync.Precomputed", content);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.warn("Failed to compute configuration changes for release message {}", content, ex);
+    }
+  }
+
+  private static int weigh(List<ConfigurationChange> changes) {
+    long weight = LIST_OVERHEAD_IN_BYTES;
+    for (ConfigurationChange change : changes) {
+      weight += CacheWeights.ENTRY_OVERHEAD_IN_BYTES + CacheWeights.ofString(change.getKey())
+          + CacheWeights.ofString(change.getNewValue());
+    }
+    return CacheWeights.toWeight(weight);
+  }
+
   private List<ConfigurationChange> calcConfigurationChanges(
       Map<String, String> latestReleaseConfigurations,
       Map<String, String> clientSideConfigurations) {
@@ -16,14 +16,31 @@
  */
 package com.ctrip.framework.apollo.configservice.service.config;
 
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import java.util.List;
 import java.util.Map;
 
-public interface IncrementalSyncService {
+public interface IncrementalSyncService extends ReleaseMessageListener {
 
   List<ConfigurationChange> getConfigurationChanges(String latestMergedReleaseKey,
       Map<String, String> latestReleaseConfigurations, String clientSideReleaseKey,
       Map<String, String> clientSideConfigurations);
 
+  /**
+   * Find the configuration changes already computed, so that the releases of the client side
+   * need not be loaded and merged again.
+   *
+   * @return the configuration changes, or null if they are not computed yet
+   */
+  default List<ConfigurationChange> findConfigurationChanges(String latestMergedReleaseKey,
+      String clientSideReleaseKey) {
+    return null;
+  }
+
+  @Override
+  default void handleMessage(ReleaseMessage message, String channel) {
+  }
+
 }
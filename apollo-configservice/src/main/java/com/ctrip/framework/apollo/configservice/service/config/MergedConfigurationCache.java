@@ -0,0 +1,169 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configurations merged from multiple releases, e.g. the app's own release of a public namespace
+ * and the public release, keyed by the ordered release keys.
+ * <p>
+ * The merged configurations never change for the same release keys, entries are evicted by the
+ * estimated memory they take, see {@link BizConfig#getMergedConfigurationCacheMaxSizeInBytes()},
+ * and dropped as soon as any of their releases is superseded by a new release message.
+ * </p>
+ */
+@Component
+public class MergedConfigurationCache implements ReleaseMessageListener {
+  private final ReleaseConfigurationCache releaseConfigurationCache;
+  private final Cache<String, MergedConfigurations> cache;
+  // merged release keys by the watch key of each release merged
+  private final ConcurrentMap<String, Set<String>> mergedReleaseKeysByWatchKey =
+      new ConcurrentHashMap<>();
+
+  public MergedConfigurationCache(final BizConfig bizConfig,
+      final ReleaseConfigurationCache releaseConfigurationCache,
+      final MeterRegistry meterRegistry) {
+    this.releaseConfigurationCache = releaseConfigurationCache;
+    CacheBuilder<String, MergedConfigurations> cacheBuilder = CacheBuilder.newBuilder()
+        .weigher((Weigher<String, MergedConfigurations>) (key, value) -> value.weight)
+        .maximumWeight(bizConfig.getMergedConfigurationCacheMaxSizeInBytes())
+        .removalListener((RemovalListener<String, MergedConfigurations>) notification ->
+            unindex(notification.getKey(), notification.getValue()));
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      cacheBuilder.recordStats();
+    }
+    cache = cacheBuilder.build();
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      GuavaCacheMetrics.monitor(meterRegistry, cache, "merged_configuration_cache");
+    }
+  }
+
+  /**
+   * Merge configurations of releases, release in lower index override those in higher index.
+   *
+   * @return the unmodifiable merged configurations
+   */
+  public Map<String, String> getConfigurations(List<Release> releases) {
+    if (releases.size() == 1) {
+      return releaseConfigurationCache.getConfigurations(releases.get(0));
+    }
+    if (!releases.stream().allMatch(ReleaseConfigurationCache::isPersisted)) {
+      return merge(releases);
+    }
+    String mergedReleaseKey = releases.stream().map(Release::getReleaseKey)
+        .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
+    MergedConfigurations merged = cache.getIfPresent(mergedReleaseKey);
+    if (merged != null) {
+      return merged.configurations;
+    }
+    merged = assembleMergedConfigurations(releases);
+    MergedConfigurations existing = cache.asMap().putIfAbsent(mergedReleaseKey, merged);
+    if (existing != null) {
+      return existing.configurations;
+    }
+    for (String watchKey : merged.watchKeys) {
+      mergedReleaseKeysByWatchKey
+          .computeIfAbsent(watchKey, key -> ConcurrentHashMap.newKeySet()).add(mergedReleaseKey);
+    }
+    return merged.configurations;
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel)
+        || Strings.isNullOrEmpty(message.getMessage())) {
+      return;
+    }
+    Set<String> mergedReleaseKeys =
+        mergedReleaseKeysByWatchKey.remove(message.getMessage().toLowerCase());
+    if (mergedReleaseKeys != null) {
+      cache.invalidateAll(mergedReleaseKeys);
+    }
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private Map<String, String> merge(List<Release> releases) {
+    Map<String, String> result = Maps.newLinkedHashMap();
+    for (Release release : Lists.reverse(releases)) {
+      result.putAll(releaseConfigurationCache.getConfigurations(release));
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  private MergedConfigurations assembleMergedConfigurations(List<Release> releases) {
+    Map<String, String> configurations = merge(releases);
+    List<String> watchKeys = Lists.newArrayListWithCapacity(releases.size());
+    for (Release release : releases) {
+      watchKeys.add(ReleaseMessageKeyGenerator.generate(release.getAppId(),
+          release.getClusterName(), release.getNamespaceName()).toLowerCase());
+    }
+    return new MergedConfigurations(configurations, watchKeys,
+        CacheWeights.toWeight(CacheWeights.ofConfigurations(configurations)));
+  }
+
+  private void unindex(String mergedReleaseKey, MergedConfigurations merged) {
+    if (mergedReleaseKey == null || merged == null) {
+      return;
+    }
+    for (String watchKey : merged.watchKeys) {
+      mergedReleaseKeysByWatchKey.computeIfPresent(watchKey, (key, mergedReleaseKeys) -> {
+        mergedReleaseKeys.remove(mergedReleaseKey);
+        return mergedReleaseKeys.isEmpty() ? null : mergedReleaseKeys;
+      });
+    }
+  }
+
+  private static class MergedConfigurations {
+    private final Map<String, String> configurations;
+    private final List<String> watchKeys;
+    private final int weight;
+
+    MergedConfigurations(Map<String, String> configurations, List<String> watchKeys,
+        int weight) {
+      this.configurations = configurations;
+      this.watchKeys = watchKeys;
+      this.weight = weight;
+    }
+  }
+}
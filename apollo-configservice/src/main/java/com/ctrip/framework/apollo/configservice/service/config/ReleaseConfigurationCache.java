@@ -0,0 +1,107 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/**
+ * Parsed configurations of releases keyed by release id.
+ * <p>
+ * The configurations of a release never change once published, so each release is parsed once
+ * and shared as an unmodifiable map by all requests, until it is evicted by the estimated memory
+ * it takes, see {@link BizConfig#getReleaseConfigurationCacheMaxSizeInBytes()}.
+ * </p>
+ */
+@Component
+public class ReleaseConfigurationCache {
+  private static final Type configurationTypeReference =
+      new TypeToken<Map<String, String>>() {}.getType();
+  private static final Gson GSON = new Gson();
+
+  private final Cache<Long, ParsedConfigurations> cache;
+
+  public ReleaseConfigurationCache(final BizConfig bizConfig, final MeterRegistry meterRegistry) {
+    CacheBuilder<Long, ParsedConfigurations> cacheBuilder = CacheBuilder.newBuilder()
+        .weigher((Weigher<Long, ParsedConfigurations>) (id, value) -> value.weight)
+        .maximumWeight(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes());
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      cacheBuilder.recordStats();
+    }
+    cache = cacheBuilder.build();
+    if (bizConfig.isConfigServiceCacheStatsEnabled()) {
+      GuavaCacheMetrics.monitor(meterRegistry, cache, "release_configuration_cache");
+    }
+  }
+
+  /**
+   * @return the unmodifiable configurations of the release, in the order of the release
+   */
+  public Map<String, String> getConfigurations(Release release) {
+    if (!isPersisted(release)) {
+      return parse(release.getConfigurations()).configurations;
+    }
+    ParsedConfigurations parsed = cache.getIfPresent(release.getId());
+    if (parsed == null) {
+      parsed = parse(release.getConfigurations());
+      cache.put(release.getId(), parsed);
+    }
+    return parsed.configurations;
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  /**
+   * Releases not persisted yet, e.g. those assembled for gray rules, have no identity to be cached
+   * by.
+   */
+  static boolean isPersisted(Release release) {
+    return release.getId() > 0;
+  }
+
+  private ParsedConfigurations parse(String configurations) {
+    Map<String, String> parsed = GSON.fromJson(configurations, configurationTypeReference);
+    if (parsed == null) {
+      return new ParsedConfigurations(Collections.emptyMap(), 0);
+    }
+    return new ParsedConfigurations(Collections.unmodifiableMap(parsed),
+        CacheWeights.toWeight(CacheWeights.ofConfigurations(parsed)));
+  }
+
+  private static class ParsedConfigurations {
+    private final Map<String, String> configurations;
+    private final int weight;
+
+    ParsedConfigurations(Map<String, String> configurations, int weight) {
+      this.configurations = configurations;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.snapshot;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read only view of a snapshot file mapped into memory.
+ * <p>
+ * The file starts with a header holding the max release message id covered, followed by the
+ * release messages, the app namespaces and the latest releases. Strings are stored as their
+ * UTF-8 length and bytes, so the releases can be indexed by their message keys without being
+ * decoded, and are only decoded when asked for.
+ * </p>
+ */
+public class ConfigServiceSnapshot {
+  private static final int MAGIC = 0x41504F53;
+  private static final int VERSION = 1;
+  private static final int NULL_LENGTH = -1;
+  private static final long NULL_TIME = -1;
+
+  private final ByteBuffer buffer;
+  private final long maxReleaseMessageId;
+  private final int releaseMessagesOffset;
+  private final int appNamespacesOffset;
+  // lower cased message key -> offset of the release
+  private final Map<String, Integer> releaseOffsets;
+
+  /**
+   * @throws IllegalArgumentException if the content is not a valid snapshot
+   */
+  ConfigServiceSnapshot(ByteBuffer buffer) {
+    this.buffer = buffer;
+    ByteBuffer reader = buffer.duplicate();
+    try {
+      if (reader.getInt() != MAGIC || reader.getInt() != VERSION) {
+        throw new IllegalArgumentException("Unknown snapshot format");
+      }
+      maxReleaseMessageId = reader.getLong();
+
+      releaseMessagesOffset = reader.position();
+      int releaseMessages = reader.getInt();
+      for (int i = 0; i < releaseMessages; i++) {
+        readReleaseMessage(reader);
+      }
+
+      appNamespacesOffset = reader.position();
+      int appNamespaces = reader.getInt();
+      for (int i = 0; i < appNamespaces; i++) {
+        readAppNamespace(reader);
+      }
+
+      int releases = reader.getInt();
+      releaseOffsets = Maps.newHashMapWithExpectedSize(releases);
+      for (int i = 0; i < releases; i++) {
+        int offset = reader.position();
+        releaseOffsets.put(readString(reader).toLowerCase(), offset);
+        skipRelease(reader);
+      }
+    } catch (RuntimeException ex) {
+      // e.g. BufferUnderflowException of a truncated file
+      throw new IllegalArgumentException("Corrupted snapshot", ex);
+    }
+  }
+
+  public long getMaxReleaseMessageId() {
+    return maxReleaseMessageId;
+  }
+
+  public List<ReleaseMessage> getReleaseMessages() {
+    ByteBuffer reader = readerAt(releaseMessagesOffset);
+    int count = reader.getInt();
+    List<ReleaseMessage> releaseMessages = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      releaseMessages.add(readReleaseMessage(reader));
+    }
+    return releaseMessages;
+  }
+
+  public List<AppNamespace> getAppNamespaces() {
+    ByteBuffer reader = readerAt(appNamespacesOffset);
+    int count = reader.getInt();
+    List<AppNamespace> appNamespaces = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      appNamespaces.add(readAppNamespace(reader));
+    }
+    return appNamespaces;
+  }
+
+  public List<ReleaseSnapshot> getReleases() {
+    if (releaseOffsets.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<ReleaseSnapshot> releases = Lists.newArrayListWithCapacity(releaseOffsets.size());
+    for (Integer offset : releaseOffsets.values()) {
+      releases.add(readRelease(readerAt(offset)));
+    }
+    return releases;
+  }
+
+  /**
+   * @param messageKey appId+cluster+namespace, case insensitive
+   */
+  public ReleaseSnapshot findRelease(String messageKey) {
+    Integer offset = releaseOffsets.get(messageKey.toLowerCase());
+    return offset == null ? null : readRelease(readerAt(offset));
+  }
+
+  static void write(DataOutputStream out, long maxReleaseMessageId,
+      Collection<ReleaseMessage> releaseMessages, Collection<AppNamespace> appNamespaces,
+      Collection<ReleaseSnapshot> releases) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(maxReleaseMessageId);
+
+    out.writeInt(releaseMessages.size());
+    for (ReleaseMessage releaseMessage : releaseMessages) {
+      out.writeLong(releaseMessage.getId());
+      writeString(out, releaseMessage.getMessage());
+    }
+
+    out.writeInt(appNamespaces.size());
+    for (AppNamespace appNamespace : appNamespaces) {
+      out.writeLong(appNamespace.getId());
+      writeString(out, appNamespace.getAppId());
+      writeString(out, appNamespace.getName());
+      writeString(out, appNamespace.getFormat());
+      out.writeBoolean(appNamespace.isPublic());
+      writeString(out, appNamespace.getComment());
+      writeTime(out, appNamespace.getDataChangeCreatedTime());
+      writeTime(out, appNamespace.getDataChangeLastModifiedTime());
+    }
+
+    out.writeInt(releases.size());
+    for (ReleaseSnapshot releaseSnapshot : releases) {
+      Release release = releaseSnapshot.getRelease();
+      writeString(out, releaseSnapshot.getMessageKey());
+      out.writeLong(releaseSnapshot.getNotificationId());
+      out.writeLong(release.getId());
+      writeString(out, release.getReleaseKey());
+      writeString(out, release.getName());
+      writeString(out, release.getAppId());
+      writeString(out, release.getClusterName());
+      writeString(out, release.getNamespaceName());
+      writeString(out, release.getComment());
+      writeString(out, release.getConfigurations());
+      writeTime(out, release.getDataChangeCreatedTime());
+      writeTime(out, release.getDataChangeLastModifiedTime());
+    }
+  }
+
+  private ByteBuffer readerAt(int offset) {
+    ByteBuffer reader = buffer.duplicate();
+    reader.position(offset);
+    return reader;
+  }
+
+  private static ReleaseMessage readReleaseMessage(ByteBuffer reader) {
+    long id = reader.getLong();
+    ReleaseMessage releaseMessage = new ReleaseMessage(readString(reader));
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+
+  private static AppNamespace readAppNamespace(ByteBuffer reader) {
+    AppNamespace appNamespace = new AppNamespace();
+    appNamespace.setId(reader.getLong());
+    appNamespace.setAppId(readString(reader));
+    appNamespace.setName(readString(reader));
+    appNamespace.setFormat(readString(reader));
+    appNamespace.setPublic(reader.get() != 0);
+    appNamespace.setComment(readString(reader));
+    appNamespace.setDataChangeCreatedTime(readTime(reader));
+    appNamespace.setDataChangeLastModifiedTime(readTime(reader));
+    return appNamespace;
+  }
+
+  private static ReleaseSnapshot readRelease(ByteBuffer reader) {
+    String messageKey = readString(reader);
+    long notificationId = reader.getLong();
+    Release release = new Release();
+    release.setId(reader.getLong());
+    release.setReleaseKey(readString(reader));
+    release.setName(readString(reader));
+    release.setAppId(readString(reader));
+    release.setClusterName(readString(reader));
+    release.setNamespaceName(readString(reader));
+    release.setComment(readString(reader));
+    release.setConfigurations(readString(reader));
+    release.setDataChangeCreatedTime(readTime(reader));
+    release.setDataChangeLastModifiedTime(readTime(reader));
+    return new ReleaseSnapshot(messageKey, notificationId, release);
+  }
+
+  private static void skipRelease(ByteBuffer reader) {
+    // notification id and release id
+    reader.position(reader.position() + 2 * Long.BYTES);
+    // release key, name, app id, cluster, namespace, comment and configurations
+    for (int i = 0; i < 7; i++) {
+      skipString(reader);
+    }
+    // created and last modified time
+    reader.position(reader.position() + 2 * Long.BYTES);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(NULL_LENGTH);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer reader) {
+    int length = reader.getInt();
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    reader.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void skipString(ByteBuffer reader) {
+    int length = reader.getInt();
+    if (length != NULL_LENGTH) {
+      reader.position(reader.position() + length);
+    }
+  }
+
+  private static void writeTime(DataOutputStream out, Date time) throws IOException {
+    out.writeLong(time == null ? NULL_TIME : time.getTime());
+  }
+
+  private static Date readTime(ByteBuffer reader) {
+    long time = reader.getLong();
+    return time == NULL_TIME ? null : new Date(time);
+  }
+}
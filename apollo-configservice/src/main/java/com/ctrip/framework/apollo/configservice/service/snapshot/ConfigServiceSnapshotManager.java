@@ -0,0 +1,165 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.snapshot;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Restores the latest releases in the local snapshot into the config cache on startup, and saves
+ * the caches of the config service into the snapshot periodically.
+ * <p>
+ * The release messages and app namespaces are restored by their own caches, before which this
+ * bean is initialized, so a release is only restored if it is still the latest one of its
+ * namespace, i.e. no newer release message has been loaded from the database after the snapshot.
+ * </p>
+ */
+@Component
+public class ConfigServiceSnapshotManager implements InitializingBean, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigServiceSnapshotManager.class);
+
+  private final BizConfig bizConfig;
+  private final ConfigServiceSnapshotStore snapshotStore;
+  private final ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+  private final AppNamespaceServiceWithCache appNamespaceServiceWithCache;
+  private final ConfigService configService;
+  private final ObjectProvider<ReleaseMessageScanner> releaseMessageScanner;
+
+  private ScheduledExecutorService executorService;
+  private long lastSavedMaxReleaseMessageId = -1;
+  private int lastSavedAppNamespaces = -1;
+  private int lastSavedReleases = -1;
+
+  public ConfigServiceSnapshotManager(final BizConfig bizConfig,
+      final ConfigServiceSnapshotStore snapshotStore,
+      final ReleaseMessageServiceWithCache releaseMessageServiceWithCache,
+      final AppNamespaceServiceWithCache appNamespaceServiceWithCache,
+      final ConfigService configService,
+      final ObjectProvider<ReleaseMessageScanner> releaseMessageScanner) {
+    this.bizConfig = bizConfig;
+    this.snapshotStore = snapshotStore;
+    this.releaseMessageServiceWithCache = releaseMessageServiceWithCache;
+    this.appNamespaceServiceWithCache = appNamespaceServiceWithCache;
+    this.configService = configService;
+    this.releaseMessageScanner = releaseMessageScanner;
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    if (!bizConfig.isConfigServiceSnapshotEnabled()) {
+      return;
+    }
+    restoreLatestReleases();
+
+    int interval = bizConfig.configServiceSnapshotIntervalInSecond();
+    executorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("ConfigServiceSnapshotManager", true));
+    executorService.scheduleWithFixedDelay(this::saveSnapshot, interval, interval,
+        TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void destroy() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  void restoreLatestReleases() {
+    ConfigServiceSnapshot snapshot = snapshotStore.getSnapshot();
+    if (snapshot == null || !(configService instanceof ConfigServiceWithCache)) {
+      return;
+    }
+    List<ReleaseSnapshot> snapshotReleases = snapshot.getReleases();
+    List<ReleaseSnapshot> releases = Lists.newArrayList();
+    for (ReleaseSnapshot release : snapshotReleases) {
+      ReleaseMessage latestReleaseMessage = releaseMessageServiceWithCache
+          .findLatestReleaseMessageForMessages(Collections.singleton(release.getMessageKey()));
+      if (latestReleaseMessage != null
+          && latestReleaseMessage.getId() == release.getNotificationId()) {
+        releases.add(release);
+      }
+    }
+    ((ConfigServiceWithCache) configService).restoreLatestReleases(releases);
+    logger.info("Restored {} of {} releases from snapshot", releases.size(),
+        snapshotReleases.size());
+  }
+
+  void saveSnapshot() {
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigServiceSnapshot", "save");
+    try {
+      // read before the messages, so that all the messages till it are included
+      long maxReleaseMessageId = findMaxReleaseMessageIdCached();
+      List<ReleaseMessage> releaseMessages =
+          releaseMessageServiceWithCache.findAllLatestReleaseMessages();
+      List<AppNamespace> appNamespaces = appNamespaceServiceWithCache.findAll();
+      List<ReleaseSnapshot> releases = configService instanceof ConfigServiceWithCache
+          ? ((ConfigServiceWithCache) configService).findLatestReleases()
+          : Collections.emptyList();
+
+      if (maxReleaseMessageId == lastSavedMaxReleaseMessageId
+          && appNamespaces.size() == lastSavedAppNamespaces
+          && releases.size() == lastSavedReleases) {
+        transaction.setStatus(Transaction.SUCCESS);
+        return;
+      }
+
+      snapshotStore.save(maxReleaseMessageId, releaseMessages, appNamespaces, releases);
+      lastSavedMaxReleaseMessageId = maxReleaseMessageId;
+      lastSavedAppNamespaces = appNamespaces.size();
+      lastSavedReleases = releases.size();
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Save config service snapshot failed", ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  /**
+   * The messages committed late with smaller ids are not cached yet when the scanner is still
+   * waiting for them, so the snapshot only covers the messages till its delivered id, and those
+   * after are loaded again on restore.
+   */
+  private long findMaxReleaseMessageIdCached() {
+    long maxIdScanned = releaseMessageServiceWithCache.getMaxIdScanned();
+    ReleaseMessageScanner scanner = releaseMessageScanner.getIfAvailable();
+    return scanner == null ? maxIdScanned : Math.min(maxIdScanned, scanner.getMaxIdDelivered());
+  }
+}
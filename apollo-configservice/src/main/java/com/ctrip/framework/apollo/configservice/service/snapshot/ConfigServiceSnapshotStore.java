@@ -0,0 +1,119 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.snapshot;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores the snapshot of the config service caches in a local file, see
+ * {@link BizConfig#isConfigServiceSnapshotEnabled()}.
+ * <p>
+ * The file is replaced atomically on each save and mapped into memory on load, so the releases in
+ * it can be served without holding them on heap.
+ * </p>
+ */
+@Component
+public class ConfigServiceSnapshotStore {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigServiceSnapshotStore.class);
+  private static final String SNAPSHOT_FILE_NAME = "config-service.snapshot";
+
+  private final BizConfig bizConfig;
+  private final Object lock = new Object();
+
+  private volatile boolean loaded;
+  private volatile ConfigServiceSnapshot snapshot;
+
+  public ConfigServiceSnapshotStore(final BizConfig bizConfig) {
+    this.bizConfig = bizConfig;
+  }
+
+  /**
+   * @return the latest snapshot saved, or null if snapshot is disabled or there is no valid one
+   */
+  public ConfigServiceSnapshot getSnapshot() {
+    if (!bizConfig.isConfigServiceSnapshotEnabled()) {
+      return null;
+    }
+    if (!loaded) {
+      synchronized (lock) {
+        if (!loaded) {
+          snapshot = map(snapshotFile());
+          loaded = true;
+        }
+      }
+    }
+    return snapshot;
+  }
+
+  public void save(long maxReleaseMessageId, Collection<ReleaseMessage> releaseMessages,
+      Collection<AppNamespace> appNamespaces, Collection<ReleaseSnapshot> releases)
+      throws IOException {
+    Path snapshotFile = snapshotFile();
+    Files.createDirectories(snapshotFile.getParent());
+    Path tempFile = Files.createTempFile(snapshotFile.getParent(), SNAPSHOT_FILE_NAME, ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        ConfigServiceSnapshot.write(out, maxReleaseMessageId, releaseMessages, appNamespaces,
+            releases);
+      }
+      synchronized (lock) {
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        snapshot = map(snapshotFile);
+        loaded = true;
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private Path snapshotFile() {
+    return Paths.get(bizConfig.getConfigServiceSnapshotPath(), SNAPSHOT_FILE_NAME);
+  }
+
+  private ConfigServiceSnapshot map(Path snapshotFile) {
+    if (!Files.isRegularFile(snapshotFile)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+      // the mapping stays valid after the channel is closed or the file is replaced
+      return new ConfigServiceSnapshot(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.error("Load config service snapshot {} failed", snapshotFile, ex);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.snapshot;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+
+/**
+ * The latest release of a namespace together with the id of the release message it was loaded
+ * for.
+ */
+public class ReleaseSnapshot {
+  private final String messageKey;
+  private final long notificationId;
+  private final Release release;
+
+  public ReleaseSnapshot(String messageKey, long notificationId, Release release) {
+    this.messageKey = messageKey;
+    this.notificationId = notificationId;
+    this.release = release;
+  }
+
+  /**
+   * @return appId+cluster+namespace of the release
+   */
+  public String getMessageKey() {
+    return messageKey;
+  }
+
+  public long getNotificationId() {
+    return notificationId;
+  }
+
+  public Release getRelease() {
+    return release;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.base.Strings;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.Enumeration;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Conditional request support for the config responses, whose entity tag is the merged release
+ * key.
+ * <p>
+ * The tag is weak, as the same releases are served both plain and gzip compressed, which are
+ * semantically equivalent but not byte for byte identical, so a strong tag shared by them would
+ * let a cache serve a range of one encoding for the other.
+ * </p>
+ */
+public final class ConditionalRequestUtil {
+  private static final String WEAK_PREFIX = "W/";
+  // appended to the tag by proxies compressing the response, e.g. apache httpd mod_deflate
+  private static final String GZIP_SUFFIX = "-gzip";
+
+  private ConditionalRequestUtil() {
+  }
+
+  public static String toETag(String mergedReleaseKey) {
+    return WEAK_PREFIX + '"' + mergedReleaseKey + '"';
+  }
+
+  /**
+   * If-None-Match uses the weak comparison, so both the weak tag sent and its strong form match,
+   * with or without the gzip suffix appended by the proxies in between.
+   *
+   * @return whether the If-None-Match header matches the merged release key, it is checked on each
+   *         poll so the header is scanned in place
+   */
+  public static boolean isNotModified(HttpServletRequest request, String mergedReleaseKey) {
+    Enumeration<String> ifNoneMatches = request.getHeaders(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatches == null) {
+      return false;
+    }
+    while (ifNoneMatches.hasMoreElements()) {
+      if (matches(ifNoneMatches.nextElement(), mergedReleaseKey)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public static void writeCacheHeaders(HttpServletResponse response, String mergedReleaseKey,
+      String cacheControl) {
+    // set rather than add, as the response may pass through more than one controller
+    response.setHeader(HttpHeaders.ETAG, toETag(mergedReleaseKey));
+    if (!Strings.isNullOrEmpty(cacheControl)) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+  }
+
+  static boolean matches(String ifNoneMatch, String mergedReleaseKey) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    int length = ifNoneMatch.length();
+    int start = 0;
+    while (start < length) {
+      int end = ifNoneMatch.indexOf(',', start);
+      if (end < 0) {
+        end = length;
+      }
+      int tagStart = start;
+      int tagEnd = end;
+      while (tagStart < tagEnd && Character.isWhitespace(ifNoneMatch.charAt(tagStart))) {
+        tagStart++;
+      }
+      while (tagEnd > tagStart && Character.isWhitespace(ifNoneMatch.charAt(tagEnd - 1))) {
+        tagEnd--;
+      }
+      if (tagEnd - tagStart == 1 && ifNoneMatch.charAt(tagStart) == '*') {
+        return true;
+      }
+      if (ifNoneMatch.startsWith(WEAK_PREFIX, tagStart)) {
+        tagStart += WEAK_PREFIX.length();
+      }
+      if (matchesTag(ifNoneMatch, tagStart, tagEnd, mergedReleaseKey)) {
+        return true;
+      }
+      start = end + 1;
+    }
+    return false;
+  }
+
+  private static boolean matchesTag(String ifNoneMatch, int tagStart, int tagEnd,
+      String mergedReleaseKey) {
+    if (tagEnd - tagStart < mergedReleaseKey.length() + 2 || ifNoneMatch.charAt(tagStart) != '"'
+        || ifNoneMatch.charAt(tagEnd - 1) != '"'
+        || !ifNoneMatch.regionMatches(tagStart + 1, mergedReleaseKey, 0,
+            mergedReleaseKey.length())) {
+      return false;
+    }
+    int suffixLength = tagEnd - tagStart - mergedReleaseKey.length() - 2;
+    return suffixLength == 0 || (suffixLength == GZIP_SUFFIX.length() && ifNoneMatch
+        .regionMatches(tagStart + 1 + mergedReleaseKey.length(), GZIP_SUFFIX, 0, suffixLength));
+  }
+}
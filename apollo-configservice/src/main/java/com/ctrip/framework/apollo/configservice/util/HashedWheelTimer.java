@@ -0,0 +1,285 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed wheel timer for a large number of coarse-grained timeouts, such as long polling
+ * requests.
+ * <p>
+ * Scheduling and cancelling are O(1) and lock free: new and cancelled timeouts are queued and
+ * moved in or out of the wheel by a single worker thread, which advances one bucket per tick and
+ * runs the expired tasks. Tasks run on the worker thread, so they should be short.
+ * </p>
+ */
+public class HashedWheelTimer {
+  private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimer.class);
+  // bound the work done per tick in case of a scheduling storm
+  private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+  private final long tickDurationInNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Queue<WheelTimeout> timeoutsToAdd = new ConcurrentLinkedQueue<>();
+  private final Queue<WheelTimeout> timeoutsToCancel = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingTimeouts = new AtomicInteger();
+  private final long startTime;
+  private final Thread workerThread;
+  private volatile boolean stopped;
+  private long tick;
+
+  public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    if (tickDuration <= 0 || ticksPerWheel <= 0) {
+      throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+    }
+    tickDurationInNanos = unit.toNanos(tickDuration);
+    int wheelSize = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+    wheelSize = Math.max(wheelSize, 1);
+    wheel = new Bucket[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      wheel[i] = new Bucket();
+    }
+    mask = wheelSize - 1;
+    startTime = System.nanoTime();
+    workerThread = ApolloThreadFactory.create(name, true).newThread(this::work);
+    workerThread.start();
+  }
+
+  /**
+   * Schedule the task to run once after the given delay.
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    if (stopped) {
+      throw new IllegalStateException("Timer is stopped");
+    }
+    long deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+    WheelTimeout timeout = new WheelTimeout(task, deadline);
+    pendingTimeouts.incrementAndGet();
+    timeoutsToAdd.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * @return the number of timeouts that are neither expired nor cancelled
+   */
+  public int pendingTimeouts() {
+    return pendingTimeouts.get();
+  }
+
+  public void stop() {
+    stopped = true;
+    workerThread.interrupt();
+  }
+
+  private void work() {
+    while (!stopped) {
+      long deadline = waitForNextTick();
+      if (deadline < 0) {
+        continue;
+      }
+      removeCancelledTimeouts();
+      transferTimeoutsToBuckets();
+      wheel[(int) (tick & mask)].expireTimeouts(deadline);
+      tick++;
+    }
+  }
+
+  /**
+   * @return the deadline of the current tick relative to the start time, or -1 if interrupted
+   */
+  private long waitForNextTick() {
+    long deadline = tickDurationInNanos * (tick + 1);
+    while (true) {
+      long currentTime = System.nanoTime() - startTime;
+      long sleepTimeInNanos = deadline - currentTime;
+      if (sleepTimeInNanos <= 0) {
+        return currentTime;
+      }
+      try {
+        TimeUnit.NANOSECONDS.sleep(sleepTimeInNanos);
+      } catch (InterruptedException e) {
+        if (stopped) {
+          return -1;
+        }
+      }
+    }
+  }
+
+  private void removeCancelledTimeouts() {
+    WheelTimeout timeout;
+    while ((timeout = timeoutsToCancel.poll()) != null) {
+      if (timeout.bucket != null) {
+        timeout.bucket.remove(timeout);
+      }
+    }
+  }
+
+  private void transferTimeoutsToBuckets() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      WheelTimeout timeout = timeoutsToAdd.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.state != WheelTimeout.ST_INIT) {
+        continue;
+      }
+      long calculatedTick = timeout.deadline / tickDurationInNanos;
+      timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+      // schedule timeouts in the past to the current tick
+      long ticks = Math.max(calculatedTick, tick);
+      wheel[(int) (ticks & mask)].add(timeout);
+    }
+  }
+
+  /**
+   * Handle of a scheduled task.
+   */
+  public interface Timeout {
+
+    /**
+     * Cancel the task if it has not run yet.
+     *
+     * @return true if the task is cancelled by this call
+     */
+    boolean cancel();
+
+    boolean isExpired();
+
+    boolean isCancelled();
+  }
+
+  private final class WheelTimeout implements Timeout {
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+    private final Runnable task;
+    private final long deadline;
+    private volatile int state = ST_INIT;
+    // the fields below are only accessed by the worker thread
+    private long remainingRounds;
+    private Bucket bucket;
+    private WheelTimeout prev;
+    private WheelTimeout next;
+
+    WheelTimeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+        return false;
+      }
+      pendingTimeouts.decrementAndGet();
+      timeoutsToCancel.add(this);
+      return true;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return state == ST_EXPIRED;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return state == ST_CANCELLED;
+    }
+
+    void expire() {
+      if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+        return;
+      }
+      pendingTimeouts.decrementAndGet();
+      try {
+        task.run();
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.warn("Failed to run timeout task {}", task, ex);
+      }
+    }
+  }
+
+  /**
+   * Doubly linked list of timeouts, only accessed by the worker thread.
+   */
+  private static final class Bucket {
+    private WheelTimeout head;
+    private WheelTimeout tail;
+
+    void add(WheelTimeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    void expireTimeouts(long deadline) {
+      WheelTimeout timeout = head;
+      while (timeout != null) {
+        WheelTimeout next = timeout.next;
+        if (timeout.isCancelled()) {
+          remove(timeout);
+        } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+          remove(timeout);
+          timeout.expire();
+        } else if (timeout.remainingRounds > 0) {
+          timeout.remainingRounds--;
+        }
+        timeout = next;
+      }
+    }
+
+    void remove(WheelTimeout timeout) {
+      if (timeout.bucket != this) {
+        return;
+      }
+      WheelTimeout next = timeout.next;
+      if (timeout.prev != null) {
+        timeout.prev.next = next;
+      }
+      if (next != null) {
+        next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper.Outcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Expires long polling requests with one {@link HashedWheelTimer} instead of per request container
+ * timeouts.
+ * <p>
+ * Each request waits for {@link BizConfig#longPollingTimeoutInMilli()} shortened by a random
+ * jitter of up to {@link BizConfig#longPollingTimeoutJitterInMilli()}, so that clients which
+ * connected at the same time, e.g. after a restart, do not come back at the same time.
+ * </p>
+ * <p>
+ * The container timeout is kept as a backstop, a little later than the latest timeout of the
+ * wheel, see {@link #containerTimeoutInMilli()}.
+ * </p>
+ */
+@Component
+public class LongPollingTimeoutScheduler implements DisposableBean {
+  private static final long TICK_DURATION_IN_MILLI = 100;
+  private static final int TICKS_PER_WHEEL = 1024;
+  private static final long CONTAINER_TIMEOUT_MARGIN_IN_MILLI = TimeUnit.SECONDS.toMillis(10);
+
+  private final BizConfig bizConfig;
+  private final HashedWheelTimer timer;
+  private final Map<Outcome, Counter> completedCounters = new EnumMap<>(Outcome.class);
+
+  public LongPollingTimeoutScheduler(final BizConfig bizConfig,
+      final MeterRegistry meterRegistry) {
+    this.bizConfig = bizConfig;
+    timer = new HashedWheelTimer("LongPollingTimeoutScheduler", TICK_DURATION_IN_MILLI,
+        TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+
+    Gauge.builder("apollo.long-polling.timeout.pending", timer, HashedWheelTimer::pendingTimeouts)
+        .description("Long polling requests waiting for notification or timeout")
+        .register(meterRegistry);
+    for (Outcome outcome : Outcome.values()) {
+      completedCounters.put(outcome, Counter.builder("apollo.long-polling.completed")
+          .tag("outcome", outcome.name().toLowerCase(Locale.ROOT).replace('_', '-'))
+          .description("Long polling requests completed, by how they are completed")
+          .register(meterRegistry));
+    }
+  }
+
+  /**
+   * Schedule the expiry of the long polling request.
+   *
+   * @return the timeout, which should be cancelled via
+   *         {@link #cancel(HashedWheelTimer.Timeout, DeferredResultWrapper)} once the request
+   *         completes
+   */
+  public HashedWheelTimer.Timeout schedule(DeferredResultWrapper deferredResultWrapper) {
+    return timer.newTimeout(() -> {
+      if (deferredResultWrapper.expire()) {
+        completedCounters.get(Outcome.TIMEOUT).increment();
+      }
+    }, nextTimeoutInMilli(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Cancel the timeout of the completed request, which is counted by how it is completed unless
+   * it is expired by the wheel, see {@link DeferredResultWrapper#getOutcome()}.
+   */
+  public void cancel(HashedWheelTimer.Timeout timeout,
+      DeferredResultWrapper deferredResultWrapper) {
+    if (timeout.cancel()) {
+      completedCounters.get(deferredResultWrapper.getOutcome()).increment();
+    }
+  }
+
+  /**
+   * @return the timeout of the underlying async request, which only applies if the wheel fails to
+   *         expire the request in time
+   */
+  public long containerTimeoutInMilli() {
+    return bizConfig.longPollingTimeoutInMilli() + CONTAINER_TIMEOUT_MARGIN_IN_MILLI;
+  }
+
+  long nextTimeoutInMilli() {
+    long timeout = bizConfig.longPollingTimeoutInMilli();
+    long jitter = bizConfig.longPollingTimeoutJitterInMilli();
+    if (jitter <= 0) {
+      return timeout;
+    }
+    return timeout - ThreadLocalRandom.current().nextLong(jitter + 1);
+  }
+
+  int pendingTimeouts() {
+    return timer.pendingTimeouts();
+  }
+
+  @Override
+  public void destroy() {
+    timer.stop();
+  }
+}
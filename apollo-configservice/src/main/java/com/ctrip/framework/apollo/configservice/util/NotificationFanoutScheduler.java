@@ -0,0 +1,228 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Notifies large audiences of a released key on a shared worker pool.
+ * <p>
+ * Each released key is paced by its own token bucket, which allows
+ * {@link BizConfig#releaseMessageNotificationBatch()} notifications per
+ * {@link BizConfig#releaseMessageNotificationBatchIntervalInMilli()}, so clients don't come back
+ * to the config service all at once. Fan-outs of different keys run in parallel, and a paced
+ * fan-out gives its worker back while waiting for tokens instead of sleeping on it.
+ * </p>
+ */
+@Component
+public class NotificationFanoutScheduler implements DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationFanoutScheduler.class);
+
+  private final BizConfig bizConfig;
+  private final ScheduledExecutorService executorService;
+  private final ConcurrentMap<String, KeyPacer> pacers = Maps.newConcurrentMap();
+  private final AtomicInteger activeFanouts = new AtomicInteger();
+  private final AtomicLong pendingNotifications = new AtomicLong();
+  private final Timer deliveryTimer;
+
+  public NotificationFanoutScheduler(final BizConfig bizConfig,
+      final MeterRegistry meterRegistry) {
+    this.bizConfig = bizConfig;
+    executorService = Executors.newScheduledThreadPool(
+        bizConfig.releaseMessageNotificationWorkers(),
+        ApolloThreadFactory.create("NotificationFanoutScheduler", true));
+
+    Gauge.builder("apollo.notification.fanout.pending", pendingNotifications, AtomicLong::get)
+        .description("Clients waiting to be notified by paced fan-outs").register(meterRegistry);
+    Gauge.builder("apollo.notification.fanout.active", activeFanouts, AtomicInteger::get)
+        .description("Paced fan-outs in progress").register(meterRegistry);
+    deliveryTimer = Timer.builder("apollo.notification.fanout.delivery")
+        .description("Time taken to notify all clients watching a released key")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Notify the watchers of a released key asynchronously.
+   *
+   * @param key the released key, used for pacing
+   * @param watchers the watchers to notify, iterated lazily by the fan-out
+   * @param size the expected number of watchers
+   * @param notifier the callback to notify one watcher
+   */
+  public <T> void submit(String key, Iterable<T> watchers, int size, Consumer<T> notifier) {
+    int batch = bizConfig.releaseMessageNotificationBatch();
+    int batchInterval = bizConfig.releaseMessageNotificationBatchIntervalInMilli();
+    KeyPacer pacer = pacers.compute(key, (k, existing) -> {
+      KeyPacer result = existing == null ? new KeyPacer(batch, batchInterval) : existing;
+      result.users++;
+      return result;
+    });
+
+    logger.debug("Async notify {} clients for key {} with batch {}", size, key, batch);
+
+    FanoutTask<T> task = new FanoutTask<>(key, pacer, batch, watchers.iterator(), size, notifier);
+    activeFanouts.incrementAndGet();
+    pendingNotifications.addAndGet(size);
+    task.schedule(0);
+  }
+
+  int getActiveFanouts() {
+    return activeFanouts.get();
+  }
+
+  long getPendingNotifications() {
+    return pendingNotifications.get();
+  }
+
+  @Override
+  public void destroy() {
+    executorService.shutdownNow();
+  }
+
+  private void releasePacer(String key) {
+    pacers.computeIfPresent(key, (k, pacer) -> --pacer.users == 0 ? null : pacer);
+  }
+
+  private class FanoutTask<T> implements Runnable {
+    private final String key;
+    private final KeyPacer pacer;
+    private final int batch;
+    private final Iterator<T> watchers;
+    private final int size;
+    private final Consumer<T> notifier;
+    private final long startTime;
+    private int notified;
+
+    FanoutTask(String key, KeyPacer pacer, int batch, Iterator<T> watchers, int size,
+        Consumer<T> notifier) {
+      this.key = key;
+      this.pacer = pacer;
+      this.batch = batch;
+      this.watchers = watchers;
+      this.size = size;
+      this.notifier = notifier;
+      this.startTime = System.nanoTime();
+    }
+
+    @Override
+    public void run() {
+      try {
+        int permits = pacer.acquire(batch);
+        for (int i = 0; i < permits && watchers.hasNext(); i++) {
+          T watcher = watchers.next();
+          try {
+            notifier.accept(watcher);
+          } catch (Throwable ex) {
+            Tracer.logError(ex);
+            logger.error("Failed to notify {} for key {}", watcher, key, ex);
+          }
+          if (++notified <= size) {
+            pendingNotifications.decrementAndGet();
+          }
+        }
+        if (watchers.hasNext()) {
+          schedule(Math.max(1, pacer.millisUntilAvailable(batch)));
+          return;
+        }
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.error("Fan-out for key {} failed", key, ex);
+      }
+      complete();
+    }
+
+    void schedule(long delayInMillis) {
+      try {
+        executorService.schedule(this, delayInMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException ex) {
+        logger.warn("Fan-out for key {} is rejected, {} clients are not notified", key,
+            size - notified);
+        complete();
+      }
+    }
+
+    private void complete() {
+      if (notified < size) {
+        pendingNotifications.addAndGet(notified - size);
+      }
+      activeFanouts.decrementAndGet();
+      releasePacer(key);
+      deliveryTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+      logger.debug("Async notified {} clients for key {}", notified, key);
+    }
+  }
+
+  /**
+   * Token bucket shared by the fan-outs of the same key.
+   */
+  private static class KeyPacer {
+    private final int capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillTime;
+    // guarded by the pacers map
+    private int users;
+
+    KeyPacer(int capacity, int intervalInMillis) {
+      this.capacity = capacity;
+      this.tokensPerNano = (double) capacity / TimeUnit.MILLISECONDS.toNanos(intervalInMillis);
+      this.tokens = capacity;
+      this.lastRefillTime = System.nanoTime();
+    }
+
+    synchronized int acquire(int maxPermits) {
+      refill();
+      int permits = (int) Math.min(maxPermits, Math.floor(tokens));
+      tokens -= permits;
+      return permits;
+    }
+
+    synchronized long millisUntilAvailable(int permits) {
+      refill();
+      double missing = Math.min(permits, capacity) - tokens;
+      if (missing <= 0) {
+        return 0;
+      }
+      return TimeUnit.NANOSECONDS.toMillis((long) Math.ceil(missing / tokensPerNano));
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefillTime) * tokensPerNano);
+      lastRefillTime = now;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Helpers to serve response bodies compressed in advance.
+ * <p>
+ * Only gzip is supported, it is understood by all HTTP clients and needs no extra dependency.
+ * </p>
+ */
+public final class ResponseCompressionUtil {
+  public static final String GZIP = "gzip";
+  /**
+   * Bodies smaller than this are served as is, the compression barely saves anything for them.
+   */
+  public static final int MIN_COMPRESSION_SIZE = 1024;
+
+  private static final Splitter ENCODING_SPLITTER =
+      Splitter.on(',').trimResults().omitEmptyStrings();
+  private static final Splitter PARAMETER_SPLITTER = Splitter.on(';').trimResults();
+
+  private ResponseCompressionUtil() {
+  }
+
+  public static boolean acceptsGzip(HttpServletRequest request) {
+    Enumeration<String> acceptEncodings = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncodings != null && acceptsGzip(Collections.list(acceptEncodings));
+  }
+
+  /**
+   * @param acceptEncodings the values of the Accept-Encoding headers, e.g. "gzip, deflate;q=0.5"
+   * @return whether gzip is acceptable, either explicitly or via "*"
+   */
+  public static boolean acceptsGzip(Collection<String> acceptEncodings) {
+    if (acceptEncodings == null) {
+      return false;
+    }
+    boolean gzipAccepted = false;
+    for (String acceptEncoding : acceptEncodings) {
+      if (Strings.isNullOrEmpty(acceptEncoding)) {
+        continue;
+      }
+      for (String encoding : ENCODING_SPLITTER.split(acceptEncoding)) {
+        List<String> parts = PARAMETER_SPLITTER.splitToList(encoding);
+        String coding = parts.get(0);
+        if (GZIP.equalsIgnoreCase(coding)) {
+          // an explicit gzip entry overrides the wildcard
+          return !isQualityZero(parts);
+        }
+        if ("*".equals(coding)) {
+          gzipAccepted = !isQualityZero(parts);
+        }
+      }
+    }
+    return gzipAccepted;
+  }
+
+  /**
+   * @return the gzip compressed body, or null if it is too small to be worth compressing
+   */
+  public static byte[] gzipIfWorthwhile(byte[] body) {
+    if (body.length < MIN_COMPRESSION_SIZE) {
+      return null;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(body);
+    } catch (IOException ex) {
+      // never happens as it writes to memory
+      throw new UncheckedIOException(ex);
+    }
+    byte[] compressed = out.toByteArray();
+    return compressed.length < body.length ? compressed : null;
+  }
+
+  private static boolean isQualityZero(List<String> parts) {
+    for (int i = 1; i < parts.size(); i++) {
+      String parameter = parts.get(i);
+      if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2)) <= 0;
+        } catch (NumberFormatException ex) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bidirectional index between cache keys and the watched keys they are invalidated by.
+ * <p>
+ * Both directions are concurrent maps and the cache keys of a watched key are updated atomically
+ * per watched key, so indexing and invalidation of unrelated keys never wait for each other.
+ * Lookups see a weakly consistent view, which is enough as the caller re-indexes a cache key that
+ * is cached again while being removed, see {@link #remove(String)}.
+ * </p>
+ */
+public class WatchedKeysIndex {
+  private final ConcurrentMap<String, Set<String>> cacheKeysByWatchedKey =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<String>> watchedKeysByCacheKey =
+      new ConcurrentHashMap<>();
+
+  public void put(String cacheKey, Set<String> watchedKeys) {
+    Set<String> previousWatchedKeys =
+        watchedKeysByCacheKey.put(cacheKey, ImmutableSet.copyOf(watchedKeys));
+    if (previousWatchedKeys != null) {
+      unindex(cacheKey, Sets.difference(previousWatchedKeys, watchedKeys));
+    }
+    for (String watchedKey : watchedKeys) {
+      cacheKeysByWatchedKey.compute(watchedKey, (key, cacheKeys) -> {
+        if (cacheKeys == null) {
+          cacheKeys = ConcurrentHashMap.newKeySet();
+        }
+        cacheKeys.add(cacheKey);
+        return cacheKeys;
+      });
+    }
+  }
+
+  /**
+   * @return the watched keys the cache key was indexed by, or null if it was not indexed
+   */
+  public Set<String> remove(String cacheKey) {
+    Set<String> watchedKeys = watchedKeysByCacheKey.remove(cacheKey);
+    if (watchedKeys == null) {
+      return null;
+    }
+    unindex(cacheKey, watchedKeys);
+    return watchedKeys;
+  }
+
+  /**
+   * @return the cache keys indexed by the watched key, safe to iterate while being modified
+   */
+  public Set<String> getCacheKeys(String watchedKey) {
+    Set<String> cacheKeys = cacheKeysByWatchedKey.get(watchedKey);
+    return cacheKeys == null ? Collections.emptySet() : Collections.unmodifiableSet(cacheKeys);
+  }
+
+  public Set<String> getWatchedKeys(String cacheKey) {
+    Set<String> watchedKeys = watchedKeysByCacheKey.get(cacheKey);
+    return watchedKeys == null ? Collections.emptySet() : watchedKeys;
+  }
+
+  public boolean isEmpty() {
+    return cacheKeysByWatchedKey.isEmpty() && watchedKeysByCacheKey.isEmpty();
+  }
+
+  private void unindex(String cacheKey, Set<String> watchedKeys) {
+    for (String watchedKey : watchedKeys) {
+      cacheKeysByWatchedKey.computeIfPresent(watchedKey, (key, cacheKeys) -> {
+        cacheKeys.remove(cacheKey);
+        return cacheKeys.isEmpty() ? null : cacheKeys;
+      });
+    }
+  }
+}
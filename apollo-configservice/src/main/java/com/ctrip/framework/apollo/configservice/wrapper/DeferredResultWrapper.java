@@ -26,8 +26,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -38,10 +40,28 @@ public class DeferredResultWrapper implements Comparable<DeferredResultWrapper>
 
   private Map<String, String> normalizedNamespaceNameToOriginalNamespaceName;
   private DeferredResult<ResponseEntity<?>> result;
+  private List<WatcherRegistry.Registration<DeferredResultWrapper>> registrations;
+  private volatile Runnable timeoutCallback;
+  private final AtomicReference<Outcome> outcome = new AtomicReference<>();
 
+  /**
+   * How the request is completed
+   */
+  public enum Outcome {
+    NOTIFIED, TIMEOUT, CONTAINER_TIMEOUT, ERROR,
+    /**
+     * completed without a result, e.g. the client disconnected
+     */
+    CANCELLED
+  }
 
   public DeferredResultWrapper(long timeoutInMilli) {
     result = new DeferredResult<>(timeoutInMilli, NOT_MODIFIED_RESPONSE_LIST);
+    result.onTimeout(() -> {
+      outcome.compareAndSet(null, Outcome.CONTAINER_TIMEOUT);
+      runTimeoutCallback();
+    });
+    result.onError(ex -> outcome.compareAndSet(null, Outcome.ERROR));
   }
 
   public void recordNamespaceNameNormalizedResult(String originalNamespaceName,
@@ -54,8 +74,41 @@ public class DeferredResultWrapper implements Comparable<DeferredResultWrapper>
   }
 
 
+  /**
+   * Keep the handle of a watched key registration, so that it could be unregistered in O(1) when
+   * the request completes.
+   */
+  public void addRegistration(WatcherRegistry.Registration<DeferredResultWrapper> registration) {
+    if (registrations == null) {
+      registrations = Lists.newArrayList();
+    }
+    registrations.add(registration);
+  }
+
+  public List<WatcherRegistry.Registration<DeferredResultWrapper>> getRegistrations() {
+    return registrations == null ? Collections.emptyList() : registrations;
+  }
+
   public void onTimeout(Runnable timeoutCallback) {
-    result.onTimeout(timeoutCallback);
+    this.timeoutCallback = timeoutCallback;
+  }
+
+  /**
+   * Complete the request with the not modified response, as the container would do on timeout.
+   *
+   * @return true if the request is expired by this call, false if it was already completed
+   */
+  public boolean expire() {
+    if (!setResult(NOT_MODIFIED_RESPONSE_LIST, Outcome.TIMEOUT)) {
+      return false;
+    }
+    runTimeoutCallback();
+    return true;
+  }
+
+  public Outcome getOutcome() {
+    Outcome current = outcome.get();
+    return current == null ? Outcome.CANCELLED : current;
   }
 
   public void onCompletion(Runnable completionCallback) {
@@ -70,7 +123,7 @@ public class DeferredResultWrapper implements Comparable<DeferredResultWrapper>
   public void setResult(String namespaceName, ApolloConfigNotification notification,
       ResponseEntity<String> serializedNotificationResponse) {
     if (!shouldRestoreOriginalNamespaceName(namespaceName)) {
-      result.setResult(serializedNotificationResponse);
+      setResult(serializedNotificationResponse, Outcome.NOTIFIED);
       return;
     }
     setResult(notification);
@@ -103,13 +156,28 @@ public class DeferredResultWrapper implements Comparable<DeferredResultWrapper>
       notifications = notificationsToReturn;
     }
 
-    result.setResult(new ResponseEntity<>(notifications, HttpStatus.OK));
+    setResult(new ResponseEntity<>(notifications, HttpStatus.OK), Outcome.NOTIFIED);
   }
 
   public DeferredResult<ResponseEntity<?>> getResult() {
     return result;
   }
 
+  private boolean setResult(ResponseEntity<?> response, Outcome resultOutcome) {
+    // recorded before the completion callback, which is invoked once the result is set
+    if (!outcome.compareAndSet(null, resultOutcome)) {
+      return false;
+    }
+    return result.setResult(response);
+  }
+
+  private void runTimeoutCallback() {
+    Runnable callback = timeoutCallback;
+    if (callback != null) {
+      callback.run();
+    }
+  }
+
   private boolean shouldRestoreOriginalNamespaceName(String namespaceName) {
     return normalizedNamespaceNameToOriginalNamespaceName != null
         && normalizedNamespaceNameToOriginalNamespaceName.containsKey(namespaceName);
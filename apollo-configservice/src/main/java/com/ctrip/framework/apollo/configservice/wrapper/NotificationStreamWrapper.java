@@ -0,0 +1,283 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+/**
+ * One streaming notification connection, which stays registered on its watched keys until the
+ * client disconnects or the stream times out.
+ * <p>
+ * Each event carries the same JSON array as a response of the long polling endpoint, and its id is
+ * the largest notification id in it. Events are only sent for namespaces whose notification id is
+ * newer than the one already known by the client, so a release message which is delivered both by
+ * the initial check and by the release message listener is sent once.
+ * </p>
+ * <p>
+ * The events wait in a bounded queue of the stream and are written on the send executor, so a slow
+ * client never holds up the threads notifying the others. A stream falling too far behind, or
+ * stuck in a write for too long, is closed and resumes by reconnecting.
+ * </p>
+ */
+public class NotificationStreamWrapper {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationStreamWrapper.class);
+  public static final String NOTIFICATION_EVENT_NAME = "notifications";
+  private static final String HEARTBEAT_COMMENT = "heartbeat";
+  private static final int DEFAULT_MAX_PENDING_EVENTS = 100;
+  private static final long DEFAULT_SEND_TIMEOUT_IN_MILLI = TimeUnit.SECONDS.toMillis(10);
+  private static final long NOT_SENDING = 0;
+
+  private final SseEmitter emitter;
+  private final Executor sendExecutor;
+  private final Queue<SseEventBuilder> pendingEvents;
+  private final long sendTimeoutInNanos;
+  private final AtomicBoolean draining = new AtomicBoolean();
+  private volatile long sendingSince = NOT_SENDING;
+  private volatile Runnable closeCallback;
+  private final Gson gson;
+  private final Map<String, Long> notificationIds;
+  private Map<String, String> normalizedNamespaceNameToOriginalNamespaceName;
+  private List<WatcherRegistry.Registration<NotificationStreamWrapper>> registrations;
+  private final AtomicBoolean released = new AtomicBoolean();
+  private volatile boolean closed;
+
+  /**
+   * @param notificationIds the client side notification ids keyed by normalized namespace name
+   */
+  public NotificationStreamWrapper(long timeoutInMilli, Gson gson,
+      Map<String, Long> notificationIds, Executor sendExecutor) {
+    this(new SseEmitter(timeoutInMilli), gson, notificationIds, sendExecutor,
+        DEFAULT_MAX_PENDING_EVENTS, DEFAULT_SEND_TIMEOUT_IN_MILLI);
+  }
+
+  NotificationStreamWrapper(SseEmitter emitter, Gson gson, Map<String, Long> notificationIds,
+      Executor sendExecutor, int maxPendingEvents, long sendTimeoutInMilli) {
+    this.emitter = emitter;
+    this.gson = gson;
+    this.notificationIds = Maps.newHashMap(notificationIds);
+    this.sendExecutor = sendExecutor;
+    this.pendingEvents = new LinkedBlockingQueue<>(maxPendingEvents);
+    this.sendTimeoutInNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutInMilli);
+  }
+
+  public void recordNamespaceNameNormalizedResult(String originalNamespaceName,
+      String normalizedNamespaceName) {
+    if (normalizedNamespaceNameToOriginalNamespaceName == null) {
+      normalizedNamespaceNameToOriginalNamespaceName = Maps.newHashMap();
+    }
+    normalizedNamespaceNameToOriginalNamespaceName.put(normalizedNamespaceName,
+        originalNamespaceName);
+  }
+
+  public void addRegistration(
+      WatcherRegistry.Registration<NotificationStreamWrapper> registration) {
+    if (registrations == null) {
+      registrations = Lists.newArrayList();
+    }
+    registrations.add(registration);
+  }
+
+  public List<WatcherRegistry.Registration<NotificationStreamWrapper>> getRegistrations() {
+    return registrations == null ? Collections.emptyList() : registrations;
+  }
+
+  /**
+   * Run the callback once the stream is closed, whether by completion, timeout or error.
+   */
+  public void onClose(Runnable closeCallback) {
+    this.closeCallback = closeCallback;
+    emitter.onCompletion(this::close);
+    emitter.onTimeout(() -> {
+      close();
+      emitter.complete();
+    });
+    emitter.onError(ex -> close());
+  }
+
+  /**
+   * Send the notification of a release message, serializedNotification is its JSON array form
+   * which is shared by all the streams not needing namespace name restoration.
+   */
+  public void send(String namespaceName, ApolloConfigNotification notification,
+      String serializedNotification) {
+    if (shouldRestoreOriginalNamespaceName(namespaceName)) {
+      send(Lists.newArrayList(notification));
+      return;
+    }
+    synchronized (this) {
+      if (!advance(notification)) {
+        return;
+      }
+      doSend(notification.getNotificationId(), serializedNotification);
+    }
+  }
+
+  /**
+   * The namespace name is used as a key in client side, so we have to return the original
+   * one instead of the correct one.
+   */
+  public synchronized void send(List<ApolloConfigNotification> notifications) {
+    List<ApolloConfigNotification> notificationsToSend =
+        Lists.newArrayListWithCapacity(notifications.size());
+    long eventId = 0;
+    for (ApolloConfigNotification notification : notifications) {
+      if (!advance(notification)) {
+        continue;
+      }
+      eventId = Math.max(eventId, notification.getNotificationId());
+      notificationsToSend.add(restoreOriginalNamespaceName(notification));
+    }
+    if (notificationsToSend.isEmpty()) {
+      return;
+    }
+    doSend(eventId, gson.toJson(notificationsToSend));
+  }
+
+  /**
+   * Send a heartbeat unless there are events pending, and close the stream if it is stuck in a
+   * write for longer than the send timeout.
+   */
+  public void heartbeat() {
+    if (closed) {
+      return;
+    }
+    long sendingStartTime = sendingSince;
+    if (sendingStartTime != NOT_SENDING
+        && System.nanoTime() - sendingStartTime > sendTimeoutInNanos) {
+      // the emitter is locked by the stuck write, which fails once the container gives up
+      logger.debug("Closing the stream stuck in sending");
+      close();
+      return;
+    }
+    if (pendingEvents.isEmpty()) {
+      enqueue(SseEmitter.event().comment(HEARTBEAT_COMMENT));
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public SseEmitter getEmitter() {
+    return emitter;
+  }
+
+  private boolean advance(ApolloConfigNotification notification) {
+    if (closed) {
+      return false;
+    }
+    Long knownId = notificationIds.get(notification.getNamespaceName());
+    if (knownId != null && knownId >= notification.getNotificationId()) {
+      return false;
+    }
+    notificationIds.put(notification.getNamespaceName(), notification.getNotificationId());
+    return true;
+  }
+
+  private void doSend(long eventId, String data) {
+    enqueue(SseEmitter.event().id(String.valueOf(eventId)).name(NOTIFICATION_EVENT_NAME)
+        .data(data, MediaType.APPLICATION_JSON));
+  }
+
+  private void enqueue(SseEventBuilder event) {
+    if (!pendingEvents.offer(event)) {
+      // too far behind, the client catches up with the initial check once reconnected
+      logger.debug("Closing the stream with too many events pending");
+      close();
+      sendExecutor.execute(emitter::complete);
+      return;
+    }
+    drainIfIdle();
+  }
+
+  private void drainIfIdle() {
+    if (!pendingEvents.isEmpty() && draining.compareAndSet(false, true)) {
+      sendExecutor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    try {
+      SseEventBuilder event;
+      while (!closed && (event = pendingEvents.poll()) != null) {
+        sendingSince = System.nanoTime();
+        try {
+          emitter.send(event);
+        } catch (IOException | IllegalStateException ex) {
+          // the container notifies the error callback, which closes the stream
+          closed = true;
+          logger.debug("Failed to send event", ex);
+        } finally {
+          sendingSince = NOT_SENDING;
+        }
+      }
+      if (closed) {
+        pendingEvents.clear();
+      }
+    } finally {
+      draining.set(false);
+    }
+    // the events enqueued while finishing the drain
+    if (!closed) {
+      drainIfIdle();
+    }
+  }
+
+  private void close() {
+    closed = true;
+    pendingEvents.clear();
+    Runnable callback = closeCallback;
+    if (callback != null && released.compareAndSet(false, true)) {
+      callback.run();
+    }
+  }
+
+  private boolean shouldRestoreOriginalNamespaceName(String namespaceName) {
+    return normalizedNamespaceNameToOriginalNamespaceName != null
+        && normalizedNamespaceNameToOriginalNamespaceName.containsKey(namespaceName);
+  }
+
+  private ApolloConfigNotification restoreOriginalNamespaceName(
+      ApolloConfigNotification notification) {
+    if (!shouldRestoreOriginalNamespaceName(notification.getNamespaceName())) {
+      return notification;
+    }
+    // copy instead of mutating, as the notification may be shared with other streams
+    ApolloConfigNotification copiedNotification = new ApolloConfigNotification(
+        normalizedNamespaceNameToOriginalNamespaceName.get(notification.getNamespaceName()),
+        notification.getNotificationId());
+    notification.getMessages().getDetails().forEach(copiedNotification::addMessage);
+    return copiedNotification;
+  }
+}
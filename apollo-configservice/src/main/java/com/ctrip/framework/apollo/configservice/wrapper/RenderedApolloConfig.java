@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.ctrip.framework.apollo.configservice.util.ResponseCompressionUtil;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A full sync {@link ApolloConfig} together with its serialized JSON body, so that it could be
+ * shared by requests for the same releases and written out without serializing it again.
+ * <p>
+ * The instance is shared among requests, so it is immutable once rendered and all the setters
+ * throw {@link UnsupportedOperationException}.
+ * </p>
+ */
+public class RenderedApolloConfig extends ApolloConfig {
+  // transient to be skipped in case it is serialized by gson
+  private final transient byte[] body;
+  private transient volatile byte[] gzippedBody;
+  private transient volatile boolean gzipped;
+  private final transient boolean rendered;
+
+  private RenderedApolloConfig(String appId, String cluster, String namespaceName,
+      String releaseKey, Map<String, String> configurations, Gson gson) {
+    super(appId, cluster, namespaceName, releaseKey);
+    super.setConfigurations(Collections.unmodifiableMap(configurations));
+    this.body = gson.toJson(this, ApolloConfig.class).getBytes(StandardCharsets.UTF_8);
+    this.rendered = true;
+  }
+
+  public static RenderedApolloConfig render(String appId, String cluster, String namespaceName,
+      String releaseKey, Map<String, String> configurations, Gson gson) {
+    return new RenderedApolloConfig(appId, cluster, namespaceName, releaseKey, configurations,
+        gson);
+  }
+
+  /**
+   * @return the serialized JSON body in UTF-8, the returned array must not be modified
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * The body is compressed on first use and kept along with the plain one.
+   *
+   * @return the gzip compressed body, or null if it is not worth compressing, the returned array
+   *         must not be modified
+   */
+  public byte[] getGzippedBody() {
+    if (!gzipped) {
+      // racing threads compress the same body, whichever wins is fine
+      gzippedBody = ResponseCompressionUtil.gzipIfWorthwhile(body);
+      gzipped = true;
+    }
+    return gzippedBody;
+  }
+
+  @Override
+  public void setAppId(String appId) {
+    checkNotRendered();
+    super.setAppId(appId);
+  }
+
+  @Override
+  public void setCluster(String cluster) {
+    checkNotRendered();
+    super.setCluster(cluster);
+  }
+
+  @Override
+  public void setNamespaceName(String namespaceName) {
+    checkNotRendered();
+    super.setNamespaceName(namespaceName);
+  }
+
+  @Override
+  public void setReleaseKey(String releaseKey) {
+    checkNotRendered();
+    super.setReleaseKey(releaseKey);
+  }
+
+  @Override
+  public void setConfigurations(Map<String, String> configurations) {
+    checkNotRendered();
+    super.setConfigurations(configurations);
+  }
+
+  @Override
+  public void setConfigSyncType(String configSyncType) {
+    checkNotRendered();
+    super.setConfigSyncType(configSyncType);
+  }
+
+  @Override
+  public void setConfigurationChanges(List<ConfigurationChange> configurationChanges) {
+    checkNotRendered();
+    super.setConfigurationChanges(configurationChanges);
+  }
+
+  private void checkNotRendered() {
+    // the super constructor may go through the setters before the body is rendered
+    if (rendered) {
+      throw new UnsupportedOperationException("Rendered config is shared and immutable");
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Watcher index with case-insensitive keys, built for long polling.
+ * <p>
+ * Each key owns a bucket holding its watchers in a slot array. Registering returns a
+ * {@link Registration} handle which remembers its slot, so unregistering is O(1) and does not need
+ * to look the key up again. Freed slots are recycled, and empty buckets are dropped from the index.
+ * </p>
+ *
+ * <p><b>Interned keys</b>: the bucket keeps the only long-lived copy of the normalized key, so the
+ * key strings assembled per request can be collected right after registration.
+ * </p>
+ *
+ * <p><b>Snapshots</b>: {@link #snapshot(String)} captures the slot array and the registration
+ * sequence of a bucket without copying. Iterating a snapshot skips empty slots and watchers
+ * registered after the snapshot was taken, so a recycled slot never leaks a newer watcher into an
+ * older fan-out. Watchers removed after the snapshot may still be visited.
+ * </p>
+ */
+public class WatcherRegistry<V> {
+  private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+  private final ConcurrentMap<String, Bucket<V>> buckets = new ConcurrentHashMap<>();
+
+  private static String normalizeKey(String key) {
+    return Objects.requireNonNull(key, "key").toLowerCase(Locale.ROOT);
+  }
+
+  public Registration<V> register(String key, V watcher) {
+    Objects.requireNonNull(watcher, "watcher");
+    String normalizedKey = normalizeKey(key);
+    while (true) {
+      Bucket<V> bucket = buckets.computeIfAbsent(normalizedKey, Bucket::new);
+      Registration<V> registration = bucket.add(watcher);
+      if (registration != null) {
+        return registration;
+      }
+      // the bucket was retired concurrently, drop it and retry with a fresh one
+      buckets.remove(normalizedKey, bucket);
+    }
+  }
+
+  public void unregister(Registration<V> registration) {
+    if (registration == null) {
+      return;
+    }
+    Bucket<V> bucket = registration.bucket;
+    if (bucket.remove(registration)) {
+      buckets.remove(bucket.key, bucket);
+    }
+  }
+
+  public Snapshot<V> snapshot(String key) {
+    Bucket<V> bucket = buckets.get(normalizeKey(key));
+    return bucket == null ? Snapshot.empty() : bucket.snapshot();
+  }
+
+  public boolean containsKey(String key) {
+    Bucket<V> bucket = buckets.get(normalizeKey(key));
+    return bucket != null && bucket.size() > 0;
+  }
+
+  /**
+   * Returns the total number of watchers across all keys.
+   * <p>
+   * Note: In concurrent scenarios, the returned value is a best-effort approximation.
+   * </p>
+   */
+  public int size() {
+    int size = 0;
+    for (Bucket<V> bucket : buckets.values()) {
+      size += bucket.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of keys that currently have watchers.
+   */
+  public int keySize() {
+    return buckets.size();
+  }
+
+  /**
+   * Handle of a watcher registered under one key, used to unregister it in O(1).
+   */
+  public static final class Registration<V> {
+    private final Bucket<V> bucket;
+    private final V watcher;
+    private final long sequence;
+    private int slot;
+
+    private Registration(Bucket<V> bucket, V watcher, long sequence, int slot) {
+      this.bucket = bucket;
+      this.watcher = watcher;
+      this.sequence = sequence;
+      this.slot = slot;
+    }
+
+    public String getKey() {
+      return bucket.key;
+    }
+
+    public V getWatcher() {
+      return watcher;
+    }
+  }
+
+  /**
+   * Point-in-time view of the watchers of one key. Iteration does not allocate per watcher.
+   */
+  public static final class Snapshot<V> implements Iterable<V> {
+    private static final Snapshot<?> EMPTY = new Snapshot<>(new Registration<?>[0], 0, 0, 0);
+
+    private final Registration<?>[] slots;
+    private final int highWaterMark;
+    private final long maxSequence;
+    private final int size;
+
+    private Snapshot(Registration<?>[] slots, int highWaterMark, long maxSequence, int size) {
+      this.slots = slots;
+      this.highWaterMark = highWaterMark;
+      this.maxSequence = maxSequence;
+      this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> Snapshot<V> empty() {
+      return (Snapshot<V>) EMPTY;
+    }
+
+    /**
+     * @return the number of watchers when the snapshot was taken
+     */
+    public int size() {
+      return size;
+    }
+
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      if (size == 0) {
+        return Collections.emptyIterator();
+      }
+      return new SnapshotIterator();
+    }
+
+    private class SnapshotIterator implements Iterator<V> {
+      private int cursor = -1;
+      private V next;
+
+      @Override
+      public boolean hasNext() {
+        if (next != null) {
+          return true;
+        }
+        while (++cursor < highWaterMark) {
+          Registration<?> registration = slots[cursor];
+          if (registration != null && registration.sequence <= maxSequence) {
+            next = castWatcher(registration);
+            return true;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      public V next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        V result = next;
+        next = null;
+        return result;
+      }
+
+      @SuppressWarnings("unchecked")
+      private V castWatcher(Registration<?> registration) {
+        return (V) registration.watcher;
+      }
+    }
+  }
+
+  private static final class Bucket<V> {
+    private final String key;
+    private Registration<?>[] slots = new Registration<?>[INITIAL_BUCKET_CAPACITY];
+    // slots beyond the high water mark have never been used
+    private int highWaterMark;
+    private int[] freeSlots = new int[INITIAL_BUCKET_CAPACITY];
+    private int freeSlotCount;
+    private int size;
+    private long sequence;
+    private boolean retired;
+
+    private Bucket(String key) {
+      this.key = key;
+    }
+
+    synchronized Registration<V> add(V watcher) {
+      if (retired) {
+        return null;
+      }
+      int slot;
+      if (freeSlotCount > 0) {
+        slot = freeSlots[--freeSlotCount];
+      } else {
+        if (highWaterMark == slots.length) {
+          // copy into a new array so that snapshots already taken keep a stable view
+          slots = Arrays.copyOf(slots, slots.length << 1);
+        }
+        slot = highWaterMark++;
+      }
+      Registration<V> registration = new Registration<>(this, watcher, ++sequence, slot);
+      slots[slot] = registration;
+      size++;
+      return registration;
+    }
+
+    /**
+     * @return whether the bucket became empty and was retired
+     */
+    synchronized boolean remove(Registration<V> registration) {
+      int slot = registration.slot;
+      if (slot < 0 || slots[slot] != registration) {
+        return false;
+      }
+      slots[slot] = null;
+      registration.slot = -1;
+      size--;
+      if (size == 0) {
+        retired = true;
+        return true;
+      }
+      if (slot == highWaterMark - 1) {
+        highWaterMark--;
+      } else {
+        if (freeSlotCount == freeSlots.length) {
+          freeSlots = Arrays.copyOf(freeSlots, freeSlots.length << 1);
+        }
+        freeSlots[freeSlotCount++] = slot;
+      }
+      return false;
+    }
+
+    synchronized Snapshot<V> snapshot() {
+      if (size == 0) {
+        return Snapshot.empty();
+      }
+      return new Snapshot<>(slots, highWaterMark, sequence, size);
+    }
+
+    synchronized int size() {
+      return size;
+    }
+  }
+}
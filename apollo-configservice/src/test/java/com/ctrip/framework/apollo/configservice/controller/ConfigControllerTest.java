@@ -18,12 +18,20 @@ package com.ctrip.framework.apollo.configservice.controller;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.configservice.dto.ApolloConfigQuery;
+import com.ctrip.framework.apollo.configservice.dto.ApolloConfigQueryResult;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.IncrementalSyncService;
+import com.ctrip.framework.apollo.configservice.service.config.MergedConfigurationCache;
+import com.ctrip.framework.apollo.configservice.service.config.ReleaseConfigurationCache;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.RenderedApolloConfig;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
@@ -36,21 +44,28 @@ import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -98,8 +113,11 @@ public class ConfigControllerTest {
 
   @Before
   public void setUp() throws Exception {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
     configController = spy(new ConfigController(configService, incrementalSyncService,
-        appNamespaceService, namespaceUtil, instanceConfigAuditUtil, gson, bizConfig));
+        appNamespaceService, namespaceUtil, instanceConfigAuditUtil, gson, bizConfig,
+        new MergedConfigurationCache(bizConfig,
+            new ReleaseConfigurationCache(bizConfig, meterRegistry), meterRegistry)));
 
     someAppId = "1";
     someClusterName = "someClusterName";
@@ -249,6 +267,105 @@ public class ConfigControllerTest {
     verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
   }
 
+  @Test
+  public void testQueryConfigWithIfNoneMatch() throws Exception {
+    String someClientSideReleaseKey = "-1";
+    String someServerSideReleaseKey = "1";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, defaultNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+    when(someRequest.getHeaders(HttpHeaders.IF_NONE_MATCH))
+        .thenReturn(Collections.enumeration(Lists.newArrayList("\"0\", \"1\"")));
+    when(bizConfig.configServiceResponseCacheControl()).thenReturn("no-cache");
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertNull(result);
+    verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(someResponse, times(1)).setHeader(HttpHeaders.ETAG, "W/\"1\"");
+    verify(someResponse, times(1)).setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+  }
+
+  @Test
+  public void testQueryConfigs() throws Exception {
+    String someServerSideReleaseKey = "2";
+    String anotherServerSideReleaseKey = "3";
+    String someAppOwnNamespaceName = "someAppOwn";
+    AppNamespace someAppOwnNamespace =
+        assemblePublicAppNamespace(someAppId, someAppOwnNamespaceName);
+
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, defaultNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(someRelease);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, someAppOwnNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(anotherRelease);
+    when(appNamespaceService.findByAppIdAndNamespace(someAppId, someAppOwnNamespaceName))
+        .thenReturn(someAppOwnNamespace);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(anotherRelease.getReleaseKey()).thenReturn(anotherServerSideReleaseKey);
+    when(namespaceUtil.filterNamespaceName(someAppOwnNamespaceName))
+        .thenReturn(someAppOwnNamespaceName);
+    when(namespaceUtil.normalizeNamespace(someAppId, someAppOwnNamespaceName))
+        .thenReturn(someAppOwnNamespaceName);
+
+    List<ApolloConfigQuery> queries = Lists.newArrayList(
+        new ApolloConfigQuery(defaultNamespaceName, "1"),
+        new ApolloConfigQuery(someAppOwnNamespaceName, anotherServerSideReleaseKey),
+        new ApolloConfigQuery(somePublicNamespaceName, null));
+
+    List<ApolloConfigQueryResult> results = configController.queryConfigs(someAppId,
+        someClusterName, queries, someDataCenter, someClientIp, someClientLabel,
+        someMessagesAsString, someRequest);
+
+    assertEquals(3, results.size());
+    ApolloConfigQueryResult someResult = results.get(0);
+    assertEquals(defaultNamespaceName, someResult.getNamespaceName());
+    assertEquals(ApolloConfigQueryResult.STATUS_OK, someResult.getStatusCode());
+    assertEquals(someServerSideReleaseKey, someResult.getConfig().getReleaseKey());
+    assertEquals(someClusterName, someResult.getConfig().getCluster());
+    assertEquals("foo", someResult.getConfig().getConfigurations().get("apollo.bar"));
+    ApolloConfigQueryResult anotherResult = results.get(1);
+    assertEquals(someAppOwnNamespaceName, anotherResult.getNamespaceName());
+    assertEquals(ApolloConfigQueryResult.STATUS_NOT_MODIFIED, anotherResult.getStatusCode());
+    assertNull(anotherResult.getConfig());
+    ApolloConfigQueryResult notFoundResult = results.get(2);
+    assertEquals(somePublicNamespaceName, notFoundResult.getNamespaceName());
+    assertEquals(ApolloConfigQueryResult.STATUS_NOT_FOUND, notFoundResult.getStatusCode());
+    assertNull(notFoundResult.getConfig());
+    verify(configController, times(1)).transformMessages(someMessagesAsString);
+    verify(instanceConfigAuditUtil, times(1)).audit(someAppId, someClusterName, someDataCenter,
+        someClientIp, someAppId, someClusterName, defaultNamespaceName, someServerSideReleaseKey);
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testQueryConfigsWithInvalidNamespaces() throws Exception {
+    configController.queryConfigs(someAppId, someClusterName,
+        Lists.newArrayList(new ApolloConfigQuery(null, "1")), someDataCenter, someClientIp, someClientLabel, someMessagesAsString, someRequest);
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testQueryConfigsWithTooManyNamespaces() throws Exception {
+    List<ApolloConfigQuery> queries = new ArrayList<>();
+    for (int i = 0; i < 101; i++) {
+      queries.add(new ApolloConfigQuery("someNamespace" + i, null));
+    }
+
+    try {
+      configController.queryConfigs(someAppId, someClusterName, queries,
+          someDataCenter, someClientIp, someClientLabel, someMessagesAsString, someRequest);
+    } finally {
+      verify(configService, never()).loadConfig(anyString(), anyString(), anyString(),
+          anyString(), anyString(), anyString(), anyString(), any());
+    }
+  }
+
   @Test
   public void testQueryConfigWithAppOwnNamespace() throws Exception {
     String someClientSideReleaseKey = "1";
@@ -525,6 +642,8 @@ public class ConfigControllerTest {
   public void testQueryConfigWithIncrementalSync() throws Exception {
     when(bizConfig.isConfigServiceIncrementalChangeEnabled())
         .thenReturn(true);
+    when(incrementalSyncService.findConfigurationChanges(anyString(), anyString()))
+        .thenReturn(null);
     String clientSideReleaseKey = "1";
     String someConfigurations = "{\"apollo.public.foo\": \"foo\"}";
     HttpServletResponse someResponse = mock(HttpServletResponse.class);
@@ -561,10 +680,39 @@ public class ConfigControllerTest {
 
   }
 
+  @Test
+  public void testQueryConfigWithPrecomputedIncrementalChanges() throws Exception {
+    when(bizConfig.isConfigServiceIncrementalChangeEnabled()).thenReturn(true);
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, defaultNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    List<ConfigurationChange> configurationChanges =
+        Lists.newArrayList(new ConfigurationChange("apollo.bar", "foo", "ADDED"));
+    when(incrementalSyncService.findConfigurationChanges(someServerSideNewReleaseKey,
+        someClientSideReleaseKey)).thenReturn(configurationChanges);
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertEquals(ConfigSyncType.INCREMENTAL_SYNC.getValue(), result.getConfigSyncType());
+    assertSame(configurationChanges, result.getConfigurationChanges());
+    verify(configService, never()).findReleasesByReleaseKeys(anySet());
+    verify(incrementalSyncService, never()).getConfigurationChanges(anyString(), anyMap(),
+        anyString(), anyMap());
+  }
+
   @Test
   public void testQueryConfigWithIncrementalSyncNotFound() throws Exception {
     when(bizConfig.isConfigServiceIncrementalChangeEnabled())
         .thenReturn(true);
+    when(incrementalSyncService.findConfigurationChanges(anyString(), anyString()))
+        .thenReturn(null);
 
     String someClientSideReleaseKey = "1";
     String someServerSideNewReleaseKey = "2";
@@ -592,6 +740,8 @@ public class ConfigControllerTest {
   public void testQueryConfigWithIncrementalSyncPublicNamespaceAndAppOverride() throws Exception {
     when(bizConfig.isConfigServiceIncrementalChangeEnabled())
         .thenReturn(true);
+    when(incrementalSyncService.findConfigurationChanges(anyString(), anyString()))
+        .thenReturn(null);
     String someAppClientSideReleaseKey = "1";
     String somePublicAppClientSideReleaseKey = "2";
     String someConfigurations = "{\"apollo.public.foo.client\": \"foo.override\"}";
@@ -664,4 +814,136 @@ public class ConfigControllerTest {
 
   private static final Type configurationTypeReference =
       new TypeToken<Map<String, String>>() {}.getType();
+
+  @Test
+  public void testQueryConfigWithResponseCache() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, defaultNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+    ApolloConfig anotherResult = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertTrue(result instanceof RenderedApolloConfig);
+    assertSame(result, anotherResult);
+    assertEquals(someServerSideNewReleaseKey, result.getReleaseKey());
+    assertEquals("foo", result.getConfigurations().get("apollo.bar"));
+    verify(configController, times(1)).mergeReleaseConfigurations(anyList());
+
+    ApolloConfig deserialized = gson.fromJson(
+        new String(((RenderedApolloConfig) result).getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class);
+    assertEquals(someAppId, deserialized.getAppId());
+    assertEquals(someClusterName, deserialized.getCluster());
+    assertEquals(defaultNamespaceName, deserialized.getNamespaceName());
+    assertEquals(someServerSideNewReleaseKey, deserialized.getReleaseKey());
+    assertEquals(result.getConfigurations(), deserialized.getConfigurations());
+  }
+
+  @Test
+  public void testQueryConfigWithResponseCacheForDifferentClusters() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideReleaseKey = "2";
+    String anotherClusterName = "anotherClusterName";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    String somePublicAppId = "somePublicAppId";
+    AppNamespace somePublicAppNamespace =
+        assemblePublicAppNamespace(somePublicAppId, somePublicNamespaceName);
+
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+    when(appNamespaceService.findPublicNamespaceByName(somePublicNamespaceName))
+        .thenReturn(somePublicAppNamespace);
+    for (String clusterName : Lists.newArrayList(someClusterName, anotherClusterName)) {
+      when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+          clusterName, somePublicNamespaceName, someDataCenter, someNotificationMessages))
+          .thenReturn(null);
+      when(configService.loadConfig(someAppId, someClientIp, someClientLabel, somePublicAppId,
+          clusterName, somePublicNamespaceName, someDataCenter, someNotificationMessages))
+          .thenReturn(somePublicRelease);
+    }
+    when(somePublicRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        somePublicNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+    ApolloConfig anotherResult = configController.queryConfig(someAppId, anotherClusterName,
+        somePublicNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertEquals(someServerSideReleaseKey, result.getReleaseKey());
+    assertEquals(someServerSideReleaseKey, anotherResult.getReleaseKey());
+    assertEquals(someClusterName, gson.fromJson(
+        new String(((RenderedApolloConfig) result).getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class).getCluster());
+    assertEquals(anotherClusterName, gson.fromJson(
+        new String(((RenderedApolloConfig) anotherResult).getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class).getCluster());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testRenderedConfigImmutable() throws Exception {
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, defaultNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn("2");
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, "1", someClientIp, someClientLabel,
+        someMessagesAsString, someRequest, someResponse);
+
+    result.setCluster("anotherClusterName");
+  }
+
+  @Test
+  public void testHandleMessageRendersConfigInAdvance() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+    when(configService.loadConfig(someAppId, null, null, someAppId, someClusterName,
+        defaultNamespaceName, null, null)).thenReturn(someRelease);
+    when(configService.loadConfig(someAppId, someClientIp, someClientLabel, someAppId,
+        someClusterName, defaultNamespaceName, someDataCenter, someNotificationMessages))
+        .thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+
+    configController.handleMessage(
+        new ReleaseMessage(Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).join(someAppId,
+            someClusterName, defaultNamespaceName)),
+        Topics.APOLLO_RELEASE_TOPIC);
+    verify(configController, times(1)).mergeReleaseConfigurations(anyList());
+
+    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp,
+        someClientLabel, someMessagesAsString, someRequest, someResponse);
+
+    assertTrue(result instanceof RenderedApolloConfig);
+    assertEquals(someServerSideNewReleaseKey, result.getReleaseKey());
+    verify(configController, times(1)).mergeReleaseConfigurations(anyList());
+  }
+
+  @Test
+  public void testHandleMessageWithResponseCacheDisabled() throws Exception {
+    configController.handleMessage(
+        new ReleaseMessage(Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).join(someAppId,
+            someClusterName, defaultNamespaceName)),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    verify(configService, never()).loadConfig(anyString(), any(), any(), anyString(),
+        anyString(), anyString(), any(), any());
+  }
 }
@@ -16,22 +16,30 @@
  */
 package com.ctrip.framework.apollo.configservice.controller;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchedKeysIndex;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.junit.Before;
@@ -39,11 +47,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.startsWith;
@@ -65,6 +75,8 @@ public class ConfigFileControllerTest {
   private NamespaceUtil namespaceUtil;
   @Mock
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private BizConfig bizConfig;
   private ConfigFileController configFileController;
   private String someAppId;
   private String someClusterName;
@@ -76,15 +88,14 @@ public class ConfigFileControllerTest {
   private HttpServletResponse someResponse;
   @Mock
   private HttpServletRequest someRequest;
-  Multimap<String, String> watchedKeys2CacheKey;
-  Multimap<String, String> cacheKey2WatchedKeys;
+  WatchedKeysIndex watchedKeysIndex;
 
   private static final Gson GSON = new Gson();
 
   @Before
   public void setUp() throws Exception {
     configFileController = new ConfigFileController(configController, namespaceUtil, watchKeysUtil,
-        grayReleaseRulesHolder);
+        grayReleaseRulesHolder, bizConfig);
 
     someAppId = "someAppId";
     someClusterName = "someClusterName";
@@ -98,10 +109,8 @@ public class ConfigFileControllerTest {
     when(grayReleaseRulesHolder.hasGrayReleaseRule(anyString(), anyString(), anyString(),
         anyString())).thenReturn(false);
 
-    watchedKeys2CacheKey = (Multimap<String, String>) ReflectionTestUtils
-        .getField(configFileController, "watchedKeys2CacheKey");
-    cacheKey2WatchedKeys = (Multimap<String, String>) ReflectionTestUtils
-        .getField(configFileController, "cacheKey2WatchedKeys");
+    watchedKeysIndex = (WatchedKeysIndex) ReflectionTestUtils
+        .getField(configFileController, "watchedKeysIndex");
   }
 
   @Test
@@ -129,22 +138,19 @@ public class ConfigFileControllerTest {
     when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace,
         someDataCenter)).thenReturn(watchKeys);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController.queryConfigAsProperties(someAppId, someClusterName, someNamespace,
             someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
 
-    assertEquals(2, watchedKeys2CacheKey.size());
-    assertEquals(2, cacheKey2WatchedKeys.size());
-    assertTrue(watchedKeys2CacheKey.containsEntry(someWatchKey, cacheKey));
-    assertTrue(watchedKeys2CacheKey.containsEntry(anotherWatchKey, cacheKey));
-    assertTrue(cacheKey2WatchedKeys.containsEntry(cacheKey, someWatchKey));
-    assertTrue(cacheKey2WatchedKeys.containsEntry(cacheKey, anotherWatchKey));
+    assertEquals(Collections.singleton(cacheKey), watchedKeysIndex.getCacheKeys(someWatchKey));
+    assertEquals(Collections.singleton(cacheKey), watchedKeysIndex.getCacheKeys(anotherWatchKey));
+    assertEquals(watchKeys, watchedKeysIndex.getWatchedKeys(cacheKey));
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertTrue(response.getBody().contains(String.format("%s=%s", someKey, someValue)));
-    assertTrue(response.getBody().contains(String.format("%s=%s", anotherKey, anotherValue)));
+    assertTrue(bodyOf(response).contains(String.format("%s=%s", someKey, someValue)));
+    assertTrue(bodyOf(response).contains(String.format("%s=%s", anotherKey, anotherValue)));
 
-    ResponseEntity<String> anotherResponse =
+    ResponseEntity<byte[]> anotherResponse =
         configFileController.queryConfigAsProperties(someAppId, someClusterName, someNamespace,
             someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
 
@@ -173,12 +179,12 @@ public class ConfigFileControllerTest {
     when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace,
         someDataCenter)).thenReturn(watchKeys);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
             someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertEquals(configurations, GSON.fromJson(response.getBody(), responseType));
+    assertEquals(configurations, GSON.fromJson(bodyOf(response), responseType));
   }
 
   @Test
@@ -199,14 +205,120 @@ public class ConfigFileControllerTest {
     when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace,
         someDataCenter)).thenReturn(watchKeys);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController.queryConfigAsRaw(someAppId, someClusterName, someNamespace + ".json",
             someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
     assertEquals("application/json;charset=UTF-8",
         response.getHeaders().getContentType().toString());
-    assertEquals(jsonContent, response.getBody());
+    assertEquals(jsonContent, bodyOf(response));
+  }
+
+  @Test
+  public void testQueryConfigAsJsonGzipped() throws Exception {
+    Map<String, String> configurations = Maps.newLinkedHashMap();
+    for (int i = 0; i < 100; i++) {
+      configurations.put("someKey" + i, "someValue" + i);
+    }
+    ApolloConfig someApolloConfig = mock(ApolloConfig.class);
+    when(configController.queryConfig(someAppId, someClusterName, someNamespace, someDataCenter,
+        "-1", someClientIp, someClientLabel, null, someRequest, someResponse))
+        .thenReturn(someApolloConfig);
+    when(someApolloConfig.getConfigurations()).thenReturn(configurations);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace,
+        someDataCenter)).thenReturn(Sets.newHashSet("someWatchKey"));
+    when(bizConfig.isConfigServiceResponseCompressionEnabled()).thenReturn(true);
+    when(someRequest.getHeaders(HttpHeaders.ACCEPT_ENCODING))
+        .thenReturn(Collections.enumeration(Lists.newArrayList("gzip")));
+
+    ResponseEntity<byte[]> response =
+        configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
+            someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+    assertEquals("application/json;charset=UTF-8",
+        response.getHeaders().getContentType().toString());
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getBody()))) {
+      assertEquals(configurations, GSON.fromJson(
+          new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8), Map.class));
+    }
+  }
+
+  @Test
+  public void testCompressedBodyWeighed() throws Exception {
+    String someContent = new String(new char[4096]).replace('\0', 'x');
+
+    ConfigFileController.ConfigFileBody plainBody =
+        new ConfigFileController.ConfigFileBody(someContent, null);
+    ConfigFileController.ConfigFileBody compressedBody =
+        new ConfigFileController.ConfigFileBody(someContent, null, true);
+
+    assertNull(plainBody.getGzippedBody());
+    assertEquals(someContent.length(), plainBody.getWeight());
+    assertEquals(someContent.length() + compressedBody.getGzippedBody().length,
+        compressedBody.getWeight());
+  }
+
+  @Test
+  public void testQueryConfigAsJsonNotAcceptingGzip() throws Exception {
+    Map<String, String> configurations = Maps.newLinkedHashMap();
+    for (int i = 0; i < 100; i++) {
+      configurations.put("someKey" + i, "someValue" + i);
+    }
+    ApolloConfig someApolloConfig = mock(ApolloConfig.class);
+    when(configController.queryConfig(someAppId, someClusterName, someNamespace, someDataCenter,
+        "-1", someClientIp, someClientLabel, null, someRequest, someResponse))
+        .thenReturn(someApolloConfig);
+    when(someApolloConfig.getConfigurations()).thenReturn(configurations);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace,
+        someDataCenter)).thenReturn(Sets.newHashSet("someWatchKey"));
+    when(bizConfig.isConfigServiceResponseCompressionEnabled()).thenReturn(true);
+
+    ResponseEntity<byte[]> response =
+        configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
+            someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(GSON.toJson(configurations), bodyOf(response));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  public void testQueryConfigAsJsonWithIfNoneMatch() throws Exception {
+    String someReleaseKey = "someReleaseKey";
+    ApolloConfig someApolloConfig = mock(ApolloConfig.class);
+    when(configController.queryConfig(someAppId, someClusterName, someNamespace, someDataCenter,
+        "-1", someClientIp, someClientLabel, null, someRequest, someResponse))
+        .thenReturn(someApolloConfig);
+    when(someApolloConfig.getConfigurations()).thenReturn(ImmutableMap.of("someKey", "someValue"));
+    when(someApolloConfig.getReleaseKey()).thenReturn(someReleaseKey);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace,
+        someDataCenter)).thenReturn(Sets.newHashSet("someWatchKey"));
+    when(someRequest.getHeaders(HttpHeaders.IF_NONE_MATCH))
+        .thenReturn(Collections.enumeration(Lists.newArrayList("W/\"someReleaseKey\"")));
+
+    ResponseEntity<byte[]> response =
+        configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
+            someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
+
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertNull(response.getBody());
+    verify(someResponse, times(1)).setHeader(HttpHeaders.ETAG, "W/\"someReleaseKey\"");
+  }
+
+  @Test
+  public void testQueryConfigAsJsonNotModifiedByConfig() throws Exception {
+    when(someResponse.getStatus()).thenReturn(HttpServletResponse.SC_NOT_MODIFIED);
+
+    ResponseEntity<byte[]> response =
+        configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
+            someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
+
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
   }
 
   @Test
@@ -226,11 +338,11 @@ public class ConfigFileControllerTest {
         "-1", someClientIp, someClientLabel, null, someRequest, someResponse))
         .thenReturn(someApolloConfig);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
             someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
 
-    ResponseEntity<String> anotherResponse =
+    ResponseEntity<byte[]> anotherResponse =
         configFileController.queryConfigAsJson(someAppId, someClusterName, someNamespace,
             someDataCenter, someClientIp, someClientLabel, someRequest, someResponse);
 
@@ -238,9 +350,8 @@ public class ConfigFileControllerTest {
         someDataCenter, "-1", someClientIp, someClientLabel, null, someRequest, someResponse);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertEquals(configurations, GSON.fromJson(response.getBody(), responseType));
-    assertTrue(watchedKeys2CacheKey.isEmpty());
-    assertTrue(cacheKey2WatchedKeys.isEmpty());
+    assertEquals(configurations, GSON.fromJson(bodyOf(response), responseType));
+    assertTrue(watchedKeysIndex.isEmpty());
   }
 
   @Test
@@ -254,20 +365,46 @@ public class ConfigFileControllerTest {
     ReleaseMessage someReleaseMessage = mock(ReleaseMessage.class);
     when(someReleaseMessage.getMessage()).thenReturn(someWatchKey);
 
-    Cache<String, String> cache =
-        (Cache<String, String>) ReflectionTestUtils.getField(configFileController, "localCache");
-    cache.put(someCacheKey, someValue);
-    cache.put(anotherCacheKey, someValue);
+    Cache<String, ConfigFileController.ConfigFileBody> cache =
+        (Cache<String, ConfigFileController.ConfigFileBody>) ReflectionTestUtils
+            .getField(configFileController, "localCache");
+    cache.put(someCacheKey, new ConfigFileController.ConfigFileBody(someValue, null));
+    cache.put(anotherCacheKey, new ConfigFileController.ConfigFileBody(someValue, null));
+
+    watchedKeysIndex.put(someCacheKey, Sets.newHashSet(someWatchKey, anotherWatchKey));
+    watchedKeysIndex.put(anotherCacheKey, Sets.newHashSet(someWatchKey, anotherWatchKey));
+
+    configFileController.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    assertNull(cache.getIfPresent(someCacheKey));
+    assertNull(cache.getIfPresent(anotherCacheKey));
+    assertTrue(watchedKeysIndex.isEmpty());
+  }
+
+  @Test
+  public void testReplacedCacheEntryStaysIndexed() throws Exception {
+    String someWatchKey = "someWatchKey";
+    String someCacheKey = "someCacheKey";
+    String someValue = "someValue";
+    ReleaseMessage someReleaseMessage = mock(ReleaseMessage.class);
+    when(someReleaseMessage.getMessage()).thenReturn(someWatchKey);
 
-    watchedKeys2CacheKey.putAll(someWatchKey, Lists.newArrayList(someCacheKey, anotherCacheKey));
-    watchedKeys2CacheKey.putAll(anotherWatchKey, Lists.newArrayList(someCacheKey, anotherCacheKey));
+    Cache<String, ConfigFileController.ConfigFileBody> cache =
+        (Cache<String, ConfigFileController.ConfigFileBody>) ReflectionTestUtils
+            .getField(configFileController, "localCache");
+    cache.put(someCacheKey, new ConfigFileController.ConfigFileBody(someValue, null));
+    watchedKeysIndex.put(someCacheKey, Sets.newHashSet(someWatchKey));
+    cache.put(someCacheKey, new ConfigFileController.ConfigFileBody(someValue, null));
 
-    cacheKey2WatchedKeys.putAll(someCacheKey, Lists.newArrayList(someWatchKey, anotherWatchKey));
-    cacheKey2WatchedKeys.putAll(anotherCacheKey, Lists.newArrayList(someWatchKey, anotherWatchKey));
+    assertEquals(Collections.singleton(someCacheKey), watchedKeysIndex.getCacheKeys(someWatchKey));
 
     configFileController.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
 
-    assertTrue(watchedKeys2CacheKey.isEmpty());
-    assertTrue(cacheKey2WatchedKeys.isEmpty());
+    assertNull(cache.getIfPresent(someCacheKey));
+    assertTrue(watchedKeysIndex.isEmpty());
+  }
+
+  private String bodyOf(ResponseEntity<byte[]> response) {
+    return new String(response.getBody(), StandardCharsets.UTF_8);
   }
 }
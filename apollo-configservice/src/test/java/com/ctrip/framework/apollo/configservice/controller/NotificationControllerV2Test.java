@@ -22,9 +22,11 @@ import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.LongPollingTimeoutScheduler;
+import com.ctrip.framework.apollo.configservice.util.NotificationFanoutScheduler;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
-import com.ctrip.framework.apollo.configservice.wrapper.CaseInsensitiveMultimapWrapper;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.WatcherRegistry;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
@@ -35,6 +37,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -48,7 +51,6 @@ import org.springframework.web.context.request.async.DeferredResult;
 
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -81,16 +83,21 @@ public class NotificationControllerV2Test {
   private WatchKeysUtil watchKeysUtil;
   @Mock
   private BizConfig bizConfig;
+  @Mock
+  private LongPollingTimeoutScheduler longPollingTimeoutScheduler;
 
   private Gson gson;
 
-  private CaseInsensitiveMultimapWrapper<DeferredResultWrapper> deferredResults;
+  private WatcherRegistry<DeferredResultWrapper> deferredResults;
 
   @Before
   public void setUp() throws Exception {
     gson = new Gson();
+    when(bizConfig.releaseMessageNotificationWorkers()).thenReturn(2);
     controller = new NotificationControllerV2(watchKeysUtil, releaseMessageService,
-        entityManagerUtil, namespaceUtil, gson, bizConfig);
+        entityManagerUtil, namespaceUtil, gson, bizConfig,
+        new NotificationFanoutScheduler(bizConfig, new SimpleMeterRegistry()),
+        longPollingTimeoutScheduler);
 
     when(bizConfig.releaseMessageNotificationBatch()).thenReturn(100);
     when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(5);
@@ -111,7 +118,7 @@ public class NotificationControllerV2Test {
     when(namespaceUtil.normalizeNamespace(someAppId, somePublicNamespace))
         .thenReturn(somePublicNamespace);
 
-    deferredResults = (CaseInsensitiveMultimapWrapper<DeferredResultWrapper>) ReflectionTestUtils
+    deferredResults = (WatcherRegistry<DeferredResultWrapper>) ReflectionTestUtils
         .getField(controller, "deferredResults");
   }
 
@@ -519,7 +526,7 @@ public class NotificationControllerV2Test {
   private void assertWatchKeys(Multimap<String, String> watchKeysMap,
       DeferredResult deferredResult) {
     for (String watchKey : watchKeysMap.values()) {
-      Collection<DeferredResultWrapper> deferredResultWrappers = deferredResults.get(watchKey);
+      Iterable<DeferredResultWrapper> deferredResultWrappers = deferredResults.snapshot(watchKey);
       boolean found = false;
       for (DeferredResultWrapper wrapper : deferredResultWrappers) {
         if (Objects.equals(wrapper.getResult(), deferredResult)) {
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.filter;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.service.ConfigServiceWarmUpManager;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SlowStartAdmissionFilterTest {
+
+  private SlowStartAdmissionFilter slowStartAdmissionFilter;
+
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ConfigServiceWarmUpManager configServiceWarmUpManager;
+  @Mock
+  private HttpServletRequest request;
+  @Mock
+  private HttpServletResponse response;
+  @Mock
+  private FilterChain filterChain;
+
+  @Before
+  public void setUp() {
+    slowStartAdmissionFilter = new SlowStartAdmissionFilter(bizConfig, configServiceWarmUpManager);
+  }
+
+  @Test
+  public void testSlowStartDisabled() throws Exception {
+    when(bizConfig.configServiceSlowStartWindowInSecond()).thenReturn(0);
+
+    slowStartAdmissionFilter.doFilter(request, response, filterChain);
+
+    verify(filterChain).doFilter(request, response);
+    verify(response, never()).sendError(anyInt(), anyString());
+  }
+
+  @Test
+  public void testRejectBeforeWarmedUp() throws Exception {
+    when(bizConfig.configServiceSlowStartWindowInSecond()).thenReturn(60);
+    when(configServiceWarmUpManager.getMillisSinceWarmedUp()).thenReturn(-1L);
+
+    slowStartAdmissionFilter.doFilter(request, response, filterChain);
+
+    verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+        "ConfigServiceWarmingUp");
+    verify(filterChain, never()).doFilter(request, response);
+  }
+
+  @Test
+  public void testAdmitAllAfterSlowStartWindow() throws Exception {
+    when(bizConfig.configServiceSlowStartWindowInSecond()).thenReturn(60);
+    when(configServiceWarmUpManager.getMillisSinceWarmedUp()).thenReturn(60 * 1000L);
+
+    slowStartAdmissionFilter.doFilter(request, response, filterChain);
+    slowStartAdmissionFilter.doFilter(request, response, filterChain);
+
+    verify(filterChain, times(2)).doFilter(request, response);
+    // no need to check again once the slow start is finished
+    verify(configServiceWarmUpManager, times(1)).getMillisSinceWarmedUp();
+  }
+
+  @Test
+  public void testAdmitPartiallyDuringSlowStartWindow() throws Exception {
+    int requests = 1000;
+    when(bizConfig.configServiceSlowStartWindowInSecond()).thenReturn(60);
+    when(configServiceWarmUpManager.getMillisSinceWarmedUp()).thenReturn(30 * 1000L);
+
+    for (int i = 0; i < requests; i++) {
+      slowStartAdmissionFilter.doFilter(request, response, filterChain);
+    }
+
+    // about half of the requests are admitted
+    verify(filterChain, atLeast(requests / 4)).doFilter(request, response);
+    verify(response, atLeast(requests / 4))
+        .sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "ConfigServiceWarmingUp");
+  }
+}
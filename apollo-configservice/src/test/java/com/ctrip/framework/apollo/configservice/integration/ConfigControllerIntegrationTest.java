@@ -16,26 +16,44 @@
  */
 package com.ctrip.framework.apollo.configservice.integration;
 
+import com.ctrip.framework.apollo.configservice.dto.ApolloConfigQuery;
+import com.ctrip.framework.apollo.configservice.dto.ApolloConfigQueryResult;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
 
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.HttpStatusCodeException;
 
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -86,6 +104,95 @@ public class ConfigControllerIntegrationTest extends AbstractBaseIntegrationTest
     assertEquals("v1", result.getConfigurations().get("k1"));
   }
 
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigsOfMultipleNamespaces() throws Exception {
+    String someNotExistNamespace = "someNotExistNamespace";
+    List<ApolloConfigQuery> queries = Lists.newArrayList(
+        new ApolloConfigQuery(ConfigConsts.NAMESPACE_APPLICATION, "TEST-RELEASE-KEY1"),
+        new ApolloConfigQuery(somePublicNamespace, null),
+        new ApolloConfigQuery(someNotExistNamespace, null));
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+
+    ResponseEntity<String> response = restTemplate.postForEntity(
+        "http://{baseurl}/configs/{appId}/{clusterName}?ip={clientIp}",
+        new HttpEntity<>(new Gson().toJson(queries), headers), String.class, getHostUrl(),
+        someAppId, someDefaultCluster, someClientIp);
+    List<ApolloConfigQueryResult> results = new Gson().fromJson(response.getBody(),
+        new TypeToken<List<ApolloConfigQueryResult>>() {}.getType());
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(3, results.size());
+    assertEquals(ConfigConsts.NAMESPACE_APPLICATION, results.get(0).getNamespaceName());
+    assertEquals(HttpStatus.NOT_MODIFIED.value(), results.get(0).getStatusCode());
+    assertNull(results.get(0).getConfig());
+    assertEquals(somePublicNamespace, results.get(1).getNamespaceName());
+    assertEquals(HttpStatus.OK.value(), results.get(1).getStatusCode());
+    assertEquals("TEST-RELEASE-KEY3", results.get(1).getConfig().getReleaseKey());
+    assertEquals("default-v1", results.get(1).getConfig().getConfigurations().get("k1"));
+    assertEquals(someNotExistNamespace, results.get(2).getNamespaceName());
+    assertEquals(HttpStatus.NOT_FOUND.value(), results.get(2).getStatusCode());
+  }
+
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigServedFromRenderedBody() throws Exception {
+    ResponseEntity<String> response = null;
+    for (int i = 0; i < 2; i++) {
+      response = restTemplate.getForEntity(
+          "http://{baseurl}/configs/{appId}/{clusterName}/{namespace}", String.class,
+          getHostUrl(), someAppId, ConfigConsts.CLUSTER_NAME_DEFAULT,
+          ConfigConsts.NAMESPACE_APPLICATION);
+    }
+    ApolloConfig result = new Gson().fromJson(response.getBody(), ApolloConfig.class);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+    // the rendered body is written with its length
+    assertEquals(response.getBody().getBytes(StandardCharsets.UTF_8).length,
+        response.getHeaders().getContentLength());
+    assertEquals("TEST-RELEASE-KEY1", result.getReleaseKey());
+    assertEquals("v1", result.getConfigurations().get("k1"));
+  }
+
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/test-large-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigGzipped() throws Exception {
+    URL url = new URL(String.format("http://%s/configs/%s/%s/%s", getHostUrl(), someAppId,
+        ConfigConsts.CLUSTER_NAME_DEFAULT, "largeNamespace"));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+    try {
+      assertEquals(HttpStatus.OK.value(), connection.getResponseCode());
+      assertEquals("gzip", connection.getHeaderField(HttpHeaders.CONTENT_ENCODING));
+      assertEquals(HttpHeaders.ACCEPT_ENCODING, connection.getHeaderField(HttpHeaders.VARY));
+      byte[] body;
+      try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+        body = ByteStreams.toByteArray(in);
+      }
+      ApolloConfig result =
+          new Gson().fromJson(new String(body, StandardCharsets.UTF_8), ApolloConfig.class);
+
+      assertEquals("TEST-LARGE-RELEASE-KEY", result.getReleaseKey());
+      assertEquals(60, result.getConfigurations().size());
+    } finally {
+      connection.disconnect();
+    }
+  }
+
   @Test
   @Sql(scripts = "/integration-test/test-release.sql",
       executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
@@ -239,6 +346,32 @@ public class ConfigControllerIntegrationTest extends AbstractBaseIntegrationTest
     assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
   }
 
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigNotModifiedWithIfNoneMatch() throws Exception {
+    ResponseEntity<ApolloConfig> response =
+        restTemplate.getForEntity("http://{baseurl}/configs/{appId}/{clusterName}/{namespace}",
+            ApolloConfig.class, getHostUrl(), someAppId, someCluster, someNamespace);
+    String etag = response.getHeaders().getETag();
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("W/\"TEST-RELEASE-KEY2\"", etag);
+    assertEquals("no-cache", response.getHeaders().getCacheControl());
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(etag);
+    ResponseEntity<ApolloConfig> anotherResponse = restTemplate.exchange(
+        "http://{baseurl}/configs/{appId}/{clusterName}/{namespace}", HttpMethod.GET,
+        new HttpEntity<>(headers), ApolloConfig.class, getHostUrl(), someAppId, someCluster,
+        someNamespace);
+
+    assertEquals(HttpStatus.NOT_MODIFIED, anotherResponse.getStatusCode());
+    assertEquals(etag, anotherResponse.getHeaders().getETag());
+  }
+
   @Test
   @Sql(scripts = "/integration-test/test-release.sql",
       executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
@@ -19,6 +19,7 @@ package com.ctrip.framework.apollo.configservice.integration;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 
@@ -28,17 +29,25 @@ import com.ctrip.framework.apollo.core.ConfigConsts;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.jdbc.Sql;
 
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.Assert.assertEquals;
@@ -156,6 +165,39 @@ public class ConfigFileControllerIntegrationTest extends AbstractBaseIntegration
     assertTrue(result.contains("k2=someDC-v2"));
   }
 
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/test-large-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigAsJsonGzipped() throws Exception {
+    URL url = new URL(String.format("http://%s/configfiles/json/%s/%s/%s", getHostUrl(),
+        someAppId, someDefaultCluster, "largeNamespace"));
+    // the second request is served from the cache
+    for (int i = 0; i < 2; i++) {
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip");
+      try {
+        assertEquals(HttpStatus.OK.value(), connection.getResponseCode());
+        assertEquals("gzip", connection.getHeaderField(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, connection.getHeaderField(HttpHeaders.VARY));
+        assertTrue(connection.getContentType().startsWith("application/json"));
+        byte[] body;
+        try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+          body = ByteStreams.toByteArray(in);
+        }
+        Map<String, String> configs =
+            GSON.fromJson(new String(body, StandardCharsets.UTF_8), mapResponseType);
+
+        assertEquals(60, configs.size());
+      } finally {
+        connection.disconnect();
+      }
+    }
+  }
+
   @Test
   @Sql(scripts = "/integration-test/test-release.sql",
       executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
@@ -172,6 +214,31 @@ public class ConfigFileControllerIntegrationTest extends AbstractBaseIntegration
     assertEquals("v2", configs.get("k2"));
   }
 
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigAsJsonNotModifiedWithIfNoneMatch() throws Exception {
+    ResponseEntity<String> response = restTemplate.getForEntity(
+        "http://{baseurl}/configfiles/json/{appId}/{clusterName}/{namespace}", String.class,
+        getHostUrl(), someAppId, someCluster, someNamespace);
+    String etag = response.getHeaders().getETag();
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("W/\"TEST-RELEASE-KEY2\"", etag);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(etag);
+    ResponseEntity<String> anotherResponse = restTemplate.exchange(
+        "http://{baseurl}/configfiles/json/{appId}/{clusterName}/{namespace}", HttpMethod.GET,
+        new HttpEntity<>(headers), String.class, getHostUrl(), someAppId, someCluster,
+        someNamespace);
+
+    assertEquals(HttpStatus.NOT_MODIFIED, anotherResponse.getStatusCode());
+    assertEquals(etag, anotherResponse.getHeaders().getETag());
+  }
+
   @Test
   @Sql(scripts = "/integration-test/test-release.sql",
       executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class NotificationControllerV3IntegrationTest extends AbstractBaseIntegrationTest {
+  private static final Type notificationsTypeReference =
+      new TypeToken<List<ApolloConfigNotification>>() {}.getType();
+
+  @Autowired
+  private Gson gson;
+
+  @Autowired
+  private ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+
+  private String someAppId;
+  private String someCluster;
+  private String defaultNamespace;
+  private ExecutorService executorService;
+
+  @Before
+  public void setUp() throws Exception {
+    ReflectionTestUtils.invokeMethod(releaseMessageServiceWithCache, "reset");
+    someAppId = "someAppId";
+    someCluster = ConfigConsts.CLUSTER_NAME_DEFAULT;
+    defaultNamespace = ConfigConsts.NAMESPACE_APPLICATION;
+    executorService = Executors.newFixedThreadPool(1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executorService.shutdownNow();
+  }
+
+  @Test(timeout = 5000L)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testStreamNotificationWithDefaultNamespace() throws Exception {
+    AtomicBoolean stop = new AtomicBoolean();
+    String key = assembleKey(someAppId, someCluster, defaultNamespace);
+    periodicSendMessage(executorService, key, stop);
+
+    List<ApolloConfigNotification> notifications = readFirstEvent(defaultNamespace,
+        ConfigConsts.NOTIFICATION_ID_PLACEHOLDER);
+
+    stop.set(true);
+
+    assertEquals(1, notifications.size());
+    assertEquals(defaultNamespace, notifications.get(0).getNamespaceName());
+    assertNotEquals(0, notifications.get(0).getNotificationId());
+
+    ApolloNotificationMessages messages = notifications.get(0).getMessages();
+    assertEquals(1, messages.getDetails().size());
+    assertTrue(messages.has(key));
+  }
+
+  @Test(timeout = 5000L)
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/test-release-message.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testStreamNotificationResumeFromOutDatedNotificationId() throws Exception {
+    long someOutDatedNotificationId = 1;
+    long newNotificationId = 10;
+
+    List<ApolloConfigNotification> notifications = readFirstEvent(defaultNamespace,
+        someOutDatedNotificationId);
+
+    assertEquals(1, notifications.size());
+    assertEquals(defaultNamespace, notifications.get(0).getNamespaceName());
+    assertEquals(newNotificationId, notifications.get(0).getNotificationId());
+  }
+
+  @Test(timeout = 5000L)
+  @Sql(scripts = "/integration-test/test-release.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/test-release-message.sql",
+      executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql",
+      executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testStreamNotificationWithNamespaceInIncorrectCase() throws Exception {
+    AtomicBoolean stop = new AtomicBoolean();
+    String key = assembleKey(someAppId, someCluster, defaultNamespace);
+    periodicSendMessage(executorService, key, stop);
+    String someNamespaceInIncorrectCase = defaultNamespace.toUpperCase();
+    long upToDateNotificationId = 10;
+
+    List<ApolloConfigNotification> notifications = readFirstEvent(someNamespaceInIncorrectCase,
+        upToDateNotificationId);
+
+    stop.set(true);
+
+    assertEquals(1, notifications.size());
+    assertEquals(someNamespaceInIncorrectCase, notifications.get(0).getNamespaceName());
+    assertTrue(notifications.get(0).getNotificationId() > upToDateNotificationId);
+  }
+
+  private List<ApolloConfigNotification> readFirstEvent(String namespace, long notificationId)
+      throws Exception {
+    String notifications = gson.toJson(
+        Lists.newArrayList(new ApolloConfigNotification(namespace, notificationId)));
+    URL url = new URL(String.format(
+        "http://%s/notifications/v3/stream?appId=%s&cluster=%s&notifications=%s", getHostUrl(),
+        someAppId, someCluster, URLEncoder.encode(notifications, StandardCharsets.UTF_8.name())));
+    // read the stream directly, as http clients try to drain the endless response on close
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE);
+    try {
+      assertEquals(HttpStatus.OK.value(), connection.getResponseCode());
+      BufferedReader reader = new BufferedReader(
+          new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("data:")) {
+          return gson.fromJson(line.substring("data:".length()), notificationsTypeReference);
+        }
+      }
+    } finally {
+      connection.disconnect();
+    }
+    fail("No notification event received");
+    return null;
+  }
+}
@@ -19,6 +19,7 @@ package com.ctrip.framework.apollo.configservice.service;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.repository.AppNamespaceRepository;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.awaitility.Awaitility;
@@ -52,6 +53,8 @@ public class AppNamespaceServiceWithCacheTest {
 
   @Mock
   private BizConfig bizConfig;
+  @Mock
+  private ConfigServiceSnapshotStore snapshotStore;
 
   private int scanInterval;
   private TimeUnit scanIntervalTimeUnit;
@@ -61,7 +64,7 @@ public class AppNamespaceServiceWithCacheTest {
   @Before
   public void setUp() throws Exception {
     appNamespaceServiceWithCache =
-        new AppNamespaceServiceWithCache(appNamespaceRepository, bizConfig);
+        new AppNamespaceServiceWithCache(appNamespaceRepository, bizConfig, snapshotStore);
 
     scanInterval = 50;
     scanIntervalTimeUnit = TimeUnit.MILLISECONDS;
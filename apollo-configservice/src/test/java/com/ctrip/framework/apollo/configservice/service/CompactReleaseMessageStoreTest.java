@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactReleaseMessageStoreTest {
+
+  private CompactReleaseMessageStore compactReleaseMessageStore;
+
+  @Before
+  public void setUp() {
+    compactReleaseMessageStore = new CompactReleaseMessageStore();
+  }
+
+  @Test
+  public void testPutIfNewer() {
+    String someMessage = "someAppId+default+application";
+
+    assertEquals(CompactReleaseMessageStore.NOT_FOUND,
+        compactReleaseMessageStore.get(someMessage));
+
+    assertTrue(compactReleaseMessageStore.putIfNewer(someMessage, 2));
+    assertFalse(compactReleaseMessageStore.putIfNewer(someMessage, 1));
+    assertFalse(compactReleaseMessageStore.putIfNewer(someMessage, 2));
+    assertEquals(2, compactReleaseMessageStore.get(someMessage));
+
+    assertTrue(compactReleaseMessageStore.putIfNewer(someMessage, 3));
+    assertEquals(3, compactReleaseMessageStore.get(someMessage));
+    assertEquals(1, compactReleaseMessageStore.size());
+  }
+
+  @Test
+  public void testMessagesSharingComponents() {
+    String someMessage = "someAppId+default+application";
+    String anotherMessage = "someAppId+someCluster+application";
+    String yetAnotherMessage = "anotherAppId+default+application";
+    String someMessageInAnotherCase = "SomeAppId+default+application";
+
+    compactReleaseMessageStore.putIfNewer(someMessage, 1);
+    compactReleaseMessageStore.putIfNewer(anotherMessage, 2);
+
+    // all the components are known, but not the message
+    assertEquals(CompactReleaseMessageStore.NOT_FOUND,
+        compactReleaseMessageStore.get("someAppId+someCluster+someCluster"));
+    assertEquals(CompactReleaseMessageStore.NOT_FOUND,
+        compactReleaseMessageStore.get(yetAnotherMessage));
+    assertEquals(CompactReleaseMessageStore.NOT_FOUND,
+        compactReleaseMessageStore.get(someMessageInAnotherCase));
+
+    compactReleaseMessageStore.putIfNewer(yetAnotherMessage, 3);
+    compactReleaseMessageStore.putIfNewer(someMessageInAnotherCase, 4);
+
+    assertEquals(1, compactReleaseMessageStore.get(someMessage));
+    assertEquals(2, compactReleaseMessageStore.get(anotherMessage));
+    assertEquals(3, compactReleaseMessageStore.get(yetAnotherMessage));
+    assertEquals(4, compactReleaseMessageStore.get(someMessageInAnotherCase));
+    assertEquals(4, compactReleaseMessageStore.size());
+  }
+
+  @Test
+  public void testMessagesOfOtherFormats() {
+    String someMessage = "someMessage";
+    String anotherMessage = "some+message+with+more+components";
+    String emptyComponentsMessage = "someAppId++application";
+
+    compactReleaseMessageStore.putIfNewer(someMessage, 1);
+    compactReleaseMessageStore.putIfNewer(anotherMessage, 2);
+    compactReleaseMessageStore.putIfNewer(emptyComponentsMessage, 3);
+    assertFalse(compactReleaseMessageStore.putIfNewer(someMessage, 1));
+
+    assertEquals(1, compactReleaseMessageStore.get(someMessage));
+    assertEquals(2, compactReleaseMessageStore.get(anotherMessage));
+    assertEquals(3, compactReleaseMessageStore.get(emptyComponentsMessage));
+    assertEquals(3, compactReleaseMessageStore.size());
+  }
+
+  @Test
+  public void testForEachAfterResize() {
+    int messages = 10000;
+    for (int i = 1; i <= messages; i++) {
+      compactReleaseMessageStore.putIfNewer(assembleMessage(i), i);
+    }
+    compactReleaseMessageStore.putIfNewer("someMessage", messages + 1);
+
+    Map<String, Long> result = Maps.newHashMap();
+    compactReleaseMessageStore.forEach(result::put);
+
+    assertEquals(messages + 1, compactReleaseMessageStore.size());
+    assertEquals(messages + 1, result.size());
+    for (int i = 1; i <= messages; i++) {
+      assertEquals(i, (long) result.get(assembleMessage(i)));
+      assertEquals(i, compactReleaseMessageStore.get(assembleMessage(i)));
+    }
+    assertEquals(messages + 1, (long) result.get("someMessage"));
+  }
+
+  @Test
+  public void testReadWhileWriting() throws Exception {
+    int messages = 50000;
+    String someMessage = assembleMessage(0);
+    compactReleaseMessageStore.putIfNewer(someMessage, 1);
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Future<?> writer = executorService.submit(() -> {
+      for (int i = 1; i <= messages; i++) {
+        compactReleaseMessageStore.putIfNewer(assembleMessage(i), i);
+      }
+    });
+
+    while (!writer.isDone()) {
+      assertEquals(1, compactReleaseMessageStore.get(someMessage));
+    }
+    writer.get();
+    executorService.shutdown();
+    executorService.awaitTermination(1, TimeUnit.SECONDS);
+
+    assertEquals(messages + 1, compactReleaseMessageStore.size());
+    assertEquals(messages, compactReleaseMessageStore.get(assembleMessage(messages)));
+  }
+
+  private String assembleMessage(int i) {
+    return "app" + i % 1000 + "+cluster" + i % 7 + "+namespace" + i / 1000;
+  }
+}
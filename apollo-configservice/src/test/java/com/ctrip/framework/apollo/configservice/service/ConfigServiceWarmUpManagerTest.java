@@ -0,0 +1,104 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigServiceWarmUpManagerTest {
+
+  private ConfigServiceWarmUpManager configServiceWarmUpManager;
+
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+  @Mock
+  private ConfigService configService;
+
+  @Before
+  public void setUp() {
+    configServiceWarmUpManager =
+        new ConfigServiceWarmUpManager(bizConfig, releaseMessageServiceWithCache, configService);
+  }
+
+  @Test
+  public void testWarmUpDisabled() throws Exception {
+    when(bizConfig.isConfigServiceWarmUpEnabled()).thenReturn(false);
+
+    configServiceWarmUpManager.afterPropertiesSet();
+
+    assertTrue(configServiceWarmUpManager.isWarmedUp());
+    verify(releaseMessageServiceWithCache, never()).findAllLatestReleaseMessages();
+  }
+
+  @Test
+  public void testWarmUpRecentlyReleasedNamespaces() throws Exception {
+    when(bizConfig.configServiceWarmUpNamespaces()).thenReturn(2);
+    when(bizConfig.configServiceWarmUpTimeoutInSecond()).thenReturn(60);
+    when(releaseMessageServiceWithCache.findAllLatestReleaseMessages()).thenReturn(
+        Lists.newArrayList(assembleReleaseMessage(1, "someAppId+default+application"),
+            assembleReleaseMessage(3, "anotherAppId+someCluster+application"),
+            assembleReleaseMessage(2, "someAppId+default+someNamespace")));
+
+    assertFalse(configServiceWarmUpManager.isWarmedUp());
+    assertEquals(-1, configServiceWarmUpManager.getMillisSinceWarmedUp());
+
+    configServiceWarmUpManager.warmUp();
+
+    assertTrue(configServiceWarmUpManager.isWarmedUp());
+    assertTrue(configServiceWarmUpManager.getMillisSinceWarmedUp() >= 0);
+    verify(configService).loadConfig("anotherAppId", null, null, "anotherAppId", "someCluster",
+        "application", null, null);
+    verify(configService).loadConfig("someAppId", null, null, "someAppId", "default",
+        "someNamespace", null, null);
+    verify(configService, never()).loadConfig("someAppId", null, null, "someAppId", "default",
+        "application", null, null);
+  }
+
+  @Test
+  public void testWarmedUpEvenIfFailed() throws Exception {
+    when(bizConfig.configServiceWarmUpTimeoutInSecond()).thenReturn(60);
+    when(releaseMessageServiceWithCache.findAllLatestReleaseMessages())
+        .thenThrow(new RuntimeException("some error"));
+
+    configServiceWarmUpManager.warmUp();
+
+    assertTrue(configServiceWarmUpManager.isWarmedUp());
+  }
+
+  private ReleaseMessage assembleReleaseMessage(long id, String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+}
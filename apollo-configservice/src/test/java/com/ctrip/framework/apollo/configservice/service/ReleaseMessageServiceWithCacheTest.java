@@ -20,6 +20,8 @@ import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshot;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.Before;
@@ -27,15 +29,14 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.Pageable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
-import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
@@ -53,26 +54,20 @@ public class ReleaseMessageServiceWithCacheTest {
   @Mock
   private BizConfig bizConfig;
 
-  private int scanInterval;
-
-  private TimeUnit scanIntervalTimeUnit;
+  @Mock
+  private ConfigServiceSnapshotStore snapshotStore;
 
   @Before
 
   public void setUp() throws Exception {
     releaseMessageServiceWithCache =
-        new ReleaseMessageServiceWithCache(releaseMessageRepository, bizConfig);
-
-    scanInterval = 10;
-    scanIntervalTimeUnit = TimeUnit.MILLISECONDS;
-    when(bizConfig.releaseMessageCacheScanInterval()).thenReturn(scanInterval);
-    when(bizConfig.releaseMessageCacheScanIntervalTimeUnit()).thenReturn(scanIntervalTimeUnit);
+        new ReleaseMessageServiceWithCache(releaseMessageRepository, bizConfig, snapshotStore);
   }
 
   @Test
   public void testWhenNoReleaseMessages() throws Exception {
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn
-        (Collections.emptyList());
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class)))
+        .thenReturn(Collections.emptyList());
 
     releaseMessageServiceWithCache.afterPropertiesSet();
 
@@ -93,13 +88,11 @@ public class ReleaseMessageServiceWithCacheTest {
     ReleaseMessage anotherMsg = assembleReleaseMsg(2, anotherMsgContent);
     ReleaseMessage anotherRepeatMsg = assembleReleaseMsg(3, anotherMsgContent);
 
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
-        .thenReturn(Arrays.asList(someMsg, anotherMsg, anotherRepeatMsg));
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class)))
+        .thenReturn(assembleRows(someMsg, anotherMsg, anotherRepeatMsg));
 
     releaseMessageServiceWithCache.afterPropertiesSet();
 
-    verify(bizConfig).releaseMessageCacheScanInterval();
-
     ReleaseMessage latestReleaseMsg = releaseMessageServiceWithCache
         .findLatestReleaseMessageForMessages(Sets.newHashSet(someMsgContent, anotherMsgContent));
 
@@ -120,30 +113,31 @@ public class ReleaseMessageServiceWithCacheTest {
   }
 
   @Test
-  public void testWhenReleaseMsgSizeBiggerThan500() throws Exception {
+  public void testWhenReleaseMsgSizeBiggerThanBulkLoadBatch() throws Exception {
     String someMsgContent = "msg1";
-    List<ReleaseMessage> firstBatchReleaseMsg = new ArrayList<>(500);
-    for (int i = 0; i < 500; i++) {
-      firstBatchReleaseMsg.add(assembleReleaseMsg(i + 1, someMsgContent));
+    List<Object[]> firstBatchRows = new ArrayList<>(5000);
+    for (int i = 0; i < 5000; i++) {
+      firstBatchRows.add(new Object[] {(long) i + 1, someMsgContent});
     }
 
     String antherMsgContent = "msg2";
-    ReleaseMessage antherMsg = assembleReleaseMsg(501, antherMsgContent);
+    ReleaseMessage antherMsg = assembleReleaseMsg(5001, antherMsgContent);
 
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
-        .thenReturn(firstBatchReleaseMsg);
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(500L))
-        .thenReturn(Collections.singletonList(antherMsg));
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class)))
+        .thenReturn(firstBatchRows);
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(5000L), any(Pageable.class)))
+        .thenReturn(assembleRows(antherMsg));
 
     releaseMessageServiceWithCache.afterPropertiesSet();
 
-    verify(releaseMessageRepository, times(1)).findFirst500ByIdGreaterThanOrderByIdAsc(500L);
+    verify(releaseMessageRepository, times(1))
+        .findIdAndMessageByIdGreaterThan(eq(5000L), any(Pageable.class));
 
     ReleaseMessage latestReleaseMsg = releaseMessageServiceWithCache
         .findLatestReleaseMessageForMessages(Sets.newHashSet(someMsgContent, antherMsgContent));
 
     assertNotNull(latestReleaseMsg);
-    assertEquals(501, latestReleaseMsg.getId());
+    assertEquals(5001, latestReleaseMsg.getId());
     assertEquals(antherMsgContent, latestReleaseMsg.getMessage());
 
     List<String> msgContentList = Arrays.asList(someMsgContent, antherMsgContent);
@@ -151,48 +145,36 @@ public class ReleaseMessageServiceWithCacheTest {
         .findLatestReleaseMessagesGroupByMessages(Sets.newLinkedHashSet(msgContentList));
 
     assertEquals(2, latestReleaseMsgGroupByMsgContent.size());
-    assertEquals(500, latestReleaseMsgGroupByMsgContent.get(0).getId());
-    assertEquals(501, latestReleaseMsgGroupByMsgContent.get(1).getId());
+    assertEquals(5000, latestReleaseMsgGroupByMsgContent.get(0).getId());
+    assertEquals(5001, latestReleaseMsgGroupByMsgContent.get(1).getId());
+    assertEquals(5001, releaseMessageServiceWithCache.getMaxIdScanned());
   }
 
   @Test
-  public void testNewReleaseMessagesBeforeHandleMessage() throws Exception {
+  public void testReleaseMessageCommittedLateWithHandleMessage() throws Exception {
     String someMessageContent = "someMessage";
-    long someMessageId = 1;
-    ReleaseMessage someMessage = assembleReleaseMsg(someMessageId, someMessageContent);
+    String anotherMessageContent = "anotherMessage";
 
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
-        .thenReturn(Lists.newArrayList(someMessage));
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class)))
+        .thenReturn(assembleRows(assembleReleaseMsg(1, someMessageContent),
+            assembleReleaseMsg(3, someMessageContent)));
 
     releaseMessageServiceWithCache.afterPropertiesSet();
 
-    ReleaseMessage latestReleaseMsg = releaseMessageServiceWithCache
-        .findLatestReleaseMessageForMessages(Sets.newHashSet(someMessageContent));
-
-    List<ReleaseMessage> latestReleaseMsgGroupByMsgContent = releaseMessageServiceWithCache
-        .findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(someMessageContent));
-
-    assertEquals(someMessageId, latestReleaseMsg.getId());
-    assertEquals(someMessageContent, latestReleaseMsg.getMessage());
-    assertEquals(latestReleaseMsg, latestReleaseMsgGroupByMsgContent.get(0));
-
-    long newMessageId = 2;
-    ReleaseMessage newMessage = assembleReleaseMsg(newMessageId, someMessageContent);
-
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(someMessageId))
-        .thenReturn(Lists.newArrayList(newMessage));
+    assertEquals(3, releaseMessageServiceWithCache.getMaxIdScanned());
 
-    await().atMost(scanInterval * 500, scanIntervalTimeUnit).untilAsserted(() -> {
-      ReleaseMessage newLatestReleaseMsg = releaseMessageServiceWithCache
-          .findLatestReleaseMessageForMessages(Sets.newHashSet(someMessageContent));
+    // message 2 is committed after message 3, and delivered by the scanner afterwards
+    releaseMessageServiceWithCache.handleMessage(assembleReleaseMsg(2, anotherMessageContent),
+        Topics.APOLLO_RELEASE_TOPIC);
+    releaseMessageServiceWithCache.handleMessage(assembleReleaseMsg(2, someMessageContent),
+        Topics.APOLLO_RELEASE_TOPIC);
 
-      List<ReleaseMessage> newLatestReleaseMsgGroupByMsgContent = releaseMessageServiceWithCache
-          .findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(someMessageContent));
-
-      assertEquals(newMessageId, newLatestReleaseMsg.getId());
-      assertEquals(someMessageContent, newLatestReleaseMsg.getMessage());
-      assertEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
-    });
+    assertEquals(2, releaseMessageServiceWithCache
+        .findLatestReleaseMessageForMessages(Sets.newHashSet(anotherMessageContent)).getId());
+    assertEquals(3, releaseMessageServiceWithCache
+        .findLatestReleaseMessageForMessages(Sets.newHashSet(someMessageContent)).getId());
+    assertEquals(3, releaseMessageServiceWithCache.getMaxIdScanned());
+    verify(releaseMessageRepository, never()).findFirst500ByIdGreaterThanOrderByIdAsc(anyLong());
   }
 
   @Test
@@ -201,8 +183,8 @@ public class ReleaseMessageServiceWithCacheTest {
     long someMessageId = 1;
     ReleaseMessage someMessage = assembleReleaseMsg(someMessageId, someMessageContent);
 
-    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
-        .thenReturn(Lists.newArrayList(someMessage));
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class)))
+        .thenReturn(assembleRows(someMessage));
 
     releaseMessageServiceWithCache.afterPropertiesSet();
 
@@ -214,7 +196,7 @@ public class ReleaseMessageServiceWithCacheTest {
 
     assertEquals(someMessageId, latestReleaseMsg.getId());
     assertEquals(someMessageContent, latestReleaseMsg.getMessage());
-    assertEquals(latestReleaseMsg, latestReleaseMsgGroupByMsgContent.get(0));
+    assertEquals(latestReleaseMsg.getId(), latestReleaseMsgGroupByMsgContent.get(0).getId());
 
     long newMessageId = 2;
     ReleaseMessage newMessage = assembleReleaseMsg(newMessageId, someMessageContent);
@@ -229,7 +211,84 @@ public class ReleaseMessageServiceWithCacheTest {
 
     assertEquals(newMessageId, newLatestReleaseMsg.getId());
     assertEquals(someMessageContent, newLatestReleaseMsg.getMessage());
-    assertEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
+    assertEquals(newLatestReleaseMsg.getId(), newLatestReleaseMsgGroupByMsgContent.get(0).getId());
+  }
+
+  @Test
+  public void testRestoreFromSnapshot() throws Exception {
+    String someMsgContent = "msg1";
+    String anotherMsgContent = "msg2";
+    ConfigServiceSnapshot snapshot = mock(ConfigServiceSnapshot.class);
+    when(snapshot.getMaxReleaseMessageId()).thenReturn(5L);
+    when(snapshot.getReleaseMessages())
+        .thenReturn(Lists.newArrayList(assembleReleaseMsg(5, someMsgContent)));
+    when(snapshotStore.getSnapshot()).thenReturn(snapshot);
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(5L), any(Pageable.class)))
+        .thenReturn(assembleRows(assembleReleaseMsg(6, anotherMsgContent)));
+
+    releaseMessageServiceWithCache.afterPropertiesSet();
+
+    assertEquals(5, releaseMessageServiceWithCache
+        .findLatestReleaseMessageForMessages(Sets.newHashSet(someMsgContent)).getId());
+    assertEquals(6, releaseMessageServiceWithCache
+        .findLatestReleaseMessageForMessages(Sets.newHashSet(anotherMsgContent)).getId());
+    assertEquals(6, releaseMessageServiceWithCache.getMaxIdScanned());
+    verify(releaseMessageRepository, never())
+        .findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class));
+  }
+
+  @Test
+  public void testServeSnapshotOnDatabaseFailure() throws Exception {
+    String someMsgContent = "msg1";
+    ConfigServiceSnapshot snapshot = mock(ConfigServiceSnapshot.class);
+    when(snapshot.getMaxReleaseMessageId()).thenReturn(5L);
+    when(snapshot.getReleaseMessages())
+        .thenReturn(Lists.newArrayList(assembleReleaseMsg(5, someMsgContent)));
+    when(snapshotStore.getSnapshot()).thenReturn(snapshot);
+    when(bizConfig.isConfigServiceSnapshotServeOnDatabaseFailure()).thenReturn(true);
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(anyLong(), any(Pageable.class)))
+        .thenThrow(new RuntimeException("database down"));
+
+    releaseMessageServiceWithCache.afterPropertiesSet();
+
+    assertEquals(5, releaseMessageServiceWithCache
+        .findLatestReleaseMessageForMessages(Sets.newHashSet(someMsgContent)).getId());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testDatabaseFailureWithoutSnapshot() throws Exception {
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(anyLong(), any(Pageable.class)))
+        .thenThrow(new RuntimeException("database down"));
+
+    releaseMessageServiceWithCache.afterPropertiesSet();
+  }
+
+  @Test
+  public void testFindAllLatestReleaseMessages() throws Exception {
+    when(releaseMessageRepository.findIdAndMessageByIdGreaterThan(eq(0L), any(Pageable.class)))
+        .thenReturn(assembleRows(assembleReleaseMsg(1, "someAppId+default+application"),
+            assembleReleaseMsg(2, "someAppId+default+application"),
+            assembleReleaseMsg(3, "someOtherMessage")));
+
+    releaseMessageServiceWithCache.afterPropertiesSet();
+
+    List<ReleaseMessage> releaseMessages =
+        releaseMessageServiceWithCache.findAllLatestReleaseMessages();
+    releaseMessages.sort((o1, o2) -> Long.compare(o1.getId(), o2.getId()));
+
+    assertEquals(2, releaseMessages.size());
+    assertEquals(2, releaseMessages.get(0).getId());
+    assertEquals("someAppId+default+application", releaseMessages.get(0).getMessage());
+    assertEquals(3, releaseMessages.get(1).getId());
+    assertEquals("someOtherMessage", releaseMessages.get(1).getMessage());
+  }
+
+  private List<Object[]> assembleRows(ReleaseMessage... releaseMessages) {
+    List<Object[]> rows = new ArrayList<>(releaseMessages.length);
+    for (ReleaseMessage releaseMessage : releaseMessages) {
+      rows.add(new Object[] {releaseMessage.getId(), releaseMessage.getMessage()});
+    }
+    return rows;
   }
 
   private ReleaseMessage assembleReleaseMsg(long id, String msgContent) {
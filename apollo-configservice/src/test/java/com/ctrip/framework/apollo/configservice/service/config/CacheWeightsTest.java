@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import org.junit.Test;
+
+public class CacheWeightsTest {
+
+  @Test
+  public void testOfString() throws Exception {
+    assertEquals(0, CacheWeights.ofString(null));
+    assertEquals(6, CacheWeights.ofString("abc"));
+  }
+
+  @Test
+  public void testOfConfigurations() throws Exception {
+    Map<String, String> configurations = Maps.newHashMap();
+    configurations.put("k1", "v1");
+    configurations.put("k2", null);
+
+    assertEquals(2 * CacheWeights.ENTRY_OVERHEAD_IN_BYTES + 12,
+        CacheWeights.ofConfigurations(configurations));
+  }
+
+  @Test
+  public void testToWeight() throws Exception {
+    assertEquals(100, CacheWeights.toWeight(100));
+    assertEquals(Integer.MAX_VALUE, CacheWeights.toWeight(Integer.MAX_VALUE + 1L));
+  }
+}
@@ -32,9 +32,11 @@ import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.google.common.collect.Lists;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.regex.Pattern;
 import org.junit.Before;
 import org.junit.Test;
@@ -61,10 +63,11 @@ public class ConfigServiceWithCacheAndCacheKeyIgnoreCaseTest {
   private ReleaseMessage someReleaseMessage;
   @Mock
   private BizConfig bizConfig;
-  @Mock
   private MeterRegistry meterRegistry;
   @Mock
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private ConfigServiceSnapshotStore snapshotStore;
 
   private String someAppId;
   private String someClusterName;
@@ -76,8 +79,9 @@ public class ConfigServiceWithCacheAndCacheKeyIgnoreCaseTest {
 
   @Before
   public void setUp() throws Exception {
+    meterRegistry = new SimpleMeterRegistry();
     configServiceWithCache = new ConfigServiceWithCache(releaseService, releaseMessageService,
-        grayReleaseRulesHolder, bizConfig, meterRegistry);
+        grayReleaseRulesHolder, bizConfig, meterRegistry, snapshotStore);
 
     when(bizConfig.isConfigServiceCacheKeyIgnoreCase()).thenReturn(true);
 
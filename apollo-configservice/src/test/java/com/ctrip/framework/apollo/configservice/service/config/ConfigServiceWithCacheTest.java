@@ -27,9 +27,25 @@ import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshot;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ConfigServiceSnapshotStore;
+import com.ctrip.framework.apollo.configservice.service.snapshot.ReleaseSnapshot;
+import com.ctrip.framework.apollo.core.ConfigConsts;
 
 import com.google.common.collect.Sets;
+import com.google.common.base.Strings;
+import com.google.common.cache.LoadingCache;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.junit.Before;
@@ -37,10 +53,18 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -62,10 +86,11 @@ public class ConfigServiceWithCacheTest {
   private ReleaseMessage someReleaseMessage;
   @Mock
   private BizConfig bizConfig;
-  @Mock
   private MeterRegistry meterRegistry;
   @Mock
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private ConfigServiceSnapshotStore snapshotStore;
 
   private String someAppId;
   private String someClusterName;
@@ -76,8 +101,9 @@ public class ConfigServiceWithCacheTest {
 
   @Before
   public void setUp() throws Exception {
+    meterRegistry = new SimpleMeterRegistry();
     configServiceWithCache = new ConfigServiceWithCache(releaseService, releaseMessageService,
-        grayReleaseRulesHolder, bizConfig, meterRegistry);
+        grayReleaseRulesHolder, bizConfig, meterRegistry, snapshotStore);
 
     configServiceWithCache.initialize();
 
@@ -375,4 +401,431 @@ public class ConfigServiceWithCacheTest {
     verify(releaseService, times(1)).findLatestActiveRelease(someAppId, someClusterName,
         someNamespaceName);
   }
+
+  @Test
+  public void testLoadConfigFromResolvedCluster() throws Exception {
+    String someDataCenter = "someDataCenter";
+    String defaultClusterName = ConfigConsts.CLUSTER_NAME_DEFAULT;
+    ConfigServiceWithCache configService = spy(configServiceWithCache);
+    when(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(any(), any(), any(), any(),
+        any(), any())).thenReturn(null);
+    when(releaseService.findLatestActiveRelease(someAppId, defaultClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+
+    Release release = configService.loadConfig(someAppId, null, null, someAppId, someClusterName,
+        someNamespaceName, someDataCenter, null);
+    Release anotherRelease = configService.loadConfig(someAppId, null, null, someAppId,
+        someClusterName, someNamespaceName, someDataCenter, null);
+
+    assertEquals(someRelease, release);
+    assertEquals(someRelease, anotherRelease);
+    verify(configService, times(1)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, null);
+    verify(configService, times(1)).findLatestActiveRelease(someAppId, someDataCenter,
+        someNamespaceName, null);
+    verify(configService, times(2)).findLatestActiveRelease(someAppId, defaultClusterName,
+        someNamespaceName, null);
+  }
+
+  @Test
+  public void testLoadConfigWithNoReleaseResolved() throws Exception {
+    ConfigServiceWithCache configService = spy(configServiceWithCache);
+    when(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(any(), any(), any(), any(),
+        any(), any())).thenReturn(null);
+
+    assertNull(configService.loadConfig(someAppId, null, null, someAppId, someClusterName,
+        someNamespaceName, null, null));
+    assertNull(configService.loadConfig(someAppId, null, null, someAppId, someClusterName,
+        someNamespaceName, null, null));
+
+    verify(configService, times(2)).findLatestActiveRelease(anyString(), anyString(),
+        anyString(), any());
+  }
+
+  @Test
+  public void testLoadConfigAfterResolvedClusterReleased() throws Exception {
+    String defaultClusterName = ConfigConsts.CLUSTER_NAME_DEFAULT;
+    Release anotherRelease = mock(Release.class);
+    ConfigServiceWithCache configService = spy(configServiceWithCache);
+    when(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(any(), any(), any(), any(),
+        any(), any())).thenReturn(null);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(null, anotherRelease);
+    when(releaseService.findLatestActiveRelease(someAppId, defaultClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+    when(someReleaseMessage.getMessage()).thenReturn(someKey);
+
+    assertEquals(someRelease, configService.loadConfig(someAppId, null, null, someAppId,
+        someClusterName, someNamespaceName, null, null));
+
+    configService.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(anotherRelease, configService.loadConfig(someAppId, null, null, someAppId,
+        someClusterName, someNamespaceName, null, null));
+    assertEquals(anotherRelease, configService.loadConfig(someAppId, null, null, someAppId,
+        someClusterName, someNamespaceName, null, null));
+    verify(configService, times(3)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, null);
+  }
+
+  @Test
+  public void testLoadConfigWithGrayReleaseRuleInSkippedCluster() throws Exception {
+    String someClientAppId = "someClientAppId";
+    String someClientIp = "someClientIp";
+    String defaultClusterName = ConfigConsts.CLUSTER_NAME_DEFAULT;
+    long someGrayReleaseId = 1;
+    Release someGrayRelease = mock(Release.class);
+    ConfigServiceWithCache configService = spy(configServiceWithCache);
+    when(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(any(), any(), any(), any(),
+        any(), any())).thenReturn(null);
+    when(releaseService.findLatestActiveRelease(someAppId, defaultClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+
+    assertEquals(someRelease, configService.loadConfig(someClientAppId, someClientIp, null,
+        someAppId, someClusterName, someNamespaceName, null, null));
+
+    when(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(someClientAppId, someClientIp,
+        null, someAppId, someClusterName, someNamespaceName)).thenReturn(someGrayReleaseId);
+    when(releaseService.findActiveOne(someGrayReleaseId)).thenReturn(someGrayRelease);
+
+    assertEquals(someGrayRelease, configService.loadConfig(someClientAppId, someClientIp, null,
+        someAppId, someClusterName, someNamespaceName, null, null));
+  }
+
+  @Test
+  public void testLoadConfigWithClientNotifiedOfSkippedCluster() throws Exception {
+    String defaultClusterName = ConfigConsts.CLUSTER_NAME_DEFAULT;
+    ConfigServiceWithCache configService = spy(configServiceWithCache);
+    when(grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule(any(), any(), any(), any(),
+        any(), any())).thenReturn(null);
+    when(releaseService.findLatestActiveRelease(someAppId, defaultClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+    someNotificationMessages.put(someKey, someNotificationId);
+
+    configService.loadConfig(someAppId, null, null, someAppId, someClusterName,
+        someNamespaceName, null, null);
+    configService.loadConfig(someAppId, null, null, someAppId, someClusterName,
+        someNamespaceName, null, someNotificationMessages);
+
+    verify(configService, times(1)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, null);
+    verify(configService, times(1)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages);
+  }
+
+  @Test
+  public void testFindActiveOneWithOffHeapConfigurations() throws Exception {
+    long someId = 1;
+    String someConfigurations = "{\"someKey\":\"someValue\"}";
+    Release release = new Release();
+    release.setId(someId);
+    release.setReleaseKey("someReleaseKey");
+    release.setConfigurations(someConfigurations);
+    when(bizConfig.isConfigServiceCacheOffHeapEnabled()).thenReturn(true);
+    when(releaseService.findActiveOne(someId)).thenReturn(release);
+    ConfigServiceWithCache configService = new ConfigServiceWithCache(releaseService,
+        releaseMessageService, grayReleaseRulesHolder, bizConfig, meterRegistry, snapshotStore);
+    configService.initialize();
+
+    Release result = configService.findActiveOne(someId, someNotificationMessages);
+    Release anotherResult = configService.findActiveOne(someId, someNotificationMessages);
+
+    assertNotSame(release, result);
+    assertEquals(someConfigurations, result.getConfigurations());
+    assertEquals(release.getReleaseKey(), result.getReleaseKey());
+    assertEquals(someId, result.getId());
+    assertEquals(someConfigurations, anotherResult.getConfigurations());
+    assertEquals(someConfigurations.getBytes(StandardCharsets.UTF_8).length,
+        meterRegistry.get("apollo.config-cache.off-heap.bytes").gauge().value(), 0);
+    verify(releaseService, times(1)).findActiveOne(someId);
+  }
+
+  @Test
+  public void testReleaseEvictedBySize() throws Exception {
+    long someId = 1;
+    Release release = new Release();
+    release.setId(someId);
+    // larger than the share of a cache segment
+    release.setConfigurations(Strings.repeat("a", 300 * 1024));
+    when(bizConfig.getConfigServiceCacheMaxSizeInBytes()).thenReturn(1024L * 1024L);
+    when(releaseService.findActiveOne(someId)).thenReturn(release);
+    ConfigServiceWithCache configService = new ConfigServiceWithCache(releaseService,
+        releaseMessageService, grayReleaseRulesHolder, bizConfig, meterRegistry, snapshotStore);
+    configService.initialize();
+
+    assertEquals(release, configService.findActiveOne(someId, someNotificationMessages));
+    assertEquals(release, configService.findActiveOne(someId, someNotificationMessages));
+
+    verify(releaseService, times(2)).findActiveOne(someId);
+    assertEquals(2, meterRegistry.get("apollo.config-cache.evictions")
+        .tag("cache", "config_id_cache").tag("cause", "SIZE").counter().count(), 0);
+  }
+
+  @Test
+  public void testResolvedClustersCapped() throws Exception {
+    Map<String, String> resolvedClusters =
+        configServiceWithCache.findResolvedClusters(someAppId, someNamespaceName);
+    for (int i = 0; i < ConfigServiceWithCache.MAX_RESOLVED_CLUSTERS_PER_NAMESPACE * 2; i++) {
+      resolvedClusters.put("someCluster" + i, someClusterName);
+    }
+
+    assertTrue(resolvedClusters.size()
+        <= ConfigServiceWithCache.MAX_RESOLVED_CLUSTERS_PER_NAMESPACE);
+    assertSame(resolvedClusters,
+        configServiceWithCache.findResolvedClusters(someAppId, someNamespaceName));
+  }
+
+  @Test
+  public void testOffHeapBytesReleasedOnEviction() throws Exception {
+    long someId = 1;
+    Release release = new Release();
+    release.setId(someId);
+    // larger than the share of a cache segment
+    release.setConfigurations(Strings.repeat("a", 300 * 1024));
+    when(bizConfig.isConfigServiceCacheOffHeapEnabled()).thenReturn(true);
+    when(bizConfig.getConfigServiceCacheMaxSizeInBytes()).thenReturn(1024L * 1024L);
+    when(releaseService.findActiveOne(someId)).thenReturn(release);
+    ConfigServiceWithCache configService = new ConfigServiceWithCache(releaseService,
+        releaseMessageService, grayReleaseRulesHolder, bizConfig, meterRegistry, snapshotStore);
+    configService.initialize();
+
+    assertEquals(release.getConfigurations(),
+        configService.findActiveOne(someId, someNotificationMessages).getConfigurations());
+
+    assertEquals(1, meterRegistry.get("apollo.config-cache.evictions")
+        .tag("cache", "config_id_cache").tag("cause", "SIZE").counter().count(), 0);
+    assertEquals(0, meterRegistry.get("apollo.config-cache.off-heap.bytes").gauge().value(), 0);
+  }
+
+  @Test
+  public void testServeOldReleaseWhileRefreshing() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+    CountDownLatch reloadStarted = new CountDownLatch(1);
+    CountDownLatch reloadBlocked = new CountDownLatch(1);
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(someReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+
+    assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, someNotificationMessages));
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(anotherReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenAnswer(invocation -> {
+          reloadStarted.countDown();
+          reloadBlocked.await(5, TimeUnit.SECONDS);
+          return anotherRelease;
+        });
+    when(anotherReleaseMessage.getMessage()).thenReturn(someKey);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    ApolloNotificationMessages newNotificationMessages = new ApolloNotificationMessages();
+    newNotificationMessages.put(someKey, someNewNotificationId);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> refresh = executorService.submit(() -> configServiceWithCache
+          .getConfigCacheRefresher().handleMessage(anotherReleaseMessage,
+              Topics.APOLLO_RELEASE_TOPIC));
+      assertTrue(reloadStarted.await(5, TimeUnit.SECONDS));
+
+      // served without waiting for the reload
+      assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+          someClusterName, someNamespaceName, someNotificationMessages));
+
+      // clients notified of the new release wait for the reload in flight
+      Future<Release> notifiedClient = executorService.submit(() -> configServiceWithCache
+          .findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+              newNotificationMessages));
+
+      reloadBlocked.countDown();
+      refresh.get(5, TimeUnit.SECONDS);
+
+      assertEquals(anotherRelease, notifiedClient.get(5, TimeUnit.SECONDS));
+      assertEquals(anotherRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+          someClusterName, someNamespaceName, someNotificationMessages));
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName);
+    assertEquals(1, meterRegistry.get("apollo.config-cache.load").tag("mode", "load").timer()
+        .count());
+    assertEquals(1, meterRegistry.get("apollo.config-cache.load").tag("mode", "refresh").timer()
+        .count());
+  }
+
+  @Test
+  public void testReloadAgainWhenReloadJoinedIsStale() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+    CountDownLatch reloadStarted = new CountDownLatch(1);
+    CountDownLatch reloadBlocked = new CountDownLatch(1);
+    AtomicInteger releaseLoads = new AtomicInteger();
+
+    // the first reload reads the release message before the newer release is committed
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(null, someReleaseMessage, anotherReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenAnswer(invocation -> {
+          switch (releaseLoads.incrementAndGet()) {
+            case 1:
+              return someRelease;
+            case 2:
+              reloadStarted.countDown();
+              reloadBlocked.await(5, TimeUnit.SECONDS);
+              return someRelease;
+            default:
+              return anotherRelease;
+          }
+        });
+    when(someReleaseMessage.getMessage()).thenReturn(someKey);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getMessage()).thenReturn(someKey);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, null));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> staleRefresh = executorService.submit(() -> configServiceWithCache
+          .getConfigCacheRefresher().handleMessage(someReleaseMessage,
+              Topics.APOLLO_RELEASE_TOPIC));
+      assertTrue(reloadStarted.await(5, TimeUnit.SECONDS));
+
+      Future<?> refresh = executorService.submit(() -> configServiceWithCache
+          .getConfigCacheRefresher().handleMessage(anotherReleaseMessage,
+              Topics.APOLLO_RELEASE_TOPIC));
+      // let the refresh join the stale reload in flight
+      TimeUnit.MILLISECONDS.sleep(100);
+      reloadBlocked.countDown();
+
+      staleRefresh.get(5, TimeUnit.SECONDS);
+      refresh.get(5, TimeUnit.SECONDS);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertEquals(anotherRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, null));
+    verify(releaseService, times(3)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testOutdatedEntriesDroppedWithCacheEntries() throws Exception {
+    String anotherKey = ReleaseMessageKeyGenerator.generate(someAppId, someClusterName,
+        "anotherNamespaceName");
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    when(someReleaseMessage.getMessage()).thenReturn(someKey);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getMessage()).thenReturn(anotherKey);
+    when(anotherReleaseMessage.getId()).thenReturn(someNotificationId + 1);
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(null);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+    when(releaseMessageService.findLatestReleaseMessageForMessages(
+        Lists.newArrayList(anotherKey))).thenThrow(new IllegalStateException("db down"));
+    Map<String, Long> outdatedEntries = (Map<String, Long>) ReflectionTestUtils
+        .getField(configServiceWithCache, "outdatedEntries");
+
+    configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        null);
+    configServiceWithCache.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    configServiceWithCache.handleMessage(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    assertEquals(Sets.newHashSet(someKey, anotherKey), outdatedEntries.keySet());
+
+    // the reload of an entry not cached fails
+    configServiceWithCache.getConfigCacheRefresher().handleMessage(anotherReleaseMessage,
+        Topics.APOLLO_RELEASE_TOPIC);
+    assertEquals(Collections.singleton(someKey), outdatedEntries.keySet());
+
+    ((LoadingCache<String, ?>) ReflectionTestUtils.getField(configServiceWithCache,
+        "configCache")).invalidate(someKey);
+    assertTrue(outdatedEntries.isEmpty());
+  }
+
+  @Test
+  public void testRefreshConfigCacheOffNotificationPath() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(someReleaseMessage, anotherReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease, anotherRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getMessage()).thenReturn(someKey);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, null));
+
+    // only marked outdated on the notification path
+    configServiceWithCache.handleMessage(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    verify(releaseService, times(1)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName);
+
+    configServiceWithCache.getConfigCacheRefresher().handleMessage(anotherReleaseMessage,
+        Topics.APOLLO_RELEASE_TOPIC);
+    verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName);
+
+    assertEquals(anotherRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, null));
+
+    // refreshed already
+    configServiceWithCache.getConfigCacheRefresher().handleMessage(anotherReleaseMessage,
+        Topics.APOLLO_RELEASE_TOPIC);
+    verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName);
+  }
+
+  @Test
+  public void testLoadFromSnapshotOnDatabaseFailure() throws Exception {
+    Release snapshotRelease = new Release();
+    snapshotRelease.setId(1);
+    snapshotRelease.setConfigurations("{}");
+    ConfigServiceSnapshot snapshot = mock(ConfigServiceSnapshot.class);
+    when(snapshot.findRelease(someKey))
+        .thenReturn(new ReleaseSnapshot(someKey, someNotificationId, snapshotRelease));
+    when(snapshotStore.getSnapshot()).thenReturn(snapshot);
+    when(bizConfig.isConfigServiceSnapshotServeOnDatabaseFailure()).thenReturn(true);
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenThrow(new RuntimeException("database down"));
+
+    assertEquals(snapshotRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, someNotificationMessages));
+  }
+
+  @Test
+  public void testRestoreLatestReleases() throws Exception {
+    Release snapshotRelease = new Release();
+    snapshotRelease.setId(1);
+    snapshotRelease.setConfigurations("{}");
+
+    configServiceWithCache.restoreLatestReleases(Lists.newArrayList(
+        new ReleaseSnapshot(someKey, someNotificationId, snapshotRelease)));
+
+    assertEquals(snapshotRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, someNotificationMessages));
+    List<ReleaseSnapshot> latestReleases = configServiceWithCache.findLatestReleases();
+    assertEquals(1, latestReleases.size());
+    assertEquals(someKey, latestReleases.get(0).getMessageKey());
+    assertEquals(someNotificationId, latestReleases.get(0).getNotificationId());
+    verify(releaseService, never()).findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName);
+  }
 }
@@ -16,18 +16,28 @@
  */
 package com.ctrip.framework.apollo.configservice.service.config;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.configservice.service.config.DefaultIncrementalSyncService.ReleaseKeyPair;
 import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.lang.reflect.Field;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -36,6 +46,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * @author jason
@@ -44,6 +58,10 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 public class DefaultIncrementalSyncServiceTest {
 
   private DefaultIncrementalSyncService defaultIncrementalSyncService;
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ReleaseService releaseService;
   private String someKey;
   private String someReleaseKey;
   private String someAppId;
@@ -58,7 +76,11 @@ public class DefaultIncrementalSyncServiceTest {
 
   @Before
   public void setUp() throws Exception {
-    defaultIncrementalSyncService = new DefaultIncrementalSyncService();
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    when(bizConfig.getIncrementalChangeCacheMaxSizeInBytes()).thenReturn(16 * 1024L * 1024L);
+    when(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes()).thenReturn(64 * 1024L * 1024L);
+    defaultIncrementalSyncService = new DefaultIncrementalSyncService(bizConfig, releaseService,
+        new ReleaseConfigurationCache(bizConfig, meterRegistry), meterRegistry);
     configurationChangeCache = getConfigurationChangeCache(defaultIncrementalSyncService);
     someReleaseKey = "someReleaseKey";
     someAppId = "someAppId";
@@ -228,5 +250,57 @@ public class DefaultIncrementalSyncServiceTest {
     assertEquals("DELETED", result.get(0).getConfigurationChangeType());
   }
 
+  @Test
+  public void testHandleMessagePrecomputesConfigurationChanges() {
+    Release latestRelease =
+        assembleRelease(3, "release-key-3", "{\"k1\":\"v1-new\",\"k3\":\"v3\"}");
+    Release previousRelease =
+        assembleRelease(2, "release-key-2", "{\"k1\":\"v1\",\"k2\":\"v2\"}");
+    Release earliestRelease = assembleRelease(1, "release-key-1", "{\"k1\":\"v1-new\"}");
+    when(bizConfig.isConfigServiceIncrementalChangeEnabled()).thenReturn(true);
+    when(bizConfig.getIncrementalChangePrecomputeReleases()).thenReturn(2);
+    when(releaseService.findActiveReleases(someAppId, someClusterName, someNamespaceName,
+        PageRequest.of(0, 3)))
+        .thenReturn(Lists.newArrayList(latestRelease, previousRelease, earliestRelease));
+
+    defaultIncrementalSyncService.handleMessage(new ReleaseMessage(someKey),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    List<ConfigurationChange> changes = defaultIncrementalSyncService
+        .findConfigurationChanges("release-key-3", "release-key-2");
+    assertNotNull(changes);
+    assertEquals(3, changes.size());
+    List<ConfigurationChange> anotherChanges = defaultIncrementalSyncService
+        .findConfigurationChanges("release-key-3", "release-key-1");
+    assertEquals(1, anotherChanges.size());
+    assertEquals("k3", anotherChanges.get(0).getKey());
+    assertEquals("ADDED", anotherChanges.get(0).getConfigurationChangeType());
+    // served by the precomputed changes afterwards
+    assertSame(changes, defaultIncrementalSyncService.getConfigurationChanges("release-key-3",
+        someLatestReleaseConfigurations, "release-key-2", someClientSideConfigurations));
+  }
+
+  @Test
+  public void testHandleMessageWithIncrementalChangeDisabled() {
+    when(bizConfig.isConfigServiceIncrementalChangeEnabled()).thenReturn(false);
+
+    defaultIncrementalSyncService.handleMessage(new ReleaseMessage(someKey),
+        Topics.APOLLO_RELEASE_TOPIC);
 
+    verify(releaseService, never()).findActiveReleases(any(), any(), any(), any());
+  }
+
+  @Test
+  public void testFindConfigurationChangesNotComputed() {
+    assertNull(defaultIncrementalSyncService.findConfigurationChanges(someLatestMergedReleaseKey,
+        someClientSideReleaseKey));
+  }
+
+  private Release assembleRelease(long id, String releaseKey, String configurations) {
+    Release release = new Release();
+    release.setId(id);
+    release.setReleaseKey(releaseKey);
+    release.setConfigurations(configurations);
+    return release;
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MergedConfigurationCacheTest {
+  private static final Gson GSON = new Gson();
+
+  @Mock
+  private BizConfig bizConfig;
+  private MergedConfigurationCache mergedConfigurationCache;
+
+  private Release someAppRelease;
+  private Release somePublicRelease;
+
+  @Before
+  public void setUp() throws Exception {
+    when(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes()).thenReturn(1024L * 1024);
+    when(bizConfig.getMergedConfigurationCacheMaxSizeInBytes()).thenReturn(1024L * 1024);
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    mergedConfigurationCache = new MergedConfigurationCache(bizConfig,
+        new ReleaseConfigurationCache(bizConfig, meterRegistry), meterRegistry);
+
+    someAppRelease = assembleRelease(1, "someAppId", "someKey1",
+        ImmutableMap.of("k1", "v1", "k2", "v2"));
+    somePublicRelease = assembleRelease(2, "somePublicAppId", "someKey2",
+        ImmutableMap.of("k2", "public-v2", "k3", "public-v3"));
+  }
+
+  @Test
+  public void testGetConfigurations() throws Exception {
+    List<Release> releases = Lists.newArrayList(someAppRelease, somePublicRelease);
+
+    Map<String, String> configurations = mergedConfigurationCache.getConfigurations(releases);
+
+    assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "public-v3"), configurations);
+    assertSame(configurations, mergedConfigurationCache.getConfigurations(releases));
+    assertEquals(1, mergedConfigurationCache.size());
+  }
+
+  @Test
+  public void testGetConfigurationsOfSingleRelease() throws Exception {
+    Map<String, String> configurations =
+        mergedConfigurationCache.getConfigurations(Lists.newArrayList(someAppRelease));
+
+    assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2"), configurations);
+    assertEquals(0, mergedConfigurationCache.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testGetConfigurationsIsUnmodifiable() throws Exception {
+    mergedConfigurationCache
+        .getConfigurations(Lists.newArrayList(someAppRelease, somePublicRelease))
+        .put("k4", "v4");
+  }
+
+  @Test
+  public void testInvalidateByReleaseMessage() throws Exception {
+    List<Release> releases = Lists.newArrayList(someAppRelease, somePublicRelease);
+    Map<String, String> configurations = mergedConfigurationCache.getConfigurations(releases);
+
+    mergedConfigurationCache.handleMessage(assembleMessage("somePublicAppId"),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(0, mergedConfigurationCache.size());
+    Map<String, String> reloaded = mergedConfigurationCache.getConfigurations(releases);
+    assertNotSame(configurations, reloaded);
+    assertEquals(configurations, reloaded);
+    assertEquals(1, mergedConfigurationCache.size());
+  }
+
+  @Test
+  public void testIgnoreUnrelatedReleaseMessage() throws Exception {
+    List<Release> releases = Lists.newArrayList(someAppRelease, somePublicRelease);
+    Map<String, String> configurations = mergedConfigurationCache.getConfigurations(releases);
+
+    mergedConfigurationCache.handleMessage(assembleMessage("someOtherAppId"),
+        Topics.APOLLO_RELEASE_TOPIC);
+    mergedConfigurationCache.handleMessage(assembleMessage("someAppId"), "someOtherChannel");
+
+    assertSame(configurations, mergedConfigurationCache.getConfigurations(releases));
+  }
+
+  private ReleaseMessage assembleMessage(String appId) {
+    return new ReleaseMessage(
+        ReleaseMessageKeyGenerator.generate(appId, "someCluster", "someNamespace"));
+  }
+
+  private Release assembleRelease(long id, String appId, String releaseKey,
+      Map<String, String> configurations) {
+    Release release = new Release();
+    release.setId(id);
+    release.setAppId(appId);
+    release.setClusterName("someCluster");
+    release.setNamespaceName("someNamespace");
+    release.setReleaseKey(releaseKey);
+    release.setConfigurations(GSON.toJson(configurations));
+    return release;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReleaseConfigurationCacheTest {
+  private static final Gson GSON = new Gson();
+
+  @Mock
+  private BizConfig bizConfig;
+
+  @Test
+  public void testGetConfigurationsParsesOncePerRelease() throws Exception {
+    when(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes()).thenReturn(1024L * 1024);
+    ReleaseConfigurationCache cache =
+        new ReleaseConfigurationCache(bizConfig, new SimpleMeterRegistry());
+    Release someRelease = assembleRelease(1, ImmutableMap.of("k1", "v1", "k2", "v2"));
+
+    Map<String, String> configurations = cache.getConfigurations(someRelease);
+
+    assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2"), configurations);
+    assertEquals(Lists.newArrayList("k1", "k2"), Lists.newArrayList(configurations.keySet()));
+    assertSame(configurations, cache.getConfigurations(someRelease));
+    assertEquals(1, cache.size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testGetConfigurationsIsUnmodifiable() throws Exception {
+    when(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes()).thenReturn(1024L * 1024);
+    ReleaseConfigurationCache cache =
+        new ReleaseConfigurationCache(bizConfig, new SimpleMeterRegistry());
+
+    cache.getConfigurations(assembleRelease(1, ImmutableMap.of("k1", "v1"))).put("k2", "v2");
+  }
+
+  @Test
+  public void testGetConfigurationsOfTransientRelease() throws Exception {
+    when(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes()).thenReturn(1024L * 1024);
+    ReleaseConfigurationCache cache =
+        new ReleaseConfigurationCache(bizConfig, new SimpleMeterRegistry());
+    Release someRelease = assembleRelease(0, ImmutableMap.of("k1", "v1"));
+
+    Map<String, String> configurations = cache.getConfigurations(someRelease);
+
+    assertEquals(ImmutableMap.of("k1", "v1"), configurations);
+    assertNotSame(configurations, cache.getConfigurations(someRelease));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEvictByWeight() throws Exception {
+    long someMaxSize = 4 * 1024;
+    when(bizConfig.getReleaseConfigurationCacheMaxSizeInBytes()).thenReturn(someMaxSize);
+    ReleaseConfigurationCache cache =
+        new ReleaseConfigurationCache(bizConfig, new SimpleMeterRegistry());
+    String someLargeValue = new String(new char[512]).replace('\0', 'x');
+
+    for (int i = 1; i <= 20; i++) {
+      cache.getConfigurations(assembleRelease(i, ImmutableMap.of("k", someLargeValue)));
+    }
+
+    // each release weighs more than 1KB
+    assertTrue(cache.size() < 4);
+  }
+
+  private Release assembleRelease(long id, Map<String, String> configurations) {
+    Release release = new Release();
+    release.setId(id);
+    release.setConfigurations(GSON.toJson(configurations));
+    return release;
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
+import com.google.common.collect.Lists;
+import java.util.Collection;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigServiceSnapshotManagerTest {
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private ConfigServiceSnapshotStore snapshotStore;
+  @Mock
+  private ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
+  @Mock
+  private AppNamespaceServiceWithCache appNamespaceServiceWithCache;
+  @Mock
+  private ConfigServiceWithCache configService;
+  @Mock
+  private ObjectProvider<ReleaseMessageScanner> releaseMessageScannerProvider;
+  @Mock
+  private ReleaseMessageScanner releaseMessageScanner;
+
+  private ConfigServiceSnapshotManager snapshotManager;
+
+  @Before
+  public void setUp() throws Exception {
+    snapshotManager = new ConfigServiceSnapshotManager(bizConfig, snapshotStore,
+        releaseMessageServiceWithCache, appNamespaceServiceWithCache, configService,
+        releaseMessageScannerProvider);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRestoreOnlyLatestReleases() throws Exception {
+    String someMessageKey = "someAppId+default+application";
+    String anotherMessageKey = "someAppId+default+anotherNamespace";
+    ReleaseSnapshot someRelease = new ReleaseSnapshot(someMessageKey, 1, new Release());
+    ReleaseSnapshot staleRelease = new ReleaseSnapshot(anotherMessageKey, 2, new Release());
+    ConfigServiceSnapshot snapshot = mock(ConfigServiceSnapshot.class);
+    when(snapshot.getReleases()).thenReturn(Lists.newArrayList(someRelease, staleRelease));
+    when(snapshotStore.getSnapshot()).thenReturn(snapshot);
+    when(releaseMessageServiceWithCache.findLatestReleaseMessageForMessages(
+        Collections.singleton(someMessageKey))).thenReturn(assembleReleaseMsg(1, someMessageKey));
+    when(releaseMessageServiceWithCache.findLatestReleaseMessageForMessages(
+        Collections.singleton(anotherMessageKey)))
+        .thenReturn(assembleReleaseMsg(3, anotherMessageKey));
+
+    snapshotManager.restoreLatestReleases();
+
+    ArgumentCaptor<Collection<ReleaseSnapshot>> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(configService).restoreLatestReleases(captor.capture());
+    assertEquals(Lists.newArrayList(someRelease), Lists.newArrayList(captor.getValue()));
+  }
+
+  @Test
+  public void testSaveSnapshotOnlyWhenChanged() throws Exception {
+    when(releaseMessageServiceWithCache.getMaxIdScanned()).thenReturn(1L, 1L, 2L);
+
+    snapshotManager.saveSnapshot();
+    snapshotManager.saveSnapshot();
+
+    verify(snapshotStore, times(1)).save(anyLong(), anyList(), anyList(), anyList());
+
+    snapshotManager.saveSnapshot();
+
+    verify(snapshotStore, times(1)).save(eq(1L), anyList(), anyList(), anyList());
+    verify(snapshotStore, times(1)).save(eq(2L), anyList(), anyList(), anyList());
+  }
+
+  @Test
+  public void testSaveSnapshotTillMessagesDelivered() throws Exception {
+    when(releaseMessageServiceWithCache.getMaxIdScanned()).thenReturn(5L);
+    when(releaseMessageScannerProvider.getIfAvailable()).thenReturn(releaseMessageScanner);
+    // message 3 is still missing
+    when(releaseMessageScanner.getMaxIdDelivered()).thenReturn(2L);
+
+    snapshotManager.saveSnapshot();
+
+    verify(snapshotStore, times(1)).save(eq(2L), anyList(), anyList(), anyList());
+  }
+
+  private ReleaseMessage assembleReleaseMsg(long id, String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(id);
+    return releaseMessage;
+  }
+}
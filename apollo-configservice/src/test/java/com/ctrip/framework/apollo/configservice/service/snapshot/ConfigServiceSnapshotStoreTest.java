@@ -0,0 +1,148 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.service.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.google.common.collect.Lists;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigServiceSnapshotStoreTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  @Mock
+  private BizConfig bizConfig;
+
+  private ConfigServiceSnapshotStore snapshotStore;
+  private String snapshotPath;
+
+  @Before
+  public void setUp() throws Exception {
+    snapshotPath = temporaryFolder.getRoot().getAbsolutePath();
+    when(bizConfig.isConfigServiceSnapshotEnabled()).thenReturn(true);
+    when(bizConfig.getConfigServiceSnapshotPath()).thenReturn(snapshotPath);
+    snapshotStore = new ConfigServiceSnapshotStore(bizConfig);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    long someMaxReleaseMessageId = 10;
+    ReleaseMessage someReleaseMessage = new ReleaseMessage("someAppId+default+application");
+    someReleaseMessage.setId(9);
+    AppNamespace someAppNamespace = new AppNamespace();
+    someAppNamespace.setId(1);
+    someAppNamespace.setAppId("someAppId");
+    someAppNamespace.setName("application");
+    someAppNamespace.setFormat("properties");
+    someAppNamespace.setPublic(true);
+    someAppNamespace.setDataChangeLastModifiedTime(new Date(1000));
+    Release someRelease = new Release();
+    someRelease.setId(2);
+    someRelease.setReleaseKey("someReleaseKey");
+    someRelease.setAppId("someAppId");
+    someRelease.setClusterName("default");
+    someRelease.setNamespaceName("application");
+    someRelease.setConfigurations("{\"someKey\":\"someValue\"}");
+
+    snapshotStore.save(someMaxReleaseMessageId, Lists.newArrayList(someReleaseMessage),
+        Lists.newArrayList(someAppNamespace), Lists.newArrayList(new ReleaseSnapshot(
+            someReleaseMessage.getMessage(), someReleaseMessage.getId(), someRelease)));
+
+    ConfigServiceSnapshot snapshot = new ConfigServiceSnapshotStore(bizConfig).getSnapshot();
+
+    assertEquals(someMaxReleaseMessageId, snapshot.getMaxReleaseMessageId());
+
+    List<ReleaseMessage> releaseMessages = snapshot.getReleaseMessages();
+    assertEquals(1, releaseMessages.size());
+    assertEquals(someReleaseMessage.getId(), releaseMessages.get(0).getId());
+    assertEquals(someReleaseMessage.getMessage(), releaseMessages.get(0).getMessage());
+
+    List<AppNamespace> appNamespaces = snapshot.getAppNamespaces();
+    assertEquals(1, appNamespaces.size());
+    assertEquals(someAppNamespace.getId(), appNamespaces.get(0).getId());
+    assertEquals(someAppNamespace.getName(), appNamespaces.get(0).getName());
+    assertTrue(appNamespaces.get(0).isPublic());
+    assertNull(appNamespaces.get(0).getComment());
+    assertEquals(someAppNamespace.getDataChangeLastModifiedTime(),
+        appNamespaces.get(0).getDataChangeLastModifiedTime());
+
+    assertEquals(1, snapshot.getReleases().size());
+    ReleaseSnapshot release = snapshot.findRelease("SOMEAPPID+default+application");
+    assertEquals(someReleaseMessage.getId(), release.getNotificationId());
+    assertEquals(someRelease.getId(), release.getRelease().getId());
+    assertEquals(someRelease.getReleaseKey(), release.getRelease().getReleaseKey());
+    assertEquals(someRelease.getConfigurations(), release.getRelease().getConfigurations());
+    assertNull(snapshot.findRelease("someAppId+default+anotherNamespace"));
+  }
+
+  @Test
+  public void testSaveReplacesLoadedSnapshot() throws Exception {
+    snapshotStore.save(1, Collections.emptyList(), Collections.emptyList(),
+        Collections.emptyList());
+    assertEquals(1, snapshotStore.getSnapshot().getMaxReleaseMessageId());
+
+    snapshotStore.save(2, Collections.emptyList(), Collections.emptyList(),
+        Collections.emptyList());
+    assertEquals(2, snapshotStore.getSnapshot().getMaxReleaseMessageId());
+  }
+
+  @Test
+  public void testCorruptedSnapshot() throws Exception {
+    snapshotStore.save(1, Lists.newArrayList(new ReleaseMessage("someMessage")),
+        Collections.emptyList(), Collections.emptyList());
+    byte[] content = Files.readAllBytes(Paths.get(snapshotPath, "config-service.snapshot"));
+    Files.write(Paths.get(snapshotPath, "config-service.snapshot"),
+        Arrays.copyOf(content, content.length - 3));
+
+    assertNull(new ConfigServiceSnapshotStore(bizConfig).getSnapshot());
+
+    Files.write(Paths.get(snapshotPath, "config-service.snapshot"),
+        "not a snapshot".getBytes(StandardCharsets.UTF_8));
+
+    assertNull(new ConfigServiceSnapshotStore(bizConfig).getSnapshot());
+  }
+
+  @Test
+  public void testSnapshotDisabled() throws Exception {
+    snapshotStore.save(1, Collections.emptyList(), Collections.emptyList(),
+        Collections.emptyList());
+    when(bizConfig.isConfigServiceSnapshotEnabled()).thenReturn(false);
+
+    assertNull(snapshotStore.getSnapshot());
+  }
+}
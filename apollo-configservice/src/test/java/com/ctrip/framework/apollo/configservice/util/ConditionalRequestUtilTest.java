@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.http.HttpHeaders;
+
+public class ConditionalRequestUtilTest {
+  private static final String SOME_RELEASE_KEY = "20161024-1-someReleaseKey+anotherReleaseKey";
+
+  @Test
+  public void testMatches() throws Exception {
+    assertTrue(ConditionalRequestUtil.matches("\"" + SOME_RELEASE_KEY + "\"", SOME_RELEASE_KEY));
+    assertTrue(ConditionalRequestUtil.matches("W/\"" + SOME_RELEASE_KEY + "\"", SOME_RELEASE_KEY));
+    assertTrue(ConditionalRequestUtil.matches("\"x\", \"" + SOME_RELEASE_KEY + "\" ",
+        SOME_RELEASE_KEY));
+    assertTrue(ConditionalRequestUtil.matches("*", SOME_RELEASE_KEY));
+    assertTrue(ConditionalRequestUtil.matches(ConditionalRequestUtil.toETag(SOME_RELEASE_KEY),
+        SOME_RELEASE_KEY));
+    assertTrue(ConditionalRequestUtil.matches("W/\"" + SOME_RELEASE_KEY + "-gzip\"",
+        SOME_RELEASE_KEY));
+  }
+
+  @Test
+  public void testNotMatches() throws Exception {
+    assertFalse(ConditionalRequestUtil.matches(null, SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.matches("", SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.matches(SOME_RELEASE_KEY, SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.matches("\"" + SOME_RELEASE_KEY + "1\"", SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.matches("\"x\", \"y\"", SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.matches("\"" + SOME_RELEASE_KEY + "-br\"",
+        SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.matches("\"" + SOME_RELEASE_KEY + "1-gzip\"",
+        SOME_RELEASE_KEY));
+  }
+
+  @Test
+  public void testIsNotModified() throws Exception {
+    HttpServletRequest someRequest = mock(HttpServletRequest.class);
+    when(someRequest.getHeaders(HttpHeaders.IF_NONE_MATCH)).thenReturn(
+        Collections.enumeration(Lists.newArrayList("\"x\"", "\"" + SOME_RELEASE_KEY + "\"")));
+
+    assertTrue(ConditionalRequestUtil.isNotModified(someRequest, SOME_RELEASE_KEY));
+    assertFalse(ConditionalRequestUtil.isNotModified(mock(HttpServletRequest.class),
+        SOME_RELEASE_KEY));
+  }
+
+  @Test
+  public void testWriteCacheHeaders() throws Exception {
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    HttpServletResponse anotherResponse = mock(HttpServletResponse.class);
+
+    ConditionalRequestUtil.writeCacheHeaders(someResponse, SOME_RELEASE_KEY, "no-cache");
+    ConditionalRequestUtil.writeCacheHeaders(anotherResponse, SOME_RELEASE_KEY, "");
+
+    assertEquals("W/\"" + SOME_RELEASE_KEY + "\"",
+        ConditionalRequestUtil.toETag(SOME_RELEASE_KEY));
+    verify(someResponse).setHeader(HttpHeaders.ETAG, "W/\"" + SOME_RELEASE_KEY + "\"");
+    verify(someResponse).setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+    verify(anotherResponse).setHeader(HttpHeaders.ETAG, "W/\"" + SOME_RELEASE_KEY + "\"");
+    verify(anotherResponse, never())
+        .setHeader(ArgumentMatchers.eq(HttpHeaders.CACHE_CONTROL), ArgumentMatchers.anyString());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashedWheelTimerTest {
+  private HashedWheelTimer timer;
+
+  @Before
+  public void setUp() throws Exception {
+    timer = new HashedWheelTimer("HashedWheelTimerTest", 10, TimeUnit.MILLISECONDS, 8);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    timer.stop();
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+
+    HashedWheelTimer.Timeout timeout = timer.newTimeout(latch::countDown, 50,
+        TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+    assertTrue(timeout.isExpired());
+    assertFalse(timeout.cancel());
+    assertEquals(0, timer.pendingTimeouts());
+  }
+
+  @Test
+  public void testExpireAfterMoreThanOneRound() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+
+    // 8 ticks of 10ms per round
+    timer.newTimeout(latch::countDown, 250, TimeUnit.MILLISECONDS);
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    AtomicInteger expired = new AtomicInteger();
+    HashedWheelTimer.Timeout timeout = timer.newTimeout(expired::incrementAndGet, 50,
+        TimeUnit.MILLISECONDS);
+    assertEquals(1, timer.pendingTimeouts());
+
+    assertTrue(timeout.cancel());
+    assertFalse(timeout.cancel());
+    assertTrue(timeout.isCancelled());
+    assertEquals(0, timer.pendingTimeouts());
+
+    TimeUnit.MILLISECONDS.sleep(150);
+    assertEquals(0, expired.get());
+  }
+
+  @Test
+  public void testExpireManyTimeouts() throws Exception {
+    int someCount = 1000;
+    AtomicInteger expired = new AtomicInteger();
+    for (int i = 0; i < someCount; i++) {
+      HashedWheelTimer.Timeout timeout = timer.newTimeout(expired::incrementAndGet, i % 100,
+          TimeUnit.MILLISECONDS);
+      if (i % 2 == 0) {
+        timeout.cancel();
+      }
+    }
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> timer.pendingTimeouts() == 0);
+    assertEquals(someCount / 2, expired.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNewTimeoutAfterStop() throws Exception {
+    timer.stop();
+
+    timer.newTimeout(() -> {
+    }, 10, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LongPollingTimeoutSchedulerTest {
+  private LongPollingTimeoutScheduler scheduler;
+  private MeterRegistry meterRegistry;
+
+  @Mock
+  private BizConfig bizConfig;
+
+  @Before
+  public void setUp() throws Exception {
+    meterRegistry = new SimpleMeterRegistry();
+    scheduler = new LongPollingTimeoutScheduler(bizConfig, meterRegistry);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    scheduler.destroy();
+  }
+
+  @Test
+  public void testNextTimeoutWithJitter() throws Exception {
+    long someTimeout = 60000;
+    long someJitter = 5000;
+    when(bizConfig.longPollingTimeoutInMilli()).thenReturn(someTimeout);
+    when(bizConfig.longPollingTimeoutJitterInMilli()).thenReturn(someJitter);
+
+    for (int i = 0; i < 100; i++) {
+      long timeout = scheduler.nextTimeoutInMilli();
+      assertTrue(timeout <= someTimeout && timeout >= someTimeout - someJitter);
+    }
+  }
+
+  @Test
+  public void testNextTimeoutWithoutJitter() throws Exception {
+    long someTimeout = 60000;
+    when(bizConfig.longPollingTimeoutInMilli()).thenReturn(someTimeout);
+    when(bizConfig.longPollingTimeoutJitterInMilli()).thenReturn(0L);
+
+    assertEquals(someTimeout, scheduler.nextTimeoutInMilli());
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    when(bizConfig.longPollingTimeoutInMilli()).thenReturn(200L);
+    when(bizConfig.longPollingTimeoutJitterInMilli()).thenReturn(100L);
+    DeferredResultWrapper wrapper = new DeferredResultWrapper(10000);
+    AtomicInteger timeouts = new AtomicInteger();
+    wrapper.onTimeout(timeouts::incrementAndGet);
+
+    scheduler.schedule(wrapper);
+    assertEquals(1, scheduler.pendingTimeouts());
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> timeouts.get() == 1);
+    ResponseEntity<?> response = (ResponseEntity<?>) wrapper.getResult().getResult();
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertEquals(0, scheduler.pendingTimeouts());
+    assertEquals(1, completed("timeout"), 0);
+    assertEquals(0, completed("notified"), 0);
+  }
+
+  @Test
+  public void testCancelOnNotification() throws Exception {
+    when(bizConfig.longPollingTimeoutInMilli()).thenReturn(200L);
+    when(bizConfig.longPollingTimeoutJitterInMilli()).thenReturn(0L);
+    DeferredResultWrapper wrapper = new DeferredResultWrapper(10000);
+    AtomicInteger timeouts = new AtomicInteger();
+    wrapper.onTimeout(timeouts::incrementAndGet);
+
+    HashedWheelTimer.Timeout timeout = scheduler.schedule(wrapper);
+    wrapper.setResult(new ApolloConfigNotification("application", 1));
+    scheduler.cancel(timeout, wrapper);
+    scheduler.cancel(timeout, wrapper);
+
+    TimeUnit.MILLISECONDS.sleep(400);
+    assertEquals(0, timeouts.get());
+    assertEquals(0, scheduler.pendingTimeouts());
+    assertEquals(0, completed("timeout"), 0);
+    assertEquals(1, completed("notified"), 0);
+  }
+
+  @Test
+  public void testCancelWithoutResult() throws Exception {
+    when(bizConfig.longPollingTimeoutInMilli()).thenReturn(200L);
+    when(bizConfig.longPollingTimeoutJitterInMilli()).thenReturn(0L);
+    DeferredResultWrapper wrapper = new DeferredResultWrapper(10000);
+
+    // e.g. the client disconnected
+    scheduler.cancel(scheduler.schedule(wrapper), wrapper);
+
+    assertEquals(0, scheduler.pendingTimeouts());
+    assertEquals(0, completed("notified"), 0);
+    assertEquals(1, completed("cancelled"), 0);
+  }
+
+  private double completed(String outcome) {
+    return meterRegistry.get("apollo.long-polling.completed").tag("outcome", outcome).counter()
+        .count();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationFanoutSchedulerTest {
+  private NotificationFanoutScheduler scheduler;
+  private MeterRegistry meterRegistry;
+
+  @Mock
+  private BizConfig bizConfig;
+
+  @Before
+  public void setUp() throws Exception {
+    when(bizConfig.releaseMessageNotificationWorkers()).thenReturn(2);
+    meterRegistry = new SimpleMeterRegistry();
+    scheduler = new NotificationFanoutScheduler(bizConfig, meterRegistry);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    scheduler.destroy();
+  }
+
+  @Test
+  public void testNotifyAllWatchersInBatches() throws Exception {
+    int someBatch = 10;
+    int someBatchInterval = 50;
+    when(bizConfig.releaseMessageNotificationBatch()).thenReturn(someBatch);
+    when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(someBatchInterval);
+
+    List<Integer> watchers = range(35);
+    Queue<Integer> notified = new ConcurrentLinkedQueue<>();
+
+    long start = System.nanoTime();
+    scheduler.submit("someKey", watchers, watchers.size(), notified::add);
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> scheduler.getActiveFanouts() == 0);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(watchers, Lists.newArrayList(notified));
+    // 4 batches need at least 3 intervals
+    assertTrue(elapsed >= 3 * someBatchInterval - 10);
+    assertEquals(0, scheduler.getPendingNotifications());
+    assertEquals(1, meterRegistry.get("apollo.notification.fanout.delivery").timer().count());
+  }
+
+  @Test
+  public void testDifferentKeysFanOutInParallel() throws Exception {
+    int someBatch = 1;
+    int someBatchInterval = 100;
+    when(bizConfig.releaseMessageNotificationBatch()).thenReturn(someBatch);
+    when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(someBatchInterval);
+
+    AtomicInteger someKeyNotified = new AtomicInteger();
+    AtomicInteger anotherKeyNotified = new AtomicInteger();
+
+    long start = System.nanoTime();
+    scheduler.submit("someKey", range(5), 5, watcher -> someKeyNotified.incrementAndGet());
+    scheduler.submit("anotherKey", range(5), 5, watcher -> anotherKeyNotified.incrementAndGet());
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> scheduler.getActiveFanouts() == 0);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(5, someKeyNotified.get());
+    assertEquals(5, anotherKeyNotified.get());
+    // running one after another would take at least 8 intervals
+    assertTrue(elapsed < 8 * someBatchInterval);
+  }
+
+  @Test
+  public void testSameKeySharesPacing() throws Exception {
+    int someBatch = 2;
+    int someBatchInterval = 100;
+    when(bizConfig.releaseMessageNotificationBatch()).thenReturn(someBatch);
+    when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(someBatchInterval);
+
+    AtomicInteger notified = new AtomicInteger();
+
+    long start = System.nanoTime();
+    scheduler.submit("someKey", range(4), 4, watcher -> notified.incrementAndGet());
+    scheduler.submit("someKey", range(4), 4, watcher -> notified.incrementAndGet());
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> scheduler.getActiveFanouts() == 0);
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertEquals(8, notified.get());
+    // 8 notifications with 2 per interval need at least 3 intervals
+    assertTrue(elapsed >= 3 * someBatchInterval - 10);
+  }
+
+  @Test
+  public void testNotifierFailureDoesNotStopFanOut() throws Exception {
+    when(bizConfig.releaseMessageNotificationBatch()).thenReturn(100);
+    when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(10);
+
+    AtomicInteger notified = new AtomicInteger();
+
+    scheduler.submit("someKey", range(3), 3, watcher -> {
+      notified.incrementAndGet();
+      if (watcher == 0) {
+        throw new IllegalStateException("some failure");
+      }
+    });
+
+    await().atMost(5, TimeUnit.SECONDS).until(() -> scheduler.getActiveFanouts() == 0);
+
+    assertEquals(3, notified.get());
+  }
+
+  private List<Integer> range(int size) {
+    List<Integer> result = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class ResponseCompressionUtilTest {
+
+  @Test
+  public void testAcceptsGzip() throws Exception {
+    assertTrue(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("gzip")));
+    assertTrue(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("deflate, GZIP;q=0.5")));
+    assertTrue(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("br", "gzip")));
+    assertTrue(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("*")));
+  }
+
+  @Test
+  public void testNotAcceptsGzip() throws Exception {
+    assertFalse(ResponseCompressionUtil.acceptsGzip((List<String>) null));
+    assertFalse(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList()));
+    assertFalse(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("deflate, br")));
+    assertFalse(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("gzip;q=0")));
+    assertFalse(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("*, gzip;q=0")));
+    assertFalse(ResponseCompressionUtil.acceptsGzip(Lists.newArrayList("*;q=0")));
+  }
+
+  @Test
+  public void testGzipIfWorthwhile() throws Exception {
+    byte[] someBody = new String(new char[4096]).replace('\0', 'a')
+        .getBytes(StandardCharsets.UTF_8);
+
+    byte[] compressed = ResponseCompressionUtil.gzipIfWorthwhile(someBody);
+
+    assertTrue(compressed.length < someBody.length);
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      assertArrayEquals(someBody, ByteStreams.toByteArray(in));
+    }
+  }
+
+  @Test
+  public void testGzipSmallBody() throws Exception {
+    assertNull(ResponseCompressionUtil.gzipIfWorthwhile("small".getBytes(StandardCharsets.UTF_8)));
+  }
+}
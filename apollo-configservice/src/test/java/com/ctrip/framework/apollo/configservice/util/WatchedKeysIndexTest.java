@@ -0,0 +1,168 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WatchedKeysIndexTest {
+  private WatchedKeysIndex watchedKeysIndex;
+  private String someCacheKey;
+  private String anotherCacheKey;
+  private String someWatchedKey;
+  private String anotherWatchedKey;
+
+  @Before
+  public void setUp() throws Exception {
+    watchedKeysIndex = new WatchedKeysIndex();
+    someCacheKey = "someCacheKey";
+    anotherCacheKey = "anotherCacheKey";
+    someWatchedKey = "someWatchedKey";
+    anotherWatchedKey = "anotherWatchedKey";
+  }
+
+  @Test
+  public void testPutAndRemove() throws Exception {
+    Set<String> watchedKeys = Sets.newHashSet(someWatchedKey, anotherWatchedKey);
+
+    watchedKeysIndex.put(someCacheKey, watchedKeys);
+
+    assertEquals(Collections.singleton(someCacheKey),
+        watchedKeysIndex.getCacheKeys(someWatchedKey));
+    assertEquals(Collections.singleton(someCacheKey),
+        watchedKeysIndex.getCacheKeys(anotherWatchedKey));
+    assertEquals(watchedKeys, watchedKeysIndex.getWatchedKeys(someCacheKey));
+
+    assertEquals(watchedKeys, watchedKeysIndex.remove(someCacheKey));
+
+    assertTrue(watchedKeysIndex.getCacheKeys(someWatchedKey).isEmpty());
+    assertTrue(watchedKeysIndex.getWatchedKeys(someCacheKey).isEmpty());
+    assertTrue(watchedKeysIndex.isEmpty());
+  }
+
+  @Test
+  public void testRemoveKeepsOtherCacheKeys() throws Exception {
+    watchedKeysIndex.put(someCacheKey, Sets.newHashSet(someWatchedKey, anotherWatchedKey));
+    watchedKeysIndex.put(anotherCacheKey, Sets.newHashSet(someWatchedKey));
+
+    watchedKeysIndex.remove(someCacheKey);
+
+    assertEquals(Collections.singleton(anotherCacheKey),
+        watchedKeysIndex.getCacheKeys(someWatchedKey));
+    assertTrue(watchedKeysIndex.getCacheKeys(anotherWatchedKey).isEmpty());
+    assertNull(watchedKeysIndex.remove(someCacheKey));
+  }
+
+  @Test
+  public void testPutAgainWithOtherWatchedKeys() throws Exception {
+    watchedKeysIndex.put(someCacheKey, Sets.newHashSet(someWatchedKey));
+
+    watchedKeysIndex.put(someCacheKey, Sets.newHashSet(anotherWatchedKey));
+
+    assertTrue(watchedKeysIndex.getCacheKeys(someWatchedKey).isEmpty());
+    assertEquals(Collections.singleton(someCacheKey),
+        watchedKeysIndex.getCacheKeys(anotherWatchedKey));
+  }
+
+  @Test
+  public void testRemoveWhileIterating() throws Exception {
+    watchedKeysIndex.put(someCacheKey, Sets.newHashSet(someWatchedKey));
+    watchedKeysIndex.put(anotherCacheKey, Sets.newHashSet(someWatchedKey));
+
+    for (String cacheKey : watchedKeysIndex.getCacheKeys(someWatchedKey)) {
+      watchedKeysIndex.remove(cacheKey);
+    }
+
+    assertTrue(watchedKeysIndex.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentPutAndRemove() throws Exception {
+    int threads = 16;
+    int cacheKeysPerThread = 50;
+    int rounds = 200;
+    // all threads share a few watched keys, like the clients of a popular namespace do
+    List<String> watchedKeys = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      watchedKeys.add("watchedKey" + i);
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int thread = 0; thread < threads; thread++) {
+      String prefix = "thread" + thread + "-cacheKey";
+      futures.add(executorService.submit(() -> {
+        startLatch.await();
+        for (int round = 0; round < rounds; round++) {
+          for (int i = 0; i < cacheKeysPerThread; i++) {
+            String watchedKey =
+                watchedKeys.get(ThreadLocalRandom.current().nextInt(watchedKeys.size()));
+            watchedKeysIndex.put(prefix + i, Sets.newHashSet(watchedKey, "watchedKey-" + i));
+          }
+          boolean lastRound = round == rounds - 1;
+          for (int i = 0; i < cacheKeysPerThread; i++) {
+            // keep the even cache keys indexed after the last round
+            if (!lastRound || i % 2 == 1) {
+              watchedKeysIndex.remove(prefix + i);
+            }
+          }
+        }
+        return null;
+      }));
+    }
+    startLatch.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executorService.shutdown();
+
+    int indexedCacheKeys = 0;
+    for (String watchedKey : watchedKeys) {
+      for (String cacheKey : watchedKeysIndex.getCacheKeys(watchedKey)) {
+        assertTrue(watchedKeysIndex.getWatchedKeys(cacheKey).contains(watchedKey));
+        indexedCacheKeys++;
+      }
+    }
+    assertEquals(threads * cacheKeysPerThread / 2, indexedCacheKeys);
+    for (int thread = 0; thread < threads; thread++) {
+      for (int i = 0; i < cacheKeysPerThread; i++) {
+        String cacheKey = "thread" + thread + "-cacheKey" + i;
+        Set<String> indexedWatchedKeys = watchedKeysIndex.getWatchedKeys(cacheKey);
+        assertEquals(i % 2 == 0 ? 2 : 0, indexedWatchedKeys.size());
+        for (String watchedKey : indexedWatchedKeys) {
+          assertTrue(watchedKeysIndex.getCacheKeys(watchedKey).contains(cacheKey));
+        }
+      }
+    }
+  }
+}
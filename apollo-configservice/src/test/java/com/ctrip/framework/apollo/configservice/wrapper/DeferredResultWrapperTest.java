@@ -16,11 +16,16 @@
  */
 package com.ctrip.framework.apollo.configservice.wrapper;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 public class DeferredResultWrapperTest {
@@ -38,4 +43,35 @@ public class DeferredResultWrapperTest {
         (List<ApolloConfigNotification>) response.getBody();
     assertSame(notification, notifications.get(0));
   }
+
+  @Test
+  public void testExpire() {
+    DeferredResultWrapper wrapper = new DeferredResultWrapper(1000);
+    AtomicInteger timeouts = new AtomicInteger();
+    wrapper.onTimeout(timeouts::incrementAndGet);
+
+    assertEquals(DeferredResultWrapper.Outcome.CANCELLED, wrapper.getOutcome());
+    assertTrue(wrapper.expire());
+    assertFalse(wrapper.expire());
+    assertEquals(DeferredResultWrapper.Outcome.TIMEOUT, wrapper.getOutcome());
+
+    ResponseEntity<?> response = (ResponseEntity<?>) wrapper.getResult().getResult();
+    assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+    assertEquals(1, timeouts.get());
+  }
+
+  @Test
+  public void testExpireAfterResultIsSet() {
+    DeferredResultWrapper wrapper = new DeferredResultWrapper(1000);
+    AtomicInteger timeouts = new AtomicInteger();
+    wrapper.onTimeout(timeouts::incrementAndGet);
+    wrapper.setResult(new ApolloConfigNotification("application", 1));
+
+    assertFalse(wrapper.expire());
+    assertEquals(DeferredResultWrapper.Outcome.NOTIFIED, wrapper.getOutcome());
+
+    ResponseEntity<?> response = (ResponseEntity<?>) wrapper.getResult().getResult();
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(0, timeouts.get());
+  }
 }
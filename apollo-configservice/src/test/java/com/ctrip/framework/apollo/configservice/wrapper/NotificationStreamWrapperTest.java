@@ -0,0 +1,163 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationStreamWrapperTest {
+  private static final String SOME_NAMESPACE = "application";
+
+  @Mock
+  private SseEmitter emitter;
+  private ExecutorService executorService;
+  private AtomicInteger closed;
+
+  @Before
+  public void setUp() throws Exception {
+    executorService = Executors.newSingleThreadExecutor();
+    closed = new AtomicInteger();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testSendNewerNotificationsOnly() throws Exception {
+    NotificationStreamWrapper stream = createStream(Runnable::run, 10, 10000);
+
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 2)));
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 2)));
+    stream.send(SOME_NAMESPACE, new ApolloConfigNotification(SOME_NAMESPACE, 1), "[]");
+
+    verify(emitter, times(1)).send(any(SseEventBuilder.class));
+  }
+
+  @Test
+  public void testCloseOnCompletionTimeoutOrError() throws Exception {
+    NotificationStreamWrapper stream = createStream(Runnable::run, 10, 10000);
+    ArgumentCaptor<Runnable> completionCaptor = ArgumentCaptor.forClass(Runnable.class);
+    ArgumentCaptor<Runnable> timeoutCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(emitter).onCompletion(completionCaptor.capture());
+    verify(emitter).onTimeout(timeoutCaptor.capture());
+
+    timeoutCaptor.getValue().run();
+    completionCaptor.getValue().run();
+
+    assertTrue(stream.isClosed());
+    assertEquals(1, closed.get());
+    verify(emitter).complete();
+
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 2)));
+    verify(emitter, never()).send(any(SseEventBuilder.class));
+  }
+
+  @Test
+  public void testSendFailure() throws Exception {
+    NotificationStreamWrapper stream = createStream(Runnable::run, 10, 10000);
+    doThrow(new IOException("broken pipe")).when(emitter).send(any(SseEventBuilder.class));
+
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 2)));
+    assertTrue(stream.isClosed());
+
+    stream.heartbeat();
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 3)));
+    verify(emitter, times(1)).send(any(SseEventBuilder.class));
+  }
+
+  @Test
+  public void testCloseWhenTooManyEventsPending() throws Exception {
+    List<Runnable> tasks = Lists.newArrayList();
+    NotificationStreamWrapper stream = createStream(tasks::add, 2, 10000);
+
+    for (int i = 1; i <= 3; i++) {
+      stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, i)));
+    }
+
+    assertTrue(stream.isClosed());
+    assertEquals(1, closed.get());
+    tasks.forEach(Runnable::run);
+    verify(emitter, never()).send(any(SseEventBuilder.class));
+    verify(emitter).complete();
+  }
+
+  @Test
+  public void testSlowClientNotBlockingCaller() throws Exception {
+    CountDownLatch sendBlocked = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      sendBlocked.await();
+      return null;
+    }).when(emitter).send(any(SseEventBuilder.class));
+    NotificationStreamWrapper stream = createStream(executorService, 10, 50);
+
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 1)));
+    stream.send(Lists.newArrayList(new ApolloConfigNotification(SOME_NAMESPACE, 2)));
+    assertFalse(stream.isClosed());
+
+    // stuck in the write longer than the send timeout
+    TimeUnit.MILLISECONDS.sleep(100);
+    stream.heartbeat();
+
+    assertTrue(stream.isClosed());
+    assertEquals(1, closed.get());
+
+    sendBlocked.countDown();
+    await().atMost(1, TimeUnit.SECONDS)
+        .untilAsserted(() -> verify(emitter, times(1)).send(any(SseEventBuilder.class)));
+  }
+
+  private NotificationStreamWrapper createStream(Executor executor,
+      int maxPendingEvents, long sendTimeoutInMilli) {
+    NotificationStreamWrapper stream = new NotificationStreamWrapper(emitter, new Gson(),
+        Maps.newHashMap(), executor, maxPendingEvents, sendTimeoutInMilli);
+    stream.onClose(closed::incrementAndGet);
+    return stream;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2025 Apollo Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatcherRegistryTest {
+
+  private WatcherRegistry<String> registry;
+
+  @Before
+  public void setUp() throws Exception {
+    registry = new WatcherRegistry<>();
+  }
+
+  @Test
+  public void testRegisterAndSnapshot() {
+    String key = "SomeKey";
+
+    registry.register(key, "value1");
+    registry.register(key.toLowerCase(), "value2");
+
+    assertEquals(Sets.newHashSet("value1", "value2"), Sets.newHashSet(registry.snapshot(key)));
+    assertEquals(Sets.newHashSet("value1", "value2"),
+        Sets.newHashSet(registry.snapshot(key.toUpperCase())));
+    assertEquals(2, registry.snapshot(key).size());
+    assertTrue(registry.containsKey(key.toUpperCase()));
+    assertEquals(1, registry.keySize());
+  }
+
+  @Test
+  public void testUnregister() {
+    String key = "SomeKey";
+
+    WatcherRegistry.Registration<String> registration = registry.register(key, "value1");
+    registry.register(key, "value2");
+
+    registry.unregister(registration);
+    // unregister twice should be harmless
+    registry.unregister(registration);
+
+    assertEquals(Lists.newArrayList("value2"), Lists.newArrayList(registry.snapshot(key)));
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testUnregisterLastWatcherRemovesKey() {
+    String key = "SomeKey";
+
+    WatcherRegistry.Registration<String> registration = registry.register(key, "value");
+    registry.unregister(registration);
+
+    assertFalse(registry.containsKey(key));
+    assertTrue(registry.snapshot(key).isEmpty());
+    assertEquals(0, registry.keySize());
+
+    registry.register(key, "anotherValue");
+    assertEquals(Lists.newArrayList("anotherValue"), Lists.newArrayList(registry.snapshot(key)));
+  }
+
+  @Test
+  public void testSnapshotIgnoresLaterRegistrations() {
+    String key = "SomeKey";
+    List<WatcherRegistry.Registration<String>> registrations = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      registrations.add(registry.register(key, "value" + i));
+    }
+
+    WatcherRegistry.Snapshot<String> snapshot = registry.snapshot(key);
+
+    // free a slot and let a new watcher reuse it, then grow the bucket
+    registry.unregister(registrations.get(3));
+    for (int i = 10; i < 30; i++) {
+      registry.register(key, "value" + i);
+    }
+
+    Set<String> notified = Sets.newHashSet(snapshot);
+    assertEquals(9, notified.size());
+    assertFalse(notified.contains("value3"));
+    for (int i = 10; i < 30; i++) {
+      assertFalse(notified.contains("value" + i));
+    }
+    assertEquals(29, registry.snapshot(key).size());
+  }
+
+  @Test
+  public void testSize() {
+    registry.register("Key1", "v1");
+    WatcherRegistry.Registration<String> registration = registry.register("key1", "v2");
+    registry.register("Key2", "v3");
+
+    assertEquals(3, registry.size());
+    assertEquals(2, registry.keySize());
+
+    registry.unregister(registration);
+    assertEquals(2, registry.size());
+  }
+
+  @Test
+  public void testConcurrentRegisterAndUnregister() throws InterruptedException {
+    final int threads = 8;
+    final int loopCount = 20000;
+    final String key = "RaceKey";
+    final CountDownLatch latch = new CountDownLatch(threads);
+    final AtomicReference<Throwable> threadException = new AtomicReference<>();
+
+    for (int t = 0; t < threads; t++) {
+      final String value = "value" + t;
+      new Thread(() -> {
+        try {
+          for (int i = 0; i < loopCount; i++) {
+            WatcherRegistry.Registration<String> registration = registry.register(key, value);
+            if (!Sets.newHashSet(registry.snapshot(key)).contains(value)) {
+              throw new IllegalStateException("Registered watcher is not visible");
+            }
+            registry.unregister(registration);
+          }
+        } catch (Throwable e) {
+          threadException.set(e);
+        } finally {
+          latch.countDown();
+        }
+      }).start();
+    }
+
+    latch.await();
+
+    if (threadException.get() != null) {
+      throw new RuntimeException("Exception in worker thread", threadException.get());
+    }
+
+    assertEquals(0, registry.size());
+    assertFalse(registry.containsKey(key));
+  }
+}
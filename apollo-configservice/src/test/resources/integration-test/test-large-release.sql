@@ -0,0 +1,21 @@
+--
+-- Copyright 2024 Apollo Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+INSERT INTO "AppNamespace" (AppId, Name, IsPublic) VALUES ('someAppId', 'largeNamespace', false);
+
+INSERT INTO "Namespace" (AppId, ClusterName, NamespaceName) VALUES ('someAppId', 'default', 'largeNamespace');
+
+INSERT INTO "Release" (Id, ReleaseKey, Name, Comment, AppId, ClusterName, NamespaceName, Configurations)
+ VALUES (900, 'TEST-LARGE-RELEASE-KEY', 'INTEGRATION-TEST-LARGE','First Release','someAppId', 'default', 'largeNamespace', '{"key00":"some-value-00-of-the-large-namespace","key01":"some-value-01-of-the-large-namespace","key02":"some-value-02-of-the-large-namespace","key03":"some-value-03-of-the-large-namespace","key04":"some-value-04-of-the-large-namespace","key05":"some-value-05-of-the-large-namespace","key06":"some-value-06-of-the-large-namespace","key07":"some-value-07-of-the-large-namespace","key08":"some-value-08-of-the-large-namespace","key09":"some-value-09-of-the-large-namespace","key10":"some-value-10-of-the-large-namespace","key11":"some-value-11-of-the-large-namespace","key12":"some-value-12-of-the-large-namespace","key13":"some-value-13-of-the-large-namespace","key14":"some-value-14-of-the-large-namespace","key15":"some-value-15-of-the-large-namespace","key16":"some-value-16-of-the-large-namespace","key17":"some-value-17-of-the-large-namespace","key18":"some-value-18-of-the-large-namespace","key19":"some-value-19-of-the-large-namespace","key20":"some-value-20-of-the-large-namespace","key21":"some-value-21-of-the-large-namespace","key22":"some-value-22-of-the-large-namespace","key23":"some-value-23-of-the-large-namespace","key24":"some-value-24-of-the-large-namespace","key25":"some-value-25-of-the-large-namespace","key26":"some-value-26-of-the-large-namespace","key27":"some-value-27-of-the-large-namespace","key28":"some-value-28-of-the-large-namespace","key29":"some-value-29-of-the-large-namespace","key30":"some-value-30-of-the-large-namespace","key31":"some-value-31-of-the-large-namespace","key32":"some-value-32-of-the-large-namespace","key33":"some-value-33-of-the-large-namespace","key34":"some-value-34-of-the-large-namespace","key35":"some-value-35-of-the-large-namespace","key36":"some-value-36-of-the-large-namespace","key37":"some-value-37-of-the-large-namespace","key38":"some-value-38-of-the-large-namespace","key39":"some-value-39-of-the-large-namespace","key40":"some-value-40-of-the-large-namespace","key41":"some-value-41-of-the-large-namespace","key42":"some-value-42-of-the-large-namespace","key43":"some-value-43-of-the-large-namespace","key44":"some-value-44-of-the-large-namespace","key45":"some-value-45-of-the-large-namespace","key46":"some-value-46-of-the-large-namespace","key47":"some-value-47-of-the-large-namespace","key48":"some-value-48-of-the-large-namespace","key49":"some-value-49-of-the-large-namespace","key50":"some-value-50-of-the-large-namespace","key51":"some-value-51-of-the-large-namespace","key52":"some-value-52-of-the-large-namespace","key53":"some-value-53-of-the-large-namespace","key54":"some-value-54-of-the-large-namespace","key55":"some-value-55-of-the-large-namespace","key56":"some-value-56-of-the-large-namespace","key57":"some-value-57-of-the-large-namespace","key58":"some-value-58-of-the-large-namespace","key59":"some-value-59-of-the-large-namespace"}');
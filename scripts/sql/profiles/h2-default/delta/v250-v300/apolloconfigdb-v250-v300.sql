@@ -18,3 +18,15 @@
 
 CREATE INDEX `GrayReleaseRule_IX_ReleaseId_BranchStatus_IsDeleted`
 ON `GrayReleaseRule` (`ReleaseId`, `BranchStatus`, `IsDeleted`);
+
+CREATE TABLE IF NOT EXISTS `ReleaseMessageCompaction` (
+  `Id` int(11) unsigned NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `Name` varchar(64) NOT NULL DEFAULT 'default' COMMENT '压缩任务名',
+  `Owner` varchar(64) NOT NULL DEFAULT '' COMMENT '持有租约的节点',
+  `LeaseExpireTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '租约过期时间',
+  `LastCompactedId` int(11) unsigned NOT NULL DEFAULT '0' COMMENT '已压缩到的发布消息Id',
+  `DataChange_CreatedTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `DataChange_LastTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '最后修改时间',
+  PRIMARY KEY (`Id`),
+  UNIQUE KEY `ReleaseMessageCompaction_UK_Name` (`Name`)
+)   COMMENT='发布消息压缩进度';
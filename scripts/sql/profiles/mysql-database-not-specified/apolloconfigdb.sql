@@ -372,6 +372,23 @@ CREATE TABLE `ReleaseMessage` (
   KEY `IX_Message` (`Message`(191))
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='发布消息';
 
+-- Dump of table releasemessagecompaction
+-- ------------------------------------------------------------
+
+DROP TABLE IF EXISTS `ReleaseMessageCompaction`;
+
+CREATE TABLE `ReleaseMessageCompaction` (
+  `Id` int(11) unsigned NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+  `Name` varchar(64) NOT NULL DEFAULT 'default' COMMENT '压缩任务名',
+  `Owner` varchar(64) NOT NULL DEFAULT '' COMMENT '持有租约的节点',
+  `LeaseExpireTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '租约过期时间',
+  `LastCompactedId` int(11) unsigned NOT NULL DEFAULT '0' COMMENT '已压缩到的发布消息Id',
+  `DataChange_CreatedTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `DataChange_LastTime` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '最后修改时间',
+  PRIMARY KEY (`Id`),
+  UNIQUE KEY `UK_Name` (`Name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='发布消息压缩进度';
+
 
 
 -- Dump of table serverconfig